@@ -0,0 +1,58 @@
+package com.github.mperever.web.crawler.common.management;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents helper to expose metrics of services by JMX (e.g. to watch them by jconsole or VisualVM).
+ * Metrics are not essential for services, so registration errors are logged and are not thrown.
+ *
+ * @author mperever
+ */
+public final class ManagementBeans
+{
+    private static final Logger logger = LoggerFactory.getLogger( ManagementBeans.class );
+
+    private static final String DOMAIN = "com.github.mperever.web.crawler";
+
+    private ManagementBeans()
+    {
+    }
+
+    /**
+     * Registers MXBean in platform MBean server with name 'com.github.mperever.web.crawler:type={type}'.
+     * Previously registered bean with the same name is replaced.
+     *
+     * @param type The type of bean, e.g. name of component
+     * @param mxBean The bean which implements MXBean interface
+     */
+    public static void register( final String type, final Object mxBean )
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try
+        {
+            final ObjectName name = new ObjectName( DOMAIN, "type", type );
+            try
+            {
+                server.registerMBean( mxBean, name );
+
+            } catch ( InstanceAlreadyExistsException ex )
+            {
+                server.unregisterMBean( name );
+                server.registerMBean( mxBean, name );
+            }
+            logger.debug( "Management bean '{}' has been registered", name );
+
+        } catch ( JMException ex )
+        {
+            logger.error( "Could not register management bean of type: " + type, ex );
+        }
+    }
+}
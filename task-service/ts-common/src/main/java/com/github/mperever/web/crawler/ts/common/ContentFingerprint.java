@@ -0,0 +1,126 @@
+package com.github.mperever.web.crawler.ts.common;
+
+import java.util.Map;
+
+/**
+ * Represents fingerprints of page content to find pages with the same or almost the same text
+ * (e.g. url variants with session id, print views and mirrors).
+ *
+ * Content hash is 64-bit FNV-1a hash of page text, it identifies pages with exactly the same text.
+ * SimHash is calculated from word statistic: each word votes for bits of its hash with weight of word count,
+ * so pages with similar texts have fingerprints which differ in few bits (see {@link #distance(long, long)}).
+ * Zero value means that fingerprint is not calculated.
+ *
+ * @author mperever
+ */
+public final class ContentFingerprint
+{
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Texts with less number of distinct words are not compared by similarity, since they differ in few words.
+     */
+    private static final int MIN_SIMHASH_WORD_COUNT = 8;
+
+    private ContentFingerprint()
+    {
+    }
+
+    /**
+     * Calculates hash of page text.
+     *
+     * @param text The page text
+     * @return The 64-bit hash, or 0 if the text is empty
+     */
+    public static long contentHash( final String text )
+    {
+        if ( text == null || text.isEmpty() )
+        {
+            return 0;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            final char ch = text.charAt( i );
+            hash = ( hash ^ ( ch & 0xFF ) ) * FNV_PRIME;
+            hash = ( hash ^ ( ch >>> Byte.SIZE ) ) * FNV_PRIME;
+        }
+        return nonZero( mix( hash ) );
+    }
+
+    /**
+     * Calculates SimHash of page text by its word statistic.
+     *
+     * @param wordStats The number of occurrences of each word
+     * @return The 64-bit SimHash, or 0 if the text has too few distinct words
+     */
+    public static long simHash( final Map<String, Long> wordStats )
+    {
+        if ( wordStats == null || wordStats.size() < MIN_SIMHASH_WORD_COUNT )
+        {
+            return 0;
+        }
+
+        final long[] votes = new long[ Long.SIZE ];
+        for ( Map.Entry<String, Long> wordStat : wordStats.entrySet() )
+        {
+            final long wordHash = wordHash( wordStat.getKey() );
+            final long weight = wordStat.getValue();
+            for ( int bit = 0; bit < Long.SIZE; bit++ )
+            {
+                votes[bit] += ( ( wordHash >>> bit ) & 1L ) != 0 ? weight : -weight;
+            }
+        }
+
+        long simHash = 0;
+        for ( int bit = 0; bit < Long.SIZE; bit++ )
+        {
+            if ( votes[bit] > 0 )
+            {
+                simHash |= 1L << bit;
+            }
+        }
+        return nonZero( simHash );
+    }
+
+    /**
+     * Calculates the number of different bits of SimHash fingerprints (Hamming distance).
+     *
+     * @return The distance from 0 (same texts) to 64
+     */
+    public static int distance( long simHash1, long simHash2 )
+    {
+        return Long.bitCount( simHash1 ^ simHash2 );
+    }
+
+    private static long wordHash( final String word )
+    {
+        long hash = FNV_OFFSET_BASIS;
+        for ( int i = 0; i < word.length(); i++ )
+        {
+            hash = ( hash ^ word.charAt( i ) ) * FNV_PRIME;
+        }
+        // FNV hash of short strings has poor distribution of high bits, SimHash needs all bits to be random
+        return mix( hash );
+    }
+
+    /**
+     * The finalization step of MurmurHash3.
+     */
+    private static long mix( long hash )
+    {
+        long result = hash;
+        result ^= result >>> 33;
+        result *= 0xFF51AFD7ED558CCDL;
+        result ^= result >>> 33;
+        result *= 0xC4CEB9FE1A85EC53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    private static long nonZero( long fingerprint )
+    {
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+}
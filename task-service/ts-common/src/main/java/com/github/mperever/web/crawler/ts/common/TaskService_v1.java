@@ -1,13 +1,20 @@
 package com.github.mperever.web.crawler.ts.common;
 
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesRequest;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksResponse;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchResponse;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksRequest;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksResponse;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Represents interface for high level API of task service version 1.
@@ -25,6 +32,21 @@ public interface TaskService_v1
      */
     RetrieveTasksResponse retrieveTasks( RetrieveTasksRequest request ) throws IllegalArgumentException;
 
+    /**
+     * Retrieves tasks in the same way as {@link #retrieveTasks(RetrieveTasksRequest)}, but if there are no tasks
+     * for client then the response is completed when tasks become available or wait timeout of request passes.
+     * By default the response is completed at once.
+     *
+     * @param request The request from client to retrieve tasks
+     * @return Response with tasks for client, empty response if there are no tasks until timeout OR error
+     * @throws IllegalArgumentException if request parameters are not valid
+     */
+    default CompletableFuture<RetrieveTasksResponse> retrieveTasksAsync( RetrieveTasksRequest request )
+            throws IllegalArgumentException
+    {
+        return CompletableFuture.completedFuture( retrieveTasks( request ) );
+    }
+
     /**
      * Saves task results.
      *
@@ -36,6 +58,42 @@ public interface TaskService_v1
     SaveTaskResultResponse saveTaskResults( SaveTaskResultRequest request )
             throws IllegalArgumentException, NoSuchElementException;
 
+    /**
+     * Saves results of several tasks at once, the results are saved in one transaction.
+     * Results of each task are checked in the same way as by {@link #saveTaskResults(SaveTaskResultRequest)},
+     * and if they are not valid then only the response for them has error.
+     *
+     * @param request The request from client to save results of several tasks.
+     * @return Response with results of task saving in the same order as in request.
+     * @throws IllegalArgumentException if request is not specified
+     */
+    SaveTaskResultsBatchResponse saveTaskResultsBatch( SaveTaskResultsBatchRequest request )
+            throws IllegalArgumentException;
+
+    /**
+     * Saves results of several tasks and retrieves next tasks for client by one request and in one transaction,
+     * so client can refill its buffer of tasks each time it sends results.
+     * Results are saved in the same way as by {@link #saveTaskResultsBatch(SaveTaskResultsBatchRequest)},
+     * and then tasks are retrieved in the same way as by {@link #retrieveTasks(RetrieveTasksRequest)}.
+     *
+     * @param request The request from client to save task results and retrieve tasks
+     * @return Response with results of task saving in the same order as in request and with tasks for client
+     * @throws IllegalArgumentException if request parameters are not valid
+     */
+    SaveResultsAndRetrieveTasksResponse saveResultsAndRetrieveTasks( SaveResultsAndRetrieveTasksRequest request )
+            throws IllegalArgumentException;
+
+    /**
+     * Renews leases of tasks which are still processed by client, so the tasks are not considered free
+     * and are not assigned to other clients while processing of them takes longer than processing timeout.
+     * Client should renew leases of all its tasks periodically, more often than processing timeout.
+     *
+     * @param request The request from client to renew leases of its tasks
+     * @return Response with the number of renewed leases OR error
+     * @throws IllegalArgumentException if request parameters are not valid
+     */
+    RenewTaskLeasesResponse renewTaskLeases( RenewTaskLeasesRequest request ) throws IllegalArgumentException;
+
     /**
      * Adds a new task.
      *
@@ -0,0 +1,124 @@
+package com.github.mperever.web.crawler.ts.common;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Represents fixed-width fingerprint of url, that is used as url identity instead of url itself.
+ *
+ * The fingerprint is 64 bits of MD5 digest of normalized url. Urls which differ only in
+ * case of scheme and host, default port, empty path or fragment have the same fingerprint.
+ * Values which are not absolute hierarchical urls are fingerprinted as is.
+ *
+ * @author mperever
+ */
+public final class UrlFingerprint
+{
+    private static final String DIGEST_ALGORITHM = "MD5";
+    private static final int HTTP_DEFAULT_PORT = 80;
+    private static final int HTTPS_DEFAULT_PORT = 443;
+
+    private UrlFingerprint()
+    {
+    }
+
+    /**
+     * Calculates fingerprint of url.
+     *
+     * @param url The url
+     * @return The 64-bit fingerprint
+     */
+    public static long of( final String url )
+    {
+        if ( url == null )
+        {
+            throw new IllegalArgumentException( "parameter 'url' is null." );
+        }
+
+        final byte[] digest = newDigest().digest( normalize( url ).getBytes( StandardCharsets.UTF_8 ) );
+        long fingerprint = 0;
+        for ( int i = 0; i < Long.BYTES; i++ )
+        {
+            fingerprint = ( fingerprint << Byte.SIZE ) | ( digest[i] & 0xFF );
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Normalizes url, e.g. 'HTTP://Example.com:80#top' is normalized to 'http://example.com/'.
+     *
+     * @param url The url to normalize
+     * @return The normalized url, or url as is if it is not absolute hierarchical url
+     */
+    public static String normalize( final String url )
+    {
+        final URI uri;
+        try
+        {
+            uri = new URI( url );
+
+        } catch ( URISyntaxException ex )
+        {
+            return url;
+        }
+
+        if ( !uri.isAbsolute() || uri.isOpaque() || uri.getHost() == null )
+        {
+            return url;
+        }
+
+        final String scheme = uri.getScheme().toLowerCase( Locale.ENGLISH );
+        final StringBuilder normalized = new StringBuilder( url.length() )
+                .append( scheme )
+                .append( "://" );
+        if ( uri.getRawUserInfo() != null )
+        {
+            normalized.append( uri.getRawUserInfo() ).append( '@' );
+        }
+        normalized.append( uri.getHost().toLowerCase( Locale.ENGLISH ) );
+        if ( uri.getPort() != -1 && uri.getPort() != defaultPort( scheme ) )
+        {
+            normalized.append( ':' ).append( uri.getPort() );
+        }
+
+        final String path = uri.getRawPath();
+        normalized.append( path == null || path.isEmpty() ? "/" : path );
+        if ( uri.getRawQuery() != null )
+        {
+            normalized.append( '?' ).append( uri.getRawQuery() );
+        }
+
+        return normalized.toString();
+    }
+
+    private static int defaultPort( final String scheme )
+    {
+        switch ( scheme )
+        {
+            case "http":
+                return HTTP_DEFAULT_PORT;
+            case "https":
+                return HTTPS_DEFAULT_PORT;
+            default:
+                return -1;
+        }
+    }
+
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            // MessageDigest is not thread-safe, and it is cheap to create
+            return MessageDigest.getInstance( DIGEST_ALGORITHM );
+
+        } catch ( NoSuchAlgorithmException ex )
+        {
+            // Every Java platform implementation is required to support MD5
+            throw new IllegalStateException( ex );
+        }
+    }
+}
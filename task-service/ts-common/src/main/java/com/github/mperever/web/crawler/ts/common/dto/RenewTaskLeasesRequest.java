@@ -0,0 +1,42 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+import java.io.Serializable;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Represents request to renew leases of url tasks which are still processed by client.
+ *
+ * @author mperever
+ */
+@SuppressFBWarnings( { "EI_EXPOSE_REP", "EI_EXPOSE_REP2" } )
+public class RenewTaskLeasesRequest implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private String clientId;
+    private String[] urls;
+
+    /**
+     *  This constructor is added as prerequisite for serialization.
+     */
+    private RenewTaskLeasesRequest()
+    {
+    }
+
+    public RenewTaskLeasesRequest( String clientId, String... urls )
+    {
+        this.clientId = clientId;
+        this.urls = urls;
+    }
+
+    public String getClientId()
+    {
+        return clientId;
+    }
+
+    public String[] getUrls()
+    {
+        return urls;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+/**
+ * Represents response for {@link RenewTaskLeasesRequest}.
+ * The response has either error or the number of renewed leases. Leases of tasks which have been already
+ * re-assigned to another client or completed are not renewed.
+ *
+ * @author mperever
+ */
+public class RenewTaskLeasesResponse implements ErrorKeeper
+{
+    private static final long serialVersionUID = 1L;
+
+    private Exception error;
+    private int renewedCount;
+
+    /**
+     *  This constructor is added as prerequisite for serialization.
+     */
+    private RenewTaskLeasesResponse()
+    {
+    }
+
+    public RenewTaskLeasesResponse( Exception error )
+    {
+        this.error = error;
+    }
+
+    public RenewTaskLeasesResponse( int renewedCount )
+    {
+        this.renewedCount = renewedCount;
+    }
+
+    public int getRenewedCount()
+    {
+        return renewedCount;
+    }
+
+    @Override
+    public boolean hasError()
+    {
+        return error != null;
+    }
+
+    @Override
+    public Exception getError()
+    {
+        return error;
+    }
+}
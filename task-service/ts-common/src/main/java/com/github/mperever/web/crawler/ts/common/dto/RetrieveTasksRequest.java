@@ -14,6 +14,7 @@ public class RetrieveTasksRequest implements Serializable
     private String clientId;
     private int maxCount;
     private int depthLimit;
+    private long waitTimeoutMs;
 
     /**
      *  This constructor is added as prerequisite for serialization.
@@ -23,10 +24,24 @@ public class RetrieveTasksRequest implements Serializable
     }
 
     public RetrieveTasksRequest( String clientId, int maxCount, int depthLimit )
+    {
+        this( clientId, maxCount, depthLimit, 0 );
+    }
+
+    /**
+     * Creates request to retrieve tasks, which waits for tasks if there are no tasks for client.
+     *
+     * @param clientId The client identifier
+     * @param maxCount The maximum number of tasks to retrieve
+     * @param depthLimit The maximum depth of external urls
+     * @param waitTimeoutMs The maximum time to wait for tasks, 0 to get response at once
+     */
+    public RetrieveTasksRequest( String clientId, int maxCount, int depthLimit, long waitTimeoutMs )
     {
         this.clientId = clientId;
         this.maxCount = maxCount;
         this.depthLimit = depthLimit;
+        this.waitTimeoutMs = waitTimeoutMs;
     }
 
     public String getClientId()
@@ -43,4 +58,9 @@ public class RetrieveTasksRequest implements Serializable
     {
         return depthLimit;
     }
+
+    public long getWaitTimeoutMs()
+    {
+        return waitTimeoutMs;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+import java.io.Serializable;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Represents request to save results of several url tasks and to retrieve next tasks by one round trip.
+ *
+ * @author mperever
+ */
+@SuppressFBWarnings( { "EI_EXPOSE_REP", "EI_EXPOSE_REP2" } )
+public class SaveResultsAndRetrieveTasksRequest implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private SaveTaskResultRequest[] saveRequests;
+    private RetrieveTasksRequest retrieveRequest;
+
+    /**
+     *  This constructor is added as prerequisite for serialization.
+     */
+    private SaveResultsAndRetrieveTasksRequest()
+    {
+    }
+
+    /**
+     * @param retrieveRequest The request to retrieve tasks, max count of tasks can be 0 to only save results
+     * @param saveRequests The requests to save task results
+     */
+    public SaveResultsAndRetrieveTasksRequest( RetrieveTasksRequest retrieveRequest,
+                                               SaveTaskResultRequest... saveRequests )
+    {
+        this.retrieveRequest = retrieveRequest;
+        this.saveRequests = saveRequests;
+    }
+
+    public SaveTaskResultRequest[] getSaveRequests()
+    {
+        return saveRequests;
+    }
+
+    public RetrieveTasksRequest getRetrieveRequest()
+    {
+        return retrieveRequest;
+    }
+}
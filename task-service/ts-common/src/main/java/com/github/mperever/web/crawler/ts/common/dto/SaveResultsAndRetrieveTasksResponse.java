@@ -0,0 +1,60 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Represents response for {@link SaveResultsAndRetrieveTasksRequest}.
+ * The response has either error of the whole request, or retrieved tasks
+ * and responses for each request to save task results (in the same order).
+ *
+ * @author mperever
+ */
+@SuppressFBWarnings( { "EI_EXPOSE_REP", "EI_EXPOSE_REP2" } )
+public class SaveResultsAndRetrieveTasksResponse implements ErrorKeeper
+{
+    private static final long serialVersionUID = 1L;
+
+    private Exception error;
+    private SaveTaskResultResponse[] saveResponses;
+    private UrlTask[] tasks;
+
+    /**
+     *  This constructor is added as prerequisite for serialization.
+     */
+    private SaveResultsAndRetrieveTasksResponse()
+    {
+    }
+
+    public SaveResultsAndRetrieveTasksResponse( Exception error )
+    {
+        this.error = error;
+    }
+
+    public SaveResultsAndRetrieveTasksResponse( SaveTaskResultResponse[] saveResponses, UrlTask[] tasks )
+    {
+        this.saveResponses = saveResponses;
+        this.tasks = tasks;
+    }
+
+    public SaveTaskResultResponse[] getSaveResponses()
+    {
+        return saveResponses;
+    }
+
+    public UrlTask[] getTasks()
+    {
+        return tasks;
+    }
+
+    @Override
+    public boolean hasError()
+    {
+        return error != null;
+    }
+
+    @Override
+    public Exception getError()
+    {
+        return error;
+    }
+}
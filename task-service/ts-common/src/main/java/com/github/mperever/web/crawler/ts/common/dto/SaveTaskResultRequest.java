@@ -14,6 +14,7 @@ public class SaveTaskResultRequest implements ErrorKeeper
     private String clientId;
     private TaskResults taskResults;
     private Exception error;
+    private TaskErrorType errorType;
 
     /**
      *  This constructor is added as prerequisite for serialization.
@@ -23,10 +24,16 @@ public class SaveTaskResultRequest implements ErrorKeeper
     }
 
     public SaveTaskResultRequest( String clientId, String url, Exception error )
+    {
+        this( clientId, url, error, TaskErrorType.UNKNOWN );
+    }
+
+    public SaveTaskResultRequest( String clientId, String url, Exception error, TaskErrorType errorType )
     {
         this.clientId = clientId;
         this.url = url;
         this.error = error;
+        this.errorType = errorType;
     }
 
     public SaveTaskResultRequest( String clientId, String url, TaskResults taskResults )
@@ -62,4 +69,15 @@ public class SaveTaskResultRequest implements ErrorKeeper
     {
         return error;
     }
+
+    /**
+     * Gets type of error, task service decides by it if the task should be retried.
+     *
+     * @return The error type, {@link TaskErrorType#UNKNOWN} if the client has not specified it,
+     *         or null if there is no error
+     */
+    public TaskErrorType getErrorType()
+    {
+        return errorType == null && error != null ? TaskErrorType.UNKNOWN : errorType;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+import java.io.Serializable;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Represents request to save results of several url tasks at once.
+ *
+ * @author mperever
+ */
+@SuppressFBWarnings( { "EI_EXPOSE_REP", "EI_EXPOSE_REP2" } )
+public class SaveTaskResultsBatchRequest implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private SaveTaskResultRequest[] requests;
+
+    /**
+     *  This constructor is added as prerequisite for serialization.
+     */
+    private SaveTaskResultsBatchRequest()
+    {
+    }
+
+    public SaveTaskResultsBatchRequest( SaveTaskResultRequest... requests )
+    {
+        this.requests = requests;
+    }
+
+    public SaveTaskResultRequest[] getRequests()
+    {
+        return requests;
+    }
+}
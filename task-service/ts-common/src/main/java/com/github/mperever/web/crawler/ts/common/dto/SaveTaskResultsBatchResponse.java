@@ -0,0 +1,52 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Represents response for {@link SaveTaskResultsBatchRequest}.
+ * The response has either error of the whole batch or responses for each request of the batch (in the same order).
+ *
+ * @author mperever
+ */
+@SuppressFBWarnings( { "EI_EXPOSE_REP", "EI_EXPOSE_REP2" } )
+public class SaveTaskResultsBatchResponse implements ErrorKeeper
+{
+    private static final long serialVersionUID = 1L;
+
+    private Exception error;
+    private SaveTaskResultResponse[] responses;
+
+    /**
+     *  This constructor is added as prerequisite for serialization.
+     */
+    private SaveTaskResultsBatchResponse()
+    {
+    }
+
+    public SaveTaskResultsBatchResponse( Exception error )
+    {
+        this.error = error;
+    }
+
+    public SaveTaskResultsBatchResponse( SaveTaskResultResponse... responses )
+    {
+        this.responses = responses;
+    }
+
+    public SaveTaskResultResponse[] getResponses()
+    {
+        return responses;
+    }
+
+    @Override
+    public boolean hasError()
+    {
+        return error != null;
+    }
+
+    @Override
+    public Exception getError()
+    {
+        return error;
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+/**
+ * Represents type of error which occurred during processing of {@link UrlTask}.
+ * Task service retries only the tasks which failed with retryable errors.
+ *
+ * @author mperever
+ */
+public enum TaskErrorType
+{
+    /**
+     * The error is not classified by client.
+     */
+    UNKNOWN( true ),
+
+    /**
+     * Could not connect to host, e.g. unknown host, connection refused or connect timeout.
+     */
+    CONNECTION_FAILED( true ),
+
+    /**
+     * The response has not been received in time (read or total fetch deadline).
+     */
+    TIMEOUT( true ),
+
+    /**
+     * The server returned 5xx, 408 or 429 status.
+     */
+    HTTP_SERVER_ERROR( true ),
+
+    /**
+     * The server returned 4xx status, e.g. page is not found.
+     */
+    HTTP_CLIENT_ERROR( false ),
+
+    /**
+     * The response content type is not allowed, e.g. it is binary file.
+     */
+    UNSUPPORTED_CONTENT_TYPE( false ),
+
+    /**
+     * The response body is bigger than the limit of client.
+     */
+    BODY_TOO_LARGE( false ),
+
+    /**
+     * The task url is not valid.
+     */
+    INVALID_URL( false );
+
+    private final boolean retryable;
+
+    TaskErrorType( boolean retryable )
+    {
+        this.retryable = retryable;
+    }
+
+    /**
+     * Checks if the task should be processed again after the error.
+     *
+     * @return true if the error might be temporary
+     */
+    public boolean isRetryable()
+    {
+        return retryable;
+    }
+}
@@ -18,6 +18,15 @@ public class TaskResults implements Serializable
     private String[] newUrls;
     private String pageText;
     private Map<String, Long> wordsStats;
+    private boolean unchanged;
+    private String etag;
+    private String lastModified;
+
+    /**
+     * Fingerprints of page text, see {@link com.github.mperever.web.crawler.ts.common.ContentFingerprint}.
+     */
+    private long contentHash;
+    private long simHash;
 
     public String[] getNewUrls()
     {
@@ -48,4 +57,60 @@ public class TaskResults implements Serializable
     {
         this.wordsStats = wordsStats;
     }
+
+    /**
+     * Checks if the page has not been changed since previous download (HTTP 304 Not Modified).
+     * Unchanged page has no text, word stats and links, the previously saved ones are kept.
+     *
+     * @return true if the page has not been changed
+     */
+    public boolean isUnchanged()
+    {
+        return unchanged;
+    }
+
+    public void setUnchanged( boolean unchanged )
+    {
+        this.unchanged = unchanged;
+    }
+
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag( String etag )
+    {
+        this.etag = etag;
+    }
+
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    public void setLastModified( String lastModified )
+    {
+        this.lastModified = lastModified;
+    }
+
+    public long getContentHash()
+    {
+        return contentHash;
+    }
+
+    public void setContentHash( long contentHash )
+    {
+        this.contentHash = contentHash;
+    }
+
+    public long getSimHash()
+    {
+        return simHash;
+    }
+
+    public void setSimHash( long simHash )
+    {
+        this.simHash = simHash;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.github.mperever.web.crawler.ts.common.dto;
+
+/**
+ * Represents processing status of {@link UrlTask}.
+ *
+ * @author mperever
+ */
+public enum TaskStatus
+{
+    /**
+     * The task is waiting for processing.
+     */
+    NEW,
+
+    /**
+     * The task is assigned to client, it becomes free again when processing timeout is expired.
+     */
+    CLAIMED,
+
+    /**
+     * The task is processed successfully.
+     */
+    DONE,
+
+    /**
+     * The task has reached error threshold and will not be processed anymore.
+     */
+    DEAD
+}
@@ -1,5 +1,9 @@
 package com.github.mperever.web.crawler.ts.common.dto;
 
+import com.github.mperever.web.crawler.ts.common.UrlFingerprint;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
 import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -16,12 +20,33 @@ public class UrlTask implements Serializable
     private Integer parentId;
     private int id;
     private String url;
+
+    /**
+     * Fingerprint of url, see {@link #urlHash()}.
+     */
+    private long urlHash;
     private int depth;
     private boolean external;
     private long startProcessTime;
     private long endProcessTime;
     private int errorCount;
     private String clientId;
+    private TaskStatus status = TaskStatus.NEW;
+
+    /**
+     * Validators of page which has been already downloaded (ETag and Last-Modified response headers),
+     * the page is requested again only if it has been changed. They are stored with page text stats.
+     */
+    private String etag;
+    private String lastModified;
+
+    /**
+     * Identifies the claim in which the task has been assigned to client.
+     * It is used by data access layer only and has no accessors, so it is not serialized into json.
+     */
+    @SuppressWarnings( "PMD.UnusedPrivateField" )
+    @SuppressFBWarnings( "UUF_UNUSED_FIELD" )
+    private String claimToken;
 
     /**
      *  This constructor is added as prerequisite for serialization.
@@ -76,6 +101,21 @@ public class UrlTask implements Serializable
         return url;
     }
 
+    /**
+     * Gets fingerprint of url (see {@link UrlFingerprint}), that identifies task in storage.
+     * The fingerprint is calculated on first call. It is not a bean property, so it is not serialized into json.
+     *
+     * @return The url fingerprint
+     */
+    public long urlHash()
+    {
+        if ( urlHash == 0 )
+        {
+            urlHash = UrlFingerprint.of( url );
+        }
+        return urlHash;
+    }
+
     public int getDepth()
     {
         return depth;
@@ -116,6 +156,16 @@ public class UrlTask implements Serializable
         this.endProcessTime = endProcessTime;
     }
 
+    public TaskStatus getStatus()
+    {
+        return status;
+    }
+
+    public void setStatus( TaskStatus status )
+    {
+        this.status = status;
+    }
+
     public int getErrorCount()
     {
         return errorCount;
@@ -126,6 +176,30 @@ public class UrlTask implements Serializable
         this.errorCount = errorCount;
     }
 
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag( String etag )
+    {
+        this.etag = etag;
+    }
+
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    public void setLastModified( String lastModified )
+    {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Tasks are equal if their url fingerprints are equal, so tasks are identified in the same way
+     * as in storage (the fingerprint is unique key of task).
+     */
     @Override
     public boolean equals( Object obj )
     {
@@ -143,23 +217,24 @@ public class UrlTask implements Serializable
         }
 
         final UrlTask other = ( UrlTask ) obj;
-        return this.url.equals( other.url );
+        return this.urlHash() == other.urlHash();
     }
 
     @Override
     public int hashCode()
     {
-        return url.hashCode();
+        return Long.hashCode( this.urlHash() );
     }
 
     @Override
     public String toString()
     {
-        return String.format( "[%s, %s, %s, %s, %s, %s, %s, %s, %s]",
+        return String.format( "[%s, %s, %s, %s, %s, %s, %s, %s, %s, %s]",
                 id,
                 url,
                 depth,
                 external,
+                status,
                 errorCount,
                 startProcessTime,
                 endProcessTime,
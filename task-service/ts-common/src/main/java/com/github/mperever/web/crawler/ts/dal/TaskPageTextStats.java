@@ -15,6 +15,15 @@ public class TaskPageTextStats implements Serializable
     private int taskId;
     private String pageText;
     private Map<String,Long> wordStats;
+    private String etag;
+    private String lastModified;
+    private long contentHash;
+    private long simHash;
+
+    /**
+     * The task with the same page text, page text and word stats are not stored for duplicated page.
+     */
+    private Integer canonicalTaskId;
 
     /**
      *  This constructor is added as prerequisite for serialization.
@@ -57,4 +66,54 @@ public class TaskPageTextStats implements Serializable
     {
         this.wordStats = wordStats;
     }
+
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag( String etag )
+    {
+        this.etag = etag;
+    }
+
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    public void setLastModified( String lastModified )
+    {
+        this.lastModified = lastModified;
+    }
+
+    public long getContentHash()
+    {
+        return contentHash;
+    }
+
+    public void setContentHash( long contentHash )
+    {
+        this.contentHash = contentHash;
+    }
+
+    public long getSimHash()
+    {
+        return simHash;
+    }
+
+    public void setSimHash( long simHash )
+    {
+        this.simHash = simHash;
+    }
+
+    public Integer getCanonicalTaskId()
+    {
+        return canonicalTaskId;
+    }
+
+    public void setCanonicalTaskId( Integer canonicalTaskId )
+    {
+        this.canonicalTaskId = canonicalTaskId;
+    }
 }
\ No newline at end of file
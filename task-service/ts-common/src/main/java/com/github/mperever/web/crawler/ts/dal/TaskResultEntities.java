@@ -16,6 +16,8 @@ public class TaskResultEntities
 
     private UrlTask[] tasks;
     private TaskPageTextStats stats;
+    private boolean unchanged;
+    private boolean recrawl;
 
     public TaskResultEntities( int taskId )
     {
@@ -46,4 +48,30 @@ public class TaskResultEntities
     {
         this.stats = stats;
     }
+
+    /**
+     * @return true if the page has not been changed, so the saved page text stats are kept as is
+     */
+    public boolean isUnchanged()
+    {
+        return unchanged;
+    }
+
+    public void setUnchanged( boolean unchanged )
+    {
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * @return true if the task results have been already saved before, so the page text stats are replaced
+     */
+    public boolean isRecrawl()
+    {
+        return recrawl;
+    }
+
+    public void setRecrawl( boolean recrawl )
+    {
+        this.recrawl = recrawl;
+    }
 }
\ No newline at end of file
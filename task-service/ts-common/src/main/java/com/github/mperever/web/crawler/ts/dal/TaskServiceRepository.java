@@ -1,8 +1,11 @@
 package com.github.mperever.web.crawler.ts.dal;
 
+import com.github.mperever.web.crawler.ts.common.dto.TaskStatus;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents interface for repository with operations for {@link UrlTask} and task results.
@@ -35,21 +38,46 @@ public interface TaskServiceRepository
      */
     List<UrlTask> getTasks( int offset, int limit );
 
+    /**
+     * Gets tasks by specified urls.
+     *
+     * @param urls The urls to find tasks.
+     * @return The found tasks, tasks which are not found are skipped.
+     */
+    List<UrlTask> getTasks( Collection<String> urls );
+
     /**
      * Updates error count of task.
+     * The task is marked as {@link TaskStatus#DEAD} if error count reaches the threshold.
      *
      * @param url The url to find task.
      * @param errorCount The value of error count to set.
+     * @param errorThreshold The error count threshold after that url will not take for processing.
      */
-    void updateErrorCount( String url, int errorCount );
+    void updateErrorCount( String url, int errorCount, int errorThreshold );
 
     /**
      * Saves a task results and
-     * sets the value of now time to {@link UrlTask#endProcessTime} for {@link TaskResultEntities#taskId}.
+     * sets the value of now time to {@link UrlTask#endProcessTime} for {@link TaskResultEntities#taskId}
+     * and marks the task as {@link TaskStatus#DONE}.
+     * Previously saved page text stats are replaced, or are kept as is if the page is unchanged.
+     * New tasks and page values which do not fit database columns are skipped.
      *
      * @param taskResults The task results to save.
+     * @return true if the task results have been saved, false if the transaction has failed
      */
-    void saveTaskResults( TaskResultEntities taskResults );
+    boolean saveTaskResults( TaskResultEntities taskResults );
+
+    /**
+     * Saves results of several tasks in one transaction,
+     * in the same way as {@link #saveTaskResults(TaskResultEntities)} does it for each of them.
+     * If the transaction fails, results are saved one by one, so results which cannot be saved
+     * do not prevent saving the others.
+     *
+     * @param taskResultsBatch The results of tasks to save.
+     * @return The ids of tasks which results have not been saved, empty if all results have been saved
+     */
+    Set<Integer> saveTaskResultsBatch( List<TaskResultEntities> taskResultsBatch );
 
     /**
      * Gets a page text stats of task.
@@ -61,7 +89,9 @@ public interface TaskServiceRepository
 
     /**
      * Gets a free tasks regarding to specified criteria and assign the tasks to client.
-     * Also this method sets the value of now time to {@link UrlTask#startProcessTime} of each task.
+     * Also this method sets the value of now time to {@link UrlTask#startProcessTime} of each task
+     * and marks the tasks as {@link TaskStatus#CLAIMED}.
+     * Tasks which page has been already saved are returned with page validators (ETag and Last-Modified).
      *
      * Search criteria:
      *   - External url depth must be less or equal than specified depth limit
@@ -79,4 +109,40 @@ public interface TaskServiceRepository
                                    int depthLimit,
                                    long timeOutInMs,
                                    int errorThreshold );
-}
\ No newline at end of file
+
+    /**
+     * Saves results of several tasks and assigns free tasks to client in one transaction,
+     * in the same way as {@link #saveTaskResultsBatch(List)} and {@link #assignTasksToClient} do it.
+     * Tasks are assigned after results are saved, so the tasks of saved results are not assigned again.
+     * If the transaction fails, results are saved as {@link #saveTaskResultsBatch(List)} does it
+     * and tasks are assigned in another transaction, so results which cannot be saved do not prevent
+     * saving the others and assigning tasks.
+     *
+     * @param taskResultsBatch The results of tasks to save.
+     * @param clientId The client id to assign to result tasks
+     * @param maxCount The maximum count of tasks to assign, 0 to only save results
+     * @param depthLimit The maximum depth limit for external urls
+     * @param timeOutInMs The timeout in milliseconds after which the task is considered free for processing
+     * @param errorThreshold The error count threshold after that url will not take for processing.
+     * @param notSavedTaskIds The collection to add ids of tasks which results have not been saved
+     * @return The assigned tasks, or null if tasks have not been assigned
+     */
+    UrlTask[] saveTaskResultsAndAssignTasks( List<TaskResultEntities> taskResultsBatch,
+                                             String clientId,
+                                             int maxCount,
+                                             int depthLimit,
+                                             long timeOutInMs,
+                                             int errorThreshold,
+                                             Collection<Integer> notSavedTaskIds );
+
+    /**
+     * Renews leases of tasks assigned to client:
+     * sets the value of now time to {@link UrlTask#startProcessTime} of tasks which are still
+     * {@link TaskStatus#CLAIMED} by the client.
+     *
+     * @param clientId The client id the tasks are assigned to
+     * @param urls The urls of tasks to renew leases
+     * @return The number of renewed leases, or null if the transaction has failed
+     */
+    Integer renewTaskLeases( String clientId, Collection<String> urls );
+}
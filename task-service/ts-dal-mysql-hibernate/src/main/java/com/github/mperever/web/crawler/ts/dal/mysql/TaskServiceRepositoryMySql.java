@@ -1,5 +1,7 @@
 package com.github.mperever.web.crawler.ts.dal.mysql;
 
+import com.github.mperever.web.crawler.ts.common.UrlFingerprint;
+import com.github.mperever.web.crawler.ts.common.dto.TaskStatus;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
 import com.github.mperever.web.crawler.ts.dal.TaskPageTextStats;
@@ -9,15 +11,33 @@ import com.github.mperever.web.crawler.ts.dal.TaskServiceRepository;
 import com.github.mperever.web.crawler.ts.dal.mysql.internal.EntityManagerFactoryHolder;
 import com.github.mperever.web.crawler.ts.dal.mysql.internal.EntityManagerQuery;
 import com.github.mperever.web.crawler.ts.dal.mysql.internal.EntityManagerQueryResult;
+import com.github.mperever.web.crawler.ts.dal.mysql.internal.PageFingerprintIndex;
+import com.github.mperever.web.crawler.ts.dal.mysql.internal.PageFingerprintIndexHolder;
+import com.github.mperever.web.crawler.ts.dal.mysql.internal.SeenUrlFilter;
+import com.github.mperever.web.crawler.ts.dal.mysql.internal.SeenUrlFilterHolder;
+import com.github.mperever.web.crawler.ts.dal.mysql.internal.TaskPageTextStats_;
 import com.github.mperever.web.crawler.ts.dal.mysql.internal.UrlTask_;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.LockModeType;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -25,6 +45,8 @@ import javax.persistence.criteria.CriteriaUpdate;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
+import org.hibernate.Session;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -37,63 +59,299 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
 {
     private static final Logger logger = LoggerFactory.getLogger( TaskServiceRepositoryMySql.class );
 
+    /**
+     * Assigns free tasks to client by update statement, so concurrent claimers (e.g. several task service nodes)
+     * never get the same task: database locks rows being updated and re-checks the condition for them.
+     * The claimed tasks are marked by unique claim token to select them afterwards.
+     *
+     * Free tasks are claimed in two steps, each of them is a range read of own index (see urlTask_mapping.xml):
+     *
+     *     1 - CLAIMED tasks with expired processing timeout, oldest first
+     *     2 - NEW tasks, breadth-first (by depth)
+     *
+     * And both steps check condition:
+     *
+     *     ( task.getErrorCount() < errorThreshold )
+     *     && ( !task.isExternal() || task.getDepth() <= depthLimit )
+     */
+    private static final String CLAIM_TASKS_SQL = "UPDATE Tasks"
+            + " SET status = 'CLAIMED', clientId = :clientId, startProcessTime = :startProcessTime,"
+            + " claimToken = :claimToken";
+
+    private static final String FREE_TASK_CONDITION_SQL = " AND errorCount < :errorThreshold"
+            + " AND ( external = FALSE OR depth <= :depthLimit )";
+
+    private static final String CLAIM_EXPIRED_TASKS_SQL = CLAIM_TASKS_SQL
+            + " WHERE status = 'CLAIMED' AND startProcessTime < :expiredStartTime"
+            + FREE_TASK_CONDITION_SQL
+            + " ORDER BY startProcessTime"
+            + " LIMIT :maxCount";
+
+    private static final String CLAIM_NEW_TASKS_SQL = CLAIM_TASKS_SQL
+            + " WHERE status = 'NEW'"
+            + FREE_TASK_CONDITION_SQL
+            + " ORDER BY depth, id"
+            + " LIMIT :maxCount";
+
+    /**
+     * Adds task if there is no task with the same url fingerprint (unique key), otherwise only lowers depth
+     * of the task and marks it as internal if the url has been found closer to start pages.
+     * Unlike 'INSERT IGNORE' it does not suppress other errors (e.g. too long url).
+     * Tasks are inserted by JDBC batch, since IDENTITY id generation disables batching of persisted entities.
+     * With 'rewriteBatchedStatements' connection property MySQL driver sends the batch as multi-row insert.
+     */
+    private static final String INSERT_TASK_IF_NOT_EXIST_SQL = "INSERT INTO Tasks"
+            + " (parentId, url, urlHash, depth, external, startProcessTime, endProcessTime, errorCount, clientId, status)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+            + " ON DUPLICATE KEY UPDATE depth = LEAST(depth, VALUES(depth)), external = external AND VALUES(external)";
+
+    /**
+     * Selects depth of tasks to check whether the found urls are closer to start pages.
+     */
+    private static final String SELECT_TASK_DEPTHS_JPQL = "SELECT t.urlHash, t.depth, t.external FROM UrlTask t"
+            + " WHERE t.urlHash IN :urlHashes";
+
+    /**
+     * Selects page validators of tasks which page has been already saved.
+     */
+    private static final String SELECT_PAGE_VALIDATORS_JPQL = "SELECT s.taskId, s.etag, s.lastModified FROM PageText s"
+            + " WHERE s.taskId IN :taskIds AND ( s.etag IS NOT NULL OR s.lastModified IS NOT NULL )";
+
+    /**
+     * Column lengths, see mysqlDbSetup.sql. Values which do not fit columns are not saved,
+     * so one of them does not fail the whole transaction.
+     */
+    private static final int MAX_URL_LENGTH = 2000;
+    private static final int MAX_PAGE_TEXT_LENGTH = 20000;
+    private static final int MAX_ETAG_LENGTH = 256;
+    private static final int MAX_LAST_MODIFIED_LENGTH = 64;
+    private static final int MAX_WORD_LENGTH = 255;
+
+    private static final long DEFAULT_EXPECTED_URL_COUNT = 100_000;
+    private static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.0001;
+    private static final int DEFAULT_FINGERPRINT_CAPACITY = 100_000;
+    private static final int DEFAULT_MAX_SIMHASH_DISTANCE = 3;
+
     private final EntityManagerFactory entityManagerFactory;
+    private final SeenUrlFilter seenUrls;
+    private final PageFingerprintIndex pageFingerprints;
 
-    TaskServiceRepositoryMySql( EntityManagerFactory entityManagerFactory )
+    TaskServiceRepositoryMySql( EntityManagerFactory entityManagerFactory,
+                                SeenUrlFilter seenUrls,
+                                PageFingerprintIndex pageFingerprints )
     {
         this.entityManagerFactory = entityManagerFactory;
+        this.seenUrls = seenUrls;
+        this.pageFingerprints = pageFingerprints;
+    }
+
+    TaskServiceRepositoryMySql( EntityManagerFactory entityManagerFactory )
+    {
+        this( entityManagerFactory,
+              new SeenUrlFilter( DEFAULT_EXPECTED_URL_COUNT, DEFAULT_FALSE_POSITIVE_PROBABILITY ),
+              new PageFingerprintIndex( DEFAULT_FINGERPRINT_CAPACITY, DEFAULT_MAX_SIMHASH_DISTANCE ) );
     }
 
     public TaskServiceRepositoryMySql()
     {
-        this( EntityManagerFactoryHolder.ENTITY_MANAGER_FACTORY );
+        this( EntityManagerFactoryHolder.ENTITY_MANAGER_FACTORY,
+              SeenUrlFilterHolder.SEEN_URL_FILTER,
+              PageFingerprintIndexHolder.PAGE_FINGERPRINT_INDEX );
     }
 
     @Override
     public void addIfNotExist( UrlTask... tasks )
     {
-        this.executeQueries( entityManager -> this.addIfNotExist( entityManager, tasks ) );
+        final UrlTask[] validTasks = filterValid( Arrays.asList( tasks ) );
+        if ( validTasks.length == 0 )
+        {
+            return;
+        }
+
+        final UrlTask[] addedTasks = this.executeQueriesResult( entityManager ->
+        {
+            final UrlTask[] notSavedTasks = this.filterNotSaved( entityManager, validTasks );
+            this.addIfNotExist( entityManager, notSavedTasks );
+            return notSavedTasks;
+        } );
+        if ( addedTasks != null )
+        {
+            this.markSeen( addedTasks );
+        }
     }
 
-    private void addIfNotExist( final EntityManager entityManager, final UrlTask... tasks )
+    /**
+     * Filters out tasks which url does not fit url column.
+     */
+    private static UrlTask[] filterValid( final List<UrlTask> tasks )
     {
-        final List<UrlTask> existedTasks = this.getExistedTasks( entityManager, tasks );
+        final List<UrlTask> validTasks = new ArrayList<>( tasks.size() );
         for ( UrlTask task : tasks )
         {
-            final int existedTaskIndex = existedTasks.indexOf( task );
-            final boolean isExist = existedTaskIndex >= 0;
-            if ( isExist )
+            if ( task.getUrl().length() > MAX_URL_LENGTH )
             {
-                logger.debug( "The task already exist: {}", existedTasks.get( existedTaskIndex ) );
+                logger.warn( "The task is not added, url is longer than '{}' characters: {}",
+                        MAX_URL_LENGTH, task.getUrl().substring( 0, 100 ) );
             }
             else
             {
-                entityManager.persist( task );
-                logger.info( "The task has been added : {}", task );
+                validTasks.add( task );
             }
         }
+        return validTasks.toArray( new UrlTask[ validTasks.size() ] );
     }
 
-    private List<UrlTask> getExistedTasks( final EntityManager entityManager, final UrlTask... tasks )
+    /**
+     * Filters out tasks which are known to be saved, so database is not written for them.
+     * Seen url filter can report url, which has not been saved, as seen. So tasks reported as seen are looked up
+     * by one query of unique url index, and only the tasks found in database with the same or smaller depth
+     * are filtered out (url found closer to start pages lowers depth of the task).
+     */
+    private UrlTask[] filterNotSaved( final EntityManager entityManager, final UrlTask... tasks )
     {
-        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-        final CriteriaQuery<UrlTask> selectCriteria = builder.createQuery( UrlTask.class );
+        final List<UrlTask> notSavedTasks = new ArrayList<>( tasks.length );
+        final Map<Long, UrlTask> mightBeSavedTasks = new HashMap<>();
+        for ( UrlTask task : tasks )
+        {
+            if ( seenUrls.mightContain( task.urlHash() ) )
+            {
+                mightBeSavedTasks.put( task.urlHash(), task );
+            }
+            else
+            {
+                notSavedTasks.add( task );
+            }
+        }
 
-        final Root<UrlTask> tasksRoot = selectCriteria.from( UrlTask.class );
+        if ( !mightBeSavedTasks.isEmpty() )
+        {
+            final Map<Long, Object[]> savedDepths = this.getTaskDepths( entityManager, mightBeSavedTasks.keySet() );
+            for ( UrlTask task : mightBeSavedTasks.values() )
+            {
+                final Object[] savedDepth = savedDepths.get( task.urlHash() );
+                if ( savedDepth == null )
+                {
+                    seenUrls.onFalsePositive();
+                    notSavedTasks.add( task );
+                }
+                else if ( isCloser( task, ( Integer ) savedDepth[1], ( Boolean ) savedDepth[2] ) )
+                {
+                    logger.debug( "The task is found closer to start pages: {}", task.getUrl() );
+                    notSavedTasks.add( task );
+                }
+                else
+                {
+                    logger.debug( "The task already exist: {}", task.getUrl() );
+                }
+            }
+        }
+        return notSavedTasks.toArray( new UrlTask[ notSavedTasks.size() ] );
+    }
+
+    /**
+     * @return Url fingerprint, depth and external flag of found tasks by url fingerprint
+     */
+    private Map<Long, Object[]> getTaskDepths( final EntityManager entityManager, final Collection<Long> urlHashes )
+    {
+        final List<Object[]> taskDepths = entityManager.createQuery( SELECT_TASK_DEPTHS_JPQL, Object[].class )
+                .setParameter( "urlHashes", urlHashes )
+                .getResultList();
+        final Map<Long, Object[]> taskDepthsByUrl = new HashMap<>( taskDepths.size() * 2 );
+        for ( Object[] taskDepth : taskDepths )
+        {
+            taskDepthsByUrl.put( ( Long ) taskDepth[0], taskDepth );
+        }
+        return taskDepthsByUrl;
+    }
 
-        // Build multiple byUrls for where clause to select tasks by urls
-        final List<Predicate> byUrls = new ArrayList<>();
+    /**
+     * Checks whether the found task is closer to start pages than the saved one,
+     * e.g. external url deeper than depth limit might be found again by shorter path.
+     */
+    private static boolean isCloser( final UrlTask task, int savedDepth, boolean isSavedExternal )
+    {
+        return task.getDepth() < savedDepth || ( isSavedExternal && !task.isExternal() );
+    }
+
+    /**
+     * Tasks are marked as seen only after transaction is committed, so rolled back tasks are not lost.
+     */
+    private void markSeen( final UrlTask... tasks )
+    {
         for ( UrlTask task : tasks )
         {
-            byUrls.add( builder.equal( tasksRoot.get( UrlTask_.url ), task.getUrl() ) );
+            seenUrls.put( task.urlHash() );
         }
-        final Predicate byOrUrls = builder.or( byUrls.toArray( new Predicate[ byUrls.size() ] ) );
+    }
 
-        selectCriteria.select( tasksRoot )
-                .where( byOrUrls );
-        final TypedQuery<UrlTask> query = entityManager.createQuery( selectCriteria );
+    private void addIfNotExist( final EntityManager entityManager, final UrlTask... tasks )
+    {
+        if ( tasks.length == 0 )
+        {
+            return;
+        }
 
-        return query.getResultList();
+        // Statement is executed on connection of entity manager, so it is a part of current transaction
+        entityManager.unwrap( Session.class ).doWork( connection ->
+        {
+            try ( PreparedStatement insert = connection.prepareStatement( INSERT_TASK_IF_NOT_EXIST_SQL ) )
+            {
+                final int batchSize = addInsertBatch( insert, tasks );
+                insert.executeBatch();
+                logger.info( "'{}' tasks have been added if not exist", batchSize );
+            }
+        } );
+    }
+
+    /**
+     * Adds tasks to insert batch, duplicates in the specified tasks are skipped.
+     *
+     * @return The number of tasks in batch
+     */
+    private static int addInsertBatch( final PreparedStatement insert, final UrlTask... tasks ) throws SQLException
+    {
+        final Set<Long> batchUrlHashes = new HashSet<>( tasks.length * 2 );
+        for ( UrlTask task : tasks )
+        {
+            if ( !batchUrlHashes.add( task.urlHash() ) )
+            {
+                logger.debug( "The task is duplicated: {}", task.getUrl() );
+                continue;
+            }
+
+            final Integer parentId = task.getParentId();
+            if ( parentId == null )
+            {
+                insert.setNull( 1, Types.INTEGER );
+            }
+            else
+            {
+                insert.setInt( 1, parentId );
+            }
+            insert.setString( 2, task.getUrl() );
+            insert.setLong( 3, task.urlHash() );
+            insert.setInt( 4, task.getDepth() );
+            insert.setBoolean( 5, task.isExternal() );
+            insert.setLong( 6, task.getStartProcessTime() );
+            insert.setLong( 7, task.getEndProcessTime() );
+            insert.setInt( 8, task.getErrorCount() );
+            insert.setString( 9, task.getClientId() );
+            insert.setString( 10, deriveStatus( task ).name() );
+            insert.addBatch();
+        }
+        return batchUrlHashes.size();
+    }
+
+    /**
+     * Task can be added with already started or finished processing, so its status is derived from processing fields.
+     */
+    private static TaskStatus deriveStatus( final UrlTask task )
+    {
+        if ( task.getEndProcessTime() != 0 )
+        {
+            return TaskStatus.DONE;
+        }
+        return task.getClientId() == null ? TaskStatus.NEW : TaskStatus.CLAIMED;
     }
 
     @Override
@@ -111,65 +369,448 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
         }
         final int taskId = task.getId();
 
-        return entityManager.find( TaskPageTextStats.class, taskId );
+        final TaskPageTextStats textStats = entityManager.find( TaskPageTextStats.class, taskId );
+        if ( textStats != null && textStats.getCanonicalTaskId() != null )
+        {
+            // Page text and word stats of duplicated page are stored once, with the canonical page
+            return entityManager.find( TaskPageTextStats.class, textStats.getCanonicalTaskId() );
+        }
+        return textStats;
+    }
+
+    @Override
+    public boolean saveTaskResults( final TaskResultEntities taskResults )
+    {
+        return this.saveTaskResultsBatch( Collections.singletonList( taskResults ) ).isEmpty();
     }
 
     @Override
-    public void saveTaskResults( final TaskResultEntities taskResults )
+    public Set<Integer> saveTaskResultsBatch( final List<TaskResultEntities> taskResultsBatch )
+    {
+        if ( taskResultsBatch.isEmpty() || this.saveTaskResults( taskResultsBatch ) )
+        {
+            return Collections.emptySet();
+        }
+        if ( taskResultsBatch.size() == 1 )
+        {
+            return Collections.singleton( taskResultsBatch.get( 0 ).getTaskId() );
+        }
+
+        // Results which cannot be saved fail the whole batch, so results are saved one by one to save the others
+        logger.warn( "Results of '{}' tasks have not been saved by one batch, save them one by one",
+                taskResultsBatch.size() );
+        return this.saveEachTaskResults( taskResultsBatch );
+    }
+
+    /**
+     * @return The ids of tasks which results have not been saved
+     */
+    private Set<Integer> saveEachTaskResults( final List<TaskResultEntities> taskResultsBatch )
+    {
+        final Set<Integer> notSavedTaskIds = new HashSet<>();
+        for ( TaskResultEntities taskResults : taskResultsBatch )
+        {
+            if ( !this.saveTaskResults( Collections.singletonList( taskResults ) ) )
+            {
+                notSavedTaskIds.add( taskResults.getTaskId() );
+            }
+        }
+        return notSavedTaskIds;
+    }
+
+    /**
+     * Saves results in one transaction, results are prepared for each transaction,
+     * since in-memory indexes are updated only after commit.
+     *
+     * @return true if the results have been saved
+     */
+    private boolean saveTaskResults( final List<TaskResultEntities> taskResultsBatch )
+    {
+        final PreparedResults preparedResults = this.prepareResults( taskResultsBatch );
+        final boolean isSaved = this.executeQueries( entityManager ->
+                this.saveTaskResults( entityManager, preparedResults ) );
+        if ( isSaved )
+        {
+            this.onResultsSaved( preparedResults );
+        }
+        return isSaved;
+    }
+
+    @Override
+    public UrlTask[] saveTaskResultsAndAssignTasks( final List<TaskResultEntities> taskResultsBatch,
+                                                    String clientId,
+                                                    int maxCount,
+                                                    int depthLimit,
+                                                    long timeOutInMs,
+                                                    int errorThreshold,
+                                                    final Collection<Integer> notSavedTaskIds )
+    {
+        final PreparedResults preparedResults = this.prepareResults( taskResultsBatch );
+        final UrlTask[] tasks = this.executeQueriesResult( entityManager ->
+        {
+            // Results are saved first, so just processed tasks are not claimed again
+            this.saveTaskResults( entityManager, preparedResults );
+            return maxCount > 0
+                    ? this.getFreeTasks( entityManager, clientId, maxCount, depthLimit, timeOutInMs, errorThreshold )
+                    : new UrlTask[0];
+        } );
+        if ( tasks != null )
+        {
+            this.onResultsSaved( preparedResults );
+            return tasks;
+        }
+
+        // Results which cannot be saved fail the whole transaction, so tasks are assigned apart from them
+        logger.warn( "Results of '{}' tasks have not been saved with assigning tasks to client '{}', "
+                     + "save them apart", taskResultsBatch.size(), clientId );
+        notSavedTaskIds.addAll( this.saveTaskResultsBatch( taskResultsBatch ) );
+        return maxCount > 0
+                ? this.assignTasksToClient( clientId, maxCount, depthLimit, timeOutInMs, errorThreshold )
+                : new UrlTask[0];
+    }
+
+    /**
+     * Prepares task results to save out of transaction: skips values which do not fit columns
+     * and deduplicates pages.
+     */
+    private PreparedResults prepareResults( final List<TaskResultEntities> taskResultsBatch )
+    {
+        final List<UrlTask> tasks = new ArrayList<>();
+        final TaskPageTextStats[] textStats = new TaskPageTextStats[ taskResultsBatch.size() ];
+        final TaskPageTextStats[] textStatsToSave = new TaskPageTextStats[ taskResultsBatch.size() ];
+        for ( int i = 0; i < taskResultsBatch.size(); i++ )
+        {
+            final TaskResultEntities taskResults = taskResultsBatch.get( i );
+            if ( taskResults.getTasks() != null )
+            {
+                tasks.addAll( Arrays.asList( taskResults.getTasks() ) );
+            }
+            textStats[i] = taskResults.isUnchanged() ? null : taskResults.getStats();
+            if ( textStats[i] != null )
+            {
+                fitColumns( textStats[i] );
+                textStatsToSave[i] = this.deduplicate( textStats[i] );
+            }
+        }
+        final UrlTask[] newTasks = filterValid( tasks );
+
+        return new PreparedResults( taskResultsBatch, textStats, textStatsToSave, newTasks );
+    }
+
+    /**
+     * Cuts page text and skips page validators and words which do not fit columns.
+     */
+    private static void fitColumns( final TaskPageTextStats textStats )
+    {
+        final int taskId = textStats.getTaskId();
+        final String pageText = textStats.getPageText();
+        if ( pageText != null && pageText.length() > MAX_PAGE_TEXT_LENGTH )
+        {
+            logger.warn( "The page text is cut to '{}' characters for task with id: {}", MAX_PAGE_TEXT_LENGTH, taskId );
+            textStats.setPageText( pageText.substring( 0, MAX_PAGE_TEXT_LENGTH ) );
+        }
+        if ( textStats.getEtag() != null && textStats.getEtag().length() > MAX_ETAG_LENGTH )
+        {
+            logger.warn( "The page ETag is not saved, it is too long for task with id: {}", taskId );
+            textStats.setEtag( null );
+        }
+        if ( textStats.getLastModified() != null && textStats.getLastModified().length() > MAX_LAST_MODIFIED_LENGTH )
+        {
+            logger.warn( "The page Last-Modified is not saved, it is too long for task with id: {}", taskId );
+            textStats.setLastModified( null );
+        }
+
+        final Map<String, Long> wordStats = textStats.getWordStats();
+        if ( wordStats == null || !hasLongWord( wordStats.keySet() ) )
+        {
+            return;
+        }
+        final Map<String, Long> fitWordStats = new HashMap<>( wordStats.size() * 2 );
+        for ( Map.Entry<String, Long> wordCount : wordStats.entrySet() )
+        {
+            if ( wordCount.getKey().length() <= MAX_WORD_LENGTH )
+            {
+                fitWordStats.put( wordCount.getKey(), wordCount.getValue() );
+            }
+        }
+        logger.warn( "'{}' words longer than '{}' characters are not saved for task with id: {}",
+                wordStats.size() - fitWordStats.size(), MAX_WORD_LENGTH, taskId );
+        textStats.setWordStats( fitWordStats );
+    }
+
+    private static boolean hasLongWord( final Collection<String> words )
+    {
+        for ( String word : words )
+        {
+            if ( word.length() > MAX_WORD_LENGTH )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates in-memory indexes only after transaction is committed.
+     */
+    private void onResultsSaved( final PreparedResults preparedResults )
+    {
+        this.markSeen( preparedResults.addedTasks );
+        for ( TaskPageTextStats replacedTextStats : preparedResults.replacedTextStats )
+        {
+            pageFingerprints.remove( replacedTextStats.getTaskId(),
+                    replacedTextStats.getContentHash(),
+                    replacedTextStats.getSimHash() );
+        }
+        for ( TaskPageTextStats promotedTextStats : preparedResults.promotedTextStats )
+        {
+            pageFingerprints.put( promotedTextStats.getTaskId(),
+                    promotedTextStats.getContentHash(),
+                    promotedTextStats.getSimHash() );
+        }
+        for ( int i = 0; i < preparedResults.textStats.length; i++ )
+        {
+            this.indexFingerprints( preparedResults.textStats[i], preparedResults.textStatsToSave[i] );
+        }
+    }
+
+    /**
+     * Replaces page text stats of duplicated page by reference to the canonical page.
+     *
+     * @return The page text stats to save
+     */
+    private TaskPageTextStats deduplicate( final TaskPageTextStats textStats )
+    {
+        final int canonicalTaskId = pageFingerprints.findCanonical(
+                textStats.getTaskId(), textStats.getContentHash(), textStats.getSimHash() );
+        if ( canonicalTaskId == PageFingerprintIndex.NOT_FOUND )
+        {
+            return textStats;
+        }
+
+        final TaskPageTextStats duplicateStats = new TaskPageTextStats( textStats.getTaskId() );
+        duplicateStats.setPageText( "" );
+        duplicateStats.setEtag( textStats.getEtag() );
+        duplicateStats.setLastModified( textStats.getLastModified() );
+        duplicateStats.setContentHash( textStats.getContentHash() );
+        duplicateStats.setSimHash( textStats.getSimHash() );
+        duplicateStats.setCanonicalTaskId( canonicalTaskId );
+        logger.debug( "The page of task with id '{}' is duplicate of page of task with id '{}'",
+                textStats.getTaskId(), canonicalTaskId );
+        return duplicateStats;
+    }
+
+    /**
+     * Fingerprints are indexed only after transaction is committed, so duplicates do not refer to lost page.
+     */
+    private void indexFingerprints( final TaskPageTextStats textStats, final TaskPageTextStats savedTextStats )
     {
-        this.executeQueries( entityManager -> this.saveTaskResults( entityManager, taskResults ) );
+        if ( textStats == null )
+        {
+            return;
+        }
+        if ( savedTextStats.getCanonicalTaskId() == null )
+        {
+            pageFingerprints.put( textStats.getTaskId(), textStats.getContentHash(), textStats.getSimHash() );
+            return;
+        }
+
+        final String pageText = textStats.getPageText();
+        final Map<String, Long> wordStats = textStats.getWordStats();
+        pageFingerprints.onDuplicateSaved(
+                pageText == null ? 0 : pageText.length(),
+                wordStats == null ? 0 : wordStats.size() );
     }
 
-    private void saveTaskResults( final EntityManager entityManager, final TaskResultEntities taskResults )
+    private void saveTaskResults( final EntityManager entityManager, final PreparedResults preparedResults )
     {
-        // Add new tasks
-        final UrlTask[] tasks = taskResults.getTasks();
-        if ( tasks != null && tasks.length != 0 )
+        final List<TaskResultEntities> taskResultsBatch = preparedResults.taskResultsBatch;
+        if ( taskResultsBatch.isEmpty() )
         {
-            this.addIfNotExist( entityManager, tasks );
+            return;
         }
+
+        // Add new tasks of all results by one insert batch
+        preparedResults.addedTasks = this.filterNotSaved( entityManager, preparedResults.newTasks );
+        this.addIfNotExist( entityManager, preparedResults.addedTasks );
         // Add page text and text stats
-        final TaskPageTextStats textStats = taskResults.getStats();
-        if ( textStats != null )
+        final List<Integer> taskIds = new ArrayList<>( taskResultsBatch.size() );
+        for ( int i = 0; i < taskResultsBatch.size(); i++ )
         {
-            entityManager.persist( taskResults.getStats() );
-            logger.debug( "The page text and word stats have been added for task with id: {}", textStats.getTaskId() );
+            final TaskResultEntities taskResults = taskResultsBatch.get( i );
+            preparedResults.textStatsToSave[i] = this.saveTextStats(
+                    entityManager, taskResults, preparedResults.textStats[i], preparedResults.textStatsToSave[i],
+                    preparedResults );
+            taskIds.add( taskResults.getTaskId() );
         }
         // Set task end process time
         final long endProcessTime = Instant.now().toEpochMilli();
-        setEndProcessTime( entityManager, taskResults.getTaskId(), endProcessTime );
+        setEndProcessTime( entityManager, taskIds, endProcessTime );
+    }
+
+    /**
+     * @return The saved page text stats, the page text is saved as is if its canonical page has been replaced
+     */
+    private TaskPageTextStats saveTextStats( final EntityManager entityManager,
+                                             final TaskResultEntities taskResults,
+                                             final TaskPageTextStats textStats,
+                                             final TaskPageTextStats deduplicatedTextStats,
+                                             final PreparedResults preparedResults )
+    {
+        if ( taskResults.isUnchanged() )
+        {
+            logger.debug( "The page has not been changed, page text and word stats are kept for task with id: {}",
+                    taskResults.getTaskId() );
+            return deduplicatedTextStats;
+        }
+        if ( deduplicatedTextStats == null )
+        {
+            return null;
+        }
+
+        TaskPageTextStats textStatsToSave = deduplicatedTextStats;
+        if ( textStatsToSave.getCanonicalTaskId() != null
+                && !this.isCanonicalOf( entityManager, textStatsToSave.getCanonicalTaskId(), textStats ) )
+        {
+            logger.debug( "The canonical page of task with id '{}' has been replaced, the page is saved as is",
+                    textStats.getTaskId() );
+            textStatsToSave = textStats;
+        }
+
+        if ( taskResults.isRecrawl() )
+        {
+            this.moveTextToReferrer( entityManager, textStatsToSave, preparedResults );
+            // Merge loads the previously saved stats to replace them, so it is used only if they can exist
+            entityManager.merge( textStatsToSave );
+            logger.debug( "The page text and word stats have been replaced for task with id: {}",
+                    textStatsToSave.getTaskId() );
+        }
+        else
+        {
+            entityManager.persist( textStatsToSave );
+            logger.debug( "The page text and word stats have been added for task with id: {}",
+                    textStatsToSave.getTaskId() );
+        }
+        return textStatsToSave;
+    }
+
+    /**
+     * Checks that the canonical page found by in-memory index still keeps the text of duplicated page.
+     * The canonical page is locked, so it is not replaced until the reference to it is committed.
+     */
+    private boolean isCanonicalOf( final EntityManager entityManager,
+                                   int canonicalTaskId,
+                                   final TaskPageTextStats textStats )
+    {
+        final TaskPageTextStats canonicalTextStats = entityManager.find(
+                TaskPageTextStats.class, canonicalTaskId, LockModeType.PESSIMISTIC_READ );
+        return canonicalTextStats != null
+               && canonicalTextStats.getCanonicalTaskId() == null
+               && pageFingerprints.isDuplicate( textStats.getContentHash(),
+                                                textStats.getSimHash(),
+                                                canonicalTextStats.getContentHash(),
+                                                canonicalTextStats.getSimHash() );
     }
 
-    private void setEndProcessTime( final EntityManager entityManager, int id, long endTime )
+    /**
+     * Moves page text and word stats of canonical page which is being replaced to one of pages referring to it,
+     * and other referring pages are re-pointed to that page. So duplicated pages keep the text they are
+     * duplicates of, and reference is never followed to another reference.
+     */
+    private void moveTextToReferrer( final EntityManager entityManager,
+                                     final TaskPageTextStats newTextStats,
+                                     final PreparedResults preparedResults )
+    {
+        final TaskPageTextStats savedTextStats = entityManager.find(
+                TaskPageTextStats.class, newTextStats.getTaskId(), LockModeType.PESSIMISTIC_WRITE );
+        if ( savedTextStats == null || savedTextStats.getCanonicalTaskId() != null )
+        {
+            return;
+        }
+
+        // Fingerprints of replaced content are removed from in-memory index after commit
+        final TaskPageTextStats replacedTextStats = new TaskPageTextStats( savedTextStats.getTaskId() );
+        replacedTextStats.setContentHash( savedTextStats.getContentHash() );
+        replacedTextStats.setSimHash( savedTextStats.getSimHash() );
+        preparedResults.replacedTextStats.add( replacedTextStats );
+
+        final boolean isContentKept = newTextStats.getCanonicalTaskId() == null
+                                      && newTextStats.getContentHash() != 0
+                                      && newTextStats.getContentHash() == savedTextStats.getContentHash();
+        if ( isContentKept )
+        {
+            return;
+        }
+
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<TaskPageTextStats> criteria = builder.createQuery( TaskPageTextStats.class );
+        final Root<TaskPageTextStats> textStatsRoot = criteria.from( TaskPageTextStats.class );
+        criteria.select( textStatsRoot )
+                .where( builder.equal( textStatsRoot.get( TaskPageTextStats_.canonicalTaskId ),
+                                       savedTextStats.getTaskId() ) )
+                .orderBy( builder.asc( textStatsRoot.get( TaskPageTextStats_.taskId ) ) );
+        final List<TaskPageTextStats> referrers = entityManager.createQuery( criteria )
+                .setMaxResults( 1 )
+                .getResultList();
+        if ( referrers.isEmpty() )
+        {
+            return;
+        }
+
+        // The referring page keeps its own validators and fingerprints
+        final TaskPageTextStats newCanonicalTextStats = referrers.get( 0 );
+        newCanonicalTextStats.setPageText( savedTextStats.getPageText() );
+        newCanonicalTextStats.setWordStats( savedTextStats.getWordStats() == null
+                                            ? null
+                                            : new HashMap<>( savedTextStats.getWordStats() ) );
+        newCanonicalTextStats.setCanonicalTaskId( null );
+        entityManager.flush();
+
+        final CriteriaUpdate<TaskPageTextStats> updateCriteria = builder.createCriteriaUpdate(
+                TaskPageTextStats.class );
+        final Root<TaskPageTextStats> updateRoot = updateCriteria.from( TaskPageTextStats.class );
+        updateCriteria.set( TaskPageTextStats_.canonicalTaskId, newCanonicalTextStats.getTaskId() )
+                .where( builder.equal( updateRoot.get( TaskPageTextStats_.canonicalTaskId ),
+                                       savedTextStats.getTaskId() ) );
+        final int repointedCount = entityManager.createQuery( updateCriteria ).executeUpdate();
+        preparedResults.promotedTextStats.add( newCanonicalTextStats );
+        logger.debug( "The page text of task with id '{}' has been moved to task with id '{}', "
+                      + "'{}' other duplicates refer to it", savedTextStats.getTaskId(),
+                newCanonicalTextStats.getTaskId(), repointedCount );
+    }
+
+    private void setEndProcessTime( final EntityManager entityManager, final List<Integer> ids, long endTime )
     {
         final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
         final CriteriaUpdate<UrlTask> updateCriteria = builder.createCriteriaUpdate( UrlTask.class );
 
-        // Create expression for where clause to find task by id
+        // Create expression for where clause to find tasks by ids
         final Root<UrlTask> tasksRoot = updateCriteria.from( UrlTask.class );
-        final Predicate byId = builder.equal( tasksRoot.get( UrlTask_.id ), id );
+        final Predicate byIds = tasksRoot.get( UrlTask_.id ).in( ids );
 
         updateCriteria.set( UrlTask_.endProcessTime, endTime )
-                .where( byId );
+                .set( UrlTask_.status, TaskStatus.DONE )
+                .where( byIds );
 
-        boolean isUpdated = entityManager.createQuery( updateCriteria ).executeUpdate() != 0;
-        if ( isUpdated )
+        final int updatedCount = entityManager.createQuery( updateCriteria ).executeUpdate();
+        if ( updatedCount == ids.size() )
         {
-            logger.debug( "End process time of task with id '{}' has been set to '{}'", id, endTime );
+            logger.debug( "End process time of tasks with ids {} has been set to '{}'", ids, endTime );
         }
         else
         {
-            logger.error( "Fail. End process time of task with id '{}' has NOT been set to '{}'", id, endTime );
+            logger.error( "Fail. End process time of '{}' of tasks with ids {} has NOT been set to '{}'",
+                    ids.size() - updatedCount, ids, endTime );
         }
     }
 
     @Override
-    public void updateErrorCount( String url, int errorCount )
+    public void updateErrorCount( String url, int errorCount, int errorThreshold )
     {
-        this.executeQueries( entityManager -> this.updateErrorCount( entityManager, url, errorCount ) );
+        this.executeQueries( entityManager -> this.updateErrorCount( entityManager, url, errorCount, errorThreshold ) );
     }
 
-    private void updateErrorCount( final EntityManager entityManager, String url, int errorCount )
+    private void updateErrorCount( final EntityManager entityManager, String url, int errorCount, int errorThreshold )
     {
         final UrlTask task = this.getTaskByUrl( entityManager, url );
         if ( task == null )
@@ -178,6 +819,10 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
             return;
         }
         task.setErrorCount( errorCount );
+        if ( errorCount >= errorThreshold )
+        {
+            task.setStatus( TaskStatus.DEAD );
+        }
         entityManager.merge( task );
         logger.debug( "Error count has been changed to '{}' for url {}", errorCount, url );
     }
@@ -195,8 +840,8 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
 
         final Root<UrlTask> tasksRoot = selectCriteria.from( UrlTask.class );
 
-        // Create expression for where clause to find task by url value
-        final Predicate byUrl = builder.equal( tasksRoot.get( UrlTask_.url ), url );
+        // Create expression for where clause to find task by url fingerprint
+        final Predicate byUrl = builder.equal( tasksRoot.get( UrlTask_.urlHash ), UrlFingerprint.of( url ) );
 
         selectCriteria.select( tasksRoot )
                 .where( byUrl );
@@ -226,6 +871,35 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
                 .getResultList();
     }
 
+    @Override
+    public List<UrlTask> getTasks( final Collection<String> urls )
+    {
+        if ( urls.isEmpty() )
+        {
+            return new ArrayList<>();
+        }
+        return this.executeQueriesResult( entityManager -> this.getTasksByUrls( entityManager, urls ) );
+    }
+
+    private List<UrlTask> getTasksByUrls( final EntityManager entityManager, final Collection<String> urls )
+    {
+        final Set<Long> urlHashes = new HashSet<>( urls.size() * 2 );
+        for ( String url : urls )
+        {
+            urlHashes.add( UrlFingerprint.of( url ) );
+        }
+
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<UrlTask> criteria = builder.createQuery( UrlTask.class );
+        final Root<UrlTask> tasksRoot = criteria.from( UrlTask.class );
+
+        // Tasks are found by unique index of url fingerprints
+        criteria.select( tasksRoot )
+                .where( tasksRoot.get( UrlTask_.urlHash ).in( urlHashes ) );
+
+        return entityManager.createQuery( criteria ).getResultList();
+    }
+
     @Override
     public UrlTask[] assignTasksToClient( String clientId,
                                           int maxCount,
@@ -244,111 +918,135 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
                                     long timeOutInMs,
                                     int errorThreshold )
     {
-        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
-        final CriteriaQuery<UrlTask> criteria = builder.createQuery( UrlTask.class );
-        final Root<UrlTask> tasksRoot = criteria.from( UrlTask.class );
+        final String claimToken = UUID.randomUUID().toString();
+        final long nowTime = Instant.now().toEpochMilli();
 
-        // Build multiple expressions for where clause to get task for processing
-        final Predicate taskCanBeTaken = createTaskCanBeTaken(
-                builder,
-                tasksRoot,
-                depthLimit,
-                timeOutInMs,
-                errorThreshold );
+        final Query claimExpiredTasks = entityManager.createNativeQuery( CLAIM_EXPIRED_TASKS_SQL )
+                .setParameter( "expiredStartTime", nowTime - timeOutInMs )
+                .setParameter( "maxCount", maxCount );
+        int claimedCount = setClaimParameters(
+                claimExpiredTasks, clientId, claimToken, nowTime, depthLimit, errorThreshold ).executeUpdate();
 
-        criteria.select( tasksRoot )
-                .where( taskCanBeTaken );
-        final TypedQuery<UrlTask> query = entityManager.createQuery( criteria ).setMaxResults( maxCount );
+        if ( claimedCount < maxCount )
+        {
+            final Query claimNewTasks = entityManager.createNativeQuery( CLAIM_NEW_TASKS_SQL )
+                    .setParameter( "maxCount", maxCount - claimedCount );
+            claimedCount += setClaimParameters(
+                    claimNewTasks, clientId, claimToken, nowTime, depthLimit, errorThreshold ).executeUpdate();
+        }
+        logger.debug( "'{}' tasks have been assigned to client '{}' with claim token '{}'",
+                claimedCount, clientId, claimToken );
 
-        // Convert query results into array of tasks
-        final List<UrlTask> queryResult = query.getResultList();
-        final UrlTask[] resultTasks = queryResult.toArray( new UrlTask[ queryResult.size() ] );
+        if ( claimedCount == 0 )
+        {
+            return new UrlTask[0];
+        }
 
-        final long nowTime = Instant.now().toEpochMilli();
-        assignTasksToClient( entityManager, resultTasks, clientId, nowTime );
-        return resultTasks;
+        final List<UrlTask> claimedTasks = getClaimedTasks( entityManager, claimToken );
+        setPageValidators( entityManager, claimedTasks );
+        return claimedTasks.toArray( new UrlTask[ claimedTasks.size() ] );
     }
 
-    private static void assignTasksToClient( final EntityManager entityManager,
-                                             final UrlTask[] tasks,
-                                             String clientId,
-                                             long startProcTime )
+    /**
+     * Sets page validators to tasks which page has been already saved (end process time is set),
+     * so client can request the page only if it has been changed.
+     */
+    private static void setPageValidators( final EntityManager entityManager, final List<UrlTask> tasks )
     {
+        final Map<Integer, UrlTask> processedTasks = new HashMap<>();
         for ( UrlTask task : tasks )
         {
-            task.setClientId( clientId );
-            task.setStartProcessTime( startProcTime );
-            entityManager.merge( task );
+            if ( task.getEndProcessTime() != 0 )
+            {
+                processedTasks.put( task.getId(), task );
+            }
+        }
+        if ( processedTasks.isEmpty() )
+        {
+            return;
         }
-    }
 
-    /**
-     * Creates {@link Predicate} for condition:
-     *
-     *     task.getEndProcessTime() == 0
-     *     && ( task.getErrorCount() < errorThreshold )
-     *     && ( !task.isExternal() || task.getDepth() <= depthLimit )
-     *     && ( task.getClientId() == null || task.getStartProcessTime() < nowTime - timeOutInMs )
-     */
-    private static Predicate createTaskCanBeTaken( final CriteriaBuilder builder,
-                                                   final Root<UrlTask> tasksRoot,
-                                                   int depthLimit,
-                                                   long timeOutInMs,
-                                                   int errorThreshold )
-    {
-        final Predicate taskNotFinished = builder.equal(
-                tasksRoot.get( UrlTask_.endProcessTime ), 0 );
-        final Predicate errorCountLessThreshold = builder.lt(
-                tasksRoot.get( UrlTask_.errorCount ),
-                errorThreshold );
-        final Predicate depthCompliance = createDepthCompliance( builder, tasksRoot, depthLimit );
-        final long nowTime = Instant.now().toEpochMilli();
-        final Predicate taskIsNotProcessing = createTaskIsNotProcessing( builder, tasksRoot, nowTime, timeOutInMs );
+        final List<Object[]> validators = entityManager.createQuery( SELECT_PAGE_VALIDATORS_JPQL, Object[].class )
+                .setParameter( "taskIds", processedTasks.keySet() )
+                .getResultList();
+        for ( Object[] pageValidators : validators )
+        {
+            final UrlTask task = processedTasks.get( ( Integer ) pageValidators[0] );
+            task.setEtag( ( String ) pageValidators[1] );
+            task.setLastModified( ( String ) pageValidators[2] );
+        }
+        logger.debug( "Page validators have been set to '{}' tasks", validators.size() );
+    }
 
-        return builder.and(
-                taskNotFinished,
-                errorCountLessThreshold,
-                depthCompliance,
-                taskIsNotProcessing );
+    private static Query setClaimParameters( final Query claimQuery,
+                                             String clientId,
+                                             String claimToken,
+                                             long nowTime,
+                                             int depthLimit,
+                                             int errorThreshold )
+    {
+        return claimQuery
+                .setParameter( "clientId", clientId )
+                .setParameter( "startProcessTime", nowTime )
+                .setParameter( "claimToken", claimToken )
+                .setParameter( "errorThreshold", errorThreshold )
+                .setParameter( "depthLimit", depthLimit );
     }
 
-    /**
-     * Creates {@link Predicate} for condition:
-     *
-     *   !task.isExternal() || task.getDepth() <= depthLimit
-     */
-    private static Predicate createDepthCompliance( final CriteriaBuilder builder,
-                                                    final Root<UrlTask> tasksRoot,
-                                                    int depthLimit )
+    private static List<UrlTask> getClaimedTasks( final EntityManager entityManager, String claimToken )
     {
-        final Predicate isInternal = builder
-                .isFalse( tasksRoot.get( UrlTask_.external ) );
-        final Predicate depthLimitCompliance = builder
-                .le( tasksRoot.get( UrlTask_.depth ), depthLimit );
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaQuery<UrlTask> criteria = builder.createQuery( UrlTask.class );
+        final Root<UrlTask> tasksRoot = criteria.from( UrlTask.class );
+
+        criteria.select( tasksRoot )
+                .where( builder.equal( tasksRoot.get( UrlTask_.claimToken ), claimToken ) )
+                .orderBy( builder.asc( tasksRoot.get( UrlTask_.id ) ) );
 
-        return builder.or( isInternal, depthLimitCompliance );
+        return entityManager.createQuery( criteria ).getResultList();
     }
 
-    /**
-     * Creates {@link Predicate} for condition:
-     *
-     *   task.getClientId() == null || task.getStartProcessTime() < nowTime - timeOutInMs
-     */
-    private static Predicate createTaskIsNotProcessing( final CriteriaBuilder builder,
-                                                        final Root<UrlTask> tasksRoot,
-                                                        long nowTime,
-                                                        long timeOutInMs )
+    @Override
+    public Integer renewTaskLeases( String clientId, final Collection<String> urls )
     {
-        final Predicate notAssignedToProcessor = builder
-                .isNull( tasksRoot.get( UrlTask_.clientId ) );
-        final Predicate processingTimeExpired = builder
-                .lt( tasksRoot.get( UrlTask_.startProcessTime ),
-                nowTime - timeOutInMs );
+        if ( urls.isEmpty() )
+        {
+            return 0;
+        }
+        return this.executeQueriesResult( entityManager -> this.renewTaskLeases( entityManager, clientId, urls ) );
+    }
 
-        return builder.or( notAssignedToProcessor, processingTimeExpired );
+    private int renewTaskLeases( final EntityManager entityManager, String clientId, final Collection<String> urls )
+    {
+        final Set<Long> urlHashes = new HashSet<>( urls.size() * 2 );
+        for ( String url : urls )
+        {
+            urlHashes.add( UrlFingerprint.of( url ) );
+        }
+
+        final CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        final CriteriaUpdate<UrlTask> updateCriteria = builder.createCriteriaUpdate( UrlTask.class );
+
+        // Tasks which have been completed or re-assigned to another client keep their leases
+        final Root<UrlTask> tasksRoot = updateCriteria.from( UrlTask.class );
+        final Predicate byClientTasks = builder.and(
+                tasksRoot.get( UrlTask_.urlHash ).in( urlHashes ),
+                builder.equal( tasksRoot.get( UrlTask_.clientId ), clientId ),
+                builder.equal( tasksRoot.get( UrlTask_.status ), TaskStatus.CLAIMED ) );
+
+        updateCriteria.set( UrlTask_.startProcessTime, Instant.now().toEpochMilli() )
+                .where( byClientTasks );
+
+        final int renewedCount = entityManager.createQuery( updateCriteria ).executeUpdate();
+        logger.debug( "Leases of '{}' of '{}' tasks have been renewed for client '{}'",
+                renewedCount, urlHashes.size(), clientId );
+        return renewedCount;
     }
 
-    private void executeQueries( final EntityManagerQuery query )
+    /**
+     * @return true if the queries have been committed
+     */
+    private boolean executeQueries( final EntityManagerQuery query )
     {
         EntityTransaction transaction = null;
         EntityManager manager = null;
@@ -360,6 +1058,7 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
             transaction.begin();
             query.execute( manager );
             transaction.commit();
+            return true;
 
         } catch ( Exception ex )
         {
@@ -368,6 +1067,7 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
             {
                 transaction.rollback();
             }
+            return false;
         }
         finally
         {
@@ -388,6 +1088,7 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
             manager = entityManagerFactory.createEntityManager();
 
             transaction = manager.getTransaction();
+            transaction.begin();
             result = ( T ) query.execute( manager );
             transaction.commit();
 
@@ -409,4 +1110,31 @@ public class TaskServiceRepositoryMySql implements TaskServiceRepository
 
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Represents task results prepared to save.
+     */
+    private static final class PreparedResults
+    {
+        private final List<TaskResultEntities> taskResultsBatch;
+        private final TaskPageTextStats[] textStats;
+        private final TaskPageTextStats[] textStatsToSave;
+        private final UrlTask[] newTasks;
+
+        // Filled in transaction
+        private UrlTask[] addedTasks = new UrlTask[0];
+        private final List<TaskPageTextStats> replacedTextStats = new ArrayList<>();
+        private final List<TaskPageTextStats> promotedTextStats = new ArrayList<>();
+
+        private PreparedResults( List<TaskResultEntities> taskResultsBatch,
+                                 TaskPageTextStats[] textStats,
+                                 TaskPageTextStats[] textStatsToSave,
+                                 UrlTask[] newTasks )
+        {
+            this.taskResultsBatch = taskResultsBatch;
+            this.textStats = textStats;
+            this.textStatsToSave = textStatsToSave;
+            this.newTasks = newTasks;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Represents Bloom filter of fixed capacity for 64-bit fingerprints, bits are kept off-heap in direct buffer.
+ * It is a segment of {@link SeenUrlFilter}, which synchronizes modifications.
+ *
+ * @author mperever
+ */
+final class BloomFilterSegment
+{
+    /**
+     * Direct buffer capacity is int, so one segment is limited by 2 GB (about 17 billion bits).
+     */
+    private static final long MAX_WORD_COUNT = Integer.MAX_VALUE / Long.BYTES;
+    private static final double LN_2 = Math.log( 2 );
+
+    private final LongBuffer bits;
+    private final long wordCount;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+
+    private long setBitCount;
+    private long size;
+
+    /**
+     * Creates segment with optimal number of bits and hash functions.
+     *
+     * @param capacity The number of fingerprints to put
+     * @param falsePositiveProbability The false positive probability when segment is full
+     */
+    BloomFilterSegment( long capacity, double falsePositiveProbability )
+    {
+        final double optimalBitCount = -capacity * Math.log( falsePositiveProbability ) / ( LN_2 * LN_2 );
+        this.wordCount = Math.min( Math.max( ( long ) Math.ceil( optimalBitCount / Long.SIZE ), 1 ), MAX_WORD_COUNT );
+        this.bitCount = wordCount * Long.SIZE;
+        this.hashCount = Math.max( 1, ( int ) Math.round( ( double ) bitCount / capacity * LN_2 ) );
+        this.capacity = capacity;
+        this.bits = ByteBuffer.allocateDirect( ( int ) ( wordCount * Long.BYTES ) )
+                .order( ByteOrder.nativeOrder() )
+                .asLongBuffer();
+    }
+
+    /**
+     * Checks whether fingerprint might be put. This method does not lock, so concurrent put might be not visible,
+     * that is a false negative in the worst case.
+     */
+    boolean mightContain( long fingerprint )
+    {
+        final long step = secondHash( fingerprint );
+        long hash = fingerprint;
+        for ( int i = 0; i < hashCount; i++ )
+        {
+            if ( ( bits.get( wordIndex( hash ) ) & bitMask( hash ) ) == 0 )
+            {
+                return false;
+            }
+            hash += step;
+        }
+        return true;
+    }
+
+    /**
+     * Puts fingerprint, it is not counted if all its bits are already set (it might be put before).
+     *
+     * @return true if at least one bit has been set
+     */
+    boolean put( long fingerprint )
+    {
+        final long step = secondHash( fingerprint );
+        final long previousSetBitCount = setBitCount;
+        long hash = fingerprint;
+        for ( int i = 0; i < hashCount; i++ )
+        {
+            final int wordIndex = wordIndex( hash );
+            final long word = bits.get( wordIndex );
+            final long mask = bitMask( hash );
+            if ( ( word & mask ) == 0 )
+            {
+                bits.put( wordIndex, word | mask );
+                setBitCount++;
+            }
+            hash += step;
+        }
+
+        final boolean isPut = setBitCount != previousSetBitCount;
+        if ( isPut )
+        {
+            size++;
+        }
+        return isPut;
+    }
+
+    boolean isFull()
+    {
+        return size >= capacity;
+    }
+
+    long size()
+    {
+        return size;
+    }
+
+    long capacity()
+    {
+        return capacity;
+    }
+
+    long memoryBytes()
+    {
+        return bitCount / Byte.SIZE;
+    }
+
+    /**
+     * Estimates false positive probability from the share of set bits.
+     */
+    double falsePositiveProbability()
+    {
+        return Math.pow( ( double ) setBitCount / bitCount, hashCount );
+    }
+
+    /**
+     * Maps high 32 bits of hash to word index by multiplication, it is faster than division by word count.
+     */
+    private int wordIndex( long hash )
+    {
+        return ( int ) ( ( ( hash >>> 32 ) * wordCount ) >>> 32 );
+    }
+
+    /**
+     * Low 6 bits of hash select bit in word.
+     */
+    private static long bitMask( long hash )
+    {
+        return 1L << hash;
+    }
+
+    /**
+     * Fingerprints are already uniformly distributed (part of MD5 digest), so the first hash is fingerprint itself
+     * and the second one is derived by bits mixing (MurmurHash3 finalizer). Others are their combinations.
+     */
+    private static long secondHash( long fingerprint )
+    {
+        long hash = fingerprint;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        // Odd step visits different bits for any bit count
+        return hash | 1;
+    }
+}
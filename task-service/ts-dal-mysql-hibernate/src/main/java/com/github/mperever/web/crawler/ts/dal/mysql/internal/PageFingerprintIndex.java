@@ -0,0 +1,347 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import com.github.mperever.web.crawler.ts.common.ContentFingerprint;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents in-memory index of page fingerprints (see {@link ContentFingerprint}) of stored pages.
+ * It is used to find canonical page for duplicated one, so page text and word stats are stored once.
+ *
+ * Exact duplicates are looked up by content hash. Near duplicates are looked up by SimHash:
+ * SimHash is split into 4 bands of 16 bits, and fingerprints which differ in at most 3 bits
+ * have at least one equal band, so only pages with equal band are compared.
+ *
+ * The index is limited by capacity, pages over capacity are not indexed and their duplicates are stored as is.
+ * Fingerprints of page are removed when the page content is replaced, so new pages do not refer to the old content.
+ *
+ * @author mperever
+ */
+public class PageFingerprintIndex implements PageFingerprintIndexMXBean
+{
+    /**
+     * Result of lookup if there is no canonical page.
+     */
+    public static final int NOT_FOUND = -1;
+
+    private static final int BAND_COUNT = 4;
+    private static final int BAND_BITS = Long.SIZE / BAND_COUNT;
+    private static final long BAND_MASK = ( 1L << BAND_BITS ) - 1;
+    private static final int MAX_SIMHASH_DISTANCE = BAND_COUNT - 1;
+
+    /**
+     * Pages with frequent band (e.g. pages of one site template) are not kept all in the band,
+     * so lookup time does not grow with the number of pages.
+     */
+    private static final int MAX_BAND_CANDIDATES = 64;
+
+    private final int capacity;
+    private final int maxSimHashDistance;
+
+    private final Map<Long, Integer> contentHashes = new HashMap<>();
+    private final Map<Long, int[]> simHashBands = new HashMap<>();
+    private long[] simHashes = new long[ 16 ];
+    private int[] simHashTaskIds = new int[ 16 ];
+    private int simHashCount;
+    private int[] freeEntries = new int[ 16 ];
+    private int freeEntryCount;
+
+    private final LongAdder checkCount = new LongAdder();
+    private final LongAdder exactDuplicateCount = new LongAdder();
+    private final LongAdder nearDuplicateCount = new LongAdder();
+    private final LongAdder savedTextChars = new LongAdder();
+    private final LongAdder savedWordStatRows = new LongAdder();
+
+    /**
+     * Creates index.
+     *
+     * @param capacity The maximum number of pages in the index
+     * @param maxSimHashDistance The maximum number of different SimHash bits of near-duplicated pages (0 - 3),
+     *                           negative value to find exact duplicates only
+     */
+    public PageFingerprintIndex( int capacity, int maxSimHashDistance )
+    {
+        if ( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'capacity' must be positive." );
+        }
+        if ( maxSimHashDistance > MAX_SIMHASH_DISTANCE )
+        {
+            throw new IllegalArgumentException(
+                    "parameter 'maxSimHashDistance' must not be greater than " + MAX_SIMHASH_DISTANCE );
+        }
+        this.capacity = capacity;
+        this.maxSimHashDistance = maxSimHashDistance;
+    }
+
+    /**
+     * Finds canonical page with the same or almost the same text.
+     *
+     * @param taskId The task of page, it is not considered as canonical page of itself
+     * @param contentHash The content hash of page text or 0
+     * @param simHash The SimHash of page text or 0
+     * @return The task of canonical page or {@link #NOT_FOUND}
+     */
+    public synchronized int findCanonical( int taskId, long contentHash, long simHash )
+    {
+        checkCount.increment();
+        if ( contentHash != 0 )
+        {
+            final Integer canonicalTaskId = contentHashes.get( contentHash );
+            if ( canonicalTaskId != null && canonicalTaskId != taskId )
+            {
+                exactDuplicateCount.increment();
+                return canonicalTaskId;
+            }
+        }
+        if ( simHash != 0 && maxSimHashDistance >= 0 )
+        {
+            final int canonicalTaskId = findNear( taskId, simHash );
+            if ( canonicalTaskId != NOT_FOUND )
+            {
+                nearDuplicateCount.increment();
+                return canonicalTaskId;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private int findNear( int taskId, long simHash )
+    {
+        for ( int band = 0; band < BAND_COUNT; band++ )
+        {
+            final int[] candidates = simHashBands.get( bandKey( simHash, band ) );
+            if ( candidates == null )
+            {
+                continue;
+            }
+            for ( int i = 1; i <= candidates[0]; i++ )
+            {
+                final int entry = candidates[i];
+                if ( simHashTaskIds[entry] != taskId && simHashTaskIds[entry] != NOT_FOUND
+                        && ContentFingerprint.distance( simHashes[entry], simHash ) <= maxSimHashDistance )
+                {
+                    return simHashTaskIds[entry];
+                }
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Puts fingerprints of stored page (which is not duplicate) into the index.
+     *
+     * @param taskId The task of page
+     * @param contentHash The content hash of page text or 0
+     * @param simHash The SimHash of page text or 0
+     */
+    public synchronized void put( int taskId, long contentHash, long simHash )
+    {
+        if ( contentHashes.size() >= capacity || simHashCount - freeEntryCount >= capacity )
+        {
+            return;
+        }
+        if ( contentHash != 0 )
+        {
+            contentHashes.putIfAbsent( contentHash, taskId );
+        }
+        if ( simHash != 0 )
+        {
+            if ( freeEntryCount == 0 && simHashCount == simHashes.length )
+            {
+                simHashes = Arrays.copyOf( simHashes, simHashCount * 2 );
+                simHashTaskIds = Arrays.copyOf( simHashTaskIds, simHashCount * 2 );
+            }
+            // Entries of removed pages are reused
+            final int entry = freeEntryCount > 0 ? freeEntries[--freeEntryCount] : simHashCount++;
+            simHashes[entry] = simHash;
+            simHashTaskIds[entry] = taskId;
+            for ( int band = 0; band < BAND_COUNT; band++ )
+            {
+                simHashBands.merge( bandKey( simHash, band ), new int[]{ 1, entry }, PageFingerprintIndex::append );
+            }
+        }
+    }
+
+    /**
+     * Removes fingerprints of page which content has been replaced, so new pages are not found as its duplicates.
+     *
+     * @param taskId The task of page
+     * @param contentHash The content hash of replaced page text or 0
+     * @param simHash The SimHash of replaced page text or 0
+     */
+    public synchronized void remove( int taskId, long contentHash, long simHash )
+    {
+        if ( contentHash != 0 )
+        {
+            contentHashes.remove( contentHash, taskId );
+        }
+        if ( simHash == 0 )
+        {
+            return;
+        }
+
+        final int entry = findEntry( taskId, simHash );
+        if ( entry == NOT_FOUND )
+        {
+            return;
+        }
+        for ( int band = 0; band < BAND_COUNT; band++ )
+        {
+            removeFromBand( bandKey( simHash, band ), entry );
+        }
+        simHashTaskIds[entry] = NOT_FOUND;
+        if ( freeEntryCount == freeEntries.length )
+        {
+            freeEntries = Arrays.copyOf( freeEntries, freeEntryCount * 2 );
+        }
+        freeEntries[freeEntryCount++] = entry;
+    }
+
+    /**
+     * Entry is looked up in all bands, because it is not kept in bands which are full.
+     */
+    private int findEntry( int taskId, long simHash )
+    {
+        for ( int band = 0; band < BAND_COUNT; band++ )
+        {
+            final int[] entries = simHashBands.get( bandKey( simHash, band ) );
+            if ( entries == null )
+            {
+                continue;
+            }
+            for ( int i = 1; i <= entries[0]; i++ )
+            {
+                final int entry = entries[i];
+                if ( simHashTaskIds[entry] == taskId && simHashes[entry] == simHash )
+                {
+                    return entry;
+                }
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private void removeFromBand( long bandKey, int entry )
+    {
+        final int[] entries = simHashBands.get( bandKey );
+        if ( entries == null )
+        {
+            return;
+        }
+        final int count = entries[0];
+        for ( int i = 1; i <= count; i++ )
+        {
+            if ( entries[i] == entry )
+            {
+                entries[i] = entries[count];
+                entries[0] = count - 1;
+                break;
+            }
+        }
+        if ( entries[0] == 0 )
+        {
+            simHashBands.remove( bandKey );
+        }
+    }
+
+    /**
+     * Checks whether page is duplicate of canonical page by their fingerprints, as {@link #findCanonical} does.
+     */
+    public boolean isDuplicate( long contentHash, long simHash, long canonicalContentHash, long canonicalSimHash )
+    {
+        if ( contentHash != 0 && contentHash == canonicalContentHash )
+        {
+            return true;
+        }
+        return simHash != 0 && canonicalSimHash != 0 && maxSimHashDistance >= 0
+               && ContentFingerprint.distance( simHash, canonicalSimHash ) <= maxSimHashDistance;
+    }
+
+    /**
+     * Counts storage which has been saved by storing duplicated page as reference to canonical page.
+     *
+     * @param textChars The length of page text
+     * @param wordStatRows The number of words in word stats
+     */
+    public void onDuplicateSaved( long textChars, long wordStatRows )
+    {
+        savedTextChars.add( textChars );
+        savedWordStatRows.add( wordStatRows );
+    }
+
+    /**
+     * Band key contains band number, so equal values of different bands are not mixed.
+     */
+    private static long bandKey( long simHash, int band )
+    {
+        return ( ( long ) band << BAND_BITS ) | ( ( simHash >>> ( band * BAND_BITS ) ) & BAND_MASK );
+    }
+
+    /**
+     * Appends entry to the list of band entries, the first element of list is the number of entries.
+     */
+    private static int[] append( final int[] entries, final int[] newEntry )
+    {
+        final int count = entries[0];
+        if ( count >= MAX_BAND_CANDIDATES )
+        {
+            return entries;
+        }
+        final int[] result = count + 1 < entries.length ? entries : Arrays.copyOf( entries, entries.length * 2 );
+        result[count + 1] = newEntry[1];
+        result[0] = count + 1;
+        return result;
+    }
+
+    @Override
+    public synchronized int getPageCount()
+    {
+        return Math.max( contentHashes.size(), simHashCount - freeEntryCount );
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public int getMaxSimHashDistance()
+    {
+        return maxSimHashDistance;
+    }
+
+    @Override
+    public long getCheckCount()
+    {
+        return checkCount.sum();
+    }
+
+    @Override
+    public long getExactDuplicateCount()
+    {
+        return exactDuplicateCount.sum();
+    }
+
+    @Override
+    public long getNearDuplicateCount()
+    {
+        return nearDuplicateCount.sum();
+    }
+
+    @Override
+    public long getSavedTextChars()
+    {
+        return savedTextChars.sum();
+    }
+
+    @Override
+    public long getSavedWordStatRows()
+    {
+        return savedWordStatRows.sum();
+    }
+}
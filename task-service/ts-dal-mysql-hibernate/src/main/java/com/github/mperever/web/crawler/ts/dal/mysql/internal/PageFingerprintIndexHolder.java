@@ -0,0 +1,87 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import com.github.mperever.web.crawler.common.management.ManagementBeans;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents singleton to keep {@link PageFingerprintIndex} once for an application.
+ * The index is warmed up from PageText table in background, until then duplicates of stored pages are stored as is.
+ *
+ * The index can be tuned by JVM system properties:
+ *      -DtaskService.pageFingerprints.capacity - the maximum number of indexed pages (500K by default)
+ *      -DtaskService.pageFingerprints.maxSimHashDistance - the maximum number of different SimHash bits
+ *                                                          of near-duplicated pages (3 by default),
+ *                                                          -1 to find exact duplicates only
+ *
+ * @author mperever
+ */
+public final class PageFingerprintIndexHolder
+{
+    private static final Logger logger = LoggerFactory.getLogger( PageFingerprintIndexHolder.class );
+
+    private static final String SELECT_PAGE_FINGERPRINTS_SQL = "SELECT task_id, contentHash, simHash FROM PageText"
+            + " WHERE canonicalTaskId IS NULL AND ( contentHash <> 0 OR simHash <> 0 )";
+
+    public static final PageFingerprintIndex PAGE_FINGERPRINT_INDEX = new PageFingerprintIndex(
+            Integer.getInteger( "taskService.pageFingerprints.capacity", 500_000 ),
+            Integer.getInteger( "taskService.pageFingerprints.maxSimHashDistance", 3 ) );
+
+    static
+    {
+        ManagementBeans.register( "PageFingerprintIndex", PAGE_FINGERPRINT_INDEX );
+
+        final Thread warmUpThread = new Thread(
+                () -> warmUp( EntityManagerFactoryHolder.ENTITY_MANAGER_FACTORY, PAGE_FINGERPRINT_INDEX ),
+                "page-fingerprint-index-warm-up" );
+        warmUpThread.setDaemon( true );
+        warmUpThread.start();
+    }
+
+    private PageFingerprintIndexHolder()
+    {
+    }
+
+    private static void warmUp( final EntityManagerFactory entityManagerFactory, final PageFingerprintIndex index )
+    {
+        logger.info( "Page fingerprint index warm up is started" );
+        final EntityManager manager = entityManagerFactory.createEntityManager();
+        try
+        {
+            manager.unwrap( Session.class ).doWork( connection ->
+            {
+                try ( Statement statement = connection.createStatement(
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY ) )
+                {
+                    // MySQL driver streams rows with this fetch size instead of loading all of them into memory
+                    statement.setFetchSize( Integer.MIN_VALUE );
+                    try ( ResultSet fingerprints = statement.executeQuery( SELECT_PAGE_FINGERPRINTS_SQL ) )
+                    {
+                        while ( fingerprints.next() )
+                        {
+                            index.put( fingerprints.getInt( 1 ), fingerprints.getLong( 2 ), fingerprints.getLong( 3 ) );
+                        }
+                    }
+                }
+            } );
+            logger.info( "Page fingerprint index warm up is finished, '{}' pages are loaded", index.getPageCount() );
+
+        } catch ( Exception ex )
+        {
+            logger.error( "Could not warm up page fingerprint index, duplicates of stored pages are stored as is", ex );
+        }
+        finally
+        {
+            manager.close();
+        }
+    }
+}
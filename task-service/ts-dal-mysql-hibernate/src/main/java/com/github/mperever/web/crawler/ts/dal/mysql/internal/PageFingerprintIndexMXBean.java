@@ -0,0 +1,49 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+/**
+ * Represents metrics of {@link PageFingerprintIndex}.
+ *
+ * @author mperever
+ */
+public interface PageFingerprintIndexMXBean
+{
+    /**
+     * @return The number of pages in the index
+     */
+    int getPageCount();
+
+    /**
+     * @return The maximum number of pages in the index
+     */
+    int getCapacity();
+
+    /**
+     * @return The maximum number of different SimHash bits of near-duplicated pages
+     */
+    int getMaxSimHashDistance();
+
+    /**
+     * @return The number of checked pages
+     */
+    long getCheckCount();
+
+    /**
+     * @return The number of pages with exactly the same text as another page
+     */
+    long getExactDuplicateCount();
+
+    /**
+     * @return The number of pages with almost the same text as another page
+     */
+    long getNearDuplicateCount();
+
+    /**
+     * @return The number of characters of page text which have not been stored for duplicated pages
+     */
+    long getSavedTextChars();
+
+    /**
+     * @return The number of word stats rows which have not been written for duplicated pages
+     */
+    long getSavedWordStatRows();
+}
@@ -0,0 +1,195 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents scalable Bloom filter of url fingerprints, which have been saved to database.
+ * It is used to skip database writes for links which are already known (e.g. navigation links present on every
+ * page).
+ *
+ * The filter never forgets url, but it might report url, which has not been put, as seen (false positive),
+ * so urls reported as seen are only looked up in database by one query per batch, and the ones not found there
+ * are saved. Segments are added when the last one is full, each next segment has doubled
+ * capacity and halved false positive probability, so the total probability stays under the specified one.
+ * Filter bits are kept off-heap, so even 100M+ urls do not grow heap and do not slow down garbage collection
+ * (direct memory is limited by -XX:MaxDirectMemorySize, it is equal to max heap size by default).
+ *
+ * Checks are not blocked by puts, a put which is not visible yet only leads to idempotent insert.
+ *
+ * @author mperever
+ */
+public class SeenUrlFilter implements SeenUrlFilterMXBean
+{
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final Object lock = new Object();
+    private final LongAdder checkCount = new LongAdder();
+    private final LongAdder seenCount = new LongAdder();
+    private final LongAdder falsePositiveCount = new LongAdder();
+    private final double firstSegmentProbability;
+
+    private volatile BloomFilterSegment[] segments;
+
+    /**
+     * Creates filter.
+     *
+     * @param expectedUrlCount The expected number of urls, it is capacity of the first segment
+     * @param falsePositiveProbability The maximum probability that url, which has not been put, is reported as seen
+     */
+    public SeenUrlFilter( long expectedUrlCount, double falsePositiveProbability )
+    {
+        if ( expectedUrlCount <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'expectedUrlCount' must be positive." );
+        }
+        if ( falsePositiveProbability <= 0 || falsePositiveProbability >= 1 )
+        {
+            throw new IllegalArgumentException( "parameter 'falsePositiveProbability' must be in range (0, 1)." );
+        }
+
+        // Probabilities of segments are p, p*r, p*r^2... and their sum is limited by p / ( 1 - r )
+        firstSegmentProbability = falsePositiveProbability * ( 1 - TIGHTENING_RATIO );
+        segments = new BloomFilterSegment[]{ new BloomFilterSegment( expectedUrlCount, firstSegmentProbability ) };
+    }
+
+    /**
+     * Checks whether url fingerprint has been put into the filter.
+     *
+     * @param urlHash The url fingerprint
+     * @return false if url has definitely not been put, true if it might have been put
+     */
+    public boolean mightContain( long urlHash )
+    {
+        checkCount.increment();
+        final boolean isSeen = contains( segments, urlHash );
+        if ( isSeen )
+        {
+            seenCount.increment();
+        }
+        return isSeen;
+    }
+
+    /**
+     * Counts url which has been reported as seen, but has not been found in database.
+     */
+    public void onFalsePositive()
+    {
+        falsePositiveCount.increment();
+    }
+
+    /**
+     * Puts url fingerprint into the filter.
+     *
+     * @param urlHash The url fingerprint
+     */
+    public void put( long urlHash )
+    {
+        synchronized ( lock )
+        {
+            BloomFilterSegment[] currentSegments = segments;
+            final int lastIndex = currentSegments.length - 1;
+            for ( int i = 0; i < lastIndex; i++ )
+            {
+                if ( currentSegments[i].mightContain( urlHash ) )
+                {
+                    return;
+                }
+            }
+
+            BloomFilterSegment lastSegment = currentSegments[ lastIndex ];
+            if ( lastSegment.isFull() )
+            {
+                if ( lastSegment.mightContain( urlHash ) )
+                {
+                    return;
+                }
+                lastSegment = new BloomFilterSegment(
+                        lastSegment.capacity() * GROWTH_FACTOR,
+                        firstSegmentProbability * Math.pow( TIGHTENING_RATIO, currentSegments.length ) );
+                currentSegments = Arrays.copyOf( currentSegments, currentSegments.length + 1 );
+                currentSegments[ currentSegments.length - 1 ] = lastSegment;
+                segments = currentSegments;
+            }
+            // The last segment skips url which might be put before
+            lastSegment.put( urlHash );
+        }
+    }
+
+    @Override
+    public long getUrlCount()
+    {
+        synchronized ( lock )
+        {
+            long urlCount = 0;
+            for ( BloomFilterSegment segment : segments )
+            {
+                urlCount += segment.size();
+            }
+            return urlCount;
+        }
+    }
+
+    @Override
+    public int getSegmentCount()
+    {
+        return segments.length;
+    }
+
+    @Override
+    public long getOffHeapMemoryBytes()
+    {
+        long memoryBytes = 0;
+        for ( BloomFilterSegment segment : segments )
+        {
+            memoryBytes += segment.memoryBytes();
+        }
+        return memoryBytes;
+    }
+
+    @Override
+    public double getFalsePositiveProbability()
+    {
+        synchronized ( lock )
+        {
+            // Url is reported as seen if any segment reports it
+            double trueNegativeProbability = 1;
+            for ( BloomFilterSegment segment : segments )
+            {
+                trueNegativeProbability *= 1 - segment.falsePositiveProbability();
+            }
+            return 1 - trueNegativeProbability;
+        }
+    }
+
+    @Override
+    public long getCheckCount()
+    {
+        return checkCount.sum();
+    }
+
+    @Override
+    public long getSeenCount()
+    {
+        return seenCount.sum();
+    }
+
+    @Override
+    public long getFalsePositiveCount()
+    {
+        return falsePositiveCount.sum();
+    }
+
+    private static boolean contains( final BloomFilterSegment[] segments, long urlHash )
+    {
+        for ( BloomFilterSegment segment : segments )
+        {
+            if ( segment.mightContain( urlHash ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import com.github.mperever.web.crawler.common.management.ManagementBeans;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents singleton to keep {@link SeenUrlFilter} once for an application.
+ * The filter is warmed up from Tasks table in background, until then unknown urls are looked up in database.
+ *
+ * The filter can be tuned by JVM system properties:
+ *      -DtaskService.seenUrls.expectedCount - the expected number of urls (10M by default)
+ *      -DtaskService.seenUrls.falsePositiveProbability - the probability to lose new url (0.0001 by default)
+ *
+ * @author mperever
+ */
+public final class SeenUrlFilterHolder
+{
+    private static final Logger logger = LoggerFactory.getLogger( SeenUrlFilterHolder.class );
+
+    private static final String SELECT_URL_HASHES_SQL = "SELECT urlHash FROM Tasks";
+
+    public static final SeenUrlFilter SEEN_URL_FILTER = new SeenUrlFilter(
+            Long.getLong( "taskService.seenUrls.expectedCount", 10_000_000L ),
+            Double.parseDouble( System.getProperty( "taskService.seenUrls.falsePositiveProbability", "0.0001" ) ) );
+
+    static
+    {
+        ManagementBeans.register( "SeenUrlFilter", SEEN_URL_FILTER );
+
+        final Thread warmUpThread = new Thread(
+                () -> warmUp( EntityManagerFactoryHolder.ENTITY_MANAGER_FACTORY, SEEN_URL_FILTER ),
+                "seen-url-filter-warm-up" );
+        warmUpThread.setDaemon( true );
+        warmUpThread.start();
+    }
+
+    private SeenUrlFilterHolder()
+    {
+    }
+
+    private static void warmUp( final EntityManagerFactory entityManagerFactory, final SeenUrlFilter filter )
+    {
+        logger.info( "Seen url filter warm up is started" );
+        final EntityManager manager = entityManagerFactory.createEntityManager();
+        try
+        {
+            manager.unwrap( Session.class ).doWork( connection ->
+            {
+                try ( Statement statement = connection.createStatement(
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY ) )
+                {
+                    // MySQL driver streams rows with this fetch size instead of loading all of them into memory
+                    statement.setFetchSize( Integer.MIN_VALUE );
+                    try ( ResultSet urlHashes = statement.executeQuery( SELECT_URL_HASHES_SQL ) )
+                    {
+                        while ( urlHashes.next() )
+                        {
+                            filter.put( urlHashes.getLong( 1 ) );
+                        }
+                    }
+                }
+            } );
+            logger.info( "Seen url filter warm up is finished, '{}' urls are loaded", filter.getUrlCount() );
+
+        } catch ( Exception ex )
+        {
+            logger.error( "Could not warm up seen url filter, unknown urls are looked up in database", ex );
+        }
+        finally
+        {
+            manager.close();
+        }
+    }
+}
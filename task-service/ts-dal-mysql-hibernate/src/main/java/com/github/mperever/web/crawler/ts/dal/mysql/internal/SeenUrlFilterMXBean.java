@@ -0,0 +1,44 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+/**
+ * Represents metrics of {@link SeenUrlFilter}.
+ *
+ * @author mperever
+ */
+public interface SeenUrlFilterMXBean
+{
+    /**
+     * @return The number of urls put into the filter
+     */
+    long getUrlCount();
+
+    /**
+     * @return The number of filter segments, new segment is added when the last one is full
+     */
+    int getSegmentCount();
+
+    /**
+     * @return The size of off-heap memory allocated by the filter
+     */
+    long getOffHeapMemoryBytes();
+
+    /**
+     * @return The estimated probability that url, which has not been put, is reported as seen
+     */
+    double getFalsePositiveProbability();
+
+    /**
+     * @return The number of checked urls
+     */
+    long getCheckCount();
+
+    /**
+     * @return The number of checked urls which have been reported as seen (so they are not inserted into database)
+     */
+    long getSeenCount();
+
+    /**
+     * @return The number of urls which have been reported as seen, but have not been found in database
+     */
+    long getFalsePositiveCount();
+}
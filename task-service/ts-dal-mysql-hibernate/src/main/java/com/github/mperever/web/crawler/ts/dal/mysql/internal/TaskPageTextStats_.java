@@ -0,0 +1,24 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import com.github.mperever.web.crawler.ts.dal.TaskPageTextStats;
+import com.github.mperever.web.crawler.ts.dal.mysql.TaskServiceRepositoryMySql;
+
+/**
+ * This class keeps field names for {@link TaskPageTextStats} and is used by {@link TaskServiceRepositoryMySql}.
+ */
+public final class TaskPageTextStats_
+{
+    private TaskPageTextStats_()
+    {
+    }
+
+    /**
+     *  Field name for {@link TaskPageTextStats#taskId}
+     */
+    public static final String taskId = "taskId";
+
+    /**
+     *  Field name for {@link TaskPageTextStats#canonicalTaskId}
+     */
+    public static final String canonicalTaskId = "canonicalTaskId";
+}
\ No newline at end of file
@@ -22,6 +22,11 @@ public final class UrlTask_
      */
     public static final String url = "url";
 
+    /**
+     *  Field name for {@link UrlTask#urlHash}
+     */
+    public static final String urlHash = "urlHash";
+
     /**
      *  Field name for {@link UrlTask#endProcessTime}
      */
@@ -51,4 +56,14 @@ public final class UrlTask_
      *  Field name for {@link UrlTask#startProcessTime}
      */
     public static final String startProcessTime = "startProcessTime";
+
+    /**
+     *  Field name for {@link UrlTask#claimToken}
+     */
+    public static final String claimToken = "claimToken";
+
+    /**
+     *  Field name for {@link UrlTask#status}
+     */
+    public static final String status = "status";
 }
\ No newline at end of file
@@ -6,20 +6,32 @@ CREATE TABLE Tasks
 ( id INT NOT NULL AUTO_INCREMENT,
   parentId INT,
   url VARCHAR(2000) NOT NULL,
+  urlHash BIGINT NOT NULL,
   depth INT NOT NULL,
   external BOOL NOT NULL,
-  startProcessTime LONG,
-  endProcessTime LONG,
-  errorCount INT,
+  startProcessTime BIGINT NOT NULL DEFAULT 0,
+  endProcessTime BIGINT NOT NULL DEFAULT 0,
+  errorCount INT NOT NULL DEFAULT 0,
   clientId VARCHAR(2000),
+  status VARCHAR(16) NOT NULL DEFAULT 'NEW',
+  claimToken VARCHAR(36),
   PRIMARY KEY (id),
-  UNIQUE (url) );
+  UNIQUE (urlHash),
+  INDEX Tasks_claim_new (status, depth, id, external, errorCount),
+  INDEX Tasks_claim_expired (status, startProcessTime, depth, external, errorCount),
+  INDEX Tasks_claimToken (claimToken) );
 ALTER TABLE Tasks CONVERT TO CHARACTER SET utf8 COLLATE utf8_bin;
 
 CREATE TABLE PageText
 ( task_id INT NOT NULL,
   text VARCHAR(20000) NOT NULL,
-  PRIMARY KEY (task_id) );
+  etag VARCHAR(256),
+  lastModified VARCHAR(64),
+  contentHash BIGINT NOT NULL DEFAULT 0,
+  simHash BIGINT NOT NULL DEFAULT 0,
+  canonicalTaskId INT NULL,
+  PRIMARY KEY (task_id),
+  INDEX PageText_canonicalTaskId (canonicalTaskId) );
 ALTER TABLE PageText CONVERT TO CHARACTER SET utf8 COLLATE utf8_bin;
 
 CREATE TABLE WordStats
@@ -1,14 +1,26 @@
 package com.github.mperever.web.crawler.ts.dal.mysql;
 
+import com.github.mperever.web.crawler.ts.common.ContentFingerprint;
 import com.github.mperever.web.crawler.ts.dal.TaskPageTextStats;
 import com.github.mperever.web.crawler.ts.dal.TaskResultEntities;
+import com.github.mperever.web.crawler.ts.common.dto.TaskStatus;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -138,6 +150,46 @@ public class TaskServiceRepositoryMySqlTest
         Assert.assertEquals( actualTask.getClientId(), firstClientId );
     }
 
+    @Test ( priority = 1 )
+    public void add_existed_task_found_closer_to_start_pages()
+    {
+        final String url = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, url, 5, true ) );
+
+        // Depth is lowered, the deeper url does not raise it back
+        repo.addIfNotExist( new UrlTask( null, url, 2, true ) );
+        repo.addIfNotExist( new UrlTask( null, url, 4, true ) );
+        Assert.assertEquals( repo.getTask( url ).getDepth(), 2 );
+        Assert.assertTrue( repo.getTask( url ).isExternal() );
+
+        // Depth of internal url is not limited
+        repo.addIfNotExist( new UrlTask( null, url, 3, false ) );
+        Assert.assertEquals( repo.getTask( url ).getDepth(), 2 );
+        Assert.assertFalse( repo.getTask( url ).isExternal() );
+    }
+
+    @Test ( priority = 1 )
+    public void add_new_and_duplicated_tasks()
+    {
+        final String existedUrl = UUID.randomUUID().toString();
+        final UrlTask existedTask = new UrlTask( null, existedUrl, 0, true );
+        existedTask.setClientId( "client1" );
+        repo.addIfNotExist( existedTask );
+
+        // The new task is duplicated in the same batch, the existed task is added again with different client id
+        final String newUrl = UUID.randomUUID().toString();
+        final UrlTask newTask = new UrlTask( null, newUrl, 0, true );
+        newTask.setClientId( "client2" );
+        final UrlTask duplicatedNewTask = new UrlTask( null, newUrl, 0, true );
+        duplicatedNewTask.setClientId( "client3" );
+        final UrlTask existedTaskAgain = new UrlTask( null, existedUrl, 0, true );
+        existedTaskAgain.setClientId( "client4" );
+        repo.addIfNotExist( newTask, existedTaskAgain, duplicatedNewTask );
+
+        Assert.assertEquals( repo.getTask( existedUrl ).getClientId(), "client1" );
+        Assert.assertEquals( repo.getTask( newUrl ).getClientId(), "client2" );
+    }
+
     @Test ( priority = 1 )
     public void get_not_existed_task()
     {
@@ -153,10 +205,26 @@ public class TaskServiceRepositoryMySqlTest
         repo.addIfNotExist( notExistedTask );
         final int errorCount = 10;
 
-        repo.updateErrorCount( url, errorCount );
+        repo.updateErrorCount( url, errorCount, errorCount + 1 );
 
         final UrlTask actualTask = repo.getTask( url );
         Assert.assertEquals( actualTask.getErrorCount(), errorCount );
+        Assert.assertEquals( actualTask.getStatus(), TaskStatus.NEW );
+    }
+
+    @Test ( priority = 1 )
+    public void update_error_count_to_threshold()
+    {
+        final String url = UUID.randomUUID().toString();
+        final UrlTask notExistedTask = new UrlTask( null, url, 0, true );
+        repo.addIfNotExist( notExistedTask );
+        final int errorThreshold = 3;
+
+        repo.updateErrorCount( url, errorThreshold, errorThreshold );
+
+        final UrlTask actualTask = repo.getTask( url );
+        Assert.assertEquals( actualTask.getErrorCount(), errorThreshold );
+        Assert.assertEquals( actualTask.getStatus(), TaskStatus.DEAD );
     }
 
     @Test ( priority = 1 )
@@ -194,6 +262,7 @@ public class TaskServiceRepositoryMySqlTest
         // Check updated stage for new task
         final UrlTask updatedActualTask = repo.getTask( url );
         Assert.assertNotEquals( updatedActualTask.getEndProcessTime(), 0 );
+        Assert.assertEquals( updatedActualTask.getStatus(), TaskStatus.DONE );
 
         // Check added other new tasks
         final UrlTask actualChildTask1 = repo.getTask( childUrl1 );
@@ -202,6 +271,279 @@ public class TaskServiceRepositoryMySqlTest
         Assert.assertEquals( actualChildTask2, childTask2 );
     }
 
+    @Test ( priority = 1 )
+    public void save_task_results_batch()
+    {
+        // Add new tasks
+        final String url1 = UUID.randomUUID().toString();
+        final String url2 = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, url1, 0, true ), new UrlTask( null, url2, 0, true ) );
+        final List<UrlTask> tasks = repo.getTasks( Arrays.asList( url1, url2, UUID.randomUUID().toString() ) );
+        Assert.assertEquals( tasks.size(), 2 );
+
+        // Prepare results with the same child task and page text
+        final String childUrl = UUID.randomUUID().toString();
+        final List<TaskResultEntities> taskResults = new ArrayList<>();
+        for ( UrlTask task : tasks )
+        {
+            final TaskPageTextStats textStats = new TaskPageTextStats( task.getId() );
+            textStats.setPageText( "page_text_" + task.getUrl() );
+            final TaskResultEntities taskResult = new TaskResultEntities( task.getId() );
+            taskResult.setTasks( new UrlTask( task.getId(), childUrl, 1, false ) );
+            taskResult.setStats( textStats );
+            taskResults.add( taskResult );
+        }
+        repo.saveTaskResultsBatch( taskResults );
+
+        // Check saved results of each task
+        for ( String url : new String[]{ url1, url2 } )
+        {
+            Assert.assertEquals( repo.getPageTextStats( url ).getPageText(), "page_text_" + url );
+            Assert.assertEquals( repo.getTask( url ).getStatus(), TaskStatus.DONE );
+        }
+        Assert.assertNotNull( repo.getTask( childUrl ) );
+    }
+
+    @Test ( priority = 1 )
+    public void save_task_results_batch_with_results_which_cannot_be_saved()
+    {
+        final String savedUrl = UUID.randomUUID().toString();
+        final String url = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, savedUrl, 0, true ), new UrlTask( null, url, 0, true ) );
+        final int savedTaskId = repo.getTask( savedUrl ).getId();
+        final int taskId = repo.getTask( url ).getId();
+
+        // Page text of not recrawled task cannot be added twice
+        final TaskPageTextStats savedTextStats = new TaskPageTextStats( savedTaskId );
+        savedTextStats.setPageText( "page_text" );
+        final TaskResultEntities savedResult = new TaskResultEntities( savedTaskId );
+        savedResult.setStats( savedTextStats );
+        Assert.assertTrue( repo.saveTaskResults( savedResult ) );
+
+        final TaskPageTextStats notSavedTextStats = new TaskPageTextStats( savedTaskId );
+        notSavedTextStats.setPageText( "other_page_text" );
+        final TaskResultEntities notSavedResult = new TaskResultEntities( savedTaskId );
+        notSavedResult.setStats( notSavedTextStats );
+
+        // Values which do not fit columns are skipped
+        final char[] longValue = new char[ 2001 ];
+        Arrays.fill( longValue, 'a' );
+        final String longUrl = new String( longValue );
+        final String childUrl = UUID.randomUUID().toString();
+        final TaskPageTextStats textStats = new TaskPageTextStats( taskId );
+        textStats.setPageText( "page_text_" + url );
+        textStats.setEtag( longUrl );
+        final TaskResultEntities taskResult = new TaskResultEntities( taskId );
+        taskResult.setTasks( new UrlTask( taskId, longUrl, 1, false ), new UrlTask( taskId, childUrl, 1, false ) );
+        taskResult.setStats( textStats );
+
+        final Set<Integer> notSavedTaskIds = repo.saveTaskResultsBatch( Arrays.asList( notSavedResult, taskResult ) );
+
+        // Results of other tasks are saved
+        Assert.assertEquals( notSavedTaskIds, Collections.singleton( savedTaskId ) );
+        Assert.assertEquals( repo.getPageTextStats( savedUrl ).getPageText(), "page_text" );
+        Assert.assertEquals( repo.getPageTextStats( url ).getPageText(), "page_text_" + url );
+        Assert.assertNull( repo.getPageTextStats( url ).getEtag() );
+        Assert.assertEquals( repo.getTask( url ).getStatus(), TaskStatus.DONE );
+        Assert.assertNotNull( repo.getTask( childUrl ) );
+        Assert.assertNull( repo.getTask( longUrl ) );
+    }
+
+    @Test ( priority = 1 )
+    public void save_task_results_and_assign_tasks()
+    {
+        final String url = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, url, 0, true ) );
+        final int taskId = repo.getTask( url ).getId();
+
+        final TaskPageTextStats textStats = new TaskPageTextStats( taskId );
+        textStats.setPageText( "page_text" );
+        final TaskResultEntities taskResult = new TaskResultEntities( taskId );
+        taskResult.setStats( textStats );
+
+        final String clientId = UUID.randomUUID().toString();
+        final Set<Integer> notSavedTaskIds = new HashSet<>();
+        final UrlTask[] assignedTasks = repo.saveTaskResultsAndAssignTasks( Collections.singletonList( taskResult ),
+                clientId, 5, 10, TimeUnit.MINUTES.toMillis( 1 ), 5, notSavedTaskIds );
+
+        // The saved task is not assigned again
+        Assert.assertNotNull( assignedTasks );
+        Assert.assertTrue( assignedTasks.length <= 5 );
+        for ( UrlTask task : assignedTasks )
+        {
+            Assert.assertNotEquals( task.getId(), taskId );
+            Assert.assertEquals( task.getClientId(), clientId );
+        }
+        Assert.assertEquals( repo.getTask( url ).getStatus(), TaskStatus.DONE );
+        Assert.assertEquals( repo.getPageTextStats( url ).getPageText(), "page_text" );
+        Assert.assertTrue( notSavedTaskIds.isEmpty() );
+
+        // Results can be saved without assigning tasks
+        Assert.assertEquals( repo.saveTaskResultsAndAssignTasks(
+                new ArrayList<>(), clientId, 0, 10, TimeUnit.MINUTES.toMillis( 1 ), 5, notSavedTaskIds ).length, 0 );
+    }
+
+    @Test ( priority = 1 )
+    public void save_task_results_and_assign_tasks_with_results_which_cannot_be_saved()
+    {
+        final String savedUrl = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, savedUrl, 0, true ) );
+        final int savedTaskId = repo.getTask( savedUrl ).getId();
+
+        // Page text of not recrawled task cannot be added twice
+        final TaskPageTextStats savedTextStats = new TaskPageTextStats( savedTaskId );
+        savedTextStats.setPageText( "page_text" );
+        final TaskResultEntities savedResult = new TaskResultEntities( savedTaskId );
+        savedResult.setStats( savedTextStats );
+        Assert.assertTrue( repo.saveTaskResults( savedResult ) );
+
+        final TaskPageTextStats notSavedTextStats = new TaskPageTextStats( savedTaskId );
+        notSavedTextStats.setPageText( "other_page_text" );
+        final TaskResultEntities notSavedResult = new TaskResultEntities( savedTaskId );
+        notSavedResult.setStats( notSavedTextStats );
+
+        // Tasks are assigned even though results have not been saved
+        final String freeUrl = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, freeUrl, 0, true ) );
+        final String clientId = UUID.randomUUID().toString();
+        final Set<Integer> notSavedTaskIds = new HashSet<>();
+        final UrlTask[] assignedTasks = repo.saveTaskResultsAndAssignTasks( Collections.singletonList( notSavedResult ),
+                clientId, 1000, 10, TimeUnit.MINUTES.toMillis( 1 ), 5, notSavedTaskIds );
+
+        Assert.assertEquals( notSavedTaskIds, Collections.singleton( savedTaskId ) );
+        Assert.assertEquals( repo.getPageTextStats( savedUrl ).getPageText(), "page_text" );
+        Assert.assertNotNull( assignedTasks );
+        Assert.assertEquals( repo.getTask( freeUrl ).getClientId(), clientId );
+    }
+
+    @Test ( priority = 1 )
+    public void save_unchanged_and_recrawled_task_results()
+    {
+        final String url = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, url, 0, true ) );
+        final int taskId = repo.getTask( url ).getId();
+
+        final TaskPageTextStats textStats = new TaskPageTextStats( taskId );
+        textStats.setPageText( "page_text" );
+        textStats.setEtag( "\"v1\"" );
+        textStats.setLastModified( "Wed, 21 Oct 2015 07:28:00 GMT" );
+        final TaskResultEntities taskResult = new TaskResultEntities( taskId );
+        taskResult.setStats( textStats );
+        repo.saveTaskResults( taskResult );
+
+        // Unchanged page does not touch saved page text stats
+        final TaskResultEntities unchangedResult = new TaskResultEntities( taskId );
+        unchangedResult.setRecrawl( true );
+        unchangedResult.setUnchanged( true );
+        repo.saveTaskResults( unchangedResult );
+
+        TaskPageTextStats actualTextStats = repo.getPageTextStats( url );
+        Assert.assertEquals( actualTextStats.getPageText(), "page_text" );
+        Assert.assertEquals( actualTextStats.getEtag(), "\"v1\"" );
+        Assert.assertEquals( actualTextStats.getLastModified(), "Wed, 21 Oct 2015 07:28:00 GMT" );
+
+        // Changed page replaces saved page text stats
+        final TaskPageTextStats changedTextStats = new TaskPageTextStats( taskId );
+        changedTextStats.setPageText( "changed_page_text" );
+        changedTextStats.setEtag( "\"v2\"" );
+        final TaskResultEntities changedResult = new TaskResultEntities( taskId );
+        changedResult.setRecrawl( true );
+        changedResult.setStats( changedTextStats );
+        repo.saveTaskResults( changedResult );
+
+        actualTextStats = repo.getPageTextStats( url );
+        Assert.assertEquals( actualTextStats.getPageText(), "changed_page_text" );
+        Assert.assertEquals( actualTextStats.getEtag(), "\"v2\"" );
+        Assert.assertNull( actualTextStats.getLastModified() );
+        Assert.assertEquals( repo.getTask( url ).getStatus(), TaskStatus.DONE );
+    }
+
+    @Test ( priority = 1 )
+    public void save_duplicated_page_as_reference()
+    {
+        final String pageText = "duplicated_page_text " + UUID.randomUUID();
+        final String url = UUID.randomUUID().toString();
+        final String duplicateUrl = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, url, 0, true ), new UrlTask( null, duplicateUrl, 0, true ) );
+
+        for ( String taskUrl : new String[]{ url, duplicateUrl } )
+        {
+            final int taskId = repo.getTask( taskUrl ).getId();
+            final TaskPageTextStats textStats = new TaskPageTextStats( taskId );
+            textStats.setPageText( pageText );
+            textStats.setContentHash( ContentFingerprint.contentHash( pageText ) );
+            final TaskResultEntities taskResult = new TaskResultEntities( taskId );
+            taskResult.setStats( textStats );
+            repo.saveTaskResults( taskResult );
+        }
+
+        // Text of duplicated page is stored once
+        final TaskPageTextStats duplicateTextStats = repo.getPageTextStats( duplicateUrl );
+        Assert.assertEquals( duplicateTextStats.getPageText(), pageText );
+        Assert.assertEquals( duplicateTextStats.getTaskId(), repo.getTask( url ).getId() );
+        Assert.assertEquals( repo.getTask( duplicateUrl ).getStatus(), TaskStatus.DONE );
+    }
+
+    @Test ( priority = 1 )
+    public void recrawled_canonical_page_keeps_text_of_duplicates()
+    {
+        final String pageText = "canonical_page_text " + UUID.randomUUID();
+        final String url = UUID.randomUUID().toString();
+        final String duplicateUrl = UUID.randomUUID().toString();
+        final String otherDuplicateUrl = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, url, 0, true ),
+                            new UrlTask( null, duplicateUrl, 0, true ),
+                            new UrlTask( null, otherDuplicateUrl, 0, true ) );
+        saveTextStats( url, pageText, false );
+        saveTextStats( duplicateUrl, pageText, false );
+        saveTextStats( otherDuplicateUrl, pageText, false );
+
+        // The canonical page is changed
+        final String changedPageText = "changed_page_text " + UUID.randomUUID();
+        saveTextStats( url, changedPageText, true );
+
+        Assert.assertEquals( repo.getPageTextStats( url ).getPageText(), changedPageText );
+        final int duplicateTaskId = repo.getTask( duplicateUrl ).getId();
+        final TaskPageTextStats duplicateTextStats = repo.getPageTextStats( duplicateUrl );
+        Assert.assertEquals( duplicateTextStats.getPageText(), pageText );
+        Assert.assertEquals( duplicateTextStats.getTaskId(), duplicateTaskId );
+        final TaskPageTextStats otherDuplicateTextStats = repo.getPageTextStats( otherDuplicateUrl );
+        Assert.assertEquals( otherDuplicateTextStats.getPageText(), pageText );
+        Assert.assertEquals( otherDuplicateTextStats.getTaskId(), duplicateTaskId );
+
+        // New page with the previous text does not refer to the changed page
+        final String newUrl = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, newUrl, 0, true ) );
+        saveTextStats( newUrl, pageText, false );
+        Assert.assertEquals( repo.getPageTextStats( newUrl ).getPageText(), pageText );
+    }
+
+    @Test ( priority = 1 )
+    public void recrawled_canonical_page_becomes_duplicate()
+    {
+        final String pageText = "canonical_page_text " + UUID.randomUUID();
+        final String otherPageText = "other_page_text " + UUID.randomUUID();
+        final String url = UUID.randomUUID().toString();
+        final String duplicateUrl = UUID.randomUUID().toString();
+        final String otherUrl = UUID.randomUUID().toString();
+        repo.addIfNotExist( new UrlTask( null, url, 0, true ),
+                            new UrlTask( null, duplicateUrl, 0, true ),
+                            new UrlTask( null, otherUrl, 0, true ) );
+        saveTextStats( url, pageText, false );
+        saveTextStats( duplicateUrl, pageText, false );
+        saveTextStats( otherUrl, otherPageText, false );
+
+        // The canonical page is changed to duplicate of other page
+        saveTextStats( url, otherPageText, true );
+
+        final TaskPageTextStats textStats = repo.getPageTextStats( url );
+        Assert.assertEquals( textStats.getPageText(), otherPageText );
+        Assert.assertEquals( textStats.getTaskId(), repo.getTask( otherUrl ).getId() );
+        final TaskPageTextStats duplicateTextStats = repo.getPageTextStats( duplicateUrl );
+        Assert.assertEquals( duplicateTextStats.getPageText(), pageText );
+        Assert.assertEquals( duplicateTextStats.getTaskId(), repo.getTask( duplicateUrl ).getId() );
+    }
+
     @Test ( priority = 1 )
     public void get_tasks_limit()
     {
@@ -221,4 +563,79 @@ public class TaskServiceRepositoryMySqlTest
         final List<UrlTask> actualTasks = repo.getTasks( 0, 0 );
         Assert.assertEquals( actualTasks.size(), limit );
     }
+
+    // Smoke test with table locks: H2 without MV_STORE locks whole tables, so claims are serialized.
+    // It checks claim queries under concurrent clients, but it does not prove that row locks of MySQL (InnoDB)
+    // keep claims safe, that needs a run against MySQL.
+    @Test ( priority = 2 )
+    public void concurrent_claimers_get_each_task_once_with_table_locks() throws Exception
+    {
+        final int taskCount = 500;
+        final int claimerCount = 8;
+        final int maxCount = 7;
+        final long processTimeOut = TimeUnit.HOURS.toMillis( 1 );
+
+        final Set<String> expectedUrls = new HashSet<>( taskCount );
+        final UrlTask[] tasks = new UrlTask[ taskCount ];
+        for ( int i = 0; i < taskCount; i++ )
+        {
+            final String url = UUID.randomUUID().toString();
+            tasks[i] = new UrlTask( null, url, 0, false );
+            expectedUrls.add( url );
+        }
+        repo.addIfNotExist( tasks );
+
+        // Each claimer takes tasks until there are no free tasks
+        final Callable<List<String>> claimer = () ->
+        {
+            final String clientId = UUID.randomUUID().toString();
+            final List<String> claimedUrls = new ArrayList<>();
+            UrlTask[] claimedTasks;
+            do
+            {
+                claimedTasks = repo.assignTasksToClient( clientId, maxCount, 0, processTimeOut, 1 );
+                Assert.assertNotNull( claimedTasks );
+                Assert.assertTrue( claimedTasks.length <= maxCount );
+                for ( UrlTask task : claimedTasks )
+                {
+                    Assert.assertEquals( task.getClientId(), clientId );
+                    Assert.assertEquals( task.getStatus(), TaskStatus.CLAIMED );
+                    claimedUrls.add( task.getUrl() );
+                }
+            } while ( claimedTasks.length != 0 );
+
+            return claimedUrls;
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool( claimerCount );
+        final List<Future<List<String>>> results = new ArrayList<>( claimerCount );
+        for ( int i = 0; i < claimerCount; i++ )
+        {
+            results.add( executor.submit( claimer ) );
+        }
+
+        final Set<String> claimedUrls = new HashSet<>();
+        for ( Future<List<String>> result : results )
+        {
+            for ( String url : result.get( 1, TimeUnit.MINUTES ) )
+            {
+                Assert.assertTrue( claimedUrls.add( url ), "The task is claimed twice: " + url );
+            }
+        }
+        executor.shutdown();
+
+        Assert.assertTrue( claimedUrls.containsAll( expectedUrls ) );
+    }
+
+    private void saveTextStats( String url, String pageText, boolean isRecrawl )
+    {
+        final int taskId = repo.getTask( url ).getId();
+        final TaskPageTextStats textStats = new TaskPageTextStats( taskId );
+        textStats.setPageText( pageText );
+        textStats.setContentHash( ContentFingerprint.contentHash( pageText ) );
+        final TaskResultEntities taskResult = new TaskResultEntities( taskId );
+        taskResult.setRecrawl( isRecrawl );
+        taskResult.setStats( textStats );
+        repo.saveTaskResults( taskResult );
+    }
 }
\ No newline at end of file
@@ -0,0 +1,92 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import com.github.mperever.web.crawler.ts.common.ContentFingerprint;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PageFingerprintIndexTest
+{
+    @Test
+    public void find_exact_duplicate()
+    {
+        final PageFingerprintIndex index = new PageFingerprintIndex( 100, -1 );
+        final long contentHash = ContentFingerprint.contentHash( "The same page text" );
+        index.put( 1, contentHash, 0 );
+
+        Assert.assertEquals( index.findCanonical( 2, contentHash, 0 ), 1 );
+        Assert.assertEquals( index.findCanonical( 1, contentHash, 0 ), PageFingerprintIndex.NOT_FOUND );
+        Assert.assertEquals( index.findCanonical( 3, ContentFingerprint.contentHash( "Another page text" ), 0 ),
+                PageFingerprintIndex.NOT_FOUND );
+        Assert.assertEquals( index.getExactDuplicateCount(), 1 );
+    }
+
+    @Test
+    public void find_near_duplicate()
+    {
+        final PageFingerprintIndex index = new PageFingerprintIndex( 100, 3 );
+        final Map<String, Long> wordStats = wordStats( 0, 300 );
+        final long simHash = ContentFingerprint.simHash( wordStats );
+        index.put( 1, 0, simHash );
+
+        // The same page with session id and date in the text
+        final Map<String, Long> variantWordStats = new HashMap<>( wordStats );
+        variantWordStats.put( "sessionid", 1L );
+        variantWordStats.put( "october", 1L );
+        final long variantSimHash = ContentFingerprint.simHash( variantWordStats );
+        Assert.assertTrue( ContentFingerprint.distance( variantSimHash, simHash ) <= 3 );
+        Assert.assertEquals( index.findCanonical( 2, 0, variantSimHash ), 1 );
+
+        // The page with other words
+        Assert.assertEquals( index.findCanonical( 3, 0, ContentFingerprint.simHash( wordStats( 1000, 300 ) ) ),
+                PageFingerprintIndex.NOT_FOUND );
+        Assert.assertEquals( index.getNearDuplicateCount(), 1 );
+    }
+
+    @Test
+    public void pages_over_capacity_are_not_indexed()
+    {
+        final PageFingerprintIndex index = new PageFingerprintIndex( 10, 3 );
+        for ( int taskId = 0; taskId < 20; taskId++ )
+        {
+            index.put( taskId, ContentFingerprint.contentHash( "page " + taskId ), 0 );
+        }
+
+        Assert.assertEquals( index.getPageCount(), 10 );
+        Assert.assertEquals( index.findCanonical( 100, ContentFingerprint.contentHash( "page 5" ), 0 ), 5 );
+        Assert.assertEquals( index.findCanonical( 100, ContentFingerprint.contentHash( "page 15" ), 0 ),
+                PageFingerprintIndex.NOT_FOUND );
+    }
+
+    @Test
+    public void removed_page_is_not_found()
+    {
+        final PageFingerprintIndex index = new PageFingerprintIndex( 1, 3 );
+        final long contentHash = ContentFingerprint.contentHash( "Replaced page text" );
+        final long simHash = ContentFingerprint.simHash( wordStats( 0, 300 ) );
+        index.put( 1, contentHash, simHash );
+
+        index.remove( 1, contentHash, simHash );
+        Assert.assertEquals( index.findCanonical( 2, contentHash, simHash ), PageFingerprintIndex.NOT_FOUND );
+        Assert.assertEquals( index.getPageCount(), 0 );
+
+        // The entry of removed page is reused by the next page
+        final long newSimHash = ContentFingerprint.simHash( wordStats( 1000, 300 ) );
+        index.put( 3, 0, newSimHash );
+        Assert.assertEquals( index.findCanonical( 4, 0, newSimHash ), 3 );
+        Assert.assertEquals( index.findCanonical( 4, 0, simHash ), PageFingerprintIndex.NOT_FOUND );
+    }
+
+    private static Map<String, Long> wordStats( int firstWord, int wordCount )
+    {
+        final Map<String, Long> wordStats = new HashMap<>();
+        for ( int i = firstWord; i < firstWord + wordCount; i++ )
+        {
+            wordStats.put( "word" + Integer.toString( i, Character.MAX_RADIX ), 1L + i % 5 );
+        }
+        return wordStats;
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.mperever.web.crawler.ts.dal.mysql.internal;
+
+import com.github.mperever.web.crawler.ts.common.UrlFingerprint;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SeenUrlFilterTest
+{
+    @Test
+    public void put_urls_over_expected_count()
+    {
+        final int expectedUrlCount = 1_000;
+        final int urlCount = 10_000;
+        final SeenUrlFilter filter = new SeenUrlFilter( expectedUrlCount, 0.01 );
+
+        for ( int i = 0; i < urlCount; i++ )
+        {
+            filter.put( UrlFingerprint.of( "http://example.com/page/" + i ) );
+        }
+
+        // There are no false negatives
+        for ( int i = 0; i < urlCount; i++ )
+        {
+            Assert.assertTrue( filter.mightContain( UrlFingerprint.of( "http://example.com/page/" + i ) ) );
+        }
+        // Url is not put again if it is reported as seen (false positive)
+        Assert.assertTrue( filter.getUrlCount() <= urlCount );
+        Assert.assertTrue( filter.getSegmentCount() > 1 );
+        Assert.assertEquals( filter.getSeenCount(), urlCount );
+    }
+
+    @Test
+    public void false_positive_probability()
+    {
+        final int urlCount = 100_000;
+        final double falsePositiveProbability = 0.01;
+        final SeenUrlFilter filter = new SeenUrlFilter( urlCount / 4, falsePositiveProbability );
+        for ( int i = 0; i < urlCount; i++ )
+        {
+            filter.put( UrlFingerprint.of( "http://example.com/page/" + i ) );
+        }
+
+        int falsePositiveCount = 0;
+        for ( int i = 0; i < urlCount; i++ )
+        {
+            if ( filter.mightContain( UrlFingerprint.of( "http://example.com/other/" + i ) ) )
+            {
+                falsePositiveCount++;
+            }
+        }
+
+        Assert.assertTrue( ( double ) falsePositiveCount / urlCount < falsePositiveProbability );
+        Assert.assertTrue( filter.getFalsePositiveProbability() < falsePositiveProbability );
+    }
+}
@@ -4,14 +4,21 @@ import com.github.mperever.web.crawler.common.json.JacksonJsonSerializer;
 import com.github.mperever.web.crawler.common.rest.HttpService;
 import com.github.mperever.web.crawler.ts.common.TaskService_v1;
 import com.github.mperever.web.crawler.ts.common.dto.ErrorKeeper;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesRequest;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesResponse;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksRequest;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksResponse;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchResponse;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 import com.github.mperever.web.crawler.ts.dal.mysql.TaskServiceRepositoryMySql;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -19,6 +26,8 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
@@ -45,12 +54,21 @@ public class HttpTaskService_v1 extends HttpService
     static final String SERVICE_ROOT_PATH = "/v1";
 
     private static final String TASKS_RETRIEVE_PATH = "tasks.retrieve";
+    private static final String TASKS_RETRIEVE_WAIT_PATH = "tasks.retrieve.wait";
     private static final String RESULTS_SAVE_PATH = "results.save";
+    private static final String RESULTS_SAVE_BATCH_PATH = "results.save.batch";
+    private static final String RESULTS_SAVE_TASKS_RETRIEVE_PATH = "results.save.tasks.retrieve";
+    private static final String TASKS_LEASE_RENEW_PATH = "tasks.lease.renew";
     private static final String ADD_TASK_PATH = "add.task";
     private static final String GET_TASKS = "get.tasks";
     private static final String GET_TASKS_OFFSET_PARAM = "offset";
     private static final String GET_TASKS_LIMIT_PARAM = "limit";
 
+    /**
+     * The time after which waiting request is resumed by container, if task service has not completed it.
+     */
+    private static final long RETRIEVE_WAIT_RESPONSE_TIMEOUT_SEC = 60;
+
     private final TaskService_v1 taskService;
 
     /**
@@ -86,6 +104,44 @@ public class HttpTaskService_v1 extends HttpService
         }
     }
 
+    /**
+     * Retrieves tasks, and if there are no tasks for client then the request is suspended until tasks are added
+     * or wait timeout of request passes. Container thread is not kept while the request is suspended.
+     */
+    @POST
+    @Path( TASKS_RETRIEVE_WAIT_PATH )
+    public void tasksRetrieveWait( @Suspended final AsyncResponse asyncResponse,
+                                   @Context HttpHeaders headers,
+                                   final RetrieveTasksRequest retrieveRequest )
+    {
+        asyncResponse.setTimeout( RETRIEVE_WAIT_RESPONSE_TIMEOUT_SEC, TimeUnit.SECONDS );
+        asyncResponse.setTimeoutHandler( response -> response.resume(
+                buildRetrieveTasksResponse( new RetrieveTasksResponse( new UrlTask[0] ) ) ) );
+        try
+        {
+            taskService.retrieveTasksAsync( retrieveRequest ).whenComplete( ( response, error ) ->
+                    asyncResponse.resume( error == null
+                            ? buildRetrieveTasksResponse( response )
+                            : buildExceptionResponse( new RetrieveTasksResponse( new IllegalStateException(
+                                    "Could not wait for tasks", error ) ) ) ) );
+
+        } catch ( Exception ex )
+        {
+            asyncResponse.resume( buildExceptionResponse( new RetrieveTasksResponse( ex ) ) );
+        }
+    }
+
+    private Response buildRetrieveTasksResponse( final RetrieveTasksResponse response )
+    {
+        if ( response.hasError() )
+        {
+            return buildExceptionResponse( response );
+        }
+
+        final String retrieveResponsePayload = getJsonSerializer().encode( response );
+        return Response.ok( retrieveResponsePayload, RESOURCE_MEDIA_TYPE ).build();
+    }
+
     @POST
     @Path( RESULTS_SAVE_PATH )
     public Response resultsSave( @Context HttpHeaders headers, final SaveTaskResultRequest saveResultRequest )
@@ -108,6 +164,73 @@ public class HttpTaskService_v1 extends HttpService
         }
     }
 
+    @POST
+    @Path( RESULTS_SAVE_BATCH_PATH )
+    public Response resultsSaveBatch( @Context HttpHeaders headers, final SaveTaskResultsBatchRequest batchRequest )
+    {
+        try
+        {
+            final SaveTaskResultsBatchResponse response = taskService.saveTaskResultsBatch( batchRequest );
+
+            if ( response.hasError() )
+            {
+                return buildExceptionResponse( response );
+            }
+
+            final String resultsSaveResponsePayload = getJsonSerializer().encode( response );
+            return Response.ok( resultsSaveResponsePayload, RESOURCE_MEDIA_TYPE ).build();
+        }
+        catch ( Exception ex )
+        {
+            return buildExceptionResponse( new SaveTaskResultsBatchResponse( ex ) );
+        }
+    }
+
+    @POST
+    @Path( RESULTS_SAVE_TASKS_RETRIEVE_PATH )
+    public Response resultsSaveTasksRetrieve( @Context HttpHeaders headers,
+                                              final SaveResultsAndRetrieveTasksRequest request )
+    {
+        try
+        {
+            final SaveResultsAndRetrieveTasksResponse response = taskService.saveResultsAndRetrieveTasks( request );
+
+            if ( response.hasError() )
+            {
+                return buildExceptionResponse( response );
+            }
+
+            final String responsePayload = getJsonSerializer().encode( response );
+            return Response.ok( responsePayload, RESOURCE_MEDIA_TYPE ).build();
+        }
+        catch ( Exception ex )
+        {
+            return buildExceptionResponse( new SaveResultsAndRetrieveTasksResponse( ex ) );
+        }
+    }
+
+    @POST
+    @Path( TASKS_LEASE_RENEW_PATH )
+    public Response tasksLeaseRenew( @Context HttpHeaders headers, final RenewTaskLeasesRequest renewRequest )
+    {
+        try
+        {
+            final RenewTaskLeasesResponse response = taskService.renewTaskLeases( renewRequest );
+
+            if ( response.hasError() )
+            {
+                return buildExceptionResponse( response );
+            }
+
+            final String responsePayload = getJsonSerializer().encode( response );
+            return Response.ok( responsePayload, RESOURCE_MEDIA_TYPE ).build();
+        }
+        catch ( Exception ex )
+        {
+            return buildExceptionResponse( new RenewTaskLeasesResponse( ex ) );
+        }
+    }
+
     @POST
     @Path( ADD_TASK_PATH )
     public Response addTask( @Context HttpHeaders headers, final UrlTask task )
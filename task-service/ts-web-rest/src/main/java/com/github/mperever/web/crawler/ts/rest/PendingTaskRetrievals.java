@@ -0,0 +1,192 @@
+package com.github.mperever.web.crawler.ts.rest;
+
+import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksResponse;
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents retrievals of tasks which wait until tasks become available for their clients.
+ *
+ * When new tasks are added, waiting retrievals are repeated in the order they have started to wait,
+ * until one of them gets no tasks (then the next retrievals would not get tasks too).
+ * Wake-ups and timeouts are run by one thread, so a retrieval is never completed by timeout
+ * while its tasks are being assigned. Only tasks added by this application wake up retrievals,
+ * tasks added by other nodes of task service are taken when wait timeout passes.
+ *
+ * @author mperever
+ */
+class PendingTaskRetrievals
+{
+    private static final Logger logger = LoggerFactory.getLogger( PendingTaskRetrievals.class );
+
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong tasksVersion = new AtomicLong();
+    private final AtomicBoolean isWakeUpScheduled = new AtomicBoolean();
+
+    // guarded by this
+    private final Deque<PendingRetrieval> retrievals = new ArrayDeque<>();
+
+    PendingTaskRetrievals()
+    {
+        this( Executors.newSingleThreadScheduledExecutor( runnable ->
+        {
+            final Thread thread = new Thread( runnable, "pending-task-retrievals" );
+            thread.setDaemon( true );
+            return thread;
+        } ) );
+    }
+
+    /**
+     * @param scheduler The single thread executor to wake up and to time out retrievals
+     */
+    PendingTaskRetrievals( ScheduledExecutorService scheduler )
+    {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return The number of times tasks have been added, it should be got before tasks are retrieved
+     * to detect tasks added while retrieval is running
+     */
+    long getTasksVersion()
+    {
+        return tasksVersion.get();
+    }
+
+    /**
+     * Adds retrieval which has got no tasks to wait for tasks.
+     *
+     * @param retrieveAction The action to retrieve tasks again
+     * @param waitTimeoutMs The maximum time to wait for tasks
+     * @param observedTasksVersion The version of tasks got before the retrieval
+     * @return The response with tasks or empty response if wait timeout has passed
+     */
+    CompletableFuture<RetrieveTasksResponse> await( final Supplier<RetrieveTasksResponse> retrieveAction,
+                                                    long waitTimeoutMs,
+                                                    long observedTasksVersion )
+    {
+        final PendingRetrieval retrieval = new PendingRetrieval( retrieveAction );
+        synchronized ( this )
+        {
+            // Timeout can not remove retrieval before it is added
+            retrieval.timeout = scheduler.schedule(
+                    () -> timeOut( retrieval ), waitTimeoutMs, TimeUnit.MILLISECONDS );
+            retrievals.addLast( retrieval );
+        }
+
+        if ( tasksVersion.get() != observedTasksVersion )
+        {
+            // Tasks have been added after retrieval has started
+            scheduleWakeUp();
+        }
+        return retrieval.response;
+    }
+
+    /**
+     * Wakes up waiting retrievals, retrievals are repeated in separate thread.
+     */
+    void onTasksAdded()
+    {
+        tasksVersion.incrementAndGet();
+        scheduleWakeUp();
+    }
+
+    synchronized int getWaitingCount()
+    {
+        return retrievals.size();
+    }
+
+    private void scheduleWakeUp()
+    {
+        // Wake-ups for tasks added while waiting retrievals are being repeated are run once
+        if ( isWakeUpScheduled.compareAndSet( false, true ) )
+        {
+            scheduler.execute( this::wakeUp );
+        }
+    }
+
+    private void wakeUp()
+    {
+        isWakeUpScheduled.set( false );
+
+        PendingRetrieval retrieval = pollRetrieval();
+        while ( retrieval != null )
+        {
+            final RetrieveTasksResponse response = retrieve( retrieval );
+            final boolean hasTasks = response.getTasks() != null && response.getTasks().length != 0;
+            if ( !hasTasks && !response.hasError() )
+            {
+                // There are no more tasks, the retrieval keeps its place in queue
+                synchronized ( this )
+                {
+                    retrievals.addFirst( retrieval );
+                }
+                return;
+            }
+
+            retrieval.timeout.cancel( false );
+            retrieval.response.complete( response );
+            retrieval = pollRetrieval();
+        }
+    }
+
+    private synchronized PendingRetrieval pollRetrieval()
+    {
+        return retrievals.pollFirst();
+    }
+
+    private static RetrieveTasksResponse retrieve( final PendingRetrieval retrieval )
+    {
+        try
+        {
+            return retrieval.retrieveAction.get();
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            return new RetrieveTasksResponse( ex );
+        }
+    }
+
+    private void timeOut( final PendingRetrieval retrieval )
+    {
+        final boolean isWaiting;
+        synchronized ( this )
+        {
+            isWaiting = retrievals.remove( retrieval );
+        }
+        if ( isWaiting )
+        {
+            retrieval.response.complete( new RetrieveTasksResponse( new UrlTask[0] ) );
+        }
+    }
+
+    /**
+     * Represents retrieval waiting for tasks.
+     */
+    private static final class PendingRetrieval
+    {
+        private final Supplier<RetrieveTasksResponse> retrieveAction;
+        private final CompletableFuture<RetrieveTasksResponse> response = new CompletableFuture<>();
+        // guarded by PendingTaskRetrievals.this
+        private ScheduledFuture<?> timeout;
+
+        private PendingRetrieval( Supplier<RetrieveTasksResponse> retrieveAction )
+        {
+            this.retrieveAction = retrieveAction;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.mperever.web.crawler.ts.rest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents implementation for {@link TaskLeaseStatisticsMXBean}.
+ *
+ * @author mperever
+ */
+class TaskLeaseStatistics implements TaskLeaseStatisticsMXBean
+{
+    private final LongAdder renewRequestCount = new LongAdder();
+    private final LongAdder renewedLeaseCount = new LongAdder();
+    private final LongAdder lostLeaseCount = new LongAdder();
+    private final LongAdder duplicateResultCount = new LongAdder();
+
+    void onLeasesRenewed( int requestedCount, int renewedCount )
+    {
+        renewRequestCount.increment();
+        renewedLeaseCount.add( renewedCount );
+        lostLeaseCount.add( Math.max( 0, requestedCount - renewedCount ) );
+    }
+
+    void onDuplicateResult()
+    {
+        duplicateResultCount.increment();
+    }
+
+    @Override
+    public long getRenewRequestCount()
+    {
+        return renewRequestCount.sum();
+    }
+
+    @Override
+    public long getRenewedLeaseCount()
+    {
+        return renewedLeaseCount.sum();
+    }
+
+    @Override
+    public long getLostLeaseCount()
+    {
+        return lostLeaseCount.sum();
+    }
+
+    @Override
+    public long getDuplicateResultCount()
+    {
+        return duplicateResultCount.sum();
+    }
+}
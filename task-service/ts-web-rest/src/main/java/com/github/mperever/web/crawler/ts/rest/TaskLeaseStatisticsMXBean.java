@@ -0,0 +1,31 @@
+package com.github.mperever.web.crawler.ts.rest;
+
+/**
+ * Represents metrics of task leases of {@link TaskService_v1Impl}.
+ *
+ * @author mperever
+ */
+public interface TaskLeaseStatisticsMXBean
+{
+    /**
+     * @return The number of requests to renew task leases
+     */
+    long getRenewRequestCount();
+
+    /**
+     * @return The number of renewed task leases
+     */
+    long getRenewedLeaseCount();
+
+    /**
+     * @return The number of task leases which have not been renewed, since the tasks have been completed
+     * or re-assigned to another client
+     */
+    long getLostLeaseCount();
+
+    /**
+     * @return The number of task results which are not saved, since the task has been re-assigned to another
+     * client (the page has been fetched twice)
+     */
+    long getDuplicateResultCount();
+}
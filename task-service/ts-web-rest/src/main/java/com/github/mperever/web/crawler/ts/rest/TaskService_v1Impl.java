@@ -1,22 +1,37 @@
 package com.github.mperever.web.crawler.ts.rest;
 
 import com.github.mperever.web.crawler.ts.common.TaskService_v1;
+import com.github.mperever.web.crawler.ts.common.UrlFingerprint;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesRequest;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesResponse;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksRequest;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksResponse;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchResponse;
+import com.github.mperever.web.crawler.ts.common.dto.TaskErrorType;
 import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 import com.github.mperever.web.crawler.common.ArgumentsValidator;
+import com.github.mperever.web.crawler.common.management.ManagementBeans;
 import com.github.mperever.web.crawler.ts.dal.TaskPageTextStats;
 import com.github.mperever.web.crawler.ts.dal.TaskResultEntities;
 import com.github.mperever.web.crawler.ts.dal.TaskServiceRepository;
 
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -24,6 +39,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Represents implementation for {@link TaskService_v1}.
+ * Retrievals waiting for tasks are shared by all instances of the service, so they are woken up
+ * when tasks are added through any instance. Metrics of task leases are shared too.
  *
  * @author mperever
  */
@@ -33,8 +50,17 @@ public class TaskService_v1Impl implements TaskService_v1
 
     private final static long DEFAULT_TASK_PROCESSING_TIMEOUT = TimeUnit.SECONDS.toMillis( 60 );
     private final static int DEFAULT_TASK_ERROR_THRESHOLD = 5;
+    private final static long MAX_TASK_WAIT_TIMEOUT = TimeUnit.SECONDS.toMillis( 30 );
     private final static String REQUEST_BODY_MISSING_TEMPLATE = "Could not perform '%s', request body is not specified";
 
+    private static final PendingTaskRetrievals PENDING_RETRIEVALS = new PendingTaskRetrievals();
+    private static final TaskLeaseStatistics LEASE_STATISTICS = new TaskLeaseStatistics();
+
+    static
+    {
+        ManagementBeans.register( "TaskLeases", LEASE_STATISTICS );
+    }
+
     private final TaskServiceRepository repository;
     private final long taskProcessingTimeoutMs;
     private final int taskErrorThreshold;
@@ -78,6 +104,26 @@ public class TaskService_v1Impl implements TaskService_v1
         }
     }
 
+    @Override
+    public CompletableFuture<RetrieveTasksResponse> retrieveTasksAsync( final RetrieveTasksRequest request )
+            throws IllegalArgumentException
+    {
+        checkRetrieveRequest( request );
+
+        // The version is got before retrieval, so tasks added while retrieval is running wake it up
+        final long tasksVersion = PENDING_RETRIEVALS.getTasksVersion();
+        final RetrieveTasksResponse response = this.retrieveTasks( request );
+        final long waitTimeoutMs = Math.min( request.getWaitTimeoutMs(), MAX_TASK_WAIT_TIMEOUT );
+        if ( response.hasError() || hasTasks( response.getTasks() ) || waitTimeoutMs <= 0 )
+        {
+            return CompletableFuture.completedFuture( response );
+        }
+
+        logger.debug( "There are no tasks for client '{}', wait for tasks '{}' ms",
+                request.getClientId(), waitTimeoutMs );
+        return PENDING_RETRIEVALS.await( () -> this.retrieveTasks( request ), waitTimeoutMs, tasksVersion );
+    }
+
     @Override
     public SaveTaskResultResponse saveTaskResults( final SaveTaskResultRequest request )
             throws IllegalArgumentException, NoSuchElementException
@@ -97,6 +143,7 @@ public class TaskService_v1Impl implements TaskService_v1
             boolean isTaskAssignToClient = request.getClientId().equals( task.getClientId() );
             if ( !isTaskAssignToClient )
             {
+                LEASE_STATISTICS.onDuplicateResult();
                 logger.warn( "Task results from client '{}' are not saved. "
                              + "The task {} was re-assign to another client", request.getClientId(), task );
                 return successResponse;
@@ -104,15 +151,17 @@ public class TaskService_v1Impl implements TaskService_v1
 
             if ( request.hasError() )
             {
-                logger.debug( "Task results are not saved. "
-                              + "The client '{}' returned error: {}", request.getClientId(), request.getError() );
-                repository.updateErrorCount( task.getUrl(), task.getErrorCount() + 1 );
-
+                this.updateErrorCount( task, request );
                 return successResponse;
             }
 
-            final TaskResults results = request.getTaskResults();
-            this.saveTaskResults( task, results );
+            final TaskResultEntities resultsToSave = toResultEntities( task, request.getTaskResults() );
+            if ( !repository.saveTaskResults( resultsToSave ) )
+            {
+                this.onResultsNotSaved( task );
+                throw new IllegalStateException( "Could not save results of task: " + url );
+            }
+            notifyTasksAdded( Collections.singletonList( resultsToSave ) );
 
             return successResponse;
 
@@ -123,12 +172,262 @@ public class TaskService_v1Impl implements TaskService_v1
         }
     }
 
+    @Override
+    public SaveTaskResultsBatchResponse saveTaskResultsBatch( final SaveTaskResultsBatchRequest request )
+            throws IllegalArgumentException
+    {
+        checkSaveResultsBatchRequest( request );
+
+        try
+        {
+            final SaveTaskResultRequest[] requests = request.getRequests();
+            final SaveTaskResultResponse[] responses = new SaveTaskResultResponse[ requests.length ];
+            final UrlTask[] tasksToSave = new UrlTask[ requests.length ];
+            final List<TaskResultEntities> resultsToSave = this.prepareResults( requests, responses, tasksToSave );
+
+            // Results of all tasks are saved in one transaction, unless some of them cannot be saved
+            final Set<Integer> notSavedTaskIds = repository.saveTaskResultsBatch( resultsToSave );
+            this.setNotSavedResponses( notSavedTaskIds, tasksToSave, responses );
+            notifyTasksAdded( resultsToSave );
+            logger.debug( "Results of '{}' tasks have been saved by batch of '{}' requests",
+                    resultsToSave.size() - notSavedTaskIds.size(), requests.length );
+
+            return new SaveTaskResultsBatchResponse( responses );
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            return new SaveTaskResultsBatchResponse( ex );
+        }
+    }
+
+    @Override
+    public SaveResultsAndRetrieveTasksResponse saveResultsAndRetrieveTasks(
+            final SaveResultsAndRetrieveTasksRequest request ) throws IllegalArgumentException
+    {
+        checkSaveResultsAndRetrieveRequest( request );
+
+        try
+        {
+            final RetrieveTasksRequest retrieveRequest = request.getRetrieveRequest();
+            final SaveTaskResultRequest[] saveRequests = request.getSaveRequests() == null
+                    ? new SaveTaskResultRequest[0]
+                    : request.getSaveRequests();
+            final SaveTaskResultResponse[] saveResponses = new SaveTaskResultResponse[ saveRequests.length ];
+            final UrlTask[] tasksToSave = new UrlTask[ saveRequests.length ];
+            final List<TaskResultEntities> resultsToSave = this.prepareResults(
+                    saveRequests, saveResponses, tasksToSave );
+
+            // Results are saved and tasks are assigned in one transaction, unless some results cannot be saved
+            final Set<Integer> notSavedTaskIds = new HashSet<>();
+            UrlTask[] tasks = repository.saveTaskResultsAndAssignTasks(
+                    resultsToSave,
+                    retrieveRequest.getClientId(),
+                    retrieveRequest.getMaxCount(),
+                    retrieveRequest.getDepthLimit(),
+                    taskProcessingTimeoutMs,
+                    taskErrorThreshold,
+                    notSavedTaskIds );
+            this.setNotSavedResponses( notSavedTaskIds, tasksToSave, saveResponses );
+            if ( tasks == null )
+            {
+                // Responses of saved results are returned, the client retrieves tasks later
+                logger.error( "Tasks have not been assigned to client: {}", retrieveRequest.getClientId() );
+                tasks = new UrlTask[0];
+            }
+            notifyTasksAdded( resultsToSave );
+            logger.debug( "Results of '{}' tasks have been saved and '{}' tasks have been assigned to client '{}'",
+                    resultsToSave.size() - notSavedTaskIds.size(), tasks.length, retrieveRequest.getClientId() );
+
+            return new SaveResultsAndRetrieveTasksResponse( saveResponses, tasks );
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            return new SaveResultsAndRetrieveTasksResponse( ex );
+        }
+    }
+
+    /**
+     * Checks requests to save task results and converts them to entities to save.
+     * Results of tasks with error, results from not assigned client and not valid requests are not saved.
+     *
+     * @param requests The requests to save task results
+     * @param responses The responses to set for each request
+     * @param tasksToSave The tasks to set for each request which results are to save
+     * @return The task results to save
+     */
+    private List<TaskResultEntities> prepareResults( final SaveTaskResultRequest[] requests,
+                                                     final SaveTaskResultResponse[] responses,
+                                                     final UrlTask[] tasksToSave )
+    {
+        final Map<Long, UrlTask> tasks = this.getTasksByUrl( requests );
+
+        final List<TaskResultEntities> resultsToSave = new ArrayList<>( requests.length );
+        for ( int i = 0; i < requests.length; i++ )
+        {
+            final SaveTaskResultRequest resultRequest = requests[i];
+            try
+            {
+                checkSaveResultRequest( resultRequest );
+                final UrlTask task = tasks.get( UrlFingerprint.of( resultRequest.getUrl() ) );
+                if ( task == null )
+                {
+                    throw new NoSuchElementException( "Could not find task by url: " + resultRequest.getUrl() );
+                }
+
+                responses[i] = new SaveTaskResultResponse();
+                if ( !resultRequest.getClientId().equals( task.getClientId() ) )
+                {
+                    LEASE_STATISTICS.onDuplicateResult();
+                    logger.warn( "Task results from client '{}' are not saved. "
+                                 + "The task {} was re-assign to another client",
+                            resultRequest.getClientId(), task );
+                }
+                else if ( resultRequest.hasError() )
+                {
+                    this.updateErrorCount( task, resultRequest );
+                }
+                else
+                {
+                    resultsToSave.add( toResultEntities( task, resultRequest.getTaskResults() ) );
+                    tasksToSave[i] = task;
+                }
+
+            } catch ( IllegalArgumentException | NoSuchElementException ex )
+            {
+                logger.error( ex.getMessage(), ex );
+                responses[i] = new SaveTaskResultResponse( ex );
+            }
+        }
+        return resultsToSave;
+    }
+
+    /**
+     * Gets tasks of requests by one query.
+     *
+     * @return The tasks by url fingerprint
+     */
+    private Map<Long, UrlTask> getTasksByUrl( final SaveTaskResultRequest[] requests )
+    {
+        final List<String> urls = new ArrayList<>( requests.length );
+        for ( SaveTaskResultRequest request : requests )
+        {
+            if ( request != null && request.getUrl() != null )
+            {
+                urls.add( request.getUrl() );
+            }
+        }
+
+        final Map<Long, UrlTask> tasks = new HashMap<>( urls.size() * 2 );
+        for ( UrlTask task : repository.getTasks( urls ) )
+        {
+            tasks.put( task.urlHash(), task );
+        }
+        return tasks;
+    }
+
+    /**
+     * Sets error responses for requests which results have not been saved.
+     */
+    private void setNotSavedResponses( final Set<Integer> notSavedTaskIds,
+                                       final UrlTask[] tasksToSave,
+                                       final SaveTaskResultResponse[] responses )
+    {
+        if ( notSavedTaskIds.isEmpty() )
+        {
+            return;
+        }
+        for ( int i = 0; i < tasksToSave.length; i++ )
+        {
+            final UrlTask task = tasksToSave[i];
+            if ( task != null && notSavedTaskIds.contains( task.getId() ) )
+            {
+                this.onResultsNotSaved( task );
+                responses[i] = new SaveTaskResultResponse(
+                        new IllegalStateException( "Could not save results of task: " + task.getUrl() ) );
+            }
+        }
+    }
+
+    /**
+     * Error count of task is increased, so results which cannot be saved do not make the task
+     * to be processed again and again.
+     */
+    private void onResultsNotSaved( final UrlTask task )
+    {
+        logger.error( "Results of task {} have not been saved", task );
+        repository.updateErrorCount( task.getUrl(), task.getErrorCount() + 1, taskErrorThreshold );
+    }
+
+    private void updateErrorCount( final UrlTask task, final SaveTaskResultRequest request )
+    {
+        final TaskErrorType errorType = request.getErrorType();
+        logger.debug( "Task results are not saved. The client '{}' returned {} error: {}",
+                request.getClientId(), errorType, request.getError() );
+
+        // The task is not retried after permanent error (e.g. binary file or not found page)
+        final int errorCount = errorType.isRetryable()
+                ? task.getErrorCount() + 1
+                : Math.max( task.getErrorCount() + 1, taskErrorThreshold );
+        repository.updateErrorCount( task.getUrl(), errorCount, taskErrorThreshold );
+    }
+
+    @Override
+    public RenewTaskLeasesResponse renewTaskLeases( final RenewTaskLeasesRequest request )
+            throws IllegalArgumentException
+    {
+        checkRenewLeasesRequest( request );
+
+        try
+        {
+            final List<String> urls = Arrays.asList( request.getUrls() );
+            final Integer renewedCount = repository.renewTaskLeases( request.getClientId(), urls );
+            if ( renewedCount == null )
+            {
+                throw new IllegalStateException( "Task leases have not been renewed for client: "
+                                                 + request.getClientId() );
+            }
+            LEASE_STATISTICS.onLeasesRenewed( urls.size(), renewedCount );
+            logger.debug( "Leases of '{}' of '{}' tasks have been renewed for client '{}'",
+                    renewedCount, urls.size(), request.getClientId() );
+
+            return new RenewTaskLeasesResponse( renewedCount );
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            return new RenewTaskLeasesResponse( ex );
+        }
+    }
+
     @Override
     public void addTask( final UrlTask task ) throws IllegalArgumentException
     {
         checkUrlTaskArgument( task );
 
         repository.addIfNotExist( task );
+        PENDING_RETRIEVALS.onTasksAdded();
+    }
+
+    /**
+     * Wakes up retrievals waiting for tasks if new tasks are found in saved results.
+     */
+    private static void notifyTasksAdded( final List<TaskResultEntities> savedResults )
+    {
+        for ( TaskResultEntities results : savedResults )
+        {
+            if ( hasTasks( results.getTasks() ) )
+            {
+                PENDING_RETRIEVALS.onTasksAdded();
+                return;
+            }
+        }
+    }
+
+    private static boolean hasTasks( final UrlTask[] tasks )
+    {
+        return tasks != null && tasks.length != 0;
     }
 
     @Override
@@ -158,13 +457,21 @@ public class TaskService_v1Impl implements TaskService_v1
         checkArguments( taskValidator );
     }
 
-    private void saveTaskResults( final UrlTask task, final TaskResults results )
+    private static TaskResultEntities toResultEntities( final UrlTask task, final TaskResults results )
     {
         final UrlTask[] newTasks = createTasks( task, results.getNewUrls() );
 
         // Add new tasks to save
         final TaskResultEntities resultsToSave = new TaskResultEntities( task.getId() );
         resultsToSave.setTasks( newTasks );
+        resultsToSave.setRecrawl( task.getEndProcessTime() != 0 );
+
+        // Page text and words stats are not rewritten if the page has not been changed
+        if ( results.isUnchanged() )
+        {
+            resultsToSave.setUnchanged( true );
+            return resultsToSave;
+        }
 
         // Add page text and words stats to save
         final String pageText = results.getPageText();
@@ -178,11 +485,15 @@ public class TaskService_v1Impl implements TaskService_v1
             final TaskPageTextStats pageTextStats = new TaskPageTextStats( task.getId() );
             pageTextStats.setPageText( pageText );
             pageTextStats.setWordStats( wordsStats );
+            pageTextStats.setEtag( results.getEtag() );
+            pageTextStats.setLastModified( results.getLastModified() );
+            pageTextStats.setContentHash( results.getContentHash() );
+            pageTextStats.setSimHash( results.getSimHash() );
 
             resultsToSave.setStats( pageTextStats );
         }
 
-        repository.saveTaskResults( resultsToSave );
+        return resultsToSave;
     }
 
     private static UrlTask[] createTasks( final UrlTask parentTask, final String[] urls )
@@ -242,6 +553,50 @@ public class TaskService_v1Impl implements TaskService_v1
         checkArguments( requestValidator );
     }
 
+    private static void checkSaveResultsBatchRequest( final SaveTaskResultsBatchRequest request )
+            throws IllegalArgumentException
+    {
+        if ( request == null || request.getRequests() == null )
+        {
+            throw new IllegalArgumentException(
+                    String.format( REQUEST_BODY_MISSING_TEMPLATE, "save task results batch" ) );
+        }
+    }
+
+    private static void checkSaveResultsAndRetrieveRequest( final SaveResultsAndRetrieveTasksRequest request )
+            throws IllegalArgumentException
+    {
+        if ( request == null || request.getRetrieveRequest() == null )
+        {
+            throw new IllegalArgumentException(
+                    String.format( REQUEST_BODY_MISSING_TEMPLATE, "save task results and retrieve tasks" ) );
+        }
+
+        // Results are saved with any number of tasks to retrieve (0 to only save results)
+        final RetrieveTasksRequest retrieveRequest = request.getRetrieveRequest();
+        final ArgumentsValidator requestValidator = new ArgumentsValidator()
+                .notEmpty( retrieveRequest.getClientId(), "clientId" )
+                .numberNotNegative( retrieveRequest.getMaxCount(), "maxCount" )
+                .numberNotNegative( retrieveRequest.getDepthLimit(), "depthLimit" );
+
+        checkArguments( requestValidator );
+    }
+
+    private static void checkRenewLeasesRequest( final RenewTaskLeasesRequest request )
+            throws IllegalArgumentException
+    {
+        if ( request == null )
+        {
+            throw new IllegalArgumentException( String.format( REQUEST_BODY_MISSING_TEMPLATE, "renew task leases" ) );
+        }
+
+        final ArgumentsValidator requestValidator = new ArgumentsValidator()
+                .notEmpty( request.getClientId(), "clientId" )
+                .notNull( request.getUrls(), "urls" );
+
+        checkArguments( requestValidator );
+    }
+
     private static void checkArguments( final ArgumentsValidator validator ) throws IllegalArgumentException
     {
         final String errorMessage = String.join( ", ", validator.validate() );
@@ -0,0 +1,44 @@
+package com.github.mperever.web.crawler.ts.common;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class UrlFingerprintTest
+{
+    @Test
+    public void normalize_equivalent_urls()
+    {
+        final String expectedUrl = "http://example.com/";
+
+        Assert.assertEquals( UrlFingerprint.normalize( "HTTP://Example.COM" ), expectedUrl );
+        Assert.assertEquals( UrlFingerprint.normalize( "http://example.com:80/" ), expectedUrl );
+        Assert.assertEquals( UrlFingerprint.normalize( "http://example.com/#top" ), expectedUrl );
+        Assert.assertEquals( UrlFingerprint.of( "http://EXAMPLE.com:80#top" ), UrlFingerprint.of( expectedUrl ) );
+    }
+
+    @Test
+    public void normalize_keeps_path_and_query()
+    {
+        Assert.assertEquals(
+                UrlFingerprint.normalize( "https://Example.com:8443/Path/Page?B=1&a=2" ),
+                "https://example.com:8443/Path/Page?B=1&a=2" );
+    }
+
+    @Test
+    public void normalize_not_absolute_url()
+    {
+        Assert.assertEquals( UrlFingerprint.normalize( "url" ), "url" );
+        Assert.assertEquals( UrlFingerprint.normalize( "mailto:Someone@Example.com" ), "mailto:Someone@Example.com" );
+    }
+
+    @Test
+    public void fingerprint_of_different_urls()
+    {
+        Assert.assertNotEquals(
+                UrlFingerprint.of( "http://example.com/page1" ),
+                UrlFingerprint.of( "http://example.com/page2" ) );
+        Assert.assertNotEquals(
+                UrlFingerprint.of( "http://example.com/page" ),
+                UrlFingerprint.of( "https://example.com/page" ) );
+    }
+}
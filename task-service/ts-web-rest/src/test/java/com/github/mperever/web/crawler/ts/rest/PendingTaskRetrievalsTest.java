@@ -0,0 +1,105 @@
+package com.github.mperever.web.crawler.ts.rest;
+
+import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksResponse;
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class PendingTaskRetrievalsTest
+{
+    private static final long WAIT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis( 10 );
+    private static final long RESPONSE_TIMEOUT_SEC = 5;
+
+    private ScheduledExecutorService scheduler;
+    private PendingTaskRetrievals retrievals;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        retrievals = new PendingTaskRetrievals( scheduler );
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void should_complete_retrieval_with_tasks_when_tasks_are_added() throws Exception
+    {
+        final AtomicInteger availableTasks = new AtomicInteger();
+        final CompletableFuture<RetrieveTasksResponse> response = retrievals.await(
+                () -> takeTask( availableTasks ), WAIT_TIMEOUT_MS, retrievals.getTasksVersion() );
+        Assert.assertFalse( response.isDone() );
+
+        availableTasks.set( 1 );
+        retrievals.onTasksAdded();
+
+        final RetrieveTasksResponse actualResponse = response.get( RESPONSE_TIMEOUT_SEC, TimeUnit.SECONDS );
+        Assert.assertEquals( actualResponse.getTasks().length, 1 );
+        Assert.assertEquals( retrievals.getWaitingCount(), 0 );
+    }
+
+    @Test
+    public void should_keep_waiting_retrievals_in_order_if_there_are_not_enough_tasks() throws Exception
+    {
+        final AtomicInteger availableTasks = new AtomicInteger();
+        final CompletableFuture<RetrieveTasksResponse> firstResponse = retrievals.await(
+                () -> takeTask( availableTasks ), WAIT_TIMEOUT_MS, retrievals.getTasksVersion() );
+        final CompletableFuture<RetrieveTasksResponse> secondResponse = retrievals.await(
+                () -> takeTask( availableTasks ), WAIT_TIMEOUT_MS, retrievals.getTasksVersion() );
+
+        availableTasks.set( 1 );
+        retrievals.onTasksAdded();
+
+        Assert.assertEquals( firstResponse.get( RESPONSE_TIMEOUT_SEC, TimeUnit.SECONDS ).getTasks().length, 1 );
+        Assert.assertFalse( secondResponse.isDone() );
+        Assert.assertEquals( retrievals.getWaitingCount(), 1 );
+    }
+
+    @Test
+    public void should_complete_retrieval_without_tasks_when_timeout_passes() throws Exception
+    {
+        final CompletableFuture<RetrieveTasksResponse> response = retrievals.await(
+                () -> takeTask( new AtomicInteger() ), 50, retrievals.getTasksVersion() );
+
+        final RetrieveTasksResponse actualResponse = response.get( RESPONSE_TIMEOUT_SEC, TimeUnit.SECONDS );
+        Assert.assertFalse( actualResponse.hasError() );
+        Assert.assertEquals( actualResponse.getTasks().length, 0 );
+        Assert.assertEquals( retrievals.getWaitingCount(), 0 );
+    }
+
+    @Test
+    public void should_retrieve_again_if_tasks_were_added_during_retrieval() throws Exception
+    {
+        final long tasksVersion = retrievals.getTasksVersion();
+        // Tasks are added after the first retrieval has got no tasks, but before it starts to wait
+        retrievals.onTasksAdded();
+
+        final CompletableFuture<RetrieveTasksResponse> response = retrievals.await(
+                () -> takeTask( new AtomicInteger( 1 ) ), WAIT_TIMEOUT_MS, tasksVersion );
+
+        Assert.assertEquals( response.get( RESPONSE_TIMEOUT_SEC, TimeUnit.SECONDS ).getTasks().length, 1 );
+    }
+
+    private static RetrieveTasksResponse takeTask( final AtomicInteger availableTasks )
+    {
+        if ( availableTasks.getAndDecrement() <= 0 )
+        {
+            availableTasks.incrementAndGet();
+            return new RetrieveTasksResponse( new UrlTask[0] );
+        }
+        return new RetrieveTasksResponse( new UrlTask( null, "http://example.com/", 0, false ) );
+    }
+}
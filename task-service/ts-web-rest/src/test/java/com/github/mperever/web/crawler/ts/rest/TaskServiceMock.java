@@ -3,10 +3,16 @@ package com.github.mperever.web.crawler.ts.rest;
 import com.github.mperever.web.crawler.common.json.JsonSerializer;
 
 import com.github.mperever.web.crawler.ts.common.TaskService_v1;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesRequest;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesResponse;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksRequest;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksResponse;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchResponse;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
 import java.io.Serializable;
@@ -52,6 +58,47 @@ public class TaskServiceMock implements TaskService_v1
         return getResponse( request.getClientId(), SaveTaskResultResponse.class );
     }
 
+    @Override
+    public SaveTaskResultsBatchResponse saveTaskResultsBatch( SaveTaskResultsBatchRequest request )
+    {
+        if ( request == null || request.getRequests() == null )
+        {
+            throw new IllegalArgumentException();
+        }
+
+        final SaveTaskResultRequest[] requests = request.getRequests();
+        final SaveTaskResultResponse[] responses = new SaveTaskResultResponse[ requests.length ];
+        for ( int i = 0; i < requests.length; i++ )
+        {
+            responses[i] = saveTaskResults( requests[i] );
+        }
+        return new SaveTaskResultsBatchResponse( responses );
+    }
+
+    @Override
+    public SaveResultsAndRetrieveTasksResponse saveResultsAndRetrieveTasks( SaveResultsAndRetrieveTasksRequest request )
+    {
+        if ( request == null || request.getRetrieveRequest() == null )
+        {
+            throw new IllegalArgumentException();
+        }
+
+        final SaveTaskResultsBatchResponse saveResponse = saveTaskResultsBatch(
+                new SaveTaskResultsBatchRequest( request.getSaveRequests() ) );
+        final RetrieveTasksResponse retrieveResponse = retrieveTasks( request.getRetrieveRequest() );
+        return new SaveResultsAndRetrieveTasksResponse( saveResponse.getResponses(), retrieveResponse.getTasks() );
+    }
+
+    @Override
+    public RenewTaskLeasesResponse renewTaskLeases( RenewTaskLeasesRequest request )
+    {
+        if ( request == null || request.getUrls() == null )
+        {
+            throw new IllegalArgumentException();
+        }
+        return new RenewTaskLeasesResponse( request.getUrls().length );
+    }
+
     @Override
     public void addTask( UrlTask task ) throws IllegalArgumentException
     {
@@ -0,0 +1,154 @@
+package com.github.mperever.web.crawler.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Represents sets of HTML pages for benchmarks, benchmarks choose the set by name:
+ *
+ *      saved - pages checked in with benchmarks (resources/corpus, from 1 KB to 250 KB) which have
+ *              common layouts: article, link-heavy news index, documentation with tables, forum thread.
+ *              Pages from directory specified by -Dbenchmark.corpusDir are used instead, if it is specified
+ *              (*.html files in UTF-8, e.g. saved by 'wget --recursive --accept html').
+ *      synthetic-10KB - generated pages with about 10 KB of text (see {@link SyntheticPages}).
+ *      synthetic-1MB - generated pages with about 1 MB of text.
+ *
+ * @author mperever
+ */
+public final class PageCorpus
+{
+    /**
+     * The url of pages, relative links are resolved against it.
+     */
+    public static final String BASE_URL = "https://www.example.com/";
+
+    public static final String SAVED = "saved";
+    public static final String SYNTHETIC_10KB = "synthetic-10KB";
+    public static final String SYNTHETIC_1MB = "synthetic-1MB";
+
+    private static final String CORPUS_DIR_PROPERTY = "benchmark.corpusDir";
+    private static final String CORPUS_RESOURCE_DIR = "/corpus/";
+    private static final String CORPUS_INDEX = "index.txt";
+
+    private PageCorpus()
+    {
+    }
+
+    /**
+     * Loads pages.
+     *
+     * @param name The name of page set
+     * @return HTML pages
+     */
+    public static List<String> load( final String name )
+    {
+        switch ( name )
+        {
+            case SAVED:
+                final String corpusDir = System.getProperty( CORPUS_DIR_PROPERTY );
+                return corpusDir == null ? loadResources() : loadFrom( Paths.get( corpusDir ) );
+            case SYNTHETIC_10KB:
+                return generate( 16, 15 );
+            case SYNTHETIC_1MB:
+                return generate( 4, 1500 );
+            default:
+                throw new IllegalArgumentException( "Unknown page corpus: " + name );
+        }
+    }
+
+    private static List<String> generate( int pageCount, int paragraphs )
+    {
+        final List<String> pages = new ArrayList<>( pageCount );
+        for ( int i = 0; i < pageCount; i++ )
+        {
+            pages.add( SyntheticPages.generate( paragraphs, i ) );
+        }
+        return pages;
+    }
+
+    private static List<String> loadResources()
+    {
+        // Resources can not be listed in jar, so they are listed by index file
+        final List<String> pages = new ArrayList<>();
+        try ( BufferedReader index = new BufferedReader( new InputStreamReader(
+                resource( CORPUS_INDEX ), StandardCharsets.UTF_8 ) ) )
+        {
+            String pageName;
+            while ( ( pageName = index.readLine() ) != null )
+            {
+                if ( !pageName.trim().isEmpty() )
+                {
+                    pages.add( readResource( pageName.trim() ) );
+                }
+            }
+            return pages;
+
+        } catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    private static String readResource( final String name ) throws IOException
+    {
+        try ( InputStream page = resource( name ) )
+        {
+            final ByteArrayOutputStream content = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[ 8192 ];
+            int length;
+            while ( ( length = page.read( buffer ) ) != -1 )
+            {
+                content.write( buffer, 0, length );
+            }
+            return new String( content.toByteArray(), StandardCharsets.UTF_8 );
+        }
+    }
+
+    private static InputStream resource( final String name ) throws IOException
+    {
+        final InputStream resource = PageCorpus.class.getResourceAsStream( CORPUS_RESOURCE_DIR + name );
+        if ( resource == null )
+        {
+            throw new IOException( "Could not find corpus resource: " + name );
+        }
+        return resource;
+    }
+
+    private static List<String> loadFrom( final Path corpusDir )
+    {
+        try ( Stream<Path> files = Files.walk( corpusDir ) )
+        {
+            final List<Path> pageFiles = files
+                    .filter( file -> file.toString().endsWith( ".html" ) )
+                    .sorted()
+                    .collect( Collectors.toList() );
+            if ( pageFiles.isEmpty() )
+            {
+                throw new IllegalArgumentException( "There are no *.html files in corpus directory: " + corpusDir );
+            }
+
+            final List<String> pages = new ArrayList<>( pageFiles.size() );
+            for ( Path pageFile : pageFiles )
+            {
+                pages.add( new String( Files.readAllBytes( pageFile ), StandardCharsets.UTF_8 ) );
+            }
+            return pages;
+
+        } catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+}
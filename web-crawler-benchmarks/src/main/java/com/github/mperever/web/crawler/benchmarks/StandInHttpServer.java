@@ -0,0 +1,97 @@
+package com.github.mperever.web.crawler.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents local stand-in for remote web sites.
+ * Every request is answered with the same HTML page after the specified latency,
+ * so benchmarks measure how well a worker overlaps network waiting, not the speed of the internet.
+ *
+ * @author mperever
+ */
+public final class StandInHttpServer implements AutoCloseable
+{
+    private static final int BACKLOG = 4096;
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final byte[] page;
+    private final long latencyMs;
+
+    private StandInHttpServer( byte[] page, long latencyMs ) throws IOException
+    {
+        this.page = page.clone();
+        this.latencyMs = latencyMs;
+
+        server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), BACKLOG );
+        server.createContext( "/", this::handle );
+        server.setExecutor( handlers );
+        server.start();
+    }
+
+    /**
+     * Starts server on a free loopback port.
+     *
+     * @param page The HTML page to answer
+     * @param latencyMs The delay before answering each request
+     * @return The started server
+     * @throws IOException if the server could not be started
+     */
+    public static StandInHttpServer start( String page, long latencyMs ) throws IOException
+    {
+        return new StandInHttpServer( page.getBytes( StandardCharsets.UTF_8 ), latencyMs );
+    }
+
+    /**
+     * Gets absolute url of the page with the specified number.
+     *
+     * @param pageNumber The page number
+     * @return The page url
+     */
+    public URI pageUrl( int pageNumber )
+    {
+        final InetSocketAddress address = server.getAddress();
+        return URI.create( String.format( "http://%s:%d/page/%d",
+                address.getAddress().getHostAddress(),
+                address.getPort(),
+                pageNumber ) );
+    }
+
+    private void handle( final HttpExchange exchange ) throws IOException
+    {
+        try
+        {
+            TimeUnit.MILLISECONDS.sleep( latencyMs );
+
+        } catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        exchange.getResponseHeaders().set( "Content-Type", CONTENT_TYPE );
+        exchange.sendResponseHeaders( 200, page.length );
+        try ( final OutputStream body = exchange.getResponseBody() )
+        {
+            body.write( page );
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        server.stop( 0 );
+        handlers.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.mperever.web.crawler.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Represents generator of HTML pages with typical for web sites proportion of text and links.
+ *
+ * @author mperever
+ */
+public final class SyntheticPages
+{
+    private static final String[] WORDS = {
+            "crawler", "page", "content", "network", "server", "request", "response", "latency", "throughput",
+            "document", "parser", "statistic", "word", "link", "host", "thread", "buffer", "task", "service",
+            "database", "index", "query", "result", "the", "of", "and", "to", "in", "is", "for", "with" };
+
+    private SyntheticPages()
+    {
+    }
+
+    /**
+     * Generates HTML page.
+     *
+     * @param paragraphs The number of paragraphs, each paragraph contains text and links
+     * @param seed The seed to generate the same page for the same arguments
+     * @return HTML page
+     */
+    public static String generate( int paragraphs, long seed )
+    {
+        final Random random = new Random( seed );
+        final StringBuilder html = new StringBuilder( paragraphs * 1024 );
+        html.append( "<!DOCTYPE html><html><head><title>Synthetic page</title>" )
+                .append( "<script>var analytics = { id: 42 };</script></head><body>" )
+                .append( "<div class=\"nav\"><a href=\"/\">Home</a> <a href=\"/about/\">About</a></div>" );
+
+        for ( int paragraph = 0; paragraph < paragraphs; paragraph++ )
+        {
+            html.append( "<p>" );
+            for ( int word = 0; word < 100; word++ )
+            {
+                html.append( WORDS[ random.nextInt( WORDS.length ) ] ).append( ' ' );
+                if ( word % 20 == 0 )
+                {
+                    html.append( "<a href=\"/articles/" ).append( random.nextInt( 10_000 ) ).append( "#top\">" )
+                            .append( WORDS[ random.nextInt( WORDS.length ) ] ).append( "</a>, " );
+                }
+            }
+            html.append( "<a href=\"https://external" ).append( random.nextInt( 100 ) ).append( ".example.com/\">" )
+                    .append( "external link</a> 2018.</p>" );
+        }
+
+        return html.append( "</body></html>" ).toString();
+    }
+}
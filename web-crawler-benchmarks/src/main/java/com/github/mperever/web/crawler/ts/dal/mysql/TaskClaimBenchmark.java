@@ -0,0 +1,203 @@
+package com.github.mperever.web.crawler.ts.dal.mysql;
+
+import com.github.mperever.web.crawler.ts.common.UrlFingerprint;
+import com.github.mperever.web.crawler.ts.common.dto.TaskStatus;
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures latency of {@link TaskServiceRepositoryMySql#assignTasksToClient} on tables of different size.
+ *
+ * The benchmark requires local MySQL, connection can be changed by system properties:
+ * -Dbenchmark.jdbcUrl, -Dbenchmark.jdbcUser, -Dbenchmark.jdbcPassword.
+ * The table is filled once for each row count and is reused by next runs with the same row count
+ * (filling of 50M rows takes a while).
+ *
+ * Run: java -jar web-crawler-benchmarks/target/benchmarks.jar TaskClaimBenchmark
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 10 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( 1 )
+public class TaskClaimBenchmark
+{
+    private static final String JDBC_URL = System.getProperty( "benchmark.jdbcUrl",
+            "jdbc:mysql://localhost:3306/taskServiceBenchmark"
+            + "?createDatabaseIfNotExist=true&serverTimezone=UTC&rewriteBatchedStatements=true" );
+    private static final String JDBC_USER = System.getProperty( "benchmark.jdbcUser", "root" );
+    private static final String JDBC_PASSWORD = System.getProperty( "benchmark.jdbcPassword", "admin" );
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int MAX_DEPTH = 25;
+    private static final int DEPTH_LIMIT = 20;
+    private static final int ERROR_THRESHOLD = 5;
+    private static final long PROCESSING_TIMEOUT_MS = TimeUnit.HOURS.toMillis( 1 );
+    private static final String CLIENT_ID = "benchmark";
+
+    @Param( { "1000000", "10000000", "50000000" } )
+    public int rowCount;
+
+    @Param( { "100" } )
+    public int maxCount;
+
+    private EntityManagerFactory entityManagerFactory;
+    private TaskServiceRepositoryMySql repository;
+    private long iterationStartTime;
+
+    @Setup( Level.Trial )
+    public void setUp() throws SQLException
+    {
+        final Map<String,String> properties = new HashMap<>();
+        properties.put( "hibernate.connection.url", JDBC_URL );
+        properties.put( "hibernate.connection.username", JDBC_USER );
+        properties.put( "hibernate.connection.password", JDBC_PASSWORD );
+        properties.put( "hibernate.show_sql", "false" );
+
+        // Creates or updates schema with indexes from the mapping
+        entityManagerFactory = Persistence.createEntityManagerFactory( "hibernateMySql", properties );
+        repository = new TaskServiceRepositoryMySql( entityManagerFactory );
+
+        try ( Connection connection = DriverManager.getConnection( JDBC_URL, JDBC_USER, JDBC_PASSWORD ) )
+        {
+            if ( countTasks( connection ) != rowCount )
+            {
+                fillTasks( connection );
+            }
+        }
+    }
+
+    @Setup( Level.Iteration )
+    public void startIteration()
+    {
+        iterationStartTime = Instant.now().toEpochMilli();
+    }
+
+    /**
+     * Returns tasks claimed during iteration, so each iteration claims from the same table state.
+     */
+    @TearDown( Level.Iteration )
+    public void releaseClaimedTasks() throws SQLException
+    {
+        try ( Connection connection = DriverManager.getConnection( JDBC_URL, JDBC_USER, JDBC_PASSWORD );
+              PreparedStatement release = connection.prepareStatement( "UPDATE Tasks"
+                      + " SET status = 'NEW', clientId = NULL, claimToken = NULL, startProcessTime = 0"
+                      + " WHERE status = 'CLAIMED' AND startProcessTime >= ?" ) )
+        {
+            release.setLong( 1, iterationStartTime );
+            release.executeUpdate();
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public UrlTask[] claimTasks()
+    {
+        return repository.assignTasksToClient(
+                CLIENT_ID,
+                maxCount,
+                DEPTH_LIMIT,
+                PROCESSING_TIMEOUT_MS,
+                ERROR_THRESHOLD );
+    }
+
+    private static long countTasks( final Connection connection ) throws SQLException
+    {
+        try ( Statement statement = connection.createStatement();
+              ResultSet result = statement.executeQuery( "SELECT COUNT(*) FROM Tasks" ) )
+        {
+            return result.next() ? result.getLong( 1 ) : 0;
+        }
+    }
+
+    /**
+     * Fills the table with typical crawl state: most of tasks are done,
+     * a quarter is waiting for processing and some tasks are in processing or dead.
+     */
+    private void fillTasks( final Connection connection ) throws SQLException
+    {
+        final long nowTime = Instant.now().toEpochMilli();
+        connection.setAutoCommit( false );
+        try ( Statement statement = connection.createStatement();
+              PreparedStatement insert = connection.prepareStatement( "INSERT INTO Tasks"
+                      + " (url, urlHash, depth, external, startProcessTime, endProcessTime, errorCount, clientId, status)"
+                      + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)" ) )
+        {
+            statement.executeUpdate( "DELETE FROM Tasks" );
+
+            for ( int i = 0; i < rowCount; i++ )
+            {
+                final TaskStatus status = statusOf( i );
+                final boolean isStarted = status != TaskStatus.NEW;
+                final String url = "http://host" + ( i % 10_000 ) + ".example.com/page/" + i;
+                insert.setString( 1, url );
+                insert.setLong( 2, UrlFingerprint.of( url ) );
+                insert.setInt( 3, i % MAX_DEPTH );
+                insert.setBoolean( 4, i % 3 == 0 );
+                insert.setLong( 5, isStarted ? nowTime : 0 );
+                insert.setLong( 6, status == TaskStatus.DONE ? nowTime : 0 );
+                insert.setInt( 7, status == TaskStatus.DEAD ? ERROR_THRESHOLD : 0 );
+                insert.setString( 8, isStarted ? "filler" : null );
+                insert.setString( 9, status.name() );
+                insert.addBatch();
+
+                if ( ( i + 1 ) % INSERT_BATCH_SIZE == 0 )
+                {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+    }
+
+    private static TaskStatus statusOf( int rowNumber )
+    {
+        final int percent = rowNumber % 100;
+        if ( percent < 70 )
+        {
+            return TaskStatus.DONE;
+        }
+        if ( percent < 95 )
+        {
+            return TaskStatus.NEW;
+        }
+        return percent < 99 ? TaskStatus.CLAIMED : TaskStatus.DEAD;
+    }
+}
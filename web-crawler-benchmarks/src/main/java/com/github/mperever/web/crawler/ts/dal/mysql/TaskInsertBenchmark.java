@@ -0,0 +1,115 @@
+package com.github.mperever.web.crawler.ts.dal.mysql;
+
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures links persisted per second by {@link TaskServiceRepositoryMySql#addIfNotExist}
+ * for pages with 2000 links (operation is one link).
+ * Like on real pages, part of links (e.g. navigation) is the same on all pages of a site,
+ * so they already exist in the table, other links are new.
+ *
+ * The benchmark requires local MySQL, connection can be changed by system properties:
+ * -Dbenchmark.jdbcUrl, -Dbenchmark.jdbcUser, -Dbenchmark.jdbcPassword.
+ *
+ * Run: java -jar web-crawler-benchmarks/target/benchmarks.jar TaskInsertBenchmark
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 10 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( 1 )
+public class TaskInsertBenchmark
+{
+    private static final String JDBC_URL = System.getProperty( "benchmark.jdbcUrl",
+            "jdbc:mysql://localhost:3306/taskServiceBenchmark"
+            + "?createDatabaseIfNotExist=true&serverTimezone=UTC&rewriteBatchedStatements=true" );
+    private static final String JDBC_USER = System.getProperty( "benchmark.jdbcUser", "root" );
+    private static final String JDBC_PASSWORD = System.getProperty( "benchmark.jdbcPassword", "admin" );
+
+    private static final int LINKS_PER_PAGE = 2000;
+
+    /**
+     * Percent of links which are the same on all pages.
+     */
+    @Param( { "0", "50", "90" } )
+    public int existedLinksPercent;
+
+    private EntityManagerFactory entityManagerFactory;
+    private TaskServiceRepositoryMySql repository;
+    private int pageNumber;
+
+    @Setup( Level.Trial )
+    public void setUp() throws SQLException
+    {
+        final Map<String,String> properties = new HashMap<>();
+        properties.put( "hibernate.connection.url", JDBC_URL );
+        properties.put( "hibernate.connection.username", JDBC_USER );
+        properties.put( "hibernate.connection.password", JDBC_PASSWORD );
+        properties.put( "hibernate.show_sql", "false" );
+
+        entityManagerFactory = Persistence.createEntityManagerFactory( "hibernateMySql", properties );
+        repository = new TaskServiceRepositoryMySql( entityManagerFactory );
+
+        try ( Connection connection = DriverManager.getConnection( JDBC_URL, JDBC_USER, JDBC_PASSWORD );
+              Statement statement = connection.createStatement() )
+        {
+            statement.executeUpdate( "DELETE FROM Tasks" );
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( LINKS_PER_PAGE )
+    public void addPageLinks()
+    {
+        repository.addIfNotExist( pageLinks( pageNumber++ ) );
+    }
+
+    private UrlTask[] pageLinks( int page )
+    {
+        final int existedLinksCount = LINKS_PER_PAGE * existedLinksPercent / 100;
+        final UrlTask[] links = new UrlTask[ LINKS_PER_PAGE ];
+        for ( int i = 0; i < LINKS_PER_PAGE; i++ )
+        {
+            final String url = i < existedLinksCount
+                    ? "http://www.example.com/section/" + i
+                    : "http://www.example.com/page/" + page + "/article/" + i;
+            links[i] = new UrlTask( 1, url, 1, false );
+        }
+        return links;
+    }
+}
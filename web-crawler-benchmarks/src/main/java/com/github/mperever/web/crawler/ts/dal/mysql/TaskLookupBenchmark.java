@@ -0,0 +1,156 @@
+package com.github.mperever.web.crawler.ts.dal.mysql;
+
+import com.github.mperever.web.crawler.ts.common.UrlFingerprint;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares latency of task lookup by unique index on url (the old Tasks layout)
+ * with lookup by unique index on url fingerprint (the current Tasks layout).
+ *
+ * By default it uses in-memory H2 database, another database can be specified by -Dbenchmark.jdbcUrl.
+ * Run: java -Xmx4g -jar web-crawler-benchmarks/target/benchmarks.jar TaskLookupBenchmark
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( 1 )
+public class TaskLookupBenchmark
+{
+    private static final String JDBC_URL = System.getProperty( "benchmark.jdbcUrl",
+            "jdbc:h2:mem:taskLookupBenchmark;DB_CLOSE_DELAY=-1" );
+
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int LOOKUP_URL_COUNT = 100_000;
+
+    @Param( { "1000000", "3000000" } )
+    public int rowCount;
+
+    @Param( { "url", "urlHash" } )
+    public String lookupKey;
+
+    private final Random random = new Random( 42 );
+    private Connection connection;
+    private PreparedStatement lookup;
+    private String[] lookupUrls;
+
+    @Setup( Level.Trial )
+    public void setUp() throws SQLException
+    {
+        connection = DriverManager.getConnection( JDBC_URL );
+        try ( Statement statement = connection.createStatement() )
+        {
+            statement.executeUpdate( "DROP TABLE IF EXISTS LookupTasks" );
+            statement.executeUpdate( "url".equals( lookupKey )
+                    ? "CREATE TABLE LookupTasks ( id INT PRIMARY KEY, url VARCHAR(2000) NOT NULL UNIQUE )"
+                    : "CREATE TABLE LookupTasks ( id INT PRIMARY KEY, url VARCHAR(2000) NOT NULL,"
+                      + " urlHash BIGINT NOT NULL UNIQUE )" );
+        }
+        fillTasks();
+
+        lookup = connection.prepareStatement( "SELECT id, url FROM LookupTasks WHERE " + lookupKey + " = ?" );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws SQLException
+    {
+        try ( Statement statement = connection.createStatement() )
+        {
+            statement.executeUpdate( "DROP TABLE LookupTasks" );
+        }
+        lookup.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public int lookupTask() throws SQLException
+    {
+        final String url = lookupUrls[ random.nextInt( lookupUrls.length ) ];
+        if ( "url".equals( lookupKey ) )
+        {
+            lookup.setString( 1, url );
+        }
+        else
+        {
+            lookup.setLong( 1, UrlFingerprint.of( url ) );
+        }
+
+        try ( ResultSet result = lookup.executeQuery() )
+        {
+            return result.next() ? result.getInt( 1 ) : -1;
+        }
+    }
+
+    private void fillTasks() throws SQLException
+    {
+        lookupUrls = new String[ LOOKUP_URL_COUNT ];
+        final boolean isHashLayout = !"url".equals( lookupKey );
+        // Urls to look up are spread evenly over the table.
+        final int lookupUrlStep = Math.max( 1, rowCount / LOOKUP_URL_COUNT );
+
+        connection.setAutoCommit( false );
+        try ( PreparedStatement insert = connection.prepareStatement( isHashLayout
+                ? "INSERT INTO LookupTasks ( id, url, urlHash ) VALUES ( ?, ?, ? )"
+                : "INSERT INTO LookupTasks ( id, url ) VALUES ( ?, ? )" ) )
+        {
+            for ( int i = 0; i < rowCount; i++ )
+            {
+                final String url = typicalUrl( i );
+                insert.setInt( 1, i );
+                insert.setString( 2, url );
+                if ( isHashLayout )
+                {
+                    insert.setLong( 3, UrlFingerprint.of( url ) );
+                }
+                insert.addBatch();
+
+                if ( ( i + 1 ) % INSERT_BATCH_SIZE == 0 )
+                {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+                if ( i % lookupUrlStep == 0 && i / lookupUrlStep < LOOKUP_URL_COUNT )
+                {
+                    lookupUrls[ i / lookupUrlStep ] = url;
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        connection.setAutoCommit( true );
+    }
+
+    /**
+     * Generates url of typical length (about 100 characters) with common prefixes, like urls of crawled sites.
+     */
+    private static String typicalUrl( int number )
+    {
+        return "https://www.site" + ( number % 5_000 ) + ".example.com/articles/2018/category-"
+               + ( number % 37 ) + "/article-about-something-interesting-" + number + "?utm_source=crawler";
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.mperever.web.crawler.worker;
+
+import com.github.mperever.web.crawler.benchmarks.StandInHttpServer;
+import com.github.mperever.web.crawler.benchmarks.SyntheticPages;
+import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
+import com.github.mperever.web.crawler.worker.internal.JettyHtmlDocumentLoader;
+import com.github.mperever.web.crawler.worker.internal.JsoupHtmlDocumentLoader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares pages per second of the blocking fixed pool of task processors (the old worker model)
+ * with the pipelined non-blocking fetching, against a local server with simulated network latency.
+ *
+ * Run: java -jar web-crawler-benchmarks/target/benchmarks.jar FetchThroughputBenchmark
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( 1 )
+public class FetchThroughputBenchmark
+{
+    private static final int PAGES_PER_INVOCATION = 512;
+
+    @Param( { "50", "200" } )
+    public long serverLatencyMs;
+
+    private final AtomicInteger pageCounter = new AtomicInteger();
+
+    private StandInHttpServer server;
+    private ExecutorService blockingProcessors;
+    private UrlTaskProcessor blockingProcessor;
+    private ExecutorService parseExecutor;
+    private JettyHtmlDocumentLoader asyncLoader;
+    private UrlTaskProcessor asyncProcessor;
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException
+    {
+        server = StandInHttpServer.start( SyntheticPages.generate( 30, 42 ), serverLatencyMs );
+
+        final int processors = Runtime.getRuntime().availableProcessors();
+        blockingProcessors = Executors.newFixedThreadPool( processors );
+        blockingProcessor = new UrlTaskProcessor( new JsoupHtmlDocumentLoader() );
+
+        parseExecutor = Executors.newFixedThreadPool( processors );
+        asyncLoader = new JettyHtmlDocumentLoader( parseExecutor, PAGES_PER_INVOCATION );
+        asyncProcessor = new UrlTaskProcessor( asyncLoader );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        asyncLoader.close();
+        parseExecutor.shutdownNow();
+        blockingProcessors.shutdownNow();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( PAGES_PER_INVOCATION )
+    public List<TaskResults> blockingFixedPool() throws InterruptedException, ExecutionException
+    {
+        final List<Future<TaskResults>> futures = new ArrayList<>( PAGES_PER_INVOCATION );
+        for ( int i = 0; i < PAGES_PER_INVOCATION; i++ )
+        {
+            final String url = nextPageUrl();
+            futures.add( blockingProcessors.submit( () -> blockingProcessor.process( url ) ) );
+        }
+
+        final List<TaskResults> results = new ArrayList<>( PAGES_PER_INVOCATION );
+        for ( Future<TaskResults> future : futures )
+        {
+            results.add( future.get() );
+        }
+        return results;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( PAGES_PER_INVOCATION )
+    public List<TaskResults> asyncPipeline()
+    {
+        final List<CompletableFuture<TaskResults>> futures = new ArrayList<>( PAGES_PER_INVOCATION );
+        for ( int i = 0; i < PAGES_PER_INVOCATION; i++ )
+        {
+            futures.add( asyncLoader.loadAsync( server.pageUrl( pageCounter.incrementAndGet() ) )
+                    .thenApply( asyncProcessor::process ) );
+        }
+
+        final List<TaskResults> results = new ArrayList<>( PAGES_PER_INVOCATION );
+        for ( CompletableFuture<TaskResults> future : futures )
+        {
+            results.add( future.join() );
+        }
+        return results;
+    }
+
+    private String nextPageUrl()
+    {
+        return server.pageUrl( pageCounter.incrementAndGet() ).toString();
+    }
+}
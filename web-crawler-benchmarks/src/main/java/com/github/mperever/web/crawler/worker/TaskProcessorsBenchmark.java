@@ -0,0 +1,106 @@
+package com.github.mperever.web.crawler.worker;
+
+import com.github.mperever.web.crawler.benchmarks.StandInHttpServer;
+import com.github.mperever.web.crawler.benchmarks.SyntheticPages;
+import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
+import com.github.mperever.web.crawler.worker.internal.JsoupHtmlDocumentLoader;
+import com.github.mperever.web.crawler.worker.internal.VirtualThreads;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares pages per second of task processors run by the fixed pool of platform threads
+ * (sized from available processors) with task processors run by virtual threads.
+ * Task processors perform blocking page loading against a local server with simulated network latency.
+ *
+ * Virtual threads mode requires JDK 21+.
+ * Run: java -jar web-crawler-benchmarks/target/benchmarks.jar TaskProcessorsBenchmark
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 10 )
+@Fork( 1 )
+public class TaskProcessorsBenchmark
+{
+    private static final int TASKS_PER_INVOCATION = 512;
+
+    @Param( { "fixed", "virtual" } )
+    public String executorMode;
+
+    @Param( { "50" } )
+    public long serverLatencyMs;
+
+    private final AtomicInteger pageCounter = new AtomicInteger();
+    private final UrlTaskProcessor taskProcessor = new UrlTaskProcessor( new JsoupHtmlDocumentLoader() );
+
+    private StandInHttpServer server;
+    private ExecutorService taskProcessorExecutor;
+
+    @Setup( Level.Trial )
+    public void setUp() throws IOException
+    {
+        if ( "virtual".equals( executorMode ) )
+        {
+            taskProcessorExecutor = VirtualThreads.newThreadPerTaskExecutor( "task-processor-" );
+        }
+        else
+        {
+            taskProcessorExecutor = Executors.newFixedThreadPool( Runtime.getRuntime().availableProcessors() );
+        }
+
+        server = StandInHttpServer.start( SyntheticPages.generate( 30, 42 ), serverLatencyMs );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        taskProcessorExecutor.shutdownNow();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( TASKS_PER_INVOCATION )
+    public List<TaskResults> processTasks() throws InterruptedException, ExecutionException
+    {
+        final List<Future<TaskResults>> futures = new ArrayList<>( TASKS_PER_INVOCATION );
+        for ( int i = 0; i < TASKS_PER_INVOCATION; i++ )
+        {
+            final String url = server.pageUrl( pageCounter.incrementAndGet() ).toString();
+            futures.add( taskProcessorExecutor.submit( () -> taskProcessor.process( url ) ) );
+        }
+
+        final List<TaskResults> results = new ArrayList<>( TASKS_PER_INVOCATION );
+        for ( Future<TaskResults> future : futures )
+        {
+            results.add( future.get() );
+        }
+        return results;
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.mperever.web.crawler.worker;
+
+import com.github.mperever.web.crawler.benchmarks.PageCorpus;
+import com.github.mperever.web.crawler.worker.internal.TextStatsCalculator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.jsoup.Jsoup;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares word statistics calculation by regex split and stream grouping (the previous implementation)
+ * with single-pass tokenizer of {@link TextStatsCalculator}, time per page text.
+ *
+ * Page texts are extracted from pages of {@link PageCorpus}.
+ * Run with allocation profiler to compare garbage per page:
+ *      java -jar web-crawler-benchmarks/target/benchmarks.jar TextStatsBenchmark -prof gc
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( 1 )
+public class TextStatsBenchmark
+{
+    @Param( { PageCorpus.SAVED, PageCorpus.SYNTHETIC_10KB, PageCorpus.SYNTHETIC_1MB } )
+    public String corpus;
+
+    private String[] texts;
+    private int textIndex;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        final List<String> pages = PageCorpus.load( corpus );
+        texts = pages.stream()
+                .map( page -> Jsoup.parse( page ).text() )
+                .toArray( String[]::new );
+    }
+
+    @Benchmark
+    public Map<String, Long> regexSplit()
+    {
+        return Arrays.stream( nextText().split( "[\\p{Punct}\\s\\d]+" ) )
+                .map( word -> word.toLowerCase( Locale.ENGLISH ).trim() )
+                .filter( word -> !word.isEmpty() && word.length() != 1 )
+                .collect( Collectors.groupingBy( word -> word, Collectors.counting() ) );
+    }
+
+    @Benchmark
+    public Map<String, Long> singlePass()
+    {
+        return TextStatsCalculator.calculateWordStatistic( nextText() );
+    }
+
+    private String nextText()
+    {
+        textIndex = ( textIndex + 1 ) % texts.length;
+        return texts[ textIndex ];
+    }
+}
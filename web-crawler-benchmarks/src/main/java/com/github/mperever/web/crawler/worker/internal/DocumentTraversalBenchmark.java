@@ -0,0 +1,122 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.benchmarks.PageCorpus;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares extraction of plain text and links by two jsoup selects with "abs:href" links (the previous implementation)
+ * with one walk through DOM of {@link JsoupHtmlDocument}, time per page.
+ *
+ * Run with allocation profiler to compare garbage per page:
+ *      java -jar web-crawler-benchmarks/target/benchmarks.jar DocumentTraversalBenchmark -prof gc
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( 1 )
+public class DocumentTraversalBenchmark
+{
+    @Param( { PageCorpus.SAVED, PageCorpus.SYNTHETIC_10KB, PageCorpus.SYNTHETIC_1MB } )
+    public String corpus;
+
+    private Document[] documents;
+    private int documentIndex;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        final List<String> pages = PageCorpus.load( corpus );
+        documents = pages.stream()
+                .map( page -> Jsoup.parse( page, PageCorpus.BASE_URL ) )
+                .toArray( Document[]::new );
+    }
+
+    @Benchmark
+    public void selectTwice( final Blackhole blackhole )
+    {
+        final Document htmlDoc = nextDocument();
+        blackhole.consume( htmlDoc.select( "body" ).text() );
+
+        final Set<URI> urls = new HashSet<>();
+        for ( String href : htmlDoc.select( "a[href]" ).eachAttr( "abs:href" ) )
+        {
+            final URI linkUri = hrefToURI( href );
+            if ( linkUri != null && isLinkSupported( linkUri ) )
+            {
+                urls.add( linkUri );
+            }
+        }
+        blackhole.consume( urls );
+    }
+
+    @Benchmark
+    public void singlePass( final Blackhole blackhole )
+    {
+        final JsoupHtmlDocument document = new JsoupHtmlDocument( nextDocument() );
+        blackhole.consume( document.getPlainText() );
+        blackhole.consume( document.getUniqueLinks() );
+    }
+
+    private Document nextDocument()
+    {
+        documentIndex = ( documentIndex + 1 ) % documents.length;
+        return documents[ documentIndex ];
+    }
+
+    private static URI hrefToURI( final String hrefAttrValue )
+    {
+        final int hashPosition = hrefAttrValue.indexOf( '#' );
+        String href = hashPosition != -1 ? hrefAttrValue.substring( 0, hashPosition ) : hrefAttrValue;
+        if ( href.endsWith( "/" ) )
+        {
+            href = href.substring( 0, href.length() - 1 );
+        }
+        if ( href.isEmpty() )
+        {
+            return null;
+        }
+
+        try
+        {
+            return new URI( href );
+
+        } catch ( URISyntaxException ex )
+        {
+            return null;
+        }
+    }
+
+    private static boolean isLinkSupported( final URI url )
+    {
+        final String urlProtocol = url.getScheme().toLowerCase( Locale.ENGLISH );
+        return url.getHost() != null && ( "http".equals( urlProtocol ) || "https".equals( urlProtocol ) );
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.benchmarks.PageCorpus;
+import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
+import com.github.mperever.web.crawler.worker.UrlTaskProcessor;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures pages per second of one core for each step of CPU bound part of task processing:
+ *
+ *      parse - HTML parsing into jsoup document,
+ *      plainText - {@link JsoupHtmlDocument#getPlainText()},
+ *      uniqueLinks - {@link JsoupHtmlDocument#getUniqueLinks()} (link resolving, URI conversion and filtering),
+ *      wordStatistic - {@link TextStatsCalculator#calculateWordStatistic(String)},
+ *      process - {@link UrlTaskProcessor#process(com.github.mperever.web.crawler.worker.HtmlDocument)},
+ *      parseAndProcess - all steps together, i.e. the parse side of one page.
+ *      streamingParseAndProcess - the same by {@link StreamingHtmlExtractor} without DOM
+ *                                 (-Dworker.streamingHtmlParser=true), run with -prof gc to compare garbage per page.
+ *
+ * Pages of {@link PageCorpus} are processed round robin, so a result is the average over the corpus.
+ * Multiply parseAndProcess result by the number of task processors and compare with result of
+ * {@link com.github.mperever.web.crawler.worker.FetchThroughputBenchmark}: if it is lower,
+ * the parse side limits the worker, otherwise the fetch side does.
+ *
+ * Run: java -jar web-crawler-benchmarks/target/benchmarks.jar ParseHotPathBenchmark
+ *
+ * @author mperever
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( 1 )
+public class ParseHotPathBenchmark
+{
+    @Param( { PageCorpus.SAVED, PageCorpus.SYNTHETIC_10KB, PageCorpus.SYNTHETIC_1MB } )
+    public String corpus;
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private String[] pages;
+    private char[][] pageChars;
+    private Document[] documents;
+    private String[] texts;
+    private int pageIndex;
+
+    private UrlTaskProcessor processor;
+
+    @Setup( Level.Trial )
+    public void setUp()
+    {
+        final List<String> corpusPages = PageCorpus.load( corpus );
+        pages = corpusPages.toArray( new String[ corpusPages.size() ] );
+
+        pageChars = new char[ pages.length ][];
+        documents = new Document[ pages.length ];
+        texts = new String[ pages.length ];
+        for ( int i = 0; i < pages.length; i++ )
+        {
+            pageChars[ i ] = pages[ i ].toCharArray();
+            documents[ i ] = Jsoup.parse( pages[ i ], PageCorpus.BASE_URL );
+            texts[ i ] = new JsoupHtmlDocument( documents[ i ] ).getPlainText();
+        }
+
+        processor = new UrlTaskProcessor();
+    }
+
+    @Benchmark
+    public Document parse()
+    {
+        return Jsoup.parse( pages[ nextPageIndex() ], PageCorpus.BASE_URL );
+    }
+
+    // JsoupHtmlDocument caches text and links, so new document wrapper is created for each invocation.
+
+    @Benchmark
+    public String plainText()
+    {
+        return new JsoupHtmlDocument( documents[ nextPageIndex() ] ).getPlainText();
+    }
+
+    @Benchmark
+    public Set<URI> uniqueLinks()
+    {
+        return new JsoupHtmlDocument( documents[ nextPageIndex() ] ).getUniqueLinks();
+    }
+
+    @Benchmark
+    public Map<String, Long> wordStatistic()
+    {
+        return TextStatsCalculator.calculateWordStatistic( texts[ nextPageIndex() ] );
+    }
+
+    @Benchmark
+    public TaskResults process()
+    {
+        return processor.process( new JsoupHtmlDocument( documents[ nextPageIndex() ] ) );
+    }
+
+    @Benchmark
+    public TaskResults parseAndProcess()
+    {
+        final Document document = Jsoup.parse( pages[ nextPageIndex() ], PageCorpus.BASE_URL );
+        return processor.process( new JsoupHtmlDocument( document ) );
+    }
+
+    @Benchmark
+    public TaskResults streamingParseAndProcess()
+    {
+        final char[] page = pageChars[ nextPageIndex() ];
+        final StreamingHtmlExtractor extractor = new StreamingHtmlExtractor( PageCorpus.BASE_URL, page.length );
+        for ( int offset = 0; offset < page.length; offset += READ_BUFFER_SIZE )
+        {
+            extractor.append( page, offset, Math.min( READ_BUFFER_SIZE, page.length - offset ) );
+        }
+        return processor.process( extractor.finish() );
+    }
+
+    private int nextPageIndex()
+    {
+        pageIndex = ( pageIndex + 1 ) % pages.length;
+        return pageIndex;
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares contention of task buffer kept by {@link ArrayBlockingQueue} (one lock for all operations)
+ * with lock-free {@link MpmcArrayQueue}. Producers put tasks as task reader and results writer do,
+ * consumers check buffer size for refill decision and take task on each read as {@link BufferedTaskReaderImpl}.
+ * Taken tasks and reads from empty buffer are reported as secondary results.
+ *
+ * The benchmark runs 2 producers and 8 consumers, other numbers of consumers are set by thread groups option:
+ * Run: java -jar web-crawler-benchmarks/target/benchmarks.jar TaskBufferContentionBenchmark -tg 2,8
+ *      java -jar web-crawler-benchmarks/target/benchmarks.jar TaskBufferContentionBenchmark -tg 2,32
+ *      java -jar web-crawler-benchmarks/target/benchmarks.jar TaskBufferContentionBenchmark -tg 2,128
+ *
+ * @author mperever
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 5 )
+@Measurement( iterations = 5, time = 5 )
+@Fork( 1 )
+public class TaskBufferContentionBenchmark
+{
+    private static final UrlTask TASK = new UrlTask( null, "http://example.com/", 0, false );
+
+    @State( Scope.Group )
+    public static class Buffer
+    {
+        @Param( { "ArrayBlockingQueue", "MpmcArrayQueue" } )
+        public String queueType;
+
+        @Param( { "1024" } )
+        public int capacity;
+
+        private TaskBuffer buffer;
+        private int lowWatermark;
+
+        @Setup( Level.Trial )
+        public void setUp()
+        {
+            buffer = "MpmcArrayQueue".equals( queueType )
+                    ? new MpmcTaskBuffer( capacity )
+                    : new ArrayBlockingTaskBuffer( capacity );
+            lowWatermark = capacity / 2;
+        }
+    }
+
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.OPERATIONS )
+    public static class Counters
+    {
+        public long taken;
+        public long empty;
+    }
+
+    @Benchmark
+    @Group( "buffer" )
+    @GroupThreads( 2 )
+    public boolean put( final Buffer state )
+    {
+        return state.buffer.offer( TASK );
+    }
+
+    @Benchmark
+    @Group( "buffer" )
+    @GroupThreads( 8 )
+    public UrlTask read( final Buffer state, final Counters counters, final Blackhole blackhole )
+    {
+        // Task reader checks buffer size before each read to wake up refill
+        blackhole.consume( state.buffer.size() <= state.lowWatermark );
+        final UrlTask task = state.buffer.poll();
+        if ( task == null )
+        {
+            counters.empty++;
+        }
+        else
+        {
+            counters.taken++;
+        }
+        return task;
+    }
+
+    /**
+     * Represents operations of task buffer used by task reader.
+     */
+    private interface TaskBuffer
+    {
+        boolean offer( UrlTask task );
+
+        UrlTask poll();
+
+        int size();
+    }
+
+    private static final class ArrayBlockingTaskBuffer implements TaskBuffer
+    {
+        private final ArrayBlockingQueue<UrlTask> queue;
+
+        private ArrayBlockingTaskBuffer( int capacity )
+        {
+            queue = new ArrayBlockingQueue<>( capacity );
+        }
+
+        @Override
+        public boolean offer( final UrlTask task )
+        {
+            return queue.offer( task );
+        }
+
+        @Override
+        public UrlTask poll()
+        {
+            return queue.poll();
+        }
+
+        @Override
+        public int size()
+        {
+            return queue.size();
+        }
+    }
+
+    private static final class MpmcTaskBuffer implements TaskBuffer
+    {
+        private final MpmcArrayQueue<UrlTask> queue;
+
+        private MpmcTaskBuffer( int capacity )
+        {
+            queue = new MpmcArrayQueue<>( capacity );
+        }
+
+        @Override
+        public boolean offer( final UrlTask task )
+        {
+            return queue.offer( task );
+        }
+
+        @Override
+        public UrlTask poll()
+        {
+            return queue.poll();
+        }
+
+        @Override
+        public int size()
+        {
+            return queue.size();
+        }
+    }
+}
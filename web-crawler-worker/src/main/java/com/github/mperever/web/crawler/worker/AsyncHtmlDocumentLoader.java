@@ -0,0 +1,34 @@
+package com.github.mperever.web.crawler.worker;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Represents interface for non-blocking loading Html document from internet.
+ *
+ * @author mperever
+ */
+public interface AsyncHtmlDocumentLoader extends HtmlDocumentLoader
+{
+    /**
+     * Starts loading of {@link HtmlDocument} without blocking the calling thread.
+     *
+     * @param url The link url for loading
+     * @return The future which is completed with the content object or with loading error
+     */
+    CompletableFuture<HtmlDocument> loadAsync( URI url );
+
+    /**
+     * Starts loading of {@link HtmlDocument} if it has been changed since previous download.
+     * If it has not been changed then the future is completed with {@link HtmlDocument#isUnchanged() unchanged}
+     * document.
+     *
+     * @param url The link url for loading
+     * @param validators The validators of previously downloaded page or null
+     * @return The future which is completed with the content object or with loading error
+     */
+    default CompletableFuture<HtmlDocument> loadAsync( URI url, PageValidators validators )
+    {
+        return loadAsync( url );
+    }
+}
@@ -1,6 +1,9 @@
 package com.github.mperever.web.crawler.worker;
 
+import com.github.mperever.web.crawler.worker.internal.TextStatsCalculator;
+
 import java.net.URI;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -23,4 +26,35 @@ public interface HtmlDocument
      * @return HTML links
      */
     Set<URI> getUniqueLinks();
+
+    /**
+     * Calculates word statistics of plain text.
+     *
+     * @return The number of occurrences of each word
+     */
+    default Map<String, Long> getWordStats()
+    {
+        return TextStatsCalculator.calculateWordStatistic( getPlainText() );
+    }
+
+    /**
+     * Gets validators of page to request it again only if it has been changed.
+     *
+     * @return The page validators, or null if the server has not specified them
+     */
+    default PageValidators getValidators()
+    {
+        return null;
+    }
+
+    /**
+     * Checks if the page has not been changed since previous download (HTTP 304 Not Modified).
+     * Unchanged document has no text and links.
+     *
+     * @return true if the page has not been changed
+     */
+    default boolean isUnchanged()
+    {
+        return false;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.github.mperever.web.crawler.worker;
+
+/**
+ * Represents validators of downloaded page (ETag and Last-Modified response headers).
+ * They are sent with next request of the page (If-None-Match and If-Modified-Since request headers),
+ * so the page is downloaded again only if it has been changed.
+ *
+ * @author mperever
+ */
+public final class PageValidators
+{
+    private final String etag;
+    private final String lastModified;
+
+    private PageValidators( String etag, String lastModified )
+    {
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * @param etag The value of ETag header or null
+     * @param lastModified The value of Last-Modified header or null
+     * @return The page validators, or null if both of them are not specified
+     */
+    public static PageValidators of( final String etag, final String lastModified )
+    {
+        final boolean isEtagPresent = etag != null && !etag.isEmpty();
+        final boolean isLastModifiedPresent = lastModified != null && !lastModified.isEmpty();
+        if ( !isEtagPresent && !isLastModifiedPresent )
+        {
+            return null;
+        }
+        return new PageValidators( isEtagPresent ? etag : null, isLastModifiedPresent ? lastModified : null );
+    }
+
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+}
@@ -1,8 +1,9 @@
 package com.github.mperever.web.crawler.worker;
 
+import com.github.mperever.web.crawler.ts.common.ContentFingerprint;
 import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
 import com.github.mperever.web.crawler.worker.internal.JsoupHtmlDocumentLoader;
-import com.github.mperever.web.crawler.worker.internal.TextStatsCalculator;
+import com.github.mperever.web.crawler.worker.internal.SentUrlCache;
 
 import java.net.URI;
 import java.util.Map;
@@ -20,10 +21,24 @@ public class UrlTaskProcessor
     private static final Logger logger = LoggerFactory.getLogger( UrlTaskProcessor.class );
 
     private final HtmlDocumentLoader loader;
+    private final SentUrlCache sentUrls;
 
-    UrlTaskProcessor( HtmlDocumentLoader loader )
+    /**
+     * Creates task processor.
+     *
+     * @param loader The loader of HTML documents
+     * @param sentUrls The cache of urls which have been already sent to task service,
+     *                 such links are not added to task results
+     */
+    UrlTaskProcessor( HtmlDocumentLoader loader, SentUrlCache sentUrls )
     {
         this.loader = loader;
+        this.sentUrls = sentUrls;
+    }
+
+    UrlTaskProcessor( HtmlDocumentLoader loader )
+    {
+        this( loader, new SentUrlCache( 0 ) );
     }
 
     public UrlTaskProcessor()
@@ -36,26 +51,69 @@ public class UrlTaskProcessor
         try
         {
             final HtmlDocument document = loader.load( new URI( taskUrl ) );
-            final TaskResults taskResults = new TaskResults();
+            return process( document );
 
-            final String[] linkUrls = document.getUniqueLinks().stream()
-                    .map( URI::toString )
-                    .toArray( String[]::new );
-            taskResults.setNewUrls( linkUrls );
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+        }
 
-            final String plainText = document.getPlainText();
-            taskResults.setPageText( plainText );
+        return null;
+    }
 
-            final Map<String,Long> wordStats = TextStatsCalculator.calculateWordStatistic( plainText );
-            taskResults.setWordsStats( wordStats );
+    /**
+     * Creates task results from already loaded document.
+     * This is CPU bound part of task processing, it does not perform any network operations.
+     * Links which have been sent with any depth are not added to task results.
+     *
+     * @param document The loaded HTML document
+     * @return The task results
+     */
+    public TaskResults process( final HtmlDocument document )
+    {
+        return process( document, Integer.MAX_VALUE );
+    }
 
-            return taskResults;
+    /**
+     * Creates task results from already loaded document.
+     * Links which have been sent with the same or smaller depth are not added to task results.
+     *
+     * @param document The loaded HTML document
+     * @param linkDepth The depth of links of the document (depth of the task + 1)
+     * @return The task results
+     */
+    public TaskResults process( final HtmlDocument document, int linkDepth )
+    {
+        final TaskResults taskResults = new TaskResults();
 
-        } catch ( Exception ex )
+        final PageValidators validators = document.getValidators();
+        if ( validators != null )
         {
-            logger.error( ex.getMessage(), ex );
+            taskResults.setEtag( validators.getEtag() );
+            taskResults.setLastModified( validators.getLastModified() );
+        }
+        if ( document.isUnchanged() )
+        {
+            taskResults.setUnchanged( true );
+            return taskResults;
         }
 
-        return null;
+        final String[] linkUrls = document.getUniqueLinks().stream()
+                .map( URI::toString )
+                .filter( url -> !sentUrls.contains( url, linkDepth ) )
+                .toArray( String[]::new );
+        taskResults.setNewUrls( linkUrls );
+
+        final String plainText = document.getPlainText();
+        taskResults.setPageText( plainText );
+
+        final Map<String,Long> wordStats = document.getWordStats();
+        taskResults.setWordsStats( wordStats );
+
+        // Task service stores text of duplicated pages once
+        taskResults.setContentHash( ContentFingerprint.contentHash( plainText ) );
+        taskResults.setSimHash( ContentFingerprint.simHash( wordStats ) );
+
+        return taskResults;
     }
 }
\ No newline at end of file
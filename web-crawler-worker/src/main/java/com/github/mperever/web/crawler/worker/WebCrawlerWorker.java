@@ -1,17 +1,37 @@
 package com.github.mperever.web.crawler.worker;
 
+import com.github.mperever.web.crawler.common.management.ManagementBeans;
+
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
 import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
+import com.github.mperever.web.crawler.worker.internal.FetchErrors;
+import com.github.mperever.web.crawler.worker.internal.JettyHtmlDocumentLoader;
+import com.github.mperever.web.crawler.worker.internal.SentUrlCache;
+import com.github.mperever.web.crawler.worker.internal.StreamingHtmlDocumentLoader;
+import com.github.mperever.web.crawler.worker.internal.VirtualThreads;
 import com.github.mperever.web.crawler.worker.internal.reader.BufferedTaskReader;
 import com.github.mperever.web.crawler.worker.internal.reader.BufferedTaskReaderImpl;
+import com.github.mperever.web.crawler.worker.internal.reader.InFlightTasks;
+import com.github.mperever.web.crawler.worker.internal.reader.TaskLeaseRenewer;
 import com.github.mperever.web.crawler.worker.internal.reader.TaskReaderActionImpl;
+import com.github.mperever.web.crawler.worker.internal.scheduler.HostTaskScheduler;
+import com.github.mperever.web.crawler.worker.internal.scheduler.HostTaskSchedulerImpl;
+import com.github.mperever.web.crawler.worker.internal.writer.BufferedTaskResultsWriter;
+import com.github.mperever.web.crawler.worker.internal.writer.BufferedTaskResultsWriterImpl;
+import com.github.mperever.web.crawler.worker.internal.writer.TaskResultsWriterActionImpl;
 import com.github.mperever.web.crawler.worker.http.HttpTaskServiceClient;
 
 import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -20,6 +40,17 @@ import org.slf4j.LoggerFactory;
 /**
  * Represents entry point to run web crawler worker.
  *
+ * Task processing is pipelined: pages are downloaded without blocking threads
+ * (up to {@link WorkerParameters#maxConcurrentFetches} at once),
+ * and then parsing and word statistics are performed by task processors.
+ * Task results are sent to task service by batches, see {@link BufferedTaskResultsWriter},
+ * and each batch also takes tasks for free space of {@link BufferedTaskReader} buffer.
+ * Tasks are passed from the task reader through {@link HostTaskScheduler},
+ * so one host is not requested by too many fetches at once.
+ * The number of tasks taken from task service and not processed yet is bounded by {@link InFlightTasks},
+ * so tasks are not kept in buffers until task service re-assigns them to other workers.
+ * Leases of started tasks are renewed by {@link TaskLeaseRenewer}, so slow pages are not fetched by other workers.
+ *
  * @author mperever
  */
 public class WebCrawlerWorker
@@ -28,11 +59,19 @@ public class WebCrawlerWorker
 
     private static final int TASK_EXECUTOR_SHUTDOWN_TIMEOUT_SEC = 15;
 
-    private final UrlTaskProcessor taskProcessor = new UrlTaskProcessor();
     private final String clientId = ManagementFactory.getRuntimeMXBean().getName();
     private final HttpTaskServiceClient taskService;
     private final BufferedTaskReader taskReader;
+    private final InFlightTasks inFlightTasks;
+    private final TaskLeaseRenewer leaseRenewer;
+    private final BufferedTaskResultsWriter resultsWriter;
+    private final HostTaskScheduler taskScheduler;
+    private final Thread taskSchedulingThread;
     private final ExecutorService taskProcessorExecutor;
+    private final JettyHtmlDocumentLoader documentLoader;
+    private final UrlTaskProcessor taskProcessor;
+    private final SentUrlCache sentUrls;
+    private final Semaphore fetchPermits;
 
     WebCrawlerWorker( WorkerParameters parameters )
     {
@@ -40,9 +79,60 @@ public class WebCrawlerWorker
         final TaskReaderActionImpl readerAction = new TaskReaderActionImpl(
                 taskService,
                 clientId,
-                parameters.urlDepthLimit );
-        taskReader = new BufferedTaskReaderImpl( readerAction, parameters.maxTaskCount );
-        taskProcessorExecutor = Executors.newFixedThreadPool( parameters.taskProcessorsNumber );
+                parameters.urlDepthLimit,
+                parameters.taskWaitMs );
+        final ThreadFactory readerThreadFactory = parameters.useVirtualThreads
+                ? VirtualThreads.newThreadFactory( "task-reader-" )
+                : Thread::new;
+        inFlightTasks = new InFlightTasks( parameters.maxInFlightTasks );
+        ManagementBeans.register( "InFlightTasks", inFlightTasks );
+        if ( parameters.leaseRenewalMs > 0 )
+        {
+            leaseRenewer = new TaskLeaseRenewer(
+                    taskService, clientId, inFlightTasks, parameters.leaseRenewalMs, readerThreadFactory );
+            ManagementBeans.register( "TaskLeases", leaseRenewer );
+        }
+        else
+        {
+            leaseRenewer = null;
+        }
+        final BufferedTaskReaderImpl bufferedTaskReader = new BufferedTaskReaderImpl(
+                readerAction, parameters.maxTaskCount, readerThreadFactory, inFlightTasks );
+        ManagementBeans.register( "TaskReader", bufferedTaskReader );
+        taskReader = bufferedTaskReader;
+        resultsWriter = new BufferedTaskResultsWriterImpl(
+                new TaskResultsWriterActionImpl( taskService, taskReader, clientId, parameters.urlDepthLimit ),
+                parameters.resultsBatchSize,
+                parameters.resultsBatchBytes,
+                parameters.resultsLingerMs,
+                readerThreadFactory );
+        taskScheduler = new HostTaskSchedulerImpl(
+                parameters.maxTaskCount,
+                parameters.maxWaitingTasksPerHost,
+                parameters.maxConcurrentFetchesPerHost,
+                parameters.hostDelayMs,
+                TimeUnit.MILLISECONDS );
+        taskSchedulingThread = readerThreadFactory.newThread( this::scheduleTasks );
+
+        // Task processors mostly wait for network (sending results), so with virtual threads
+        // the number of task processors is limited by concurrent fetches and not by the number of cores.
+        taskProcessorExecutor = parameters.useVirtualThreads
+                ? VirtualThreads.newThreadPerTaskExecutor( "task-processor-" )
+                : Executors.newFixedThreadPool( parameters.taskProcessorsNumber );
+        documentLoader = parameters.useStreamingHtmlParser
+                ? new StreamingHtmlDocumentLoader( taskProcessorExecutor,
+                                                   parameters.maxConcurrentFetches,
+                                                   parameters.fetchLimits,
+                                                   parameters.connectionPool )
+                : new JettyHtmlDocumentLoader( taskProcessorExecutor,
+                                               parameters.maxConcurrentFetches,
+                                               parameters.fetchLimits,
+                                               parameters.connectionPool );
+        ManagementBeans.register( "PageFetch", documentLoader.getStatistics() );
+        sentUrls = new SentUrlCache( parameters.sentUrlCacheMb * 1024L * 1024L );
+        ManagementBeans.register( "SentUrlCache", sentUrls );
+        taskProcessor = new UrlTaskProcessor( documentLoader, sentUrls );
+        fetchPermits = new Semaphore( parameters.maxConcurrentFetches );
     }
 
     /**
@@ -55,6 +145,43 @@ public class WebCrawlerWorker
      *                  1 - urlDepthLimit - the maximum depth for external urls.
      *                  2 - taskProcessorsNumber - the number of threads that will process tasks.
      *             If optional parameters are not specified then default one will be used.
+     *             There is list of optional tuning parameters that can be specified as JVM system properties:
+     *                  -Dworker.maxConcurrentFetches - the maximum number of pages downloaded at once.
+     *                  -Dworker.maxConcurrentFetchesPerHost - the maximum number of pages of one host
+     *                                                         downloaded at once.
+     *                  -Dworker.hostDelayMs - the minimum delay between requests to one host.
+     *                  -Dworker.maxWaitingTasksPerHost - the maximum number of tasks of one host waiting for
+     *                                                    processing, other tasks of the host are left to task
+     *                                                    service. By default it is the number of tasks the host
+     *                                                    can start in 60 sec (task processing timeout).
+     *                  -Dworker.virtualThreads - true to run task processors and task reader on virtual threads
+     *                                            (JDK 21+), taskProcessorsNumber is ignored in this case.
+     *                  -Dworker.sentUrlCacheMb - the memory budget of cache of links which have been already sent
+     *                                            to task service, 0 to disable the cache.
+     *                  -Dworker.streamingHtmlParser - true to extract page text and links while the page is being
+     *                                                 read, without building DOM (less garbage for big pages).
+     *                  -Dworker.maxPageBytes - the maximum size of page, bigger pages are aborted.
+     *                  -Dworker.allowedContentTypes - comma separated prefixes of allowed page content types
+     *                                                 (e.g. text/html,application/xhtml+xml), other pages are
+     *                                                 aborted by response headers.
+     *                  -Dworker.connectTimeoutMs - the maximum time to connect to host.
+     *                  -Dworker.readTimeoutMs - the maximum time to wait for data from host.
+     *                  -Dworker.fetchTimeoutMs - the maximum time to download page including redirects.
+     *                  -Dworker.maxConnectionsPerHost - the maximum number of kept alive connections to one host,
+     *                                                   maxConcurrentFetchesPerHost by default.
+     *                  -Dworker.connectionIdleTimeoutMs - the time after which idle connection is closed.
+     *                  -Dworker.tlsSessionCacheSize - the maximum number of cached TLS sessions
+     *                                                 (to resume them by new connections to the same host).
+     *                  -Dworker.resultsBatchSize - the maximum number of task results sent to task service at once.
+     *                  -Dworker.resultsBatchBytes - the maximum size of task results sent at once.
+     *                  -Dworker.resultsLingerMs - the maximum time to wait for other task results before sending
+     *                                             batch, 0 to send batch once the previous one has been sent.
+     *                  -Dworker.maxInFlightTasks - the maximum number of tasks taken from task service and not
+     *                                              processed yet, 2 * maxConcurrentFetches by default.
+     *                  -Dworker.taskWaitMs - the maximum time task service holds request for tasks when there are
+     *                                        no tasks, 0 to get response at once and to poll task service.
+     *                  -Dworker.leaseRenewalMs - the period of renewal of leases of tasks which processing has
+     *                                            been started, 0 to disable renewal.
      */
     public static void main( final String... args )
     {
@@ -66,26 +193,22 @@ public class WebCrawlerWorker
     {
         // Adds virtual-machine gracefully shutdown hook to finalize task processing and other stuff.
         Runtime.getRuntime().addShutdownHook( new Thread( this::onShutdown ) );
+        taskSchedulingThread.start();
+        if ( leaseRenewer != null )
+        {
+            leaseRenewer.start();
+        }
 
         while ( !Thread.currentThread().isInterrupted() )
         {
             try
             {
-                final UrlTask task = taskReader.read();
-                taskProcessorExecutor.execute( () ->
-                {
-                    final String taskUrl = task.getUrl();
-                    SaveTaskResultRequest taskResultRequest;
-                    try
-                    {
-                        final TaskResults results = taskProcessor.process( taskUrl );
-                        taskResultRequest = new SaveTaskResultRequest( clientId, taskUrl, results );
-                    } catch ( Exception ex )
-                    {
-                        taskResultRequest = new SaveTaskResultRequest( clientId, taskUrl, ex );
-                    }
-                    taskService.saveTaskResults( taskResultRequest );
-                } );
+                this.startNextTask();
+            }
+            catch ( InterruptedException ex )
+            {
+                logger.debug( "Thread was interrupted during waiting for task or fetch permit." );
+                Thread.currentThread().interrupt();
             }
             catch ( Exception ex )
             {
@@ -98,10 +221,138 @@ public class WebCrawlerWorker
         logger.debug( "Task processing is finished." );
     }
 
+    /**
+     * Takes the next task from the task scheduler and starts its processing.
+     * Fetch permit, host slot and in-flight permit of the task are released when processing is completed,
+     * or at once if processing has not been started (e.g. an exception occurs).
+     */
+    private void startNextTask() throws InterruptedException
+    {
+        // The fetch permit is acquired first, so the task does not hold host slot while waiting for it
+        fetchPermits.acquire();
+        final UrlTask task;
+        try
+        {
+            task = taskScheduler.next();
+
+        } catch ( InterruptedException | RuntimeException ex )
+        {
+            fetchPermits.release();
+            throw ex;
+        }
+
+        boolean isStarted = false;
+        try
+        {
+            inFlightTasks.onStarted( task );
+            processTask( task ).whenComplete( ( ignored, error ) -> this.onTaskCompleted( task ) );
+            isStarted = true;
+        }
+        finally
+        {
+            if ( !isStarted )
+            {
+                this.onTaskCompleted( task );
+            }
+        }
+    }
+
+    private void onTaskCompleted( final UrlTask task )
+    {
+        fetchPermits.release();
+        taskScheduler.complete( task );
+        // The next task can be taken from task service
+        inFlightTasks.onCompleted( task );
+    }
+
+    /**
+     * Moves tasks from the task reader to the task scheduler.
+     */
+    private void scheduleTasks()
+    {
+        while ( !Thread.currentThread().isInterrupted() )
+        {
+            try
+            {
+                final UrlTask task = taskReader.read();
+                if ( task != null && !taskScheduler.submit( task ) )
+                {
+                    // The task is left to task service, it is re-assigned when its lease expires
+                    logger.debug( "Task is not processed, its host has too many waiting tasks: {}", task );
+                    inFlightTasks.onCompleted( task );
+                }
+            }
+            catch ( InterruptedException ex )
+            {
+                logger.debug( "Thread was interrupted during waiting for free space in task scheduler." );
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private CompletableFuture<Void> processTask( final UrlTask task )
+    {
+        final String taskUrl = task.getUrl();
+
+        CompletableFuture<HtmlDocument> document;
+        try
+        {
+            document = documentLoader.loadAsync(
+                    new URI( taskUrl ), PageValidators.of( task.getEtag(), task.getLastModified() ) );
+
+        } catch ( URISyntaxException ex )
+        {
+            document = new CompletableFuture<>();
+            document.completeExceptionally( ex );
+        }
+
+        final int linkDepth = task.getDepth() + 1;
+        return document
+                .thenApply( loadedDocument -> taskProcessor.process( loadedDocument, linkDepth ) )
+                .handle( ( results, error ) -> error == null
+                        ? new SaveTaskResultRequest( clientId, taskUrl, results )
+                        : new SaveTaskResultRequest(
+                                clientId, taskUrl, toException( error ), FetchErrors.classify( error ) ) )
+                // Writing results can block while the batch is full, so it must not be performed by network threads.
+                .thenAcceptAsync( request -> this.saveTaskResults( request, linkDepth ), taskProcessorExecutor );
+    }
+
+    private void saveTaskResults( final SaveTaskResultRequest request, int linkDepth )
+    {
+        resultsWriter.write( request ).thenAccept( response ->
+        {
+            // Links are considered as sent only when they have been saved, and only with depth they were sent with
+            final TaskResults results = request.getTaskResults();
+            if ( !response.hasError() && results != null && results.getNewUrls() != null )
+            {
+                for ( String url : results.getNewUrls() )
+                {
+                    sentUrls.put( url, linkDepth );
+                }
+            }
+        } );
+    }
+
+    private static Exception toException( final Throwable error )
+    {
+        final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+
+        logger.error( cause.getMessage(), cause );
+        return cause instanceof Exception
+                ? ( Exception ) cause
+                : new IllegalStateException( cause );
+    }
+
     private void onShutdown()
     {
         logger.info( "Worker shutdown is started" );
 
+        logger.debug( "Stop task scheduling..." );
+        taskSchedulingThread.interrupt();
+        taskReader.close();
+
         logger.debug( "Shutdown task executor..." );
         taskProcessorExecutor.shutdown();
         try
@@ -112,9 +363,21 @@ public class WebCrawlerWorker
             logger.error( ex.getMessage(), ex );
         }
 
+        logger.debug( "Send buffered task results..." );
+        resultsWriter.close();
+
+        if ( leaseRenewer != null )
+        {
+            logger.debug( "Stop task lease renewal..." );
+            leaseRenewer.close();
+        }
+
+        logger.debug( "Close document loader..." );
+        documentLoader.close();
+
         logger.debug( "Close task service..." );
         taskService.close();
 
         logger.info( "Instance shutdown is finished" );
     }
-}
\ No newline at end of file
+}
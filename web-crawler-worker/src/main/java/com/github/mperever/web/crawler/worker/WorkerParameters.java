@@ -1,5 +1,12 @@
 package com.github.mperever.web.crawler.worker;
 
+import com.github.mperever.web.crawler.worker.internal.ConnectionPoolSettings;
+import com.github.mperever.web.crawler.worker.internal.FetchLimits;
+import com.github.mperever.web.crawler.worker.internal.VirtualThreads;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,12 +19,37 @@ class WorkerParameters
 {
     private static final Logger logger = LoggerFactory.getLogger( WorkerParameters.class );
 
+    /**
+     * Prefix of JVM system properties with optional tuning parameters, e.g. -Dworker.maxConcurrentFetches=1024
+     */
+    private static final String PROPERTY_PREFIX = "worker.";
+
+    /**
+     * The default time after which task service considers task as not processed and re-assigns it.
+     */
+    private static final int TASK_PROCESSING_TIMEOUT_MS = 60_000;
+
     String taskServiceUrl;
 
     // Default values
     int urlDepthLimit = 20;
     int taskProcessorsNumber = Runtime.getRuntime().availableProcessors();
-    int maxTaskCount = taskProcessorsNumber * 10;
+    int maxConcurrentFetches = 512;
+    int maxConcurrentFetchesPerHost = 4;
+    int hostDelayMs = 250;
+    boolean useVirtualThreads;
+    int sentUrlCacheMb = 16;
+    boolean useStreamingHtmlParser;
+    FetchLimits fetchLimits = FetchLimits.defaults();
+    ConnectionPoolSettings connectionPool = ConnectionPoolSettings.defaults();
+    int resultsBatchSize = 100;
+    int resultsBatchBytes = 4 * 1024 * 1024;
+    int resultsLingerMs = 200;
+    int taskWaitMs = 20_000;
+    int leaseRenewalMs = 20_000;
+    int maxTaskCount;
+    int maxWaitingTasksPerHost;
+    int maxInFlightTasks;
 
     private WorkerParameters()
     {
@@ -54,6 +86,134 @@ class WorkerParameters
         }
         logger.debug( "Task processors number: " + parameters.taskProcessorsNumber );
 
+        parameters.maxConcurrentFetches = positiveIntProperty( "maxConcurrentFetches", parameters.maxConcurrentFetches );
+        logger.debug( "Max concurrent fetches: " + parameters.maxConcurrentFetches );
+
+        parameters.maxConcurrentFetchesPerHost = positiveIntProperty(
+                "maxConcurrentFetchesPerHost", parameters.maxConcurrentFetchesPerHost );
+        logger.debug( "Max concurrent fetches per host: " + parameters.maxConcurrentFetchesPerHost );
+
+        parameters.hostDelayMs = Integer.getInteger( PROPERTY_PREFIX + "hostDelayMs", parameters.hostDelayMs );
+        logger.debug( "Min delay between requests to one host (ms): " + parameters.hostDelayMs );
+
+        parameters.useVirtualThreads = Boolean.getBoolean( PROPERTY_PREFIX + "virtualThreads" );
+        if ( parameters.useVirtualThreads && !VirtualThreads.isSupported() )
+        {
+            logger.warn( "Virtual threads are not supported by current JVM, fixed pool of task processors is used." );
+            parameters.useVirtualThreads = false;
+        }
+        logger.debug( "Use virtual threads: " + parameters.useVirtualThreads );
+
+        parameters.sentUrlCacheMb = Integer.getInteger( PROPERTY_PREFIX + "sentUrlCacheMb", parameters.sentUrlCacheMb );
+        if ( parameters.sentUrlCacheMb < 0 )
+        {
+            parameters.sentUrlCacheMb = 0;
+        }
+        logger.debug( "Memory budget of sent url cache (MB): " + parameters.sentUrlCacheMb );
+
+        parameters.useStreamingHtmlParser = Boolean.getBoolean( PROPERTY_PREFIX + "streamingHtmlParser" );
+        logger.debug( "Use streaming HTML parser: " + parameters.useStreamingHtmlParser );
+
+        parameters.fetchLimits = fetchLimitsFromProperties( parameters.fetchLimits );
+        logger.debug( "Max page size (bytes): " + parameters.fetchLimits.getMaxBodyBytes() );
+        logger.debug( "Allowed page content types: " + parameters.fetchLimits.getAllowedContentTypes() );
+        logger.debug( "Connect / read / total fetch timeouts (ms): "
+                      + parameters.fetchLimits.getConnectTimeoutMs() + " / "
+                      + parameters.fetchLimits.getReadTimeoutMs() + " / "
+                      + parameters.fetchLimits.getTotalTimeoutMs() );
+
+        // By default one connection is kept for each concurrent fetch of host
+        final ConnectionPoolSettings poolDefaults = parameters.connectionPool;
+        parameters.connectionPool = new ConnectionPoolSettings(
+                positiveIntProperty( "maxConnectionsPerHost", parameters.maxConcurrentFetchesPerHost ),
+                positiveIntProperty( "connectionIdleTimeoutMs", ( int ) poolDefaults.getIdleTimeoutMs() ),
+                positiveIntProperty( "tlsSessionCacheSize", poolDefaults.getTlsSessionCacheSize() ),
+                poolDefaults.getTlsSessionTimeoutSec() );
+        logger.debug( "Max connections per host: " + parameters.connectionPool.getMaxConnectionsPerHost() );
+        logger.debug( "Idle connection timeout (ms): " + parameters.connectionPool.getIdleTimeoutMs() );
+        logger.debug( "TLS session cache size: " + parameters.connectionPool.getTlsSessionCacheSize() );
+
+        parameters.resultsBatchSize = positiveIntProperty( "resultsBatchSize", parameters.resultsBatchSize );
+        parameters.resultsBatchBytes = positiveIntProperty( "resultsBatchBytes", parameters.resultsBatchBytes );
+        parameters.resultsLingerMs = Integer.getInteger(
+                PROPERTY_PREFIX + "resultsLingerMs", parameters.resultsLingerMs );
+        if ( parameters.resultsLingerMs < 0 )
+        {
+            parameters.resultsLingerMs = 0;
+        }
+        logger.debug( "Max task results count / size (bytes) in batch: "
+                      + parameters.resultsBatchSize + " / " + parameters.resultsBatchBytes );
+        logger.debug( "Linger time of task results batch (ms): " + parameters.resultsLingerMs );
+
+        parameters.taskWaitMs = Integer.getInteger( PROPERTY_PREFIX + "taskWaitMs", parameters.taskWaitMs );
+        if ( parameters.taskWaitMs < 0 )
+        {
+            parameters.taskWaitMs = 0;
+        }
+        logger.debug( "Max time to wait for tasks in task service (ms): " + parameters.taskWaitMs );
+
+        parameters.leaseRenewalMs = Integer.getInteger( PROPERTY_PREFIX + "leaseRenewalMs", parameters.leaseRenewalMs );
+        if ( parameters.leaseRenewalMs < 0 )
+        {
+            parameters.leaseRenewalMs = 0;
+        }
+        logger.debug( "Period of renewal of in-flight task leases (ms): " + parameters.leaseRenewalMs );
+
+        // The buffer should keep enough tasks to saturate all concurrent fetches.
+        parameters.maxTaskCount = Math.max( parameters.taskProcessorsNumber * 10, parameters.maxConcurrentFetches );
+        logger.debug( "Max task count in buffer: " + parameters.maxTaskCount );
+
+        // By default one host keeps no more waiting tasks than it can start before task service re-assigns them.
+        final int hostStartsInTimeout = parameters.hostDelayMs > 0
+                ? TASK_PROCESSING_TIMEOUT_MS / parameters.hostDelayMs
+                : parameters.maxTaskCount;
+        parameters.maxWaitingTasksPerHost = positiveIntProperty( "maxWaitingTasksPerHost",
+                Math.max( parameters.maxConcurrentFetchesPerHost,
+                          Math.min( hostStartsInTimeout, parameters.maxTaskCount ) ) );
+        logger.debug( "Max count of waiting tasks of one host: " + parameters.maxWaitingTasksPerHost );
+
+        // By default the next task is taken for each concurrent fetch while the current one is processed,
+        // so taken tasks do not wait in buffers until task service re-assigns them. It does not bound age of
+        // tasks of one host: they start at host rate, so their waiting is bounded by maxWaitingTasksPerHost
+        // (tasks the host can start within task processing timeout), and other tasks of the host are left
+        // to task service. A smaller value keeps less tasks waiting, but fetches idle while tasks are taken.
+        parameters.maxInFlightTasks = positiveIntProperty( "maxInFlightTasks", parameters.maxConcurrentFetches * 2 );
+        logger.debug( "Max count of taken and not processed tasks: " + parameters.maxInFlightTasks );
+
         return parameters;
     }
-}
\ No newline at end of file
+
+    private static FetchLimits fetchLimitsFromProperties( final FetchLimits defaults )
+    {
+        List<String> allowedContentTypes = defaults.getAllowedContentTypes();
+        final String contentTypesProperty = System.getProperty( PROPERTY_PREFIX + "allowedContentTypes" );
+        if ( contentTypesProperty != null )
+        {
+            final List<String> contentTypes = new ArrayList<>();
+            for ( String contentType : contentTypesProperty.split( "," ) )
+            {
+                if ( !contentType.trim().isEmpty() )
+                {
+                    contentTypes.add( contentType.trim() );
+                }
+            }
+            if ( !contentTypes.isEmpty() )
+            {
+                allowedContentTypes = contentTypes;
+            }
+        }
+
+        return new FetchLimits(
+                positiveIntProperty( "maxPageBytes", defaults.getMaxBodyBytes() ),
+                allowedContentTypes,
+                positiveIntProperty( "connectTimeoutMs", ( int ) defaults.getConnectTimeoutMs() ),
+                positiveIntProperty( "readTimeoutMs", ( int ) defaults.getReadTimeoutMs() ),
+                positiveIntProperty( "fetchTimeoutMs", ( int ) defaults.getTotalTimeoutMs() ) );
+    }
+
+    private static int positiveIntProperty( final String name, int defaultValue )
+    {
+        final int value = Integer.getInteger( PROPERTY_PREFIX + name, defaultValue );
+        return value > 0 ? value : defaultValue;
+    }
+}
@@ -4,18 +4,26 @@ import com.github.mperever.web.crawler.common.json.JacksonJsonSerializer;
 import com.github.mperever.web.crawler.common.json.JsonSerializer;
 
 import com.github.mperever.web.crawler.ts.common.TaskService_v1;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesRequest;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesResponse;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksRequest;
 import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksResponse;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
 import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultsBatchResponse;
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
 import org.eclipse.jetty.client.util.StringContentProvider;
 
 import org.slf4j.Logger;
@@ -31,14 +39,27 @@ public class HttpTaskServiceClient implements TaskService_v1, AutoCloseable
 
     private static final String CONTENT_TYPE = "application/json";
     private static final String RETRIEVE_TASKS_PATH = "/tasks.retrieve";
+    private static final String RETRIEVE_TASKS_WAIT_PATH = "/tasks.retrieve.wait";
     private static final String SAVE_TASK_RESULTS_PATH = "/results.save";
+    private static final String SAVE_TASK_RESULTS_BATCH_PATH = "/results.save.batch";
+    private static final String SAVE_RESULTS_RETRIEVE_TASKS_PATH = "/results.save.tasks.retrieve";
+    private static final String RENEW_TASK_LEASES_PATH = "/tasks.lease.renew";
     private static final int OK = 200;
 
+    /**
+     * The time to wait for response of waiting request in addition to its wait timeout.
+     */
+    private static final long WAIT_RESPONSE_MARGIN_MS = TimeUnit.SECONDS.toMillis( 10 );
+
     private final JsonSerializer serializer = new JacksonJsonSerializer();
     private final HttpClient httpClient = new HttpClient();
 
     private final String retrieveTasksUrl;
+    private final String retrieveTasksWaitUrl;
     private final String saveTaskResultsUrl;
+    private final String saveTaskResultsBatchUrl;
+    private final String saveResultsRetrieveTasksUrl;
+    private final String renewTaskLeasesUrl;
 
     private boolean isStarted;
 
@@ -46,7 +67,11 @@ public class HttpTaskServiceClient implements TaskService_v1, AutoCloseable
     {
         httpClient.setFollowRedirects( false );
         retrieveTasksUrl = taskServiceUrl + RETRIEVE_TASKS_PATH;
+        retrieveTasksWaitUrl = taskServiceUrl + RETRIEVE_TASKS_WAIT_PATH;
         saveTaskResultsUrl = taskServiceUrl + SAVE_TASK_RESULTS_PATH;
+        saveTaskResultsBatchUrl = taskServiceUrl + SAVE_TASK_RESULTS_BATCH_PATH;
+        saveResultsRetrieveTasksUrl = taskServiceUrl + SAVE_RESULTS_RETRIEVE_TASKS_PATH;
+        renewTaskLeasesUrl = taskServiceUrl + RENEW_TASK_LEASES_PATH;
     }
 
     @Override
@@ -66,6 +91,12 @@ public class HttpTaskServiceClient implements TaskService_v1, AutoCloseable
     {
         try
         {
+            // Task service holds waiting request until tasks are available
+            if ( request.getWaitTimeoutMs() > 0 )
+            {
+                return sendPostRequest( request, retrieveTasksWaitUrl, RetrieveTasksResponse.class,
+                        request.getWaitTimeoutMs() + WAIT_RESPONSE_MARGIN_MS );
+            }
             return sendPostRequest( request, retrieveTasksUrl, RetrieveTasksResponse.class );
 
         } catch ( Exception ex )
@@ -89,6 +120,49 @@ public class HttpTaskServiceClient implements TaskService_v1, AutoCloseable
         }
     }
 
+    @Override
+    public SaveTaskResultsBatchResponse saveTaskResultsBatch( final SaveTaskResultsBatchRequest request )
+    {
+        try
+        {
+            return sendPostRequest( request, saveTaskResultsBatchUrl, SaveTaskResultsBatchResponse.class );
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            return new SaveTaskResultsBatchResponse( ex );
+        }
+    }
+
+    @Override
+    public SaveResultsAndRetrieveTasksResponse saveResultsAndRetrieveTasks(
+            final SaveResultsAndRetrieveTasksRequest request )
+    {
+        try
+        {
+            return sendPostRequest( request, saveResultsRetrieveTasksUrl, SaveResultsAndRetrieveTasksResponse.class );
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            return new SaveResultsAndRetrieveTasksResponse( ex );
+        }
+    }
+
+    @Override
+    public RenewTaskLeasesResponse renewTaskLeases( final RenewTaskLeasesRequest request )
+    {
+        try
+        {
+            return sendPostRequest( request, renewTaskLeasesUrl, RenewTaskLeasesResponse.class );
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            return new RenewTaskLeasesResponse( ex );
+        }
+    }
+
     private HttpClient getHttpClient()
     {
         if ( !isStarted )
@@ -107,12 +181,24 @@ public class HttpTaskServiceClient implements TaskService_v1, AutoCloseable
     }
 
     private <T> T sendPostRequest( final Serializable request, String url, Class<T> responseType ) throws Exception
+    {
+        return sendPostRequest( request, url, responseType, 0 );
+    }
+
+    /**
+     * @param timeoutMs The maximum time to wait for response, 0 to wait without timeout
+     */
+    private <T> T sendPostRequest( final Serializable request, String url, Class<T> responseType, long timeoutMs )
+            throws Exception
     {
         final String requestBody = serializer.encode( request );
-        final ContentResponse response = getHttpClient().POST( url )
-                .content( new StringContentProvider( CONTENT_TYPE, requestBody, StandardCharsets.UTF_8 ) )
-                .send();
-        return getResponse( response, responseType );
+        final Request postRequest = getHttpClient().POST( url )
+                .content( new StringContentProvider( CONTENT_TYPE, requestBody, StandardCharsets.UTF_8 ) );
+        if ( timeoutMs > 0 )
+        {
+            postRequest.timeout( timeoutMs, TimeUnit.MILLISECONDS );
+        }
+        return getResponse( postRequest.send(), responseType );
     }
 
     private <T> T getResponse( final ContentResponse response, Class<T> type )
@@ -0,0 +1,281 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.ts.common.dto.TaskErrorType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Represents decoder of compressed page content (gzip or deflate content encoding).
+ * The content is decoded by parts as it is received from network, so compressed page is not kept in memory.
+ *
+ * The decoder counts received (compressed) and decoded bytes, and the time spent on decoding.
+ * It is not thread safe and is created for each page, {@link #close()} should be called when page is received.
+ *
+ * @author mperever
+ */
+final class CompressedContentDecoder implements AutoCloseable
+{
+    /**
+     * The value of Accept-Encoding header which is sent with page requests.
+     */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int GZIP_MAGIC_1 = 0x1F;
+    private static final int GZIP_MAGIC_2 = 0x8B;
+    private static final int GZIP_DEFLATE_METHOD = 8;
+    private static final int GZIP_FIXED_HEADER_SIZE = 10;
+    private static final int GZIP_FLAG_HEADER_CRC = 0x02;
+    private static final int GZIP_FLAG_EXTRA = 0x04;
+    private static final int GZIP_FLAG_NAME = 0x08;
+    private static final int GZIP_FLAG_COMMENT = 0x10;
+
+    private static final int INITIAL_OUTPUT_SIZE = 16 * 1024;
+
+    private final boolean isGzip;
+    private final long maxDecodedBytes;
+
+    private Inflater inflater;
+    /**
+     * The beginning of content which is kept until the gzip header or the zlib header is received.
+     */
+    private byte[] head = new byte[ 0 ];
+    private byte[] input = new byte[ 0 ];
+    private byte[] output = new byte[ INITIAL_OUTPUT_SIZE ];
+
+    private long receivedBytes;
+    private long decodedBytes;
+    private long decodeNanos;
+
+    private CompressedContentDecoder( boolean isGzip, long maxDecodedBytes )
+    {
+        this.isGzip = isGzip;
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    /**
+     * Creates decoder for content encoding of page.
+     *
+     * @param contentEncoding The value of Content-Encoding header
+     * @param maxDecodedBytes The maximum size of decoded content
+     * @return The decoder, or null if the content is not encoded (identity encoding)
+     * @throws FetchException if the content encoding is not supported
+     */
+    static CompressedContentDecoder forEncoding( final String contentEncoding, long maxDecodedBytes )
+    {
+        if ( contentEncoding == null )
+        {
+            return null;
+        }
+        final String encoding = contentEncoding.trim().toLowerCase( Locale.ENGLISH );
+        switch ( encoding )
+        {
+            case "":
+            case "identity":
+                return null;
+            case "gzip":
+            case "x-gzip":
+                return new CompressedContentDecoder( true, maxDecodedBytes );
+            case "deflate":
+                return new CompressedContentDecoder( false, maxDecodedBytes );
+            default:
+                throw new FetchException( TaskErrorType.UNSUPPORTED_CONTENT_TYPE,
+                        "Unsupported content encoding: " + contentEncoding );
+        }
+    }
+
+    /**
+     * Decodes next part of content.
+     *
+     * @param content The received part of content, it is consumed entirely
+     * @return The decoded part of content, it is valid until the next call of this method
+     * @throws FetchException if the content is corrupted or decoded content is too large
+     */
+    ByteBuffer decode( final ByteBuffer content )
+    {
+        final long startNanos = System.nanoTime();
+        final int length = content.remaining();
+        receivedBytes += length;
+
+        // Inflater consumes input entirely before this method returns, so the input array is reused
+        if ( input.length < length )
+        {
+            input = new byte[ Math.max( length, input.length * 2 ) ];
+        }
+        content.get( input, 0, length );
+        byte[] data = input;
+        int offset = 0;
+        int end = length;
+        if ( inflater == null )
+        {
+            // Content is decoded only when the header is received entirely (it almost always fits the first part)
+            data = concat( head, input, length );
+            end = data.length;
+            offset = isGzip ? gzipHeaderLength( data ) : ( data.length < 2 ? -1 : 0 );
+            if ( offset < 0 )
+            {
+                head = data;
+                decodeNanos += System.nanoTime() - startNanos;
+                return ByteBuffer.wrap( output, 0, 0 );
+            }
+            head = null;
+            inflater = new Inflater( isGzip || !isZlibHeader( data ) );
+        }
+
+        int outputLength = 0;
+        if ( !inflater.finished() )
+        {
+            inflater.setInput( data, offset, end - offset );
+            outputLength = inflate();
+        }
+        // The rest of content after compressed data (e.g. gzip trailer) is ignored
+
+        decodedBytes += outputLength;
+        decodeNanos += System.nanoTime() - startNanos;
+        return ByteBuffer.wrap( output, 0, outputLength );
+    }
+
+    private int inflate()
+    {
+        int outputLength = 0;
+        try
+        {
+            while ( !inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary() )
+            {
+                if ( outputLength == output.length )
+                {
+                    if ( decodedBytes + outputLength >= maxDecodedBytes )
+                    {
+                        throw new FetchException( TaskErrorType.BODY_TOO_LARGE,
+                                "The decoded page is larger than " + maxDecodedBytes + " bytes" );
+                    }
+                    output = Arrays.copyOf( output, output.length * 2 );
+                }
+                outputLength += inflater.inflate( output, outputLength, output.length - outputLength );
+            }
+
+        } catch ( DataFormatException ex )
+        {
+            throw new FetchException( TaskErrorType.UNSUPPORTED_CONTENT_TYPE,
+                    "Could not decode compressed page: " + ex.getMessage() );
+        }
+        return outputLength;
+    }
+
+    /**
+     * @return The number of bytes of compressed content received from network
+     */
+    long getReceivedBytes()
+    {
+        return receivedBytes;
+    }
+
+    /**
+     * @return The number of bytes of decoded content
+     */
+    long getDecodedBytes()
+    {
+        return decodedBytes;
+    }
+
+    /**
+     * @return The time spent on decoding
+     */
+    long getDecodeNanos()
+    {
+        return decodeNanos;
+    }
+
+    @Override
+    public void close()
+    {
+        if ( inflater != null )
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Gets length of gzip header (RFC 1952).
+     *
+     * @return The length of header, or -1 if the header is not received entirely
+     * @throws FetchException if the content is not gzip
+     */
+    private static int gzipHeaderLength( final byte[] content )
+    {
+        if ( content.length < GZIP_FIXED_HEADER_SIZE )
+        {
+            return -1;
+        }
+        if ( ( content[0] & 0xFF ) != GZIP_MAGIC_1
+                || ( content[1] & 0xFF ) != GZIP_MAGIC_2
+                || content[2] != GZIP_DEFLATE_METHOD )
+        {
+            throw new FetchException( TaskErrorType.UNSUPPORTED_CONTENT_TYPE, "Page content is not in gzip format" );
+        }
+
+        final int flags = content[3] & 0xFF;
+        int length = GZIP_FIXED_HEADER_SIZE;
+        if ( ( flags & GZIP_FLAG_EXTRA ) != 0 )
+        {
+            if ( content.length < length + 2 )
+            {
+                return -1;
+            }
+            length += 2 + ( ( content[length] & 0xFF ) | ( ( content[length + 1] & 0xFF ) << 8 ) );
+        }
+        if ( ( flags & GZIP_FLAG_NAME ) != 0 )
+        {
+            length = skipZeroTerminated( content, length );
+        }
+        if ( ( flags & GZIP_FLAG_COMMENT ) != 0 )
+        {
+            length = skipZeroTerminated( content, length );
+        }
+        if ( ( flags & GZIP_FLAG_HEADER_CRC ) != 0 && length >= 0 )
+        {
+            length += 2;
+        }
+        return length >= 0 && length <= content.length ? length : -1;
+    }
+
+    private static int skipZeroTerminated( final byte[] content, int offset )
+    {
+        if ( offset < 0 )
+        {
+            return -1;
+        }
+        for ( int i = offset; i < content.length; i++ )
+        {
+            if ( content[i] == 0 )
+            {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks zlib header (RFC 1950), some servers send raw deflate data without it.
+     */
+    private static boolean isZlibHeader( final byte[] content )
+    {
+        if ( content.length < 2 )
+        {
+            return false;
+        }
+        final int cmf = content[0] & 0xFF;
+        final int flg = content[1] & 0xFF;
+        return ( cmf & 0x0F ) == GZIP_DEFLATE_METHOD && ( cmf * 256 + flg ) % 31 == 0;
+    }
+
+    private static byte[] concat( final byte[] first, final byte[] second, int secondLength )
+    {
+        final byte[] result = Arrays.copyOf( first, first.length + secondLength );
+        System.arraycopy( second, 0, result, first.length, secondLength );
+        return result;
+    }
+}
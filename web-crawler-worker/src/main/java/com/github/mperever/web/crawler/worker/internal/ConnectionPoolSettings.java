@@ -0,0 +1,84 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents settings of connections which are kept alive between page fetches.
+ * Pages of one host are usually fetched one after another, so reused connection saves TCP and TLS handshakes.
+ *
+ * @author mperever
+ */
+public final class ConnectionPoolSettings
+{
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    private static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis( 30 );
+    private static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 4096;
+    private static final int DEFAULT_TLS_SESSION_TIMEOUT_SEC = ( int ) TimeUnit.HOURS.toSeconds( 1 );
+
+    private final int maxConnectionsPerHost;
+    private final long idleTimeoutMs;
+    private final int tlsSessionCacheSize;
+    private final int tlsSessionTimeoutSec;
+
+    /**
+     * Creates connection pool settings.
+     *
+     * @param maxConnectionsPerHost The maximum number of connections to one host
+     * @param idleTimeoutMs The time after which idle connection is closed and removed from the pool
+     * @param tlsSessionCacheSize The maximum number of TLS sessions which are kept to resume them by new connections
+     * @param tlsSessionTimeoutSec The time after which TLS session can not be resumed
+     */
+    public ConnectionPoolSettings( int maxConnectionsPerHost,
+                                   long idleTimeoutMs,
+                                   int tlsSessionCacheSize,
+                                   int tlsSessionTimeoutSec )
+    {
+        if ( maxConnectionsPerHost <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'maxConnectionsPerHost' should be positive." );
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+        this.tlsSessionTimeoutSec = tlsSessionTimeoutSec;
+    }
+
+    public static ConnectionPoolSettings defaults()
+    {
+        return new ConnectionPoolSettings(
+                DEFAULT_MAX_CONNECTIONS_PER_HOST,
+                DEFAULT_IDLE_TIMEOUT_MS,
+                DEFAULT_TLS_SESSION_CACHE_SIZE,
+                DEFAULT_TLS_SESSION_TIMEOUT_SEC );
+    }
+
+    /**
+     * @param maxConnectionsPerHost The maximum number of connections to one host
+     * @return The same settings with another maximum number of connections to one host
+     */
+    public ConnectionPoolSettings withMaxConnectionsPerHost( int maxConnectionsPerHost )
+    {
+        return new ConnectionPoolSettings(
+                maxConnectionsPerHost, idleTimeoutMs, tlsSessionCacheSize, tlsSessionTimeoutSec );
+    }
+
+    public int getMaxConnectionsPerHost()
+    {
+        return maxConnectionsPerHost;
+    }
+
+    public long getIdleTimeoutMs()
+    {
+        return idleTimeoutMs;
+    }
+
+    public int getTlsSessionCacheSize()
+    {
+        return tlsSessionCacheSize;
+    }
+
+    public int getTlsSessionTimeoutSec()
+    {
+        return tlsSessionTimeoutSec;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.ts.common.dto.TaskErrorType;
+
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+
+/**
+ * Represents classification of page loading errors, so task service can decide whether the task should be retried.
+ *
+ * @author mperever
+ */
+public final class FetchErrors
+{
+    private FetchErrors()
+    {
+    }
+
+    /**
+     * @param error The error of page loading
+     * @return The type of error, {@link TaskErrorType#UNKNOWN} if error is not recognized
+     */
+    public static TaskErrorType classify( final Throwable error )
+    {
+        Throwable cause = error;
+        // Looking through wrappers, e.g. CompletionException, UncheckedIOException, RuntimeException
+        for ( int depth = 0; cause != null && depth < 8; depth++ )
+        {
+            final TaskErrorType errorType = classifyCause( cause );
+            if ( errorType != null )
+            {
+                return errorType;
+            }
+            cause = cause.getCause();
+        }
+        return TaskErrorType.UNKNOWN;
+    }
+
+    /**
+     * @param status The HTTP status of response
+     * @return The type of error for unsuccessful status
+     */
+    public static TaskErrorType ofHttpStatus( int status )
+    {
+        // Request timeout and too many requests are temporary errors, the same as server errors
+        return status >= 500 || status == 408 || status == 429
+                ? TaskErrorType.HTTP_SERVER_ERROR
+                : TaskErrorType.HTTP_CLIENT_ERROR;
+    }
+
+    private static TaskErrorType classifyCause( final Throwable cause )
+    {
+        if ( cause instanceof CompletionException || cause instanceof ExecutionException )
+        {
+            return null;
+        }
+        if ( cause instanceof FetchException )
+        {
+            return ( ( FetchException ) cause ).getErrorType();
+        }
+        if ( cause instanceof SocketTimeoutException || cause instanceof TimeoutException )
+        {
+            return TaskErrorType.TIMEOUT;
+        }
+        if ( cause instanceof ConnectException
+                || cause instanceof UnknownHostException
+                || cause instanceof NoRouteToHostException
+                || cause instanceof UnresolvedAddressException )
+        {
+            return TaskErrorType.CONNECTION_FAILED;
+        }
+        if ( cause instanceof URISyntaxException || cause instanceof MalformedURLException )
+        {
+            return TaskErrorType.INVALID_URL;
+        }
+        if ( cause instanceof HttpStatusException )
+        {
+            return ofHttpStatus( ( ( HttpStatusException ) cause ).getStatusCode() );
+        }
+        if ( cause instanceof UnsupportedMimeTypeException )
+        {
+            return TaskErrorType.UNSUPPORTED_CONTENT_TYPE;
+        }
+        return null;
+    }
+}
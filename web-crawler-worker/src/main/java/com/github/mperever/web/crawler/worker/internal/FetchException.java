@@ -0,0 +1,26 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.ts.common.dto.TaskErrorType;
+
+/**
+ * Represents error of page downloading with known reason.
+ *
+ * @author mperever
+ */
+public class FetchException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final TaskErrorType errorType;
+
+    public FetchException( final TaskErrorType errorType, final String message )
+    {
+        super( message );
+        this.errorType = errorType;
+    }
+
+    public TaskErrorType getErrorType()
+    {
+        return errorType;
+    }
+}
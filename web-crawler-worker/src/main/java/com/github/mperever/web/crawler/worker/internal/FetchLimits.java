@@ -0,0 +1,136 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Represents limits of page downloading.
+ * Pages that exceed the limits are aborted as soon as possible (e.g. by response headers),
+ * so the worker does not spend network and memory on binary files and huge pages.
+ *
+ * @author mperever
+ */
+public final class FetchLimits
+{
+    private static final int DEFAULT_MAX_BODY_BYTES = 2 * 1024 * 1024;
+    private static final List<String> DEFAULT_CONTENT_TYPES = Collections.unmodifiableList( Arrays.asList(
+            "text/", "application/xml", "application/xhtml+xml" ) );
+    private static final long DEFAULT_CONNECT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis( 30 );
+    private static final long DEFAULT_READ_TIMEOUT_MS = TimeUnit.SECONDS.toMillis( 15 );
+    private static final long DEFAULT_TOTAL_TIMEOUT_MS = TimeUnit.SECONDS.toMillis( 30 );
+
+    private final int maxBodyBytes;
+    private final List<String> allowedContentTypes;
+    private final long connectTimeoutMs;
+    private final long readTimeoutMs;
+    private final long totalTimeoutMs;
+
+    /**
+     * Creates fetch limits.
+     *
+     * @param maxBodyBytes The maximum size of page content
+     * @param allowedContentTypes The prefixes of allowed content types (e.g. "text/")
+     * @param connectTimeoutMs The maximum time to establish connection
+     * @param readTimeoutMs The maximum time without any data from server
+     * @param totalTimeoutMs The maximum time to download page including redirects
+     */
+    public FetchLimits( int maxBodyBytes,
+                        List<String> allowedContentTypes,
+                        long connectTimeoutMs,
+                        long readTimeoutMs,
+                        long totalTimeoutMs )
+    {
+        if ( maxBodyBytes <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'maxBodyBytes' should be positive." );
+        }
+        if ( allowedContentTypes == null || allowedContentTypes.isEmpty() )
+        {
+            throw new IllegalArgumentException( "parameter 'allowedContentTypes' is null or empty." );
+        }
+        this.maxBodyBytes = maxBodyBytes;
+        final String[] contentTypes = new String[ allowedContentTypes.size() ];
+        for ( int i = 0; i < contentTypes.length; i++ )
+        {
+            contentTypes[i] = allowedContentTypes.get( i ).trim().toLowerCase( Locale.ENGLISH );
+        }
+        this.allowedContentTypes = Collections.unmodifiableList( Arrays.asList( contentTypes ) );
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.readTimeoutMs = readTimeoutMs;
+        this.totalTimeoutMs = totalTimeoutMs;
+    }
+
+    /**
+     * @return The limits which are the same as ones of {@link org.jsoup.Jsoup#connect(String)}
+     *         except the maximum size of page content (2 MB instead of 1 MB).
+     */
+    public static FetchLimits defaults()
+    {
+        return new FetchLimits(
+                DEFAULT_MAX_BODY_BYTES,
+                DEFAULT_CONTENT_TYPES,
+                DEFAULT_CONNECT_TIMEOUT_MS,
+                DEFAULT_READ_TIMEOUT_MS,
+                DEFAULT_TOTAL_TIMEOUT_MS );
+    }
+
+    public int getMaxBodyBytes()
+    {
+        return maxBodyBytes;
+    }
+
+    public List<String> getAllowedContentTypes()
+    {
+        return allowedContentTypes;
+    }
+
+    public long getConnectTimeoutMs()
+    {
+        return connectTimeoutMs;
+    }
+
+    public long getReadTimeoutMs()
+    {
+        return readTimeoutMs;
+    }
+
+    public long getTotalTimeoutMs()
+    {
+        return totalTimeoutMs;
+    }
+
+    /**
+     * Checks content type of page, the page without content type is allowed (it is detected by parser).
+     *
+     * @param mediaType The content type of page without parameters (e.g. "text/html")
+     * @return true if the page with such content type can be downloaded
+     */
+    public boolean isAllowedContentType( final String mediaType )
+    {
+        if ( mediaType == null )
+        {
+            return true;
+        }
+        final String type = mediaType.trim().toLowerCase( Locale.ENGLISH );
+        for ( String allowedType : allowedContentTypes )
+        {
+            if ( type.startsWith( allowedType ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param contentLength The content length specified by response headers or -1 if it is not specified
+     * @return true if the page content is larger than allowed
+     */
+    public boolean isTooLarge( long contentLength )
+    {
+        return contentLength > maxBodyBytes;
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.io.ConnectionStatistics;
+
+/**
+ * Represents metrics of page fetches, connections are counted by Jetty {@link ConnectionStatistics}.
+ *
+ * @author mperever
+ */
+public class FetchStatistics implements FetchStatisticsMXBean
+{
+    private final ConnectionStatistics connectionStatistics;
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder compressedPageCount = new LongAdder();
+    private final LongAdder contentWireBytes = new LongAdder();
+    private final LongAdder contentDecodedBytes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder notModifiedCount = new LongAdder();
+
+    FetchStatistics( final ConnectionStatistics connectionStatistics )
+    {
+        this.connectionStatistics = connectionStatistics;
+    }
+
+    void onRequest()
+    {
+        requestCount.increment();
+    }
+
+    void onUncompressedContent( long contentBytes )
+    {
+        contentWireBytes.add( contentBytes );
+        contentDecodedBytes.add( contentBytes );
+    }
+
+    void onCompressedContent( long wireBytes, long decodedBytes, long decodeTimeNanos )
+    {
+        compressedPageCount.increment();
+        contentWireBytes.add( wireBytes );
+        contentDecodedBytes.add( decodedBytes );
+        decodeNanos.add( decodeTimeNanos );
+    }
+
+    void onNotModified()
+    {
+        notModifiedCount.increment();
+    }
+
+    @Override
+    public long getRequestCount()
+    {
+        return requestCount.sum();
+    }
+
+    @Override
+    public long getConnectionsOpened()
+    {
+        return connectionStatistics.getConnectionsTotal();
+    }
+
+    @Override
+    public long getOpenConnections()
+    {
+        return connectionStatistics.getConnections();
+    }
+
+    @Override
+    public double getRequestsPerConnection()
+    {
+        final long connectionsOpened = getConnectionsOpened();
+        return connectionsOpened == 0 ? 0 : ( double ) getRequestCount() / connectionsOpened;
+    }
+
+    @Override
+    public long getReceivedBytes()
+    {
+        return connectionStatistics.getReceivedBytes();
+    }
+
+    @Override
+    public long getCompressedPageCount()
+    {
+        return compressedPageCount.sum();
+    }
+
+    @Override
+    public long getContentWireBytes()
+    {
+        return contentWireBytes.sum();
+    }
+
+    @Override
+    public long getContentDecodedBytes()
+    {
+        return contentDecodedBytes.sum();
+    }
+
+    @Override
+    public double getCompressionRatio()
+    {
+        final long wireBytes = getContentWireBytes();
+        return wireBytes == 0 ? 0 : ( double ) getContentDecodedBytes() / wireBytes;
+    }
+
+    @Override
+    public long getDecodeTimeMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( decodeNanos.sum() );
+    }
+
+    @Override
+    public long getNotModifiedCount()
+    {
+        return notModifiedCount.sum();
+    }
+}
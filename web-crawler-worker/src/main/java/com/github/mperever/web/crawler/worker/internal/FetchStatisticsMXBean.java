@@ -0,0 +1,64 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+/**
+ * Represents metrics of page fetches, see {@link JettyHtmlDocumentLoader}.
+ *
+ * @author mperever
+ */
+public interface FetchStatisticsMXBean
+{
+    /**
+     * @return The number of requested pages
+     */
+    long getRequestCount();
+
+    /**
+     * @return The number of connections which have been opened to fetch pages
+     */
+    long getConnectionsOpened();
+
+    /**
+     * @return The number of currently open connections (including idle ones in the pool)
+     */
+    long getOpenConnections();
+
+    /**
+     * @return The average number of requests per connection, 1 means that connections are not reused
+     */
+    double getRequestsPerConnection();
+
+    /**
+     * @return The number of bytes received from hosts
+     */
+    long getReceivedBytes();
+
+    /**
+     * @return The number of pages received with compressed content (gzip or deflate)
+     */
+    long getCompressedPageCount();
+
+    /**
+     * @return The number of bytes of page contents as they have been received (compressed or not)
+     */
+    long getContentWireBytes();
+
+    /**
+     * @return The number of bytes of page contents after decoding
+     */
+    long getContentDecodedBytes();
+
+    /**
+     * @return The ratio of decoded to received page content bytes, 1 means that pages are not compressed
+     */
+    double getCompressionRatio();
+
+    /**
+     * @return The time spent on decoding compressed pages
+     */
+    long getDecodeTimeMs();
+
+    /**
+     * @return The number of pages which have not been downloaded again since they have not been changed
+     */
+    long getNotModifiedCount();
+}
@@ -0,0 +1,75 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.worker.HtmlDocument;
+import com.github.mperever.web.crawler.worker.PageValidators;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Represents downloaded HTML document with validators of page from response headers.
+ *
+ * @author mperever
+ */
+final class FetchedHtmlDocument implements HtmlDocument
+{
+    private final HtmlDocument document;
+    private final PageValidators validators;
+
+    private FetchedHtmlDocument( HtmlDocument document, PageValidators validators )
+    {
+        this.document = document;
+        this.validators = validators;
+    }
+
+    /**
+     * @param document The parsed document
+     * @param validators The page validators from response headers or null
+     * @return The document with page validators
+     */
+    static HtmlDocument of( final HtmlDocument document, final PageValidators validators )
+    {
+        return validators == null ? document : new FetchedHtmlDocument( document, validators );
+    }
+
+    /**
+     * @param validators The page validators which the page has been requested with
+     * @return The document of page which has not been changed since previous download
+     */
+    static HtmlDocument unchanged( final PageValidators validators )
+    {
+        return new FetchedHtmlDocument( null, validators );
+    }
+
+    @Override
+    public String getPlainText()
+    {
+        return document == null ? "" : document.getPlainText();
+    }
+
+    @Override
+    public Set<URI> getUniqueLinks()
+    {
+        return document == null ? Collections.emptySet() : document.getUniqueLinks();
+    }
+
+    @Override
+    public Map<String, Long> getWordStats()
+    {
+        return document == null ? Collections.emptyMap() : document.getWordStats();
+    }
+
+    @Override
+    public PageValidators getValidators()
+    {
+        return validators;
+    }
+
+    @Override
+    public boolean isUnchanged()
+    {
+        return document == null;
+    }
+}
@@ -0,0 +1,442 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.ts.common.dto.TaskErrorType;
+
+import com.github.mperever.web.crawler.worker.AsyncHtmlDocumentLoader;
+import com.github.mperever.web.crawler.worker.HtmlDocument;
+import com.github.mperever.web.crawler.worker.PageValidators;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents non-blocking implementation for loading Html document from internet.
+ * Pages are downloaded by Jetty {@link HttpClient} without holding a thread per request,
+ * and then are parsed by jsoup API on the specified parse executor.
+ *
+ * Connections are kept alive and pooled per host, and TLS sessions are cached, so next pages
+ * of the same host do not pay TCP and TLS handshakes. The number of opened connections
+ * versus the number of requests is exposed by {@link #getStatistics()}.
+ *
+ * Pages are requested with gzip and deflate content encoding (HTML is usually compressed several times),
+ * and are decoded by parts as they are received, so compressed content is not kept in memory.
+ *
+ * @author mperever
+ */
+public class JettyHtmlDocumentLoader implements AsyncHtmlDocumentLoader, AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger( JettyHtmlDocumentLoader.class );
+
+    private static final int NOT_MODIFIED_STATUS = 304;
+
+    private final HttpClient httpClient;
+    private final Executor parseExecutor;
+    private final FetchLimits limits;
+    private final FetchStatistics statistics;
+
+    /**
+     * Creates loader with default fetch limits and starts underlying http client.
+     *
+     * @param parseExecutor The executor to parse downloaded pages (CPU bound work)
+     * @param maxConcurrentFetches The maximum number of pages that can be downloaded at once
+     */
+    public JettyHtmlDocumentLoader( Executor parseExecutor, int maxConcurrentFetches )
+    {
+        this( parseExecutor, maxConcurrentFetches, FetchLimits.defaults() );
+    }
+
+    /**
+     * Creates loader and starts underlying http client.
+     *
+     * @param parseExecutor The executor to parse downloaded pages (CPU bound work)
+     * @param maxConcurrentFetches The maximum number of pages that can be downloaded at once
+     * @param limits The limits of page downloading
+     */
+    public JettyHtmlDocumentLoader( Executor parseExecutor, int maxConcurrentFetches, FetchLimits limits )
+    {
+        this( parseExecutor,
+              maxConcurrentFetches,
+              limits,
+              ConnectionPoolSettings.defaults().withMaxConnectionsPerHost( maxConcurrentFetches ) );
+    }
+
+    /**
+     * Creates loader and starts underlying http client.
+     *
+     * @param parseExecutor The executor to parse downloaded pages (CPU bound work)
+     * @param maxConcurrentFetches The maximum number of pages that can be downloaded at once
+     * @param limits The limits of page downloading
+     * @param poolSettings The settings of connections kept alive between page fetches
+     */
+    public JettyHtmlDocumentLoader( Executor parseExecutor,
+                                    int maxConcurrentFetches,
+                                    FetchLimits limits,
+                                    ConnectionPoolSettings poolSettings )
+    {
+        if ( limits == null )
+        {
+            throw new IllegalArgumentException( "parameter 'limits' is null." );
+        }
+        if ( poolSettings == null )
+        {
+            throw new IllegalArgumentException( "parameter 'poolSettings' is null." );
+        }
+        this.parseExecutor = parseExecutor;
+        this.limits = limits;
+
+        // JDK resumes cached TLS session when new connection is opened to the same host and port
+        final SslContextFactory sslContextFactory = new SslContextFactory();
+        sslContextFactory.setSessionCachingEnabled( true );
+        sslContextFactory.setSslSessionCacheSize( poolSettings.getTlsSessionCacheSize() );
+        sslContextFactory.setSslSessionTimeout( poolSettings.getTlsSessionTimeoutSec() );
+        httpClient = new HttpClient( sslContextFactory );
+
+        final ConnectionStatistics connectionStatistics = new ConnectionStatistics();
+        httpClient.addBean( connectionStatistics );
+        statistics = new FetchStatistics( connectionStatistics );
+
+        // Compressed pages are decoded by the page listener, see CompressedContentDecoder
+        httpClient.getContentDecoderFactories().clear();
+        httpClient.setFollowRedirects( true );
+        httpClient.setConnectTimeout( limits.getConnectTimeoutMs() );
+        // Idle connections are closed by idle timeout, and pools of hosts without connections are removed
+        httpClient.setIdleTimeout( poolSettings.getIdleTimeoutMs() );
+        httpClient.setRemoveIdleDestinations( true );
+        httpClient.setMaxConnectionsPerDestination( poolSettings.getMaxConnectionsPerHost() );
+        // Requests over the pool size wait for a free connection instead of opening new one
+        httpClient.setMaxRequestsQueuedPerDestination( maxConcurrentFetches );
+        try
+        {
+            httpClient.start();
+
+        } catch ( Exception ex )
+        {
+            throw new IllegalStateException( "Could not start http client for page loading", ex );
+        }
+    }
+
+    @Override
+    public HtmlDocument load( final URI url )
+    {
+        try
+        {
+            return loadAsync( url ).get();
+
+        } catch ( InterruptedException ex )
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException( "Thread was interrupted during page loading", ex );
+
+        } catch ( ExecutionException ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            throw ex.getCause() instanceof FetchException
+                    ? ( FetchException ) ex.getCause()
+                    : new RuntimeException( ex.getCause() );
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> loadAsync( final URI url )
+    {
+        return loadAsync( url, null );
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> loadAsync( final URI url, final PageValidators validators )
+    {
+        if ( url == null )
+        {
+            throw new IllegalArgumentException( "parameter 'url' is null." );
+        }
+
+        statistics.onRequest();
+        final CompletableFuture<FetchedPage> fetchedPage = new CompletableFuture<>();
+        final Request request = httpClient.newRequest( url )
+                .header( HttpHeader.ACCEPT_ENCODING, CompressedContentDecoder.ACCEPT_ENCODING )
+                .timeout( limits.getTotalTimeoutMs(), TimeUnit.MILLISECONDS )
+                .idleTimeout( limits.getReadTimeoutMs(), TimeUnit.MILLISECONDS );
+        if ( validators != null )
+        {
+            // Server responds with 304 (Not Modified) and without content if the page has not been changed
+            if ( validators.getEtag() != null )
+            {
+                request.header( HttpHeader.IF_NONE_MATCH, validators.getEtag() );
+            }
+            if ( validators.getLastModified() != null )
+            {
+                request.header( HttpHeader.IF_MODIFIED_SINCE, validators.getLastModified() );
+            }
+        }
+        request.send( new PageListener( fetchedPage, validators ) );
+
+        // Network callbacks must not be blocked by parsing, so parsing is moved to the parse executor.
+        return fetchedPage.thenApplyAsync( this::parse, parseExecutor );
+    }
+
+    private HtmlDocument parse( final FetchedPage page )
+    {
+        if ( page.isNotModified )
+        {
+            statistics.onNotModified();
+            return FetchedHtmlDocument.unchanged( page.validators );
+        }
+
+        final String pageUrl = page.url.toString();
+        checkStatus( page.status, pageUrl );
+        checkMediaType( page.mediaType, pageUrl );
+
+        try ( final InputStream content = new ByteArrayInputStream( page.content ) )
+        {
+            return FetchedHtmlDocument.of( parseContent( content, page.charset, pageUrl ), page.validators );
+
+        } catch ( IOException ex )
+        {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    /**
+     * Parses downloaded page, it is performed by the parse executor.
+     *
+     * @param content The page content
+     * @param charset The charset specified by response headers or null
+     * @param pageUrl The page url (after redirects)
+     * @return The HTML document
+     * @throws IOException if content could not be read
+     */
+    protected HtmlDocument parseContent( final InputStream content, final String charset, final String pageUrl )
+            throws IOException
+    {
+        // If charset is not specified by response headers then jsoup detects it from the page itself.
+        final Document htmlDoc = Jsoup.parse( content, charset, pageUrl );
+        return new JsoupHtmlDocument( htmlDoc );
+    }
+
+    /**
+     * Rejects unsuccessful responses in the same way as {@link Jsoup#connect(String)} does.
+     */
+    private static void checkStatus( int status, final String pageUrl )
+    {
+        final boolean isSuccess = status >= 200 && status < 300;
+        if ( !isSuccess )
+        {
+            throw new FetchException( FetchErrors.ofHttpStatus( status ),
+                    "HTTP error " + status + " fetching URL: " + pageUrl );
+        }
+    }
+
+    /**
+     * Rejects responses which content type is not allowed by fetch limits (e.g. images and archives).
+     */
+    private void checkMediaType( final String mediaType, final String pageUrl )
+    {
+        if ( !limits.isAllowedContentType( mediaType ) )
+        {
+            throw new FetchException( TaskErrorType.UNSUPPORTED_CONTENT_TYPE,
+                    "Unhandled content type '" + mediaType + "'. Must be one of "
+                            + limits.getAllowedContentTypes() + ": " + pageUrl );
+        }
+    }
+
+    private void checkContentLength( long contentLength, final String pageUrl )
+    {
+        if ( limits.isTooLarge( contentLength ) )
+        {
+            throw new FetchException( TaskErrorType.BODY_TOO_LARGE,
+                    "The page is larger than " + limits.getMaxBodyBytes() + " bytes (" + contentLength
+                            + " bytes): " + pageUrl );
+        }
+    }
+
+    /**
+     * @return The metrics of page fetches
+     */
+    public FetchStatistics getStatistics()
+    {
+        return statistics;
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            httpClient.stop();
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+        }
+    }
+
+    /**
+     * Represents listener which receives page content and decodes it if it is compressed.
+     */
+    private final class PageListener extends BufferingResponseListener
+    {
+        private final CompletableFuture<FetchedPage> fetchedPage;
+        private final PageValidators requestValidators;
+        private PageValidators validators;
+        private boolean isNotModified;
+        private CompressedContentDecoder decoder;
+        private long contentLength;
+
+        private PageListener( final CompletableFuture<FetchedPage> fetchedPage, final PageValidators requestValidators )
+        {
+            super( limits.getMaxBodyBytes() );
+            this.fetchedPage = fetchedPage;
+            this.requestValidators = requestValidators;
+        }
+
+        /**
+         * Rejects the page by response headers, so the body of rejected page is not downloaded.
+         */
+        @Override
+        public void onHeaders( final Response response )
+        {
+            final String pageUrl = response.getRequest().getURI().toString();
+            final HttpFields headers = response.getHeaders();
+            isNotModified = response.getStatus() == NOT_MODIFIED_STATUS && requestValidators != null;
+            if ( isNotModified )
+            {
+                // Server may omit validators in 304 response, then the previous ones are still valid
+                final PageValidators responseValidators = PageValidators.of(
+                        headers.get( HttpHeader.ETAG ), headers.get( HttpHeader.LAST_MODIFIED ) );
+                validators = responseValidators != null ? responseValidators : requestValidators;
+                return;
+            }
+            validators = PageValidators.of( headers.get( HttpHeader.ETAG ), headers.get( HttpHeader.LAST_MODIFIED ) );
+            try
+            {
+                checkStatus( response.getStatus(), pageUrl );
+                checkMediaType( headers.get( HttpHeader.CONTENT_TYPE ), pageUrl );
+                // Compressed content is not larger than decoded one, so the check is valid for both
+                checkContentLength( headers.getLongField( HttpHeader.CONTENT_LENGTH.asString() ), pageUrl );
+                decoder = CompressedContentDecoder.forEncoding(
+                        headers.get( HttpHeader.CONTENT_ENCODING ), limits.getMaxBodyBytes() );
+
+            } catch ( FetchException ex )
+            {
+                response.abort( ex );
+                return;
+            }
+            super.onHeaders( response );
+        }
+
+        @Override
+        public void onContent( final Response response, final ByteBuffer content )
+        {
+            try
+            {
+                final ByteBuffer decodedContent = decoder != null ? decoder.decode( content ) : content;
+
+                // The content length can be unknown (chunked response), so the body is checked while reading
+                contentLength += decodedContent.remaining();
+                if ( limits.isTooLarge( contentLength ) )
+                {
+                    throw new FetchException( TaskErrorType.BODY_TOO_LARGE,
+                            "The page is larger than " + limits.getMaxBodyBytes() + " bytes: "
+                                    + response.getRequest().getURI() );
+                }
+                super.onContent( response, decodedContent );
+
+            } catch ( FetchException ex )
+            {
+                response.abort( ex );
+            }
+        }
+
+        @Override
+        public void onComplete( final Result result )
+        {
+            if ( decoder != null )
+            {
+                decoder.close();
+                statistics.onCompressedContent(
+                        decoder.getReceivedBytes(), decoder.getDecodedBytes(), decoder.getDecodeNanos() );
+                logger.debug( "Page {}: {} bytes received, {} bytes decoded in {} us",
+                        result.getRequest().getURI(),
+                        decoder.getReceivedBytes(),
+                        decoder.getDecodedBytes(),
+                        TimeUnit.NANOSECONDS.toMicros( decoder.getDecodeNanos() ) );
+            } else
+            {
+                statistics.onUncompressedContent( contentLength );
+            }
+
+            if ( result.isFailed() )
+            {
+                // The abort reason is the failure of response when the page is rejected by limits
+                final Throwable failure = result.getResponseFailure() != null
+                        ? result.getResponseFailure()
+                        : result.getFailure();
+                fetchedPage.completeExceptionally( failure );
+                return;
+            }
+            fetchedPage.complete( new FetchedPage(
+                    result.getRequest().getURI(),
+                    result.getResponse().getStatus(),
+                    getMediaType(),
+                    getEncoding(),
+                    getContent(),
+                    validators,
+                    isNotModified ) );
+        }
+    }
+
+    /**
+     * Represents downloaded page content which is not parsed yet.
+     */
+    private static final class FetchedPage
+    {
+        private final URI url;
+        private final int status;
+        private final String mediaType;
+        private final String charset;
+        private final byte[] content;
+        private final PageValidators validators;
+        private final boolean isNotModified;
+
+        private FetchedPage( URI url,
+                             int status,
+                             String mediaType,
+                             String charset,
+                             byte[] content,
+                             PageValidators validators,
+                             boolean isNotModified )
+        {
+            this.url = url;
+            this.status = status;
+            this.mediaType = mediaType;
+            this.charset = charset;
+            this.content = content;
+            this.validators = validators;
+            this.isNotModified = isNotModified;
+        }
+    }
+}
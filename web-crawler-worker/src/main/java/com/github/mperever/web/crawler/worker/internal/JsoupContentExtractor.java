@@ -0,0 +1,174 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeVisitor;
+
+/**
+ * Extracts plain text and links of jsoup document by one walk through DOM.
+ *
+ * The text is the same as jsoup Element.text() of body: text nodes with normalized whitespaces,
+ * separated by space on block elements and line breaks, script and style contents are not included.
+ * Link hrefs are resolved by {@link LinkNormalizer}, so the java.net.URL objects
+ * are not created for each link as by jsoup "abs:href" attribute.
+ *
+ * @author mperever
+ */
+final class JsoupContentExtractor implements NodeVisitor
+{
+    private final StringBuilder text;
+    private final Set<URI> links = new HashSet<>();
+    private Element body;
+    private boolean isInBody;
+    private final LinkNormalizer linkNormalizer = new LinkNormalizer();
+
+    private JsoupContentExtractor( StringBuilder text )
+    {
+        this.text = text;
+    }
+
+    /**
+     * Extracts content of HTML document.
+     *
+     * @param htmlDoc The jsoup document
+     * @return The plain text and links of document
+     */
+    static Content extract( final Document htmlDoc )
+    {
+        final JsoupContentExtractor extractor = new JsoupContentExtractor( TextBuffers.acquire() );
+        htmlDoc.traverse( extractor );
+        return new Content( TextBuffers.release( extractor.text ), extractor.links );
+    }
+
+    @Override
+    public void head( final Node node, final int depth )
+    {
+        if ( node instanceof TextNode )
+        {
+            if ( isInBody )
+            {
+                appendText( ( TextNode ) node );
+            }
+            return;
+        }
+        if ( !( node instanceof Element ) )
+        {
+            return;
+        }
+
+        final Element element = ( Element ) node;
+        final String tagName = element.tagName();
+        if ( body == null && "body".equals( tagName ) )
+        {
+            body = element;
+            isInBody = true;
+
+        } else if ( isInBody
+                    && text.length() > 0
+                    && ( element.isBlock() || "br".equals( tagName ) )
+                    && !isLastCharWhitespace() )
+        {
+            text.append( ' ' );
+        }
+
+        if ( "a".equals( tagName ) && element.hasAttr( "href" ) )
+        {
+            addLink( element );
+        }
+    }
+
+    @Override
+    public void tail( final Node node, final int depth )
+    {
+        // Text of the first body only is extracted like jsoup does it
+        if ( node == body )
+        {
+            isInBody = false;
+        }
+    }
+
+    private void appendText( final TextNode textNode )
+    {
+        final String nodeText = textNode.getWholeText();
+        if ( isWhitespacePreserved( textNode.parentNode() ) )
+        {
+            text.append( nodeText );
+            return;
+        }
+
+        // Collapse whitespace sequences to one space
+        final boolean stripLeading = isLastCharWhitespace();
+        boolean lastWasWhite = false;
+        boolean reachedNonWhite = false;
+        for ( int i = 0; i < nodeText.length(); i++ )
+        {
+            final char c = nodeText.charAt( i );
+            if ( isWhitespace( c ) )
+            {
+                if ( ( stripLeading && !reachedNonWhite ) || lastWasWhite )
+                {
+                    continue;
+                }
+                text.append( ' ' );
+                lastWasWhite = true;
+            } else
+            {
+                text.append( c );
+                lastWasWhite = false;
+                reachedNonWhite = true;
+            }
+        }
+    }
+
+    private static boolean isWhitespacePreserved( final Node node )
+    {
+        // Looks at the parent element and one level up like jsoup does it
+        if ( node instanceof Element )
+        {
+            final Element element = ( Element ) node;
+            return element.tag().preserveWhitespace()
+                    || element.parent() != null && element.parent().tag().preserveWhitespace();
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace( final char c )
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == 160;
+    }
+
+    private boolean isLastCharWhitespace()
+    {
+        return text.length() != 0 && text.charAt( text.length() - 1 ) == ' ';
+    }
+
+    private void addLink( final Element anchor )
+    {
+        final URI linkUri = linkNormalizer.toLink( anchor.baseUri(), anchor.attr( "href" ) );
+        if ( linkUri != null )
+        {
+            links.add( linkUri );
+        }
+    }
+
+    /**
+     * Represents extracted content of HTML document.
+     */
+    static final class Content
+    {
+        final String plainText;
+        final Set<URI> links;
+
+        Content( String plainText, Set<URI> links )
+        {
+            this.plainText = plainText;
+            this.links = links;
+        }
+    }
+}
@@ -21,6 +21,32 @@ public class JsoupHtmlDocumentLoader implements HtmlDocumentLoader
 {
     private static final Logger logger = LoggerFactory.getLogger( JsoupHtmlDocumentLoader.class );
 
+    private final FetchLimits limits;
+
+    /**
+     * Creates loader with default fetch limits.
+     */
+    public JsoupHtmlDocumentLoader()
+    {
+        this( FetchLimits.defaults() );
+    }
+
+    /**
+     * Creates loader with specified fetch limits.
+     * jsoup API does not allow to abort too large page, so it is truncated to the maximum size,
+     * and the content type is checked by jsoup itself (text/*, application/xml, or application/xhtml+xml).
+     *
+     * @param limits The limits of page downloading
+     */
+    public JsoupHtmlDocumentLoader( FetchLimits limits )
+    {
+        if ( limits == null )
+        {
+            throw new IllegalArgumentException( "parameter 'limits' is null." );
+        }
+        this.limits = limits;
+    }
+
     @Override
     public HtmlDocument load( final URI url )
     {
@@ -31,7 +57,10 @@ public class JsoupHtmlDocumentLoader implements HtmlDocumentLoader
 
         try
         {
-            final Document htmlDoc = Jsoup.connect( url.toString() ).get();
+            final Document htmlDoc = Jsoup.connect( url.toString() )
+                    .maxBodySize( limits.getMaxBodyBytes() )
+                    .timeout( ( int ) limits.getTotalTimeoutMs() )
+                    .get();
 
             return new JsoupHtmlDocument( htmlDoc );
 
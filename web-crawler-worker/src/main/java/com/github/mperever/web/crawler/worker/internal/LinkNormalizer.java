@@ -0,0 +1,209 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts hrefs of HTML links to absolute URIs which are supported by crawler.
+ *
+ * Hrefs are resolved against base URI by {@link URI}, the last parsed base URI is kept,
+ * because all links of document usually have the same one.
+ * It is not thread-safe, one instance is used per document.
+ *
+ * @author mperever
+ */
+final class LinkNormalizer
+{
+    private static final Logger logger = LoggerFactory.getLogger( LinkNormalizer.class );
+
+    private String baseUriValue;
+    private URI baseUri;
+
+    /**
+     * Converts link href to absolute URI without bookmark and trailing slash.
+     *
+     * @param baseUri The base URI of document, relative hrefs are resolved against it
+     * @param hrefAttrValue The value of href attribute
+     * @return The link URI or null, if the link is not valid or is not supported by crawler (not http link)
+     */
+    URI toLink( final String baseUri, final String hrefAttrValue )
+    {
+        logger.debug( "Analysing HTML link with href '{}'", hrefAttrValue );
+
+        final URI linkUri = hrefToURI( baseUri, hrefAttrValue );
+        if ( linkUri != null && isLinkSupported( linkUri ) )
+        {
+            logger.debug( "Add link into result set. URL: '{}'", linkUri );
+            return linkUri;
+        }
+        return null;
+    }
+
+    /**
+     * Resolves href of base element against page url.
+     *
+     * @param pageUrl The page url
+     * @param baseHref The value of href attribute of base element
+     * @return The base URI of document, the page url if href is not valid
+     */
+    static String resolveBaseHref( final String pageUrl, final String baseHref )
+    {
+        try
+        {
+            return new URI( pageUrl ).resolve( new URI( baseHref.trim() ) ).toString();
+
+        } catch ( URISyntaxException | IllegalArgumentException ex )
+        {
+            logger.debug( "Could not resolve the base href '" + baseHref + "'.", ex );
+        }
+        return pageUrl;
+    }
+
+    private URI hrefToURI( final String baseUri, final String hrefAttrValue )
+    {
+        final String href = removeHtmlBookmark( hrefAttrValue ).trim();
+        try
+        {
+            final String scheme = getScheme( href );
+            if ( scheme != null )
+            {
+                // Absolute link, only http links are supported, so others are not parsed at all
+                if ( !isHttpScheme( scheme ) )
+                {
+                    return null;
+                }
+                // Scheme is written in lower case like java.net.URL does it
+                final String lowerCaseScheme = scheme.toLowerCase( Locale.ENGLISH );
+                final String link = lowerCaseScheme.equals( scheme )
+                        ? href
+                        : lowerCaseScheme + href.substring( scheme.length() );
+                return new URI( removeLastSlash( link ) );
+            }
+
+            final URI base = resolveBaseUri( baseUri );
+            if ( base == null )
+            {
+                return null;
+            }
+
+            final URI linkUri;
+            if ( href.isEmpty() )
+            {
+                linkUri = base;
+            } else if ( href.charAt( 0 ) == '?' )
+            {
+                // URI resolves query only reference against base directory, but browsers do it against base path
+                linkUri = base.resolve( new URI( base.getRawPath() + href ) );
+            } else
+            {
+                linkUri = base.resolve( new URI( href ) );
+            }
+
+            final String link = linkUri.toString();
+            return link.charAt( link.length() - 1 ) == '/'
+                    ? new URI( removeLastSlash( link ) )
+                    : linkUri;
+
+        } catch ( URISyntaxException | IllegalArgumentException ex )
+        {
+            logger.debug( "Could not convert the link '" + href + "' to URI.", ex );
+        }
+        return null;
+    }
+
+    private URI resolveBaseUri( final String value )
+    {
+        if ( !value.equals( baseUriValue ) )
+        {
+            baseUriValue = value;
+            baseUri = null;
+            try
+            {
+                final URI uri = new URI( value );
+                if ( uri.isAbsolute() && uri.getRawPath() != null )
+                {
+                    // URI resolves relative path against authority without path as "http://hostpath"
+                    baseUri = uri.getRawPath().isEmpty() ? uri.resolve( "/" ) : uri;
+                }
+
+            } catch ( URISyntaxException ex )
+            {
+                logger.debug( "Could not convert the base URI '" + value + "' to URI.", ex );
+            }
+        }
+        return baseUri;
+    }
+
+    /**
+     * Gets scheme of URI reference.
+     *
+     * @param href The URI reference
+     * @return The scheme or null, if reference is relative
+     */
+    private static String getScheme( final String href )
+    {
+        for ( int i = 0; i < href.length(); i++ )
+        {
+            final char c = href.charAt( i );
+            if ( c == ':' )
+            {
+                return i > 0 ? href.substring( 0, i ) : null;
+            }
+
+            final boolean isSchemeChar = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z'
+                    || i > 0 && ( c >= '0' && c <= '9' || c == '+' || c == '-' || c == '.' );
+            if ( !isSchemeChar )
+            {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isHttpScheme( final String scheme )
+    {
+        return "http".equalsIgnoreCase( scheme ) || "https".equalsIgnoreCase( scheme );
+    }
+
+    private static boolean isLinkSupported( final URI url )
+    {
+        final String urlProtocol = url.getScheme().toLowerCase( Locale.ENGLISH );
+        final boolean isProtocolSupported = "http".equals( urlProtocol ) || "https".equals( urlProtocol );
+
+        if ( !isProtocolSupported )
+        {
+            logger.debug( "The protocol '{}' is not supported by crawler.", urlProtocol );
+        }
+
+        if ( url.getHost() == null )
+        {
+            logger.debug( "The link host is null. url '{}'", url );
+        }
+
+        return url.getHost() != null && isProtocolSupported;
+    }
+
+    private static String removeHtmlBookmark( final String htmlLink )
+    {
+        final int hashPosition = htmlLink.indexOf( '#' );
+        return hashPosition != -1
+                ? htmlLink.substring( 0, hashPosition )
+                : htmlLink;
+    }
+
+    private static String removeLastSlash( final String htmlLink )
+    {
+        if ( htmlLink == null || htmlLink.isEmpty() )
+        {
+            return htmlLink;
+        }
+        // Remove last character if it's '/'
+        return htmlLink.charAt( htmlLink.length() - 1 ) == '/'
+                ? htmlLink.substring( 0, htmlLink.length() - 1 )
+                : htmlLink;
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.ts.common.UrlFingerprint;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents bounded cache of urls which have been already reported to task service,
+ * so links repeated on many pages of a site (e.g. header and footer links) are not sent again.
+ *
+ * Url is kept with the smallest depth it has been sent with, and url found with smaller depth is sent again,
+ * so task service lowers depth of the task (external urls deeper than depth limit are not crawled).
+ * Depths greater than 255 are not told apart.
+ *
+ * The cache keeps url fingerprints in fixed array sized by memory budget, each url has two slots to be placed in.
+ * When both slots are taken then one of them is overwritten, so old urls are evicted by new ones.
+ * Evicted url is just sent again (task service skips existing tasks), and url which has not been put is never
+ * reported as sent, except for fingerprint collision. The cache is lock-free.
+ *
+ * @author mperever
+ */
+public class SentUrlCache implements SentUrlCacheMXBean
+{
+    private static final long EMPTY_SLOT = 0;
+
+    // The low bits of slot keep url depth, other bits keep url fingerprint
+    private static final int DEPTH_BITS = 8;
+    private static final long DEPTH_MASK = ( 1L << DEPTH_BITS ) - 1;
+
+    private final AtomicLongArray slots;
+    private final int slotMask;
+    private final LongAdder lookupCount = new LongAdder();
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * Creates cache.
+     *
+     * @param memoryBytes The memory budget of cache, 0 to disable cache
+     */
+    public SentUrlCache( long memoryBytes )
+    {
+        if ( memoryBytes < 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'memoryBytes' must not be negative." );
+        }
+
+        // Slot count is power of two, so slot index is taken by bit mask
+        final long maxSlotCount = Math.min( memoryBytes / Long.BYTES, 1 << 30 );
+        final int slotCount = maxSlotCount < 2 ? 0 : Integer.highestOneBit( ( int ) maxSlotCount );
+        this.slots = new AtomicLongArray( slotCount );
+        this.slotMask = slotCount - 1;
+    }
+
+    /**
+     * Checks whether url has been put into the cache with the same or smaller depth.
+     *
+     * @param url The url
+     * @param depth The depth of url
+     * @return true if url has been sent with the same or smaller depth
+     */
+    public boolean contains( final String url, int depth )
+    {
+        if ( slots.length() == 0 )
+        {
+            return false;
+        }
+
+        lookupCount.increment();
+        final long fingerprint = fingerprint( url );
+        final long depthBits = depthBits( depth );
+        final boolean isHit = isSent( slots.get( firstSlot( fingerprint ) ), fingerprint, depthBits )
+                || isSent( slots.get( secondSlot( fingerprint ) ), fingerprint, depthBits );
+        if ( isHit )
+        {
+            hitCount.increment();
+        }
+        return isHit;
+    }
+
+    /**
+     * Puts url into the cache, it should be called when url has been successfully sent.
+     * Url which is already in the cache keeps the smaller depth.
+     *
+     * @param url The url
+     * @param depth The depth url has been sent with
+     */
+    public void put( final String url, int depth )
+    {
+        if ( slots.length() == 0 )
+        {
+            return;
+        }
+
+        final long fingerprint = fingerprint( url );
+        final long value = fingerprint | depthBits( depth );
+        final int firstSlot = firstSlot( fingerprint );
+        final int secondSlot = secondSlot( fingerprint );
+        final long firstValue = slots.get( firstSlot );
+        final long secondValue = slots.get( secondSlot );
+        if ( ( firstValue & ~DEPTH_MASK ) == fingerprint )
+        {
+            slots.lazySet( firstSlot, Math.min( firstValue, value ) );
+        }
+        else if ( ( secondValue & ~DEPTH_MASK ) == fingerprint )
+        {
+            slots.lazySet( secondSlot, Math.min( secondValue, value ) );
+        }
+        else if ( firstValue == EMPTY_SLOT )
+        {
+            slots.lazySet( firstSlot, value );
+        }
+        else if ( secondValue == EMPTY_SLOT )
+        {
+            slots.lazySet( secondSlot, value );
+        }
+        else
+        {
+            // Both slots are taken, the evicted one is chosen by fingerprint bit (pseudo-random)
+            slots.lazySet( fingerprint < 0 ? firstSlot : secondSlot, value );
+        }
+    }
+
+    private static boolean isSent( long slotValue, long fingerprint, long depthBits )
+    {
+        return ( slotValue & ~DEPTH_MASK ) == fingerprint && ( slotValue & DEPTH_MASK ) <= depthBits;
+    }
+
+    private static long depthBits( int depth )
+    {
+        return Math.min( Math.max( depth, 0 ), DEPTH_MASK );
+    }
+
+    @Override
+    public long getLookupCount()
+    {
+        return lookupCount.sum();
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+    @Override
+    public double getHitRate()
+    {
+        final long lookups = lookupCount.sum();
+        return lookups == 0 ? 0 : ( double ) hitCount.sum() / lookups;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return slots.length();
+    }
+
+    @Override
+    public long getMemoryBytes()
+    {
+        return ( long ) slots.length() * Long.BYTES;
+    }
+
+    /**
+     * @return The url fingerprint without depth bits, it is never equal to empty slot
+     */
+    private static long fingerprint( final String url )
+    {
+        final long fingerprint = UrlFingerprint.of( url ) & ~DEPTH_MASK;
+        return fingerprint == EMPTY_SLOT ? DEPTH_MASK + 1 : fingerprint;
+    }
+
+    private int firstSlot( long fingerprint )
+    {
+        return ( int ) ( fingerprint >>> 32 ) & slotMask;
+    }
+
+    private int secondSlot( long fingerprint )
+    {
+        return ( int ) ( fingerprint >>> DEPTH_BITS ) & slotMask;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+/**
+ * Represents metrics of {@link SentUrlCache}.
+ *
+ * @author mperever
+ */
+public interface SentUrlCacheMXBean
+{
+    /**
+     * @return The number of checked urls
+     */
+    long getLookupCount();
+
+    /**
+     * @return The number of checked urls which have been already sent (so they are not sent again)
+     */
+    long getHitCount();
+
+    /**
+     * @return The share of checked urls which have been already sent
+     */
+    double getHitRate();
+
+    /**
+     * @return The maximum number of urls in the cache
+     */
+    int getCapacity();
+
+    /**
+     * @return The memory taken by the cache
+     */
+    long getMemoryBytes();
+}
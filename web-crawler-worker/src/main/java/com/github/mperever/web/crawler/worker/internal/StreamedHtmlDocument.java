@@ -0,0 +1,45 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.worker.HtmlDocument;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Represents HTML document which content has been extracted while the page was being read,
+ * see {@link StreamingHtmlExtractor}.
+ *
+ * @author mperever
+ */
+final class StreamedHtmlDocument implements HtmlDocument
+{
+    private final String plainText;
+    private final Set<URI> urls;
+    private final Map<String, Long> wordStats;
+
+    StreamedHtmlDocument( String plainText, Set<URI> urls, Map<String, Long> wordStats )
+    {
+        this.plainText = plainText;
+        this.urls = urls;
+        this.wordStats = wordStats;
+    }
+
+    @Override
+    public String getPlainText()
+    {
+        return plainText;
+    }
+
+    @Override
+    public Set<URI> getUniqueLinks()
+    {
+        return urls;
+    }
+
+    @Override
+    public Map<String, Long> getWordStats()
+    {
+        return wordStats;
+    }
+}
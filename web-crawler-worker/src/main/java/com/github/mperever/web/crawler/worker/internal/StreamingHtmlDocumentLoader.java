@@ -0,0 +1,161 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.worker.HtmlDocument;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents non-blocking implementation for loading Html document from internet, which does not build DOM.
+ * Pages are downloaded in the same way as by {@link JettyHtmlDocumentLoader}, and then the page is decoded
+ * and tokenized by parts on the parse executor, see {@link StreamingHtmlExtractor}.
+ *
+ * Only page text, links and word statistics are kept in memory while the page is processed, while jsoup DOM
+ * takes several times the size of page, so it reduces garbage collection for big pages
+ * (e.g. product listings and forum threads).
+ *
+ * @author mperever
+ */
+public class StreamingHtmlDocumentLoader extends JettyHtmlDocumentLoader
+{
+    private static final Logger logger = LoggerFactory.getLogger( StreamingHtmlDocumentLoader.class );
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The number of bytes at the beginning of page where the charset declaration is looked for.
+     */
+    private static final int CHARSET_PRESCAN_SIZE = 1024;
+    private static final Pattern META_CHARSET_PATTERN = Pattern.compile(
+            "<meta[^>]+charset\\s*=\\s*[\"']?\\s*([a-zA-Z0-9_.:\\-]+)", Pattern.CASE_INSENSITIVE );
+
+    /**
+     * Creates loader with default fetch limits and starts underlying http client.
+     *
+     * @param parseExecutor The executor to parse downloaded pages (CPU bound work)
+     * @param maxConcurrentFetches The maximum number of pages that can be downloaded at once
+     */
+    public StreamingHtmlDocumentLoader( Executor parseExecutor, int maxConcurrentFetches )
+    {
+        super( parseExecutor, maxConcurrentFetches );
+    }
+
+    /**
+     * Creates loader and starts underlying http client.
+     *
+     * @param parseExecutor The executor to parse downloaded pages (CPU bound work)
+     * @param maxConcurrentFetches The maximum number of pages that can be downloaded at once
+     * @param limits The limits of page downloading
+     */
+    public StreamingHtmlDocumentLoader( Executor parseExecutor, int maxConcurrentFetches, FetchLimits limits )
+    {
+        super( parseExecutor, maxConcurrentFetches, limits );
+    }
+
+    /**
+     * Creates loader and starts underlying http client.
+     *
+     * @param parseExecutor The executor to parse downloaded pages (CPU bound work)
+     * @param maxConcurrentFetches The maximum number of pages that can be downloaded at once
+     * @param limits The limits of page downloading
+     * @param poolSettings The settings of connections kept alive between page fetches
+     */
+    public StreamingHtmlDocumentLoader( Executor parseExecutor,
+                                        int maxConcurrentFetches,
+                                        FetchLimits limits,
+                                        ConnectionPoolSettings poolSettings )
+    {
+        super( parseExecutor, maxConcurrentFetches, limits, poolSettings );
+    }
+
+    @Override
+    protected HtmlDocument parseContent( final InputStream content, final String charset, final String pageUrl )
+            throws IOException
+    {
+        final BufferedInputStream pageStream = new BufferedInputStream( content, CHARSET_PRESCAN_SIZE );
+        final Charset pageCharset = charset != null
+                ? toCharset( charset, StandardCharsets.UTF_8 )
+                : detectCharset( pageStream );
+
+        final StreamingHtmlExtractor extractor = new StreamingHtmlExtractor( pageUrl, pageStream.available() );
+
+        final char[] buffer = new char[ READ_BUFFER_SIZE ];
+        try ( Reader reader = new InputStreamReader( pageStream, pageCharset ) )
+        {
+            int length = reader.read( buffer );
+            if ( length > 0 && buffer[0] == '\uFEFF' )
+            {
+                // Skip byte order mark
+                extractor.append( buffer, 1, length - 1 );
+                length = reader.read( buffer );
+            }
+            while ( length != -1 )
+            {
+                extractor.append( buffer, 0, length );
+                length = reader.read( buffer );
+            }
+        }
+
+        return extractor.finish();
+    }
+
+    /**
+     * Detects charset by byte order mark or by meta element at the beginning of page, UTF-8 is used by default.
+     */
+    private static Charset detectCharset( final BufferedInputStream pageStream ) throws IOException
+    {
+        pageStream.mark( CHARSET_PRESCAN_SIZE );
+        final byte[] head = new byte[ CHARSET_PRESCAN_SIZE ];
+        int length = 0;
+        int read;
+        while ( length < head.length && ( read = pageStream.read( head, length, head.length - length ) ) != -1 )
+        {
+            length += read;
+        }
+        pageStream.reset();
+
+        if ( length >= 2 && ( head[0] & 0xFF ) == 0xFE && ( head[1] & 0xFF ) == 0xFF )
+        {
+            return StandardCharsets.UTF_16BE;
+        }
+        if ( length >= 2 && ( head[0] & 0xFF ) == 0xFF && ( head[1] & 0xFF ) == 0xFE )
+        {
+            return StandardCharsets.UTF_16LE;
+        }
+
+        final Matcher matcher = META_CHARSET_PATTERN.matcher(
+                new String( head, 0, length, StandardCharsets.ISO_8859_1 ) );
+        return matcher.find()
+                ? toCharset( matcher.group( 1 ), StandardCharsets.UTF_8 )
+                : StandardCharsets.UTF_8;
+    }
+
+    private static Charset toCharset( final String charsetName, final Charset defaultCharset )
+    {
+        try
+        {
+            if ( Charset.isSupported( charsetName ) )
+            {
+                return Charset.forName( charsetName );
+            }
+
+        } catch ( IllegalCharsetNameException ex )
+        {
+            logger.debug( "Illegal page charset name: " + charsetName, ex );
+        }
+        logger.debug( "The page charset '{}' is not supported, {} is used instead.", charsetName, defaultCharset );
+        return defaultCharset;
+    }
+}
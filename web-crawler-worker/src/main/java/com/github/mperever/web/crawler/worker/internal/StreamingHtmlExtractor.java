@@ -0,0 +1,707 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jsoup.nodes.Entities;
+import org.jsoup.parser.Tag;
+
+/**
+ * Extracts plain text, links and word statistics of HTML page while the page is being read, without building DOM.
+ *
+ * Page characters are appended by parts and are tokenized on the fly: text is collected with normalized whitespaces,
+ * hrefs of 'a' and 'base' elements are captured, all other markup is skipped. Words are counted
+ * while text is collected, so only the text itself and the current tag are kept in memory.
+ *
+ * The text is the same as jsoup text of body for well-formed pages. It might differ for pages with misnested markup,
+ * because elements which jsoup tree builder creates implicitly or moves are not known without DOM.
+ *
+ * It is not thread-safe, one instance is used per page and it uses text buffer of current thread,
+ * so only one page can be extracted by thread at once.
+ *
+ * @author mperever
+ */
+final class StreamingHtmlExtractor
+{
+    // Tokenizer states
+    private static final int DATA = 0;
+    private static final int CHARACTER_REFERENCE = 1;
+    private static final int TAG_OPEN = 2;
+    private static final int END_TAG_OPEN = 3;
+    private static final int TAG_NAME = 4;
+    private static final int BEFORE_ATTRIBUTE_NAME = 5;
+    private static final int ATTRIBUTE_NAME = 6;
+    private static final int AFTER_ATTRIBUTE_NAME = 7;
+    private static final int BEFORE_ATTRIBUTE_VALUE = 8;
+    private static final int ATTRIBUTE_VALUE_QUOTED = 9;
+    private static final int ATTRIBUTE_VALUE_UNQUOTED = 10;
+    private static final int MARKUP_DECLARATION = 11;
+    private static final int COMMENT = 12;
+    private static final int SKIP_TO_TAG_END = 13;
+    private static final int RAW_TEXT = 14;
+    private static final int RAW_TEXT_LESS_THAN = 15;
+    private static final int RAW_TEXT_END_TAG_NAME = 16;
+
+    private static final int MAX_CHARACTER_REFERENCE_LENGTH = 32;
+    private static final int TAG_NAME_CACHE_SIZE = 64;
+
+    /**
+     * Elements which can be placed in head, any other element or text starts body.
+     */
+    private static final Set<String> HEAD_TAGS = new HashSet<>( Arrays.asList(
+            "html", "head", "base", "basefont", "bgsound", "link", "meta",
+            "title", "noscript", "noframes", "style", "script", "template" ) );
+
+    /**
+     * Elements which contents are not parsed as markup, only text of textarea is included into page text.
+     */
+    private static final Set<String> RAW_TEXT_TAGS = new HashSet<>( Arrays.asList(
+            "script", "style", "title", "textarea", "xmp", "iframe", "noembed", "noframes" ) );
+
+    private static final Set<String> PRESERVE_WHITESPACE_TAGS = new HashSet<>( Arrays.asList(
+            "pre", "listing", "plaintext" ) );
+
+    private final String pageUrl;
+    private String baseUri;
+    private boolean isBaseSet;
+
+    private final StringBuilder text;
+    private char lastTextChar;
+    private final WordStatsAccumulator words = new WordStatsAccumulator();
+    private final Set<URI> links = new HashSet<>();
+    private final LinkNormalizer linkNormalizer = new LinkNormalizer();
+
+    private int state = DATA;
+    private boolean isInBody;
+    private int preserveWhitespaceDepth;
+
+    // The current tag
+    private final StringBuilder tagName = new StringBuilder();
+    private final String[] tagNameCache = new String[ TAG_NAME_CACHE_SIZE ];
+    private boolean isEndTag;
+    private boolean isHrefCaptured;
+    private final StringBuilder attributeName = new StringBuilder();
+    private final StringBuilder attributeValue = new StringBuilder();
+    private char quote;
+    private String href;
+
+    // The current raw text element, comment or character reference
+    private String rawTextTagName;
+    private boolean isRawTextIncluded;
+    private int rawTextEndTagLength;
+    private int dashCount;
+    private final StringBuilder characterReference = new StringBuilder();
+
+    /**
+     * Creates extractor.
+     *
+     * @param pageUrl The page url, relative links are resolved against it (or against href of base element)
+     * @param pageLength The page length (in characters or bytes), text is not longer than page,
+     *                   so text buffer is not grown if it has this capacity
+     */
+    StreamingHtmlExtractor( String pageUrl, int pageLength )
+    {
+        this.pageUrl = pageUrl;
+        this.baseUri = pageUrl;
+        this.text = TextBuffers.acquire();
+        this.text.ensureCapacity( pageLength );
+    }
+
+    /**
+     * Appends the next part of page.
+     *
+     * @param chars The characters of page
+     * @param offset The offset of part
+     * @param length The length of part
+     */
+    void append( final char[] chars, int offset, int length )
+    {
+        final int end = offset + length;
+        for ( int i = offset; i < end; i++ )
+        {
+            process( chars[i] );
+        }
+    }
+
+    /**
+     * Finishes the page, the unterminated tag at the end of page is skipped.
+     *
+     * @return The document with extracted content
+     */
+    StreamedHtmlDocument finish()
+    {
+        if ( state == CHARACTER_REFERENCE )
+        {
+            appendCharacterReference( false );
+        }
+
+        return new StreamedHtmlDocument( TextBuffers.release( text ), links, words.toWordStats() );
+    }
+
+    private void process( final char c )
+    {
+        switch ( state )
+        {
+            case DATA:
+                if ( c == '<' )
+                {
+                    state = TAG_OPEN;
+                } else if ( c == '&' )
+                {
+                    characterReference.setLength( 0 );
+                    state = CHARACTER_REFERENCE;
+                } else
+                {
+                    appendText( c );
+                }
+                break;
+
+            case CHARACTER_REFERENCE:
+                if ( isCharacterReferenceChar( c, characterReference.length() ) )
+                {
+                    characterReference.append( c );
+                } else
+                {
+                    state = DATA;
+                    appendCharacterReference( c == ';' );
+                    if ( c != ';' )
+                    {
+                        process( c );
+                    }
+                }
+                break;
+
+            case TAG_OPEN:
+                if ( isAsciiLetter( c ) )
+                {
+                    startTag( false, c );
+                } else if ( c == '!' )
+                {
+                    dashCount = 0;
+                    state = MARKUP_DECLARATION;
+                } else if ( c == '/' )
+                {
+                    state = END_TAG_OPEN;
+                } else if ( c == '?' )
+                {
+                    state = SKIP_TO_TAG_END;
+                } else
+                {
+                    state = DATA;
+                    appendText( '<' );
+                    process( c );
+                }
+                break;
+
+            case END_TAG_OPEN:
+                if ( isAsciiLetter( c ) )
+                {
+                    startTag( true, c );
+                } else
+                {
+                    state = c == '>' ? DATA : SKIP_TO_TAG_END;
+                }
+                break;
+
+            case TAG_NAME:
+                if ( isWhitespace( c ) || c == '/' )
+                {
+                    isHrefCaptured = !isEndTag && ( isTagName( "a" ) || isTagName( "base" ) );
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if ( c == '>' )
+                {
+                    emitTag();
+                } else
+                {
+                    tagName.append( toLowerCase( c ) );
+                }
+                break;
+
+            case BEFORE_ATTRIBUTE_NAME:
+                if ( c == '>' )
+                {
+                    emitTag();
+                } else if ( !isWhitespace( c ) && c != '/' )
+                {
+                    startAttribute( c );
+                }
+                break;
+
+            case ATTRIBUTE_NAME:
+                if ( isWhitespace( c ) )
+                {
+                    state = AFTER_ATTRIBUTE_NAME;
+                } else if ( c == '/' )
+                {
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if ( c == '=' )
+                {
+                    state = BEFORE_ATTRIBUTE_VALUE;
+                } else if ( c == '>' )
+                {
+                    emitTag();
+                } else if ( isHrefCaptured )
+                {
+                    attributeName.append( toLowerCase( c ) );
+                }
+                break;
+
+            case AFTER_ATTRIBUTE_NAME:
+                if ( c == '=' )
+                {
+                    state = BEFORE_ATTRIBUTE_VALUE;
+                } else if ( c == '/' )
+                {
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if ( c == '>' )
+                {
+                    emitTag();
+                } else if ( !isWhitespace( c ) )
+                {
+                    startAttribute( c );
+                }
+                break;
+
+            case BEFORE_ATTRIBUTE_VALUE:
+                attributeValue.setLength( 0 );
+                if ( c == '"' || c == '\'' )
+                {
+                    quote = c;
+                    state = ATTRIBUTE_VALUE_QUOTED;
+                } else if ( c == '>' )
+                {
+                    emitTag();
+                } else if ( !isWhitespace( c ) )
+                {
+                    appendAttributeValue( c );
+                    state = ATTRIBUTE_VALUE_UNQUOTED;
+                }
+                break;
+
+            case ATTRIBUTE_VALUE_QUOTED:
+                if ( c == quote )
+                {
+                    endAttribute();
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else
+                {
+                    appendAttributeValue( c );
+                }
+                break;
+
+            case ATTRIBUTE_VALUE_UNQUOTED:
+                if ( isWhitespace( c ) )
+                {
+                    endAttribute();
+                    state = BEFORE_ATTRIBUTE_NAME;
+                } else if ( c == '>' )
+                {
+                    endAttribute();
+                    emitTag();
+                } else
+                {
+                    appendAttributeValue( c );
+                }
+                break;
+
+            case MARKUP_DECLARATION:
+                if ( c == '-' )
+                {
+                    if ( ++dashCount == 2 )
+                    {
+                        dashCount = 0;
+                        state = COMMENT;
+                    }
+                } else
+                {
+                    // Doctype, CDATA and other declarations are skipped
+                    state = c == '>' ? DATA : SKIP_TO_TAG_END;
+                }
+                break;
+
+            case COMMENT:
+                if ( c == '-' )
+                {
+                    dashCount++;
+                } else if ( c == '>' && dashCount >= 2 )
+                {
+                    state = DATA;
+                } else
+                {
+                    dashCount = 0;
+                }
+                break;
+
+            case SKIP_TO_TAG_END:
+                if ( c == '>' )
+                {
+                    state = DATA;
+                }
+                break;
+
+            case RAW_TEXT:
+                if ( c == '<' )
+                {
+                    state = RAW_TEXT_LESS_THAN;
+                } else
+                {
+                    appendRawText( c );
+                }
+                break;
+
+            case RAW_TEXT_LESS_THAN:
+                if ( c == '/' )
+                {
+                    rawTextEndTagLength = 0;
+                    state = RAW_TEXT_END_TAG_NAME;
+                } else
+                {
+                    appendRawText( '<' );
+                    state = RAW_TEXT;
+                    process( c );
+                }
+                break;
+
+            case RAW_TEXT_END_TAG_NAME:
+                processRawTextEndTag( c );
+                break;
+
+            default:
+                throw new IllegalStateException( "Unknown tokenizer state: " + state );
+        }
+    }
+
+    private void startTag( final boolean isEnd, final char firstChar )
+    {
+        isEndTag = isEnd;
+        isHrefCaptured = false;
+        href = null;
+        tagName.setLength( 0 );
+        tagName.append( toLowerCase( firstChar ) );
+        state = TAG_NAME;
+    }
+
+    private void startAttribute( final char firstChar )
+    {
+        attributeName.setLength( 0 );
+        attributeValue.setLength( 0 );
+        if ( isHrefCaptured )
+        {
+            attributeName.append( toLowerCase( firstChar ) );
+        }
+        state = ATTRIBUTE_NAME;
+    }
+
+    private void appendAttributeValue( final char c )
+    {
+        if ( isHrefCaptured )
+        {
+            attributeValue.append( c );
+        }
+    }
+
+    private void endAttribute()
+    {
+        // The first href attribute is used like by browsers
+        final boolean isHref = isHrefCaptured && href == null
+                && attributeName.length() == 4 && "href".contentEquals( attributeName );
+        if ( isHref )
+        {
+            final String value = attributeValue.toString();
+            href = value.indexOf( '&' ) != -1 ? decodeAttributeValue( value ) : value;
+        }
+    }
+
+    private void emitTag()
+    {
+        state = DATA;
+        final String name = getTagName();
+        if ( isEndTag )
+        {
+            if ( preserveWhitespaceDepth > 0 && PRESERVE_WHITESPACE_TAGS.contains( name ) )
+            {
+                preserveWhitespaceDepth--;
+            }
+            return;
+        }
+
+        if ( !isInBody && !HEAD_TAGS.contains( name ) )
+        {
+            isInBody = true;
+        }
+        if ( isInBody && ( "br".equals( name ) || isBlock( name ) ) )
+        {
+            appendSeparator();
+        }
+
+        if ( href != null )
+        {
+            if ( "a".equals( name ) )
+            {
+                final URI link = linkNormalizer.toLink( baseUri, href );
+                if ( link != null )
+                {
+                    links.add( link );
+                }
+            } else if ( !isBaseSet )
+            {
+                baseUri = LinkNormalizer.resolveBaseHref( pageUrl, href );
+                isBaseSet = true;
+            }
+        }
+
+        if ( PRESERVE_WHITESPACE_TAGS.contains( name ) )
+        {
+            preserveWhitespaceDepth++;
+        } else if ( RAW_TEXT_TAGS.contains( name ) )
+        {
+            rawTextTagName = name;
+            isRawTextIncluded = isInBody && "textarea".equals( name );
+            state = RAW_TEXT;
+        }
+    }
+
+    private void processRawTextEndTag( final char c )
+    {
+        final int nameLength = rawTextTagName.length();
+        if ( rawTextEndTagLength < nameLength && toLowerCase( c ) == rawTextTagName.charAt( rawTextEndTagLength ) )
+        {
+            rawTextEndTagLength++;
+            return;
+        }
+
+        final boolean isEndTagFound = rawTextEndTagLength == nameLength
+                && ( c == '>' || c == '/' || isWhitespace( c ) );
+        if ( isEndTagFound )
+        {
+            rawTextTagName = null;
+            state = c == '>' ? DATA : SKIP_TO_TAG_END;
+            return;
+        }
+
+        // It was not end tag, so characters are the text
+        appendRawText( '<' );
+        appendRawText( '/' );
+        for ( int i = 0; i < rawTextEndTagLength; i++ )
+        {
+            appendRawText( rawTextTagName.charAt( i ) );
+        }
+        state = RAW_TEXT;
+        process( c );
+    }
+
+    private void appendCharacterReference( final boolean isTerminated )
+    {
+        final String value = decodeCharacterReference( characterReference, isTerminated );
+        if ( value == null )
+        {
+            // Not a character reference, so it is the text
+            appendText( '&' );
+            for ( int i = 0; i < characterReference.length(); i++ )
+            {
+                appendText( characterReference.charAt( i ) );
+            }
+            if ( isTerminated )
+            {
+                appendText( ';' );
+            }
+            return;
+        }
+
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            appendText( value.charAt( i ) );
+        }
+    }
+
+    /**
+     * Decodes character references in attribute value.
+     */
+    private static String decodeAttributeValue( final String value )
+    {
+        final StringBuilder decoded = new StringBuilder( value.length() );
+        final StringBuilder reference = new StringBuilder();
+        int i = 0;
+        while ( i < value.length() )
+        {
+            final char c = value.charAt( i++ );
+            if ( c != '&' )
+            {
+                decoded.append( c );
+                continue;
+            }
+
+            reference.setLength( 0 );
+            while ( i < value.length() && isCharacterReferenceChar( value.charAt( i ), reference.length() ) )
+            {
+                reference.append( value.charAt( i++ ) );
+            }
+            final boolean isTerminated = i < value.length() && value.charAt( i ) == ';';
+            final String referenceValue = decodeCharacterReference( reference, isTerminated );
+            if ( referenceValue == null )
+            {
+                decoded.append( '&' ).append( reference );
+            } else
+            {
+                decoded.append( referenceValue );
+                if ( isTerminated )
+                {
+                    i++;
+                }
+            }
+        }
+        return decoded.toString();
+    }
+
+    /**
+     * Decodes numeric or named character reference.
+     *
+     * @param reference The reference without leading '&amp;' and trailing ';'
+     * @param isTerminated true if reference is terminated by ';'
+     * @return The referenced characters or null, if it is not a known character reference
+     */
+    private static String decodeCharacterReference( final CharSequence reference, final boolean isTerminated )
+    {
+        if ( reference.length() == 0 )
+        {
+            return null;
+        }
+
+        if ( reference.charAt( 0 ) != '#' )
+        {
+            // Only base entities like &amp or &lt can be used without ';'
+            final String name = reference.toString();
+            final boolean isKnown = isTerminated ? Entities.isNamedEntity( name ) : Entities.isBaseNamedEntity( name );
+            return isKnown ? Entities.getByName( name ) : null;
+        }
+
+        final boolean isHex = reference.length() > 1
+                && ( reference.charAt( 1 ) == 'x' || reference.charAt( 1 ) == 'X' );
+        final int start = isHex ? 2 : 1;
+        if ( start == reference.length() )
+        {
+            return null;
+        }
+        int codePoint = 0;
+        for ( int i = start; i < reference.length(); i++ )
+        {
+            final int digit = Character.digit( reference.charAt( i ), isHex ? 16 : 10 );
+            if ( digit < 0 )
+            {
+                return null;
+            }
+            codePoint = Math.min( codePoint * ( isHex ? 16 : 10 ) + digit, Character.MAX_CODE_POINT + 1 );
+        }
+
+        final boolean isValid = codePoint > 0 && codePoint <= Character.MAX_CODE_POINT
+                && ( codePoint < Character.MIN_SURROGATE || codePoint > Character.MAX_SURROGATE );
+        return isValid ? new String( Character.toChars( codePoint ) ) : "\uFFFD";
+    }
+
+    private void appendRawText( final char c )
+    {
+        // Whitespaces are preserved in textarea
+        if ( isRawTextIncluded )
+        {
+            appendTextChar( c );
+        }
+    }
+
+    private void appendText( final char c )
+    {
+        if ( !isInBody )
+        {
+            // Whitespaces between head elements are not text, any other text starts body
+            if ( isWhitespace( c ) )
+            {
+                return;
+            }
+            isInBody = true;
+        }
+
+        if ( preserveWhitespaceDepth > 0 || !isWhitespace( c ) )
+        {
+            appendTextChar( c );
+        } else if ( lastTextChar != ' ' )
+        {
+            appendTextChar( ' ' );
+        }
+    }
+
+    private void appendSeparator()
+    {
+        if ( text.length() > 0 && lastTextChar != ' ' )
+        {
+            appendTextChar( ' ' );
+        }
+    }
+
+    private void appendTextChar( final char c )
+    {
+        // Words are counted while text is collected, so the text is not scanned again
+        text.append( c );
+        words.append( c );
+        lastTextChar = c;
+    }
+
+    /**
+     * Gets name of the current tag, names are cached, because pages usually use a few distinct tags.
+     */
+    private String getTagName()
+    {
+        int hash = 0;
+        for ( int i = 0; i < tagName.length(); i++ )
+        {
+            hash = 31 * hash + tagName.charAt( i );
+        }
+
+        final int index = ( hash ^ ( hash >>> 16 ) ) & ( TAG_NAME_CACHE_SIZE - 1 );
+        final String cachedName = tagNameCache[ index ];
+        if ( cachedName != null && isTagName( cachedName ) )
+        {
+            return cachedName;
+        }
+
+        final String name = tagName.toString();
+        tagNameCache[ index ] = name;
+        return name;
+    }
+
+    private boolean isTagName( final String name )
+    {
+        return tagName.length() == name.length() && name.contentEquals( tagName );
+    }
+
+    private static boolean isBlock( final String name )
+    {
+        return Tag.isKnownTag( name ) && Tag.valueOf( name ).isBlock();
+    }
+
+    private static boolean isWhitespace( final char c )
+    {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == 160;
+    }
+
+    private static boolean isAsciiLetter( final char c )
+    {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isCharacterReferenceChar( final char c, final int referenceLength )
+    {
+        return referenceLength < MAX_CHARACTER_REFERENCE_LENGTH
+                && ( isAsciiLetterOrDigit( c ) || c == '#' && referenceLength == 0 );
+    }
+
+    private static boolean isAsciiLetterOrDigit( final char c )
+    {
+        return isAsciiLetter( c ) || c >= '0' && c <= '9';
+    }
+
+    private static char toLowerCase( final char c )
+    {
+        return c >= 'A' && c <= 'Z' ? ( char ) ( c + ( 'a' - 'A' ) ) : c;
+    }
+}
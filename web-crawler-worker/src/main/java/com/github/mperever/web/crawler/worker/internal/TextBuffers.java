@@ -0,0 +1,51 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+/**
+ * Keeps text buffer per thread, so page text is collected without growing a new buffer for each page.
+ *
+ * @author mperever
+ */
+final class TextBuffers
+{
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+
+    /**
+     * The buffer is not kept if it has grown bigger than this capacity.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFERS =
+            ThreadLocal.withInitial( () -> new StringBuilder( INITIAL_CAPACITY ) );
+
+    private TextBuffers()
+    {
+    }
+
+    /**
+     * Gets empty text buffer of current thread.
+     *
+     * @return The text buffer
+     */
+    static StringBuilder acquire()
+    {
+        final StringBuilder buffer = BUFFERS.get();
+        buffer.setLength( 0 );
+        return buffer;
+    }
+
+    /**
+     * Gets text from buffer without leading and trailing whitespaces and releases the buffer.
+     *
+     * @param buffer The buffer which has been acquired by current thread
+     * @return The trimmed text
+     */
+    static String release( final StringBuilder buffer )
+    {
+        final String text = buffer.toString().trim();
+        if ( buffer.capacity() > MAX_RETAINED_CAPACITY )
+        {
+            BUFFERS.set( new StringBuilder( INITIAL_CAPACITY ) );
+        }
+        return text;
+    }
+}
@@ -1,9 +1,6 @@
 package com.github.mperever.web.crawler.worker.internal;
 
-import java.util.Arrays;
-import java.util.Locale;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Represents calculator for text word statistics (pure function).
@@ -18,15 +15,15 @@ public class TextStatsCalculator
 
     /**
      * Calculates text word statistics.
+     * Words are separated by ASCII punctuation, whitespace and digits, see {@link WordStatsAccumulator}.
      *
      * @param text The text for calculation
      * @return Word statistics.
      */
     public static Map<String, Long> calculateWordStatistic( String text )
     {
-        return Arrays.stream( text.split("[\\p{Punct}\\s\\d]+" ) )
-                .map( word -> word.toLowerCase( Locale.ENGLISH ).trim() )
-                .filter( word -> !word.isEmpty() && word.length() != 1 )
-                .collect( Collectors.groupingBy( word -> word, Collectors.counting() ) );
+        return new WordStatsAccumulator()
+                .append( text )
+                .toWordStats();
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents access to virtual threads (JDK 21+).
+ * The worker is built for Java 8, so virtual threads API is resolved by reflection at runtime.
+ *
+ * @author mperever
+ */
+public final class VirtualThreads
+{
+    private static final Logger logger = LoggerFactory.getLogger( VirtualThreads.class );
+
+    private static final Method OF_VIRTUAL = findMethod( Thread.class, "ofVirtual" );
+    private static final Method BUILDER_NAME = findMethod( "java.lang.Thread$Builder", "name", String.class, long.class );
+    private static final Method BUILDER_FACTORY = findMethod( "java.lang.Thread$Builder", "factory" );
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(
+            Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class );
+
+    private VirtualThreads()
+    {
+    }
+
+    /**
+     * Checks whether virtual threads are supported by current JVM.
+     *
+     * @return true if virtual threads are supported, otherwise - false.
+     */
+    public static boolean isSupported()
+    {
+        return OF_VIRTUAL != null
+                && BUILDER_NAME != null
+                && BUILDER_FACTORY != null
+                && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Creates factory of virtual threads.
+     *
+     * @param namePrefix The prefix of thread names, threads are numbered starting from 0
+     * @return The thread factory
+     * @throws UnsupportedOperationException if virtual threads are not supported by current JVM.
+     */
+    public static ThreadFactory newThreadFactory( final String namePrefix )
+    {
+        checkSupported();
+        try
+        {
+            final Object builder = BUILDER_NAME.invoke( OF_VIRTUAL.invoke( null ), namePrefix, 0L );
+            return ( ThreadFactory ) BUILDER_FACTORY.invoke( builder );
+
+        } catch ( IllegalAccessException | InvocationTargetException ex )
+        {
+            throw new IllegalStateException( "Could not create virtual thread factory", ex );
+        }
+    }
+
+    /**
+     * Creates executor that starts new virtual thread for each task.
+     *
+     * @param namePrefix The prefix of thread names
+     * @return The executor
+     * @throws UnsupportedOperationException if virtual threads are not supported by current JVM.
+     */
+    public static ExecutorService newThreadPerTaskExecutor( final String namePrefix )
+    {
+        final ThreadFactory threadFactory = newThreadFactory( namePrefix );
+        try
+        {
+            return ( ExecutorService ) NEW_THREAD_PER_TASK_EXECUTOR.invoke( null, threadFactory );
+
+        } catch ( IllegalAccessException | InvocationTargetException ex )
+        {
+            throw new IllegalStateException( "Could not create virtual thread executor", ex );
+        }
+    }
+
+    private static void checkSupported()
+    {
+        if ( !isSupported() )
+        {
+            throw new UnsupportedOperationException( "Virtual threads are not supported by JVM "
+                    + System.getProperty( "java.version" ) );
+        }
+    }
+
+    private static Method findMethod( final String className, final String name, final Class<?>... parameterTypes )
+    {
+        try
+        {
+            return findMethod( Class.forName( className ), name, parameterTypes );
+
+        } catch ( ClassNotFoundException ex )
+        {
+            logger.debug( "Class '{}' is not found", className );
+            return null;
+        }
+    }
+
+    private static Method findMethod( final Class<?> type, final String name, final Class<?>... parameterTypes )
+    {
+        try
+        {
+            return type.getMethod( name, parameterTypes );
+
+        } catch ( NoSuchMethodException ex )
+        {
+            logger.debug( "Method '{}.{}' is not found", type.getName(), name );
+            return null;
+        }
+    }
+}
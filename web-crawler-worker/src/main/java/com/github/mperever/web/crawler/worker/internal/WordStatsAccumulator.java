@@ -0,0 +1,253 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Represents single-pass word counter, text can be appended by parts (e.g. while it is being read).
+ *
+ * Words are separated by ASCII punctuation, whitespace and digits, they are lower-cased and
+ * words shorter than 2 characters are skipped. Words are counted in open-addressing hash table,
+ * where key string is created once per distinct word, so there are no objects per word occurrence.
+ *
+ * It is not thread-safe.
+ *
+ * @author mperever
+ */
+public class WordStatsAccumulator
+{
+    private static final boolean[] SEPARATORS = new boolean[ 128 ];
+    private static final String PUNCTUATION = "!\"#$%&'()*+,-./:;<=>?@[\\]^_`{|}~";
+    private static final String WHITESPACE = " \t\n\u000B\f\r";
+    private static final String DIGITS = "0123456789";
+
+    private static final int MIN_WORD_LENGTH = 2;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final char LAST_ASCII_CHAR = 127;
+
+    static
+    {
+        for ( char separator : ( PUNCTUATION + WHITESPACE + DIGITS ).toCharArray() )
+        {
+            SEPARATORS[ separator ] = true;
+        }
+    }
+
+    // The current word
+    private char[] word = new char[ 64 ];
+    private int wordLength;
+    private boolean isAsciiWord = true;
+
+    // Hash table of word counts
+    private String[] words = new String[ INITIAL_CAPACITY ];
+    private int[] hashes = new int[ INITIAL_CAPACITY ];
+    private int[] counts = new int[ INITIAL_CAPACITY ];
+    private int size;
+
+    /**
+     * Appends part of text, the word at the end of part is continued by the next part.
+     *
+     * @param text The part of text
+     * @return this accumulator
+     */
+    public WordStatsAccumulator append( final CharSequence text )
+    {
+        final int length = text.length();
+        for ( int i = 0; i < length; i++ )
+        {
+            append( text.charAt( i ) );
+        }
+        return this;
+    }
+
+    /**
+     * Appends part of text, the word at the end of part is continued by the next part.
+     *
+     * @param chars The characters of text
+     * @param offset The offset of part
+     * @param length The length of part
+     * @return this accumulator
+     */
+    public WordStatsAccumulator append( final char[] chars, int offset, int length )
+    {
+        final int end = offset + length;
+        for ( int i = offset; i < end; i++ )
+        {
+            append( chars[i] );
+        }
+        return this;
+    }
+
+    /**
+     * Appends the next character of text.
+     *
+     * @param ch The character
+     */
+    void append( char ch )
+    {
+        if ( ch <= LAST_ASCII_CHAR && SEPARATORS[ ch ] )
+        {
+            endWord();
+            return;
+        }
+
+        if ( wordLength == word.length )
+        {
+            word = Arrays.copyOf( word, wordLength * 2 );
+        }
+        word[ wordLength++ ] = ch;
+        isAsciiWord &= ch <= LAST_ASCII_CHAR;
+    }
+
+    /**
+     * Finishes the text and gets word statistics.
+     *
+     * @return The number of occurrences of each word
+     */
+    public Map<String, Long> toWordStats()
+    {
+        endWord();
+
+        final Map<String, Long> wordStats = new HashMap<>( size * 2 );
+        for ( int i = 0; i < words.length; i++ )
+        {
+            if ( words[i] != null )
+            {
+                wordStats.put( words[i], ( long ) counts[i] );
+            }
+        }
+        return wordStats;
+    }
+
+    private void endWord()
+    {
+        if ( wordLength == 0 )
+        {
+            return;
+        }
+
+        if ( isAsciiWord )
+        {
+            countAsciiWord();
+        }
+        else
+        {
+            // Lower case of non-ASCII characters might depend on context or change length, so it is done by String
+            final String nonAsciiWord = new String( word, 0, wordLength ).toLowerCase( Locale.ENGLISH ).trim();
+            if ( nonAsciiWord.length() >= MIN_WORD_LENGTH )
+            {
+                count( nonAsciiWord.toCharArray(), 0, nonAsciiWord.length() );
+            }
+        }
+
+        wordLength = 0;
+        isAsciiWord = true;
+    }
+
+    private void countAsciiWord()
+    {
+        // Trim control characters in the same way as String#trim does
+        int start = 0;
+        int end = wordLength;
+        while ( start < end && word[ start ] <= ' ' )
+        {
+            start++;
+        }
+        while ( start < end && word[ end - 1 ] <= ' ' )
+        {
+            end--;
+        }
+        if ( end - start < MIN_WORD_LENGTH )
+        {
+            return;
+        }
+
+        for ( int i = start; i < end; i++ )
+        {
+            final char ch = word[i];
+            if ( ch >= 'A' && ch <= 'Z' )
+            {
+                word[i] = ( char ) ( ch + ( 'a' - 'A' ) );
+            }
+        }
+        count( word, start, end - start );
+    }
+
+    private void count( final char[] chars, int offset, int length )
+    {
+        // The same hash as String#hashCode
+        int hash = 0;
+        for ( int i = offset; i < offset + length; i++ )
+        {
+            hash = 31 * hash + chars[i];
+        }
+
+        final int mask = words.length - 1;
+        int index = ( hash ^ ( hash >>> 16 ) ) & mask;
+        while ( words[ index ] != null )
+        {
+            if ( hashes[ index ] == hash && equals( words[ index ], chars, offset, length ) )
+            {
+                counts[ index ]++;
+                return;
+            }
+            index = ( index + 1 ) & mask;
+        }
+
+        words[ index ] = new String( chars, offset, length );
+        hashes[ index ] = hash;
+        counts[ index ] = 1;
+        if ( ++size * 2 > words.length )
+        {
+            resize();
+        }
+    }
+
+    private static boolean equals( final String word, final char[] chars, int offset, int length )
+    {
+        if ( word.length() != length )
+        {
+            return false;
+        }
+        for ( int i = 0; i < length; i++ )
+        {
+            if ( word.charAt( i ) != chars[ offset + i ] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resize()
+    {
+        final String[] oldWords = words;
+        final int[] oldHashes = hashes;
+        final int[] oldCounts = counts;
+
+        final int capacity = oldWords.length * 2;
+        words = new String[ capacity ];
+        hashes = new int[ capacity ];
+        counts = new int[ capacity ];
+
+        final int mask = capacity - 1;
+        for ( int i = 0; i < oldWords.length; i++ )
+        {
+            if ( oldWords[i] == null )
+            {
+                continue;
+            }
+            final int hash = oldHashes[i];
+            int index = ( hash ^ ( hash >>> 16 ) ) & mask;
+            while ( words[ index ] != null )
+            {
+                index = ( index + 1 ) & mask;
+            }
+            words[ index ] = oldWords[i];
+            hashes[ index ] = hash;
+            counts[ index ] = oldCounts[i];
+        }
+    }
+}
@@ -24,6 +24,21 @@ public interface BufferedTaskReader extends AutoCloseable
      */
     UrlTask read();
 
+    /**
+     * Takes tasks by specified action to free space of buffer, e.g. together with sending task results.
+     * This method does not block thread if there is no free space, the action is called with 0 max task count.
+     *
+     * @param action The action to take tasks
+     * @return The number of tasks added to buffer
+     */
+    int fill( TaskReaderAction action );
+
+    /**
+     * Notifies reader that task service may have new tasks (e.g. new links have been saved),
+     * so waiting after empty claim is interrupted and the next waiting starts from the minimum delay.
+     */
+    void onTasksAvailable();
+
     /**
      * Closes reader resources
      */
@@ -2,9 +2,14 @@ package com.github.mperever.web.crawler.worker.internal.reader;
 
 import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,27 +17,81 @@ import org.slf4j.LoggerFactory;
 /**
  * Represents implementation for thread-safe task reader.
  * This implementation uses {@link RunAndSleepAction} for taking tasks in separate thread.
+ * Also tasks can be added by {@link #fill(TaskReaderAction)} from other threads (e.g. with sending task results),
+ * so the buffer is refilled while the taking thread sleeps. Space of buffer is reserved before tasks are taken,
+ * so several takers never get more tasks than the buffer can keep and putting tasks to buffer does not block.
+ *
+ * When the buffer is refilled and how many tasks are taken is decided by {@link RefillPolicy}
+ * from measured task completion rate and claim latency. After empty claim the taking thread waits
+ * with exponential backoff, which is interrupted by {@link #onTasksAvailable()}. The time of empty claim
+ * is a part of backoff, so there is no additional wait after claim which has waited for tasks in task service.
+ *
+ * If {@link InFlightTasks} is specified, tasks are taken only for its free permits, so the number of tasks
+ * taken and not processed yet is bounded, and the permit of task is released when the task is processed.
+ * When the taking thread stops because there are no free space or permits, it is woken up once they are released,
+ * so tasks are taken again even if readers wait for tasks in empty buffer.
+ *
+ * Tasks are kept in lock-free {@link MpmcArrayQueue}, so reading tasks and checking buffer size for refill
+ * decisions do not contend with putting tasks to buffer.
  *
  * @author mperever
  */
-public class BufferedTaskReaderImpl implements BufferedTaskReader
+public class BufferedTaskReaderImpl implements BufferedTaskReader, BufferedTaskReaderMXBean
 {
     private static final Logger logger = LoggerFactory.getLogger( BufferedTaskReaderImpl.class );
-    private static final int DEFAULT_SLEEP_INTERVAL_SEC = 15;
-
-    private final RunAndSleepAction taskTakingAction = new RunAndSleepAction( this::takeTasksAndPutToBuffer );
+    private static final int DEFAULT_MAX_SLEEP_INTERVAL_SEC = 15;
 
+    private final RunAndSleepAction taskTakingAction;
     private final TaskReaderAction action;
     private final int maxCapacity;
-    private final int sleepTimeInterval;
-    private final TimeUnit sleepTimeUnit;
-    private final BlockingQueue<UrlTask> buffer;
+    private final RefillPolicy refillPolicy;
+    private final InFlightTasks inFlightTasks;
+    private final MpmcArrayQueue<UrlTask> buffer;
+    private final AtomicBoolean isTaskTaking = new AtomicBoolean();
+    private final AtomicBoolean isWaitingForCapacity = new AtomicBoolean();
+    private final AtomicInteger reservedCapacity = new AtomicInteger();
+
+    private final Lock backoffLock = new ReentrantLock();
+    private final Condition tasksAvailableCondition = backoffLock.newCondition();
+    // guarded by backoffLock
+    private boolean isTasksAvailable;
 
-    private volatile boolean isTaskTaking;
+    private final AtomicLong claimCount = new AtomicLong();
+    private final AtomicLong emptyClaimCount = new AtomicLong();
+    private final AtomicLong idleNanos = new AtomicLong();
+    private final AtomicLong backoffNanos = new AtomicLong();
 
     public BufferedTaskReaderImpl( TaskReaderAction action, int maxCapacity )
     {
-        this( action, maxCapacity, DEFAULT_SLEEP_INTERVAL_SEC, TimeUnit.SECONDS );
+        this( action, maxCapacity, Thread::new );
+    }
+
+    /**
+     * Creates task reader.
+     *
+     * @param action The action to take tasks from source
+     * @param maxCapacity The maximum buffer capacity
+     * @param threadFactory The factory to create thread for taking tasks, e.g. factory of virtual threads
+     */
+    public BufferedTaskReaderImpl( TaskReaderAction action, int maxCapacity, ThreadFactory threadFactory )
+    {
+        this( action, maxCapacity, DEFAULT_MAX_SLEEP_INTERVAL_SEC, TimeUnit.SECONDS, threadFactory, null );
+    }
+
+    /**
+     * Creates task reader, which takes tasks only for free permits of in-flight tasks.
+     *
+     * @param action The action to take tasks from source
+     * @param maxCapacity The maximum buffer capacity
+     * @param threadFactory The factory to create thread for taking tasks, e.g. factory of virtual threads
+     * @param inFlightTasks The permits of tasks taken and not processed yet
+     */
+    public BufferedTaskReaderImpl( TaskReaderAction action,
+                                   int maxCapacity,
+                                   ThreadFactory threadFactory,
+                                   InFlightTasks inFlightTasks )
+    {
+        this( action, maxCapacity, DEFAULT_MAX_SLEEP_INTERVAL_SEC, TimeUnit.SECONDS, threadFactory, inFlightTasks );
     }
 
     public BufferedTaskReaderImpl( TaskReaderAction action,
@@ -40,52 +99,210 @@ public class BufferedTaskReaderImpl implements BufferedTaskReader
                                    int sleepTimeInterval,
                                    TimeUnit sleepTimeUnit )
     {
-        this.action = action;
-        this.maxCapacity = maxCapacity;
-        this.sleepTimeInterval = sleepTimeInterval;
-        this.sleepTimeUnit = sleepTimeUnit;
-        buffer = new ArrayBlockingQueue<>( maxCapacity );
+        this( action, maxCapacity, sleepTimeInterval, sleepTimeUnit, Thread::new, null );
     }
 
-    private void runTaskTakingThread()
+    /**
+     * Creates task reader.
+     *
+     * @param action The action to take tasks from source
+     * @param maxCapacity The maximum buffer capacity
+     * @param sleepTimeInterval The maximum time to wait before the next claim after empty claims
+     * @param sleepTimeUnit The unit of sleep time interval
+     * @param threadFactory The factory to create thread for taking tasks, e.g. factory of virtual threads
+     * @param inFlightTasks The permits of tasks taken and not processed yet, null if they are not limited
+     */
+    public BufferedTaskReaderImpl( TaskReaderAction action,
+                                   int maxCapacity,
+                                   int sleepTimeInterval,
+                                   TimeUnit sleepTimeUnit,
+                                   ThreadFactory threadFactory,
+                                   InFlightTasks inFlightTasks )
     {
-        isTaskTaking = true;
-
-        taskTakingAction.runAndWait();
+        this.action = action;
+        this.maxCapacity = maxCapacity;
+        this.inFlightTasks = inFlightTasks;
+        refillPolicy = new RefillPolicy( maxCapacity, sleepTimeUnit.toNanos( sleepTimeInterval ) );
+        buffer = new MpmcArrayQueue<>( maxCapacity );
+        taskTakingAction = new RunAndSleepAction( this::takeTasksAndPutToBuffer, threadFactory );
+        if ( inFlightTasks != null )
+        {
+            inFlightTasks.setReleaseListener( this::onCapacityReleased );
+        }
     }
 
     private void takeTasksAndPutToBuffer()
     {
-        boolean isTasksTakenSuccess;
-        do
+        isWaitingForCapacity.set( false );
+        while ( isBufferNeedFillUp() )
         {
-            final int maxTaskCount = getMaxCapacity() - buffer.size();
+            final int maxTaskCount = reserveCapacityOrWaitForIt();
             if ( maxTaskCount <= 0 )
             {
-                logger.warn( "Tasks are not taken due to the value of maximum data count '{}' <= 0. buffer size '{}'",
-                        maxTaskCount, buffer.size() );
+                // The free space can be reserved by tasks taken together with sending task results,
+                // and permits are released when tasks are processed. The thread is woken up when they are released.
+                logger.debug( "Tasks are not taken, there is no free space in buffer or free in-flight permits. "
+                              + "buffer size '{}'", buffer.size() );
                 break;
             }
 
-            final UrlTask[] tasks = this.action.takeTasks( maxTaskCount );
-            isTasksTakenSuccess = tasks != null && tasks.length != 0;
+            final long claimStartTime = System.nanoTime();
+            final boolean isTasksTakenSuccess = takeTasks( this.action, maxTaskCount ) != 0;
+            if ( !isTasksTakenSuccess )
+            {
+                final boolean isInterrupted = backOff( System.nanoTime() - claimStartTime );
+                if ( isInterrupted )
+                {
+                    break;
+                }
+            }
+        }
+
+        isTaskTaking.set( false );
+    }
+
+    @Override
+    public int fill( final TaskReaderAction fillAction )
+    {
+        return takeTasks( fillAction, reserveCapacity() );
+    }
+
+    /**
+     * Reserves capacity for the taking thread. If there is no capacity, the thread is marked as waiting for it,
+     * so {@link #onCapacityReleased()} wakes up the thread.
+     *
+     * @return The reserved number of tasks
+     */
+    private int reserveCapacityOrWaitForIt()
+    {
+        int maxTaskCount = reserveCapacity();
+        if ( maxTaskCount <= 0 )
+        {
+            isWaitingForCapacity.set( true );
+            // The capacity could be released before the thread has been marked, then nobody would wake it up
+            maxTaskCount = reserveCapacity();
+            if ( maxTaskCount > 0 )
+            {
+                isWaitingForCapacity.set( false );
+            }
+        }
+        return maxTaskCount;
+    }
+
+    /**
+     * Wakes up the taking thread if it has stopped because there was no free space or permits.
+     * If the thread is still running then its next sleep is skipped.
+     */
+    private void onCapacityReleased()
+    {
+        if ( isWaitingForCapacity.compareAndSet( true, false ) )
+        {
+            taskTakingAction.wakeUp();
+        }
+    }
 
-            if ( isTasksTakenSuccess )
+    /**
+     * Reserves free space of buffer for tasks being taken, the space is limited by refill policy
+     * and by free permits of in-flight tasks.
+     *
+     * @return The reserved number of tasks
+     */
+    private int reserveCapacity()
+    {
+        while ( true )
+        {
+            final int reserved = reservedCapacity.get();
+            final int freeCapacity = getMaxCapacity() - buffer.size() - reserved;
+            if ( freeCapacity <= 0 )
             {
-                putTasksToBuffer( tasks );
+                return 0;
             }
-            else
+            final int claimSize = refillPolicy.getClaimSize( freeCapacity );
+            if ( reservedCapacity.compareAndSet( reserved, reserved + claimSize ) )
             {
-                final boolean isInterrupted = sleep();
-                if ( isInterrupted )
+                return acquirePermits( claimSize );
+            }
+        }
+    }
+
+    private int acquirePermits( int claimSize )
+    {
+        if ( inFlightTasks == null )
+        {
+            return claimSize;
+        }
+
+        final int permitCount = inFlightTasks.tryAcquire( claimSize );
+        reservedCapacity.addAndGet( permitCount - claimSize );
+        return permitCount;
+    }
+
+    /**
+     * Takes tasks to reserved space of buffer and releases the reservation.
+     * Permits of tasks which have not been added to buffer are released too.
+     *
+     * @return The number of tasks added to buffer
+     */
+    private int takeTasks( final TaskReaderAction takeAction, int reservedTaskCount )
+    {
+        int addedCount = 0;
+        try
+        {
+            final long startTime = System.nanoTime();
+            final UrlTask[] tasks = takeAction.takeTasks( reservedTaskCount );
+            if ( reservedTaskCount > 0 )
+            {
+                claimCount.incrementAndGet();
+            }
+            if ( tasks == null || tasks.length == 0 )
+            {
+                if ( reservedTaskCount > 0 )
                 {
-                    break;
+                    emptyClaimCount.incrementAndGet();
                 }
+                return 0;
+            }
+            // Empty claim can wait for tasks in task service, so only claims with tasks are measured
+            refillPolicy.onClaim( System.nanoTime() - startTime );
+            refillPolicy.resetBackoff();
+            if ( tasks.length > reservedTaskCount )
+            {
+                logger.error( "'{}' tasks have been taken, while only '{}' tasks were requested",
+                        tasks.length, reservedTaskCount );
+            }
+            addedCount = putTasksToBuffer( tasks, reservedTaskCount );
+            return addedCount;
+
+        } finally
+        {
+            reservedCapacity.addAndGet( -reservedTaskCount );
+            if ( inFlightTasks != null )
+            {
+                inFlightTasks.release( reservedTaskCount - addedCount );
             }
+            if ( addedCount < reservedTaskCount )
+            {
+                // The reserved space and permits are free again, e.g. tasks taken with sending results are missing
+                onCapacityReleased();
+            }
+        }
+    }
+
+    @Override
+    public void onTasksAvailable()
+    {
+        refillPolicy.resetBackoff();
 
-        } while ( !isTasksTakenSuccess || isBufferNeedFillUp() );
+        backoffLock.lock();
+        try
+        {
+            isTasksAvailable = true;
+            tasksAvailableCondition.signalAll();
 
-        this.isTaskTaking = false;
+        } finally
+        {
+            backoffLock.unlock();
+        }
     }
 
     @Override
@@ -104,36 +321,33 @@ public class BufferedTaskReaderImpl implements BufferedTaskReader
     @Override
     public UrlTask read()
     {
-        if ( isTaskNeedTaken() )
+        // Only one reader wins the flag and wakes up task taking thread, others do not block here.
+        if ( isBufferNeedFillUp() && isTaskTaking.compareAndSet( false, true ) )
         {
-            synchronized ( this )
-            {
-                if ( isTaskNeedTaken() )
-                {
-                    runTaskTakingThread();
-                }
-            }
+            taskTakingAction.runAndWait();
         }
 
         return takeTaskFromBuffer();
     }
 
-    private boolean isTaskNeedTaken()
-    {
-        return !isTaskTaking && isBufferNeedFillUp();
-    }
-
     private boolean isBufferNeedFillUp()
     {
-        return buffer.size() <= getMaxCapacity() / 2;
+        return buffer.size() <= refillPolicy.getLowWatermark();
     }
 
     private UrlTask takeTaskFromBuffer()
     {
         try
         {
-            logger.debug( "Taking task from buffer. buffer size: " + buffer.size() );
-            return buffer.take();
+            UrlTask task = buffer.poll();
+            if ( task == null )
+            {
+                final long startTime = System.nanoTime();
+                task = buffer.take();
+                idleNanos.addAndGet( System.nanoTime() - startTime );
+            }
+            refillPolicy.onTaskRead();
+            return task;
 
         } catch ( InterruptedException ex )
         {
@@ -143,43 +357,124 @@ public class BufferedTaskReaderImpl implements BufferedTaskReader
         }
     }
 
-    private void putTasksToBuffer( final UrlTask[] tasks )
+    private int putTasksToBuffer( final UrlTask[] tasks, int maxTaskCount )
     {
+        int addedCount = 0;
         for ( UrlTask task : tasks )
         {
-            try
+            // The space and permits have been reserved, so the task is not added only if too many tasks are taken
+            if ( addedCount >= maxTaskCount )
             {
-                logger.debug( "Adding task into buffer. buffer size: '{}, task: {}", buffer.size(), task );
-                buffer.put( task );
-
-                logger.info( "The task has been added into buffer. " + task );
-                logger.debug( "The buffer size after adding: " + buffer.size() );
-
-            } catch ( InterruptedException ex )
+                logger.warn( "The task has not been added, there is no space reserved for it. {}", task );
+                continue;
+            }
+            if ( inFlightTasks != null )
             {
-                logger.debug( "Thread was interrupted during putting task into buffer" );
-                Thread.currentThread().interrupt();
-                break;
+                inFlightTasks.onTaken( task );
+            }
+            if ( !buffer.offer( task ) )
+            {
+                if ( inFlightTasks != null )
+                {
+                    inFlightTasks.onDropped( task );
+                }
+                logger.warn( "The task has not been added into full buffer. {}", task );
+                continue;
             }
+            addedCount++;
+
+            logger.info( "The task has been added into buffer. {}", task );
         }
+        logger.debug( "'{}' tasks have been added into buffer", addedCount );
+        return addedCount;
     }
 
-    private boolean sleep()
+    /**
+     * Waits before the next claim after empty claim, until backoff time passes or new tasks are available.
+     *
+     * @param claimNanos The time of empty claim, which is subtracted from backoff time
+     * @return true if the thread has been interrupted
+     */
+    private boolean backOff( long claimNanos )
     {
-        boolean isInterrupted = false;
+        final long startTime = System.nanoTime();
+        long waitNanos = refillPolicy.nextBackoffNanos() - claimNanos;
+        logger.debug( "Wait for '{}' ms before to repeat actions...", TimeUnit.NANOSECONDS.toMillis( waitNanos ) );
+
+        backoffLock.lock();
         try
         {
-            logger.debug( "Sleep for '{} {}' before to repeat actions...", sleepTimeInterval, sleepTimeUnit );
-
-            sleepTimeUnit.sleep( sleepTimeInterval );
+            while ( !isTasksAvailable && waitNanos > 0 )
+            {
+                waitNanos = tasksAvailableCondition.awaitNanos( waitNanos );
+            }
+            isTasksAvailable = false;
+            return false;
 
         } catch ( InterruptedException ex )
         {
             logger.debug( "Thread was interrupted during sleeping" );
             Thread.currentThread().interrupt();
-            isInterrupted = true;
+            return true;
+
+        } finally
+        {
+            backoffLock.unlock();
+            backoffNanos.addAndGet( System.nanoTime() - startTime );
         }
+    }
+
+    @Override
+    public int getBufferSize()
+    {
+        return buffer.size();
+    }
+
+    @Override
+    public double getBufferOccupancy()
+    {
+        return ( double ) buffer.size() / getMaxCapacity();
+    }
+
+    @Override
+    public int getLowWatermark()
+    {
+        return refillPolicy.getLowWatermark();
+    }
+
+    @Override
+    public double getCompletionRate()
+    {
+        return refillPolicy.getCompletionRate();
+    }
 
-        return isInterrupted;
+    @Override
+    public long getClaimLatencyMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( refillPolicy.getClaimLatencyNanos() );
+    }
+
+    @Override
+    public long getClaimCount()
+    {
+        return claimCount.get();
+    }
+
+    @Override
+    public long getEmptyClaimCount()
+    {
+        return emptyClaimCount.get();
+    }
+
+    @Override
+    public long getIdleTimeMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( idleNanos.get() );
+    }
+
+    @Override
+    public long getBackoffTimeMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( backoffNanos.get() );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+/**
+ * Represents metrics of {@link BufferedTaskReaderImpl}.
+ *
+ * @author mperever
+ */
+public interface BufferedTaskReaderMXBean
+{
+    /**
+     * @return The number of tasks in buffer
+     */
+    int getBufferSize();
+
+    /**
+     * @return The maximum buffer capacity
+     */
+    int getMaxCapacity();
+
+    /**
+     * @return The share of buffer capacity taken by tasks
+     */
+    double getBufferOccupancy();
+
+    /**
+     * @return The number of tasks in buffer when it is refilled
+     */
+    int getLowWatermark();
+
+    /**
+     * @return The moving average of tasks read from buffer per second
+     */
+    double getCompletionRate();
+
+    /**
+     * @return The moving average of time to take tasks from task service
+     */
+    long getClaimLatencyMs();
+
+    /**
+     * @return The number of requests to take tasks
+     */
+    long getClaimCount();
+
+    /**
+     * @return The number of requests to take tasks which returned no tasks
+     */
+    long getEmptyClaimCount();
+
+    /**
+     * @return The total time of waiting for tasks by readers of empty buffer
+     */
+    long getIdleTimeMs();
+
+    /**
+     * @return The total time of waiting before the next request after empty claim
+     */
+    long getBackoffTimeMs();
+}
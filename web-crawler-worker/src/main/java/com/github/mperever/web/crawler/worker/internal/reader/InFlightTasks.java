@@ -0,0 +1,201 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents permits for tasks taken from task service and not processed yet.
+ *
+ * {@link BufferedTaskReaderImpl} acquires permits before tasks are taken, and the permit of task is released
+ * only when the task has been processed. So tasks are taken only when processing slots are about to free up,
+ * and taken tasks do not wait in buffers until task service re-assigns them to other clients.
+ *
+ * The time between taking task and the start of its processing (age of task) is measured.
+ * Urls of started tasks are kept until the tasks are processed, so {@link TaskLeaseRenewer} renews their leases.
+ * Leases of tasks waiting in buffers are not renewed, so tasks stuck behind slow hosts are re-assigned
+ * to other clients by task service instead of being held for ever.
+ *
+ * @author mperever
+ */
+public class InFlightTasks implements InFlightTasksMXBean
+{
+    /**
+     * The default time after which task service considers task as not processed and re-assigns it.
+     */
+    private static final long TASK_PROCESSING_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos( 60 );
+
+    private final int maxInFlightTasks;
+    private final Semaphore permits;
+    private final ConcurrentMap<String, Long> claimTimes = new ConcurrentHashMap<>();
+    private final Set<String> startedUrls = ConcurrentHashMap.newKeySet();
+    private volatile Runnable releaseListener = () -> { };
+
+    private final AtomicLong lastAgeNanos = new AtomicLong();
+    private final AtomicLong maxAgeNanos = new AtomicLong();
+    private final LongAdder totalAgeNanos = new LongAdder();
+    private final LongAdder startedCount = new LongAdder();
+    private final LongAdder staleCount = new LongAdder();
+
+    /**
+     * @param maxInFlightTasks The maximum number of tasks taken from task service and not processed yet
+     */
+    public InFlightTasks( int maxInFlightTasks )
+    {
+        if ( maxInFlightTasks <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'maxInFlightTasks' must be positive." );
+        }
+        this.maxInFlightTasks = maxInFlightTasks;
+        permits = new Semaphore( maxInFlightTasks );
+    }
+
+    /**
+     * Sets listener which is notified when permit of processed task is released,
+     * so the task reader stopped by missing permits takes tasks again.
+     */
+    void setReleaseListener( final Runnable releaseListener )
+    {
+        this.releaseListener = releaseListener;
+    }
+
+    /**
+     * Acquires permits for tasks to take without waiting.
+     *
+     * @param maxCount The maximum number of permits to acquire
+     * @return The number of acquired permits, 0 if there are no free permits
+     */
+    int tryAcquire( int maxCount )
+    {
+        while ( maxCount > 0 )
+        {
+            final int count = Math.min( maxCount, permits.availablePermits() );
+            if ( count <= 0 )
+            {
+                return 0;
+            }
+            if ( permits.tryAcquire( count ) )
+            {
+                return count;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Releases permits which have been acquired for tasks, but have not been used (e.g. less tasks were taken).
+     */
+    void release( int count )
+    {
+        if ( count > 0 )
+        {
+            permits.release( count );
+        }
+    }
+
+    /**
+     * Remembers time when the task has been taken from task service.
+     */
+    void onTaken( final UrlTask task )
+    {
+        claimTimes.put( task.getUrl(), System.nanoTime() );
+    }
+
+    /**
+     * Forgets the task which has been taken, but has not been added to buffer.
+     */
+    void onDropped( final UrlTask task )
+    {
+        claimTimes.remove( task.getUrl() );
+    }
+
+    /**
+     * Measures age of the task when its processing starts.
+     *
+     * @param task The task taken from {@link BufferedTaskReader}
+     */
+    public void onStarted( final UrlTask task )
+    {
+        final Long claimTime = claimTimes.get( task.getUrl() );
+        if ( claimTime == null || !startedUrls.add( task.getUrl() ) )
+        {
+            return;
+        }
+
+        final long ageNanos = System.nanoTime() - claimTime;
+        lastAgeNanos.set( ageNanos );
+        maxAgeNanos.accumulateAndGet( ageNanos, Math::max );
+        totalAgeNanos.add( ageNanos );
+        startedCount.increment();
+        if ( ageNanos >= TASK_PROCESSING_TIMEOUT_NANOS )
+        {
+            staleCount.increment();
+        }
+    }
+
+    /**
+     * Releases permit of the task when its processing is completed.
+     *
+     * @param task The task taken from {@link BufferedTaskReader}
+     */
+    public void onCompleted( final UrlTask task )
+    {
+        startedUrls.remove( task.getUrl() );
+        claimTimes.remove( task.getUrl() );
+        permits.release();
+        releaseListener.run();
+    }
+
+    /**
+     * @return Urls of tasks which processing has been started and has not been completed yet
+     */
+    List<String> getStartedUrls()
+    {
+        return new ArrayList<>( startedUrls );
+    }
+
+    @Override
+    public int getMaxInFlightTasks()
+    {
+        return maxInFlightTasks;
+    }
+
+    @Override
+    public int getInFlightTasks()
+    {
+        return maxInFlightTasks - permits.availablePermits();
+    }
+
+    @Override
+    public long getLastTaskAgeMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( lastAgeNanos.get() );
+    }
+
+    @Override
+    public long getAverageTaskAgeMs()
+    {
+        final long count = startedCount.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis( totalAgeNanos.sum() / count );
+    }
+
+    @Override
+    public long getMaxTaskAgeMs()
+    {
+        return TimeUnit.NANOSECONDS.toMillis( maxAgeNanos.get() );
+    }
+
+    @Override
+    public long getStaleTaskCount()
+    {
+        return staleCount.sum();
+    }
+}
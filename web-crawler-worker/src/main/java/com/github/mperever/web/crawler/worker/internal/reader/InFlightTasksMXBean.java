@@ -0,0 +1,39 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+/**
+ * Represents metrics of {@link InFlightTasks}.
+ *
+ * @author mperever
+ */
+public interface InFlightTasksMXBean
+{
+    /**
+     * @return The maximum number of tasks taken from task service and not processed yet
+     */
+    int getMaxInFlightTasks();
+
+    /**
+     * @return The number of tasks taken from task service and not processed yet
+     */
+    int getInFlightTasks();
+
+    /**
+     * @return The time between taking the last started task from task service and the start of its processing
+     */
+    long getLastTaskAgeMs();
+
+    /**
+     * @return The average time between taking tasks from task service and the start of their processing
+     */
+    long getAverageTaskAgeMs();
+
+    /**
+     * @return The maximum time between taking task from task service and the start of its processing
+     */
+    long getMaxTaskAgeMs();
+
+    /**
+     * @return The number of tasks started after task service could re-assign them to other clients
+     */
+    long getStaleTaskCount();
+}
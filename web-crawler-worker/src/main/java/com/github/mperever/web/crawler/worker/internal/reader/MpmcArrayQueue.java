@@ -0,0 +1,224 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Represents bounded lock-free queue for several producers and several consumers (D. Vyukov's algorithm).
+ *
+ * Each cell of ring has sequence number, which tells whether the cell is free for producer at the position
+ * or keeps element for consumer at the position. Producers and consumers claim positions by CAS on
+ * separate counters, so they do not block each other, and {@link #size()} is only two volatile reads.
+ * The size is approximate while elements are being added or taken.
+ *
+ * Only {@link #take()} blocks when the queue is empty, the lock is used only by waiting consumers
+ * and by producers when there are waiting consumers.
+ *
+ * @param <E> The type of elements
+ * @author mperever
+ */
+class MpmcArrayQueue<E>
+{
+    private final int capacity;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLong producerPosition = new AtomicLong();
+    private final AtomicLong consumerPosition = new AtomicLong();
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmptyCondition = lock.newCondition();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+
+    MpmcArrayQueue( int capacity )
+    {
+        if ( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( "Capacity should be positive: " + capacity );
+        }
+        this.capacity = capacity;
+        sequences = new AtomicLongArray( capacity );
+        elements = new AtomicReferenceArray<>( capacity );
+        for ( int i = 0; i < capacity; i++ )
+        {
+            sequences.set( i, i );
+        }
+    }
+
+    /**
+     * Adds element if the queue is not full.
+     *
+     * @return true if the element has been added
+     */
+    boolean offer( final E element )
+    {
+        if ( element == null )
+        {
+            throw new NullPointerException( "Element is not specified" );
+        }
+
+        long position = producerPosition.get();
+        while ( true )
+        {
+            final int index = index( position );
+            final long difference = sequences.get( index ) - position;
+            if ( difference == 0 )
+            {
+                if ( producerPosition.compareAndSet( position, position + 1 ) )
+                {
+                    elements.lazySet( index, element );
+                    // The element is published to consumers by the sequence
+                    sequences.set( index, position + 1 );
+                    break;
+                }
+                position = producerPosition.get();
+            }
+            else if ( difference < 0 )
+            {
+                // The cell keeps element of the previous round, so the queue is full
+                return false;
+            }
+            else
+            {
+                position = producerPosition.get();
+            }
+        }
+
+        if ( waitingConsumers.get() > 0 )
+        {
+            signalNotEmpty();
+        }
+        return true;
+    }
+
+    /**
+     * @return The head element, or null if the queue is empty
+     */
+    E poll()
+    {
+        long position = consumerPosition.get();
+        while ( true )
+        {
+            final int index = index( position );
+            final long difference = sequences.get( index ) - ( position + 1 );
+            if ( difference == 0 )
+            {
+                if ( consumerPosition.compareAndSet( position, position + 1 ) )
+                {
+                    final E element = elements.get( index );
+                    elements.lazySet( index, null );
+                    // The cell is freed for producer of the next round
+                    sequences.set( index, position + capacity );
+                    return element;
+                }
+                position = consumerPosition.get();
+            }
+            else if ( difference < 0 )
+            {
+                // The cell has not been filled yet, so the queue is empty
+                return null;
+            }
+            else
+            {
+                position = consumerPosition.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the head element, waits until an element is added if the queue is empty.
+     *
+     * @return The head element
+     * @throws InterruptedException if the thread has been interrupted during waiting
+     */
+    E take() throws InterruptedException
+    {
+        E element = poll();
+        if ( element != null )
+        {
+            return element;
+        }
+
+        lock.lockInterruptibly();
+        try
+        {
+            // Producer reads the counter after adding element, so the element or the signal is not missed
+            waitingConsumers.incrementAndGet();
+            try
+            {
+                element = poll();
+                while ( element == null )
+                {
+                    notEmptyCondition.await();
+                    element = poll();
+                }
+            } finally
+            {
+                waitingConsumers.decrementAndGet();
+            }
+
+        } finally
+        {
+            lock.unlock();
+        }
+
+        if ( !isEmpty() && waitingConsumers.get() > 0 )
+        {
+            // Other consumers could miss the signal consumed by this one
+            signalNotEmpty();
+        }
+        return element;
+    }
+
+    private void signalNotEmpty()
+    {
+        lock.lock();
+        try
+        {
+            notEmptyCondition.signal();
+
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The approximate number of elements in the queue
+     */
+    int size()
+    {
+        // Consumer position is read first, so the size is not negative
+        final long consumed = consumerPosition.get();
+        final long produced = producerPosition.get();
+        return ( int ) Math.max( 0, Math.min( capacity, produced - consumed ) );
+    }
+
+    boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    int capacity()
+    {
+        return capacity;
+    }
+
+    void clear()
+    {
+        while ( poll() != null )
+        {
+            // Remove all elements
+        }
+    }
+
+    private int index( long position )
+    {
+        return ( int ) ( position % capacity );
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents adaptive policy of buffer refill for {@link BufferedTaskReaderImpl}.
+ *
+ * The policy measures the rate at which tasks are read from buffer (exponentially weighted moving average
+ * with {@link #RATE_TIME_CONSTANT_NANOS} time constant) and the latency of taking tasks from task service, so:
+ *
+ *     - buffer is refilled when it keeps tasks for less than {@link #LATENCY_SAFETY_FACTOR} claim latencies,
+ *       but not later than it is half empty
+ *     - each claim takes tasks for {@link #CLAIM_HORIZON_NANOS} of processing, so claimed tasks are processed
+ *       long before task service considers them free again
+ *     - after empty claim the next one is delayed exponentially with jitter up to the maximum delay,
+ *       so idle workers do not request task service at the same time
+ *
+ * @author mperever
+ */
+class RefillPolicy
+{
+    private static final long RATE_TIME_CONSTANT_NANOS = TimeUnit.SECONDS.toNanos( 10 );
+    private static final long CLAIM_HORIZON_NANOS = TimeUnit.SECONDS.toNanos( 20 );
+    private static final int LATENCY_SAFETY_FACTOR = 2;
+    private static final double LATENCY_SMOOTHING = 0.3;
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos( 250 );
+    private static final int MAX_BACKOFF_SHIFT = 30;
+    private static final long LOW_WATERMARK_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+    private final int maxCapacity;
+    private final long maxBackoffNanos;
+    private final LongAdder readCount = new LongAdder();
+
+    // The low watermark is checked on each read, so it is recomputed only when it is stale
+    private volatile int lowWatermark;
+    private volatile long lowWatermarkTime = System.nanoTime() - LOW_WATERMARK_REFRESH_NANOS;
+
+    // guarded by this
+    private double completionRatePerSec;
+    private long rateUpdateTime = System.nanoTime();
+    private long rateUpdateReadCount;
+    private double claimLatencyNanos;
+    private int emptyClaimsInRow;
+
+    RefillPolicy( int maxCapacity, long maxBackoffNanos )
+    {
+        this.maxCapacity = maxCapacity;
+        this.maxBackoffNanos = maxBackoffNanos;
+    }
+
+    void onTaskRead()
+    {
+        readCount.increment();
+    }
+
+    synchronized void onClaim( long latencyNanos )
+    {
+        claimLatencyNanos = claimLatencyNanos == 0
+                ? latencyNanos
+                : claimLatencyNanos + LATENCY_SMOOTHING * ( latencyNanos - claimLatencyNanos );
+    }
+
+    /**
+     * @return The number of tasks in buffer when it should be refilled, the value is cached for
+     * {@link #LOW_WATERMARK_REFRESH_NANOS}
+     */
+    int getLowWatermark()
+    {
+        final long now = System.nanoTime();
+        if ( now - lowWatermarkTime < LOW_WATERMARK_REFRESH_NANOS )
+        {
+            return lowWatermark;
+        }
+        return computeLowWatermark( now );
+    }
+
+    private synchronized int computeLowWatermark( long now )
+    {
+        updateCompletionRate( now );
+
+        final double tasksPerClaimLatency = completionRatePerSec * claimLatencyNanos / TimeUnit.SECONDS.toNanos( 1 );
+        final long watermark = ( long ) Math.ceil( tasksPerClaimLatency * LATENCY_SAFETY_FACTOR );
+        lowWatermark = ( int ) Math.min( maxCapacity - 1, Math.max( maxCapacity / 2, watermark ) );
+        lowWatermarkTime = now;
+        return lowWatermark;
+    }
+
+    /**
+     * @param freeCapacity The free space of buffer
+     * @return The number of tasks to claim, all free space is claimed until completion rate is measured
+     */
+    synchronized int getClaimSize( int freeCapacity )
+    {
+        updateCompletionRate( System.nanoTime() );
+        if ( completionRatePerSec == 0 )
+        {
+            return freeCapacity;
+        }
+
+        final double horizonSec = ( claimLatencyNanos + CLAIM_HORIZON_NANOS ) / TimeUnit.SECONDS.toNanos( 1 );
+        final long claimSize = ( long ) Math.ceil( completionRatePerSec * horizonSec );
+        return ( int ) Math.min( freeCapacity, Math.max( 1, claimSize ) );
+    }
+
+    /**
+     * Gets the delay before the next claim after empty claim and increases the next delay.
+     *
+     * @return The delay in nanoseconds, random value between half and full exponential delay
+     */
+    synchronized long nextBackoffNanos()
+    {
+        final long backoffNanos = Math.min( maxBackoffNanos,
+                INITIAL_BACKOFF_NANOS << Math.min( emptyClaimsInRow, MAX_BACKOFF_SHIFT ) );
+        emptyClaimsInRow++;
+
+        final long halfBackoffNanos = backoffNanos / 2;
+        return halfBackoffNanos + ThreadLocalRandom.current().nextLong( backoffNanos - halfBackoffNanos + 1 );
+    }
+
+    synchronized void resetBackoff()
+    {
+        emptyClaimsInRow = 0;
+    }
+
+    synchronized double getCompletionRate()
+    {
+        updateCompletionRate( System.nanoTime() );
+        return completionRatePerSec;
+    }
+
+    synchronized long getClaimLatencyNanos()
+    {
+        return ( long ) claimLatencyNanos;
+    }
+
+    /**
+     * Updates moving average of completion rate, the weight of new rate depends on time since the last update.
+     */
+    synchronized void updateCompletionRate( long now )
+    {
+        final long elapsedNanos = now - rateUpdateTime;
+        if ( elapsedNanos <= 0 )
+        {
+            return;
+        }
+
+        final long reads = readCount.sum();
+        final double rate = ( reads - rateUpdateReadCount ) * ( double ) TimeUnit.SECONDS.toNanos( 1 ) / elapsedNanos;
+        final double weight = 1 - Math.exp( -( double ) elapsedNanos / RATE_TIME_CONSTANT_NANOS );
+        completionRatePerSec += weight * ( rate - completionRatePerSec );
+
+        rateUpdateTime = now;
+        rateUpdateReadCount = reads;
+    }
+}
@@ -1,6 +1,9 @@
 package com.github.mperever.web.crawler.worker.internal.reader;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,19 +11,32 @@ import org.slf4j.LoggerFactory;
 /**
  * Represents class to run the {@link #action}, and then falls asleep until it is awakened.
  *
+ * {@link Lock} is used instead of monitor methods, so waiting does not pin carrier thread
+ * when the action is run by a virtual thread.
+ *
  * @author mperever
  */
 class RunAndSleepAction implements AutoCloseable
 {
     private static final Logger logger = LoggerFactory.getLogger( RunAndSleepAction.class );
 
-    private volatile boolean isWaiting;
+    private final Lock lock = new ReentrantLock();
+    private final Condition wakeUpCondition = lock.newCondition();
     private final Runnable action;
-    private final Thread actionRunner = new Thread( this::runActionInLoop );
+    private final Thread actionRunner;
+
+    // guarded by lock
+    private boolean isWakeUpRequested;
 
     public RunAndSleepAction( Runnable action )
+    {
+        this( action, Thread::new );
+    }
+
+    public RunAndSleepAction( Runnable action, ThreadFactory threadFactory )
     {
         this.action = action;
+        actionRunner = threadFactory.newThread( this::runActionInLoop );
     }
 
     private void runActionInLoop()
@@ -58,48 +74,47 @@ class RunAndSleepAction implements AutoCloseable
         }
     }
 
+    /**
+     * Wakes up the action thread.
+     * If the action is still running then the next waiting is skipped, so wake up request is not lost.
+     */
     public void wakeUp()
     {
-        if ( isWaiting )
+        lock.lock();
+        try
         {
-            synchronized ( this )
-            {
-                if ( isWaiting )
-                {
-                    this.notifyAll();
-                    isWaiting = false;
-                    logger.info( "Thread has woken up!" );
-                }
-            }
+            isWakeUpRequested = true;
+            wakeUpCondition.signalAll();
+            logger.info( "Thread has woken up!" );
+
+        } finally
+        {
+            lock.unlock();
         }
     }
 
-    @SuppressFBWarnings( "WA_NOT_IN_LOOP" )
     private void waitForWakeUp()
     {
-        if ( isWaiting )
-        {
-            return;
-        }
-
-        synchronized ( this )
+        lock.lock();
+        try
         {
             logger.info( "Thread has fallen to sleep" );
 
             // while loop to guard against spurious wakeup
-            isWaiting = true;
-            while ( isWaiting )
+            while ( !isWakeUpRequested )
             {
-                try
-                {
-                    this.wait();
-                } catch ( InterruptedException ex )
-                {
-                    isWaiting = false;
-                    logger.debug( "Thread was interrupted during sleeping/waiting" );
-                    Thread.currentThread().interrupt();
-                }
+                wakeUpCondition.await();
             }
+            isWakeUpRequested = false;
+
+        } catch ( InterruptedException ex )
+        {
+            logger.debug( "Thread was interrupted during sleeping/waiting" );
+            Thread.currentThread().interrupt();
+
+        } finally
+        {
+            lock.unlock();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,154 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import com.github.mperever.web.crawler.ts.common.TaskService_v1;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesRequest;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesResponse;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents class to renew leases of tasks which processing has been started ({@link InFlightTasks}).
+ *
+ * Task service re-assigns task to other client when the task is not processed in time. Slow pages can be
+ * downloaded longer, so leases of all started tasks are renewed periodically by one request, and such tasks
+ * are not fetched twice. Tasks which have not been started are not renewed, so a task waiting for a throttled
+ * host is not held for ever and is re-assigned when its lease expires.
+ * Renewal period should be less than the time after which task service re-assigns tasks.
+ *
+ * @author mperever
+ */
+public class TaskLeaseRenewer implements TaskLeaseRenewerMXBean, AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger( TaskLeaseRenewer.class );
+
+    private final Function<RenewTaskLeasesRequest, RenewTaskLeasesResponse> renewAction;
+    private final String clientId;
+    private final InFlightTasks inFlightTasks;
+    private final long renewalPeriodMs;
+    private final ScheduledExecutorService renewalExecutor;
+
+    private final LongAdder renewRequestCount = new LongAdder();
+    private final LongAdder renewedLeaseCount = new LongAdder();
+    private final LongAdder lostLeaseCount = new LongAdder();
+    private final LongAdder failedRequestCount = new LongAdder();
+
+    /**
+     * Creates task lease renewer.
+     *
+     * @param taskService The task service to renew leases
+     * @param clientId The client id which tasks have been assigned to
+     * @param inFlightTasks The tasks taken from task service and not processed yet
+     * @param renewalPeriodMs The period of renewal
+     * @param threadFactory The factory to create renewal thread
+     */
+    public TaskLeaseRenewer( TaskService_v1 taskService,
+                             String clientId,
+                             InFlightTasks inFlightTasks,
+                             long renewalPeriodMs,
+                             ThreadFactory threadFactory )
+    {
+        this( taskService::renewTaskLeases, clientId, inFlightTasks, renewalPeriodMs, threadFactory );
+    }
+
+    TaskLeaseRenewer( Function<RenewTaskLeasesRequest, RenewTaskLeasesResponse> renewAction,
+                      String clientId,
+                      InFlightTasks inFlightTasks,
+                      long renewalPeriodMs,
+                      ThreadFactory threadFactory )
+    {
+        if ( renewalPeriodMs <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'renewalPeriodMs' must be positive." );
+        }
+        this.renewAction = renewAction;
+        this.clientId = clientId;
+        this.inFlightTasks = inFlightTasks;
+        this.renewalPeriodMs = renewalPeriodMs;
+        renewalExecutor = Executors.newSingleThreadScheduledExecutor( threadFactory );
+    }
+
+    /**
+     * Starts periodic renewal of task leases.
+     */
+    public void start()
+    {
+        renewalExecutor.scheduleWithFixedDelay(
+                this::renewLeases, renewalPeriodMs, renewalPeriodMs, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Renews leases of all started tasks by one request.
+     */
+    void renewLeases()
+    {
+        final List<String> urls = inFlightTasks.getStartedUrls();
+        if ( urls.isEmpty() )
+        {
+            return;
+        }
+
+        renewRequestCount.increment();
+        try
+        {
+            final RenewTaskLeasesResponse response = renewAction.apply(
+                    new RenewTaskLeasesRequest( clientId, urls.toArray( new String[ urls.size() ] ) ) );
+            if ( response.hasError() )
+            {
+                failedRequestCount.increment();
+                logger.warn( "Task leases have not been renewed: " + response.getError().getMessage() );
+                return;
+            }
+
+            final int renewedCount = response.getRenewedCount();
+            renewedLeaseCount.add( renewedCount );
+            // Tasks processed during the request are counted too, there is no way to tell them apart
+            lostLeaseCount.add( Math.max( 0, urls.size() - renewedCount ) );
+            logger.debug( "Leases of '{}' of '{}' started tasks have been renewed", renewedCount, urls.size() );
+
+        } catch ( Exception ex )
+        {
+            // Renewal is not stopped if an exception occurs.
+            failedRequestCount.increment();
+            logger.error( ex.getMessage(), ex );
+        }
+    }
+
+    @Override
+    public long getRenewRequestCount()
+    {
+        return renewRequestCount.sum();
+    }
+
+    @Override
+    public long getRenewedLeaseCount()
+    {
+        return renewedLeaseCount.sum();
+    }
+
+    @Override
+    public long getLostLeaseCount()
+    {
+        return lostLeaseCount.sum();
+    }
+
+    @Override
+    public long getFailedRequestCount()
+    {
+        return failedRequestCount.sum();
+    }
+
+    @Override
+    public void close()
+    {
+        renewalExecutor.shutdownNow();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+/**
+ * Represents metrics of {@link TaskLeaseRenewer}.
+ *
+ * @author mperever
+ */
+public interface TaskLeaseRenewerMXBean
+{
+    /**
+     * @return The number of requests to renew leases of in-flight tasks
+     */
+    long getRenewRequestCount();
+
+    /**
+     * @return The number of renewed leases of tasks
+     */
+    long getRenewedLeaseCount();
+
+    /**
+     * @return The number of tasks which leases have not been renewed, because task service has already
+     *         re-assigned them to other clients or they have been processed
+     */
+    long getLostLeaseCount();
+
+    /**
+     * @return The number of failed requests to renew leases
+     */
+    long getFailedRequestCount();
+}
\ No newline at end of file
@@ -20,18 +20,38 @@ public class TaskReaderActionImpl implements TaskReaderAction
     private final TaskService_v1 taskService;
     private final String clientId;
     private final int urlDepthLimit;
+    private final long taskWaitTimeoutMs;
 
     public TaskReaderActionImpl( TaskService_v1 taskService, String clientId, int urlDepthLimit )
+    {
+        this( taskService, clientId, urlDepthLimit, 0 );
+    }
+
+    /**
+     * Creates action to take tasks.
+     *
+     * @param taskService The task service
+     * @param clientId The client identifier
+     * @param urlDepthLimit The maximum depth of external urls
+     * @param taskWaitTimeoutMs The maximum time task service waits for tasks if there are no tasks,
+     *                          0 to get response at once
+     */
+    public TaskReaderActionImpl( TaskService_v1 taskService,
+                                 String clientId,
+                                 int urlDepthLimit,
+                                 long taskWaitTimeoutMs )
     {
         this.taskService = taskService;
         this.clientId = clientId;
         this.urlDepthLimit = urlDepthLimit;
+        this.taskWaitTimeoutMs = taskWaitTimeoutMs;
     }
 
     @Override
     public UrlTask[] takeTasks( int maxTaskCount )
     {
-        final RetrieveTasksRequest tasksRequest = new RetrieveTasksRequest( clientId, maxTaskCount, urlDepthLimit );
+        final RetrieveTasksRequest tasksRequest = new RetrieveTasksRequest(
+                clientId, maxTaskCount, urlDepthLimit, taskWaitTimeoutMs );
         final RetrieveTasksResponse tasksResponse = taskService.retrieveTasks( tasksRequest );
         if ( tasksResponse.hasError() )
         {
@@ -0,0 +1,47 @@
+package com.github.mperever.web.crawler.worker.internal.scheduler;
+
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+/**
+ * Represents interface for thread-safe scheduler that orders tasks with respect to their hosts,
+ * so one host is not requested by all task processors at once.
+ *
+ * @author mperever
+ */
+public interface HostTaskScheduler
+{
+    /**
+     * Adds task to the scheduler.
+     * This method blocks thread while the scheduler is full, but it does not wait for free space of one host,
+     * so tasks of other hosts are added while a throttled host has the maximum number of waiting tasks.
+     *
+     * @param task The task to schedule
+     * @return true if the task has been added, false if its host has the maximum number of waiting tasks
+     * @throws InterruptedException if thread was interrupted during waiting for free space
+     */
+    boolean submit( UrlTask task ) throws InterruptedException;
+
+    /**
+     * Takes next task that is allowed to be processed now.
+     * This method blocks thread until such task appears.
+     * The task must be passed to {@link #complete(UrlTask)} after processing.
+     *
+     * @return The task to process
+     * @throws InterruptedException if thread was interrupted during waiting for task
+     */
+    UrlTask next() throws InterruptedException;
+
+    /**
+     * Marks task taken by {@link #next()} as processed, so its host can be requested again.
+     *
+     * @param task The processed task
+     */
+    void complete( UrlTask task );
+
+    /**
+     * Gets the number of tasks which wait for processing.
+     *
+     * @return The number of waiting tasks
+     */
+    int size();
+}
@@ -0,0 +1,268 @@
+package com.github.mperever.web.crawler.worker.internal.scheduler;
+
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents implementation for {@link HostTaskScheduler}.
+ *
+ * Tasks are kept in per-host queues. Hosts with waiting tasks are visited in round-robin order,
+ * and a host is skipped while it has the maximum number of tasks in processing
+ * or while the minimum delay since its previous request has not passed.
+ * So slow hosts do not block tasks of other hosts.
+ *
+ * The number of waiting tasks of one host is bounded too, otherwise tasks of a throttled host could fill
+ * the whole scheduler, and tasks of other hosts would wait behind them. Tasks of a host which has the maximum
+ * number of waiting tasks are rejected at once, without waiting.
+ *
+ * @author mperever
+ */
+public class HostTaskSchedulerImpl implements HostTaskScheduler
+{
+    private static final Logger logger = LoggerFactory.getLogger( HostTaskSchedulerImpl.class );
+
+    private final int capacity;
+    private final int maxWaitingTasksPerHost;
+    private final int maxActiveTasksPerHost;
+    private final long hostDelayNanos;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition hostAvailable = lock.newCondition();
+
+    // guarded by lock
+    private final Map<String,HostQueue> hosts = new HashMap<>();
+    private final Deque<HostQueue> waitingHosts = new ArrayDeque<>();
+    private int size;
+
+    /**
+     * Creates scheduler.
+     *
+     * @param capacity The maximum number of waiting tasks
+     * @param maxWaitingTasksPerHost The maximum number of waiting tasks of one host
+     * @param maxActiveTasksPerHost The maximum number of tasks of one host in processing at once
+     * @param hostDelay The minimum delay between starting of tasks of one host
+     * @param hostDelayUnit The unit of host delay
+     */
+    public HostTaskSchedulerImpl( int capacity,
+                                  int maxWaitingTasksPerHost,
+                                  int maxActiveTasksPerHost,
+                                  long hostDelay,
+                                  TimeUnit hostDelayUnit )
+    {
+        if ( capacity <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'capacity' must be positive." );
+        }
+        if ( maxWaitingTasksPerHost <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'maxWaitingTasksPerHost' must be positive." );
+        }
+        if ( maxActiveTasksPerHost <= 0 )
+        {
+            throw new IllegalArgumentException( "parameter 'maxActiveTasksPerHost' must be positive." );
+        }
+        this.capacity = capacity;
+        this.maxWaitingTasksPerHost = maxWaitingTasksPerHost;
+        this.maxActiveTasksPerHost = maxActiveTasksPerHost;
+        this.hostDelayNanos = hostDelayUnit.toNanos( Math.max( hostDelay, 0 ) );
+    }
+
+    @Override
+    public boolean submit( final UrlTask task ) throws InterruptedException
+    {
+        if ( task == null )
+        {
+            throw new IllegalArgumentException( "parameter 'task' is null." );
+        }
+
+        final String host = hostOf( task );
+        lock.lock();
+        try
+        {
+            while ( size >= capacity )
+            {
+                notFull.await();
+            }
+
+            final HostQueue hostQueue = hosts.computeIfAbsent( host, HostQueue::new );
+            if ( hostQueue.tasks.size() >= maxWaitingTasksPerHost )
+            {
+                logger.debug( "Task is rejected, host '{}' has '{}' waiting tasks", host, hostQueue.tasks.size() );
+                return false;
+            }
+            if ( hostQueue.tasks.isEmpty() )
+            {
+                waitingHosts.addLast( hostQueue );
+            }
+            hostQueue.tasks.add( task );
+            size++;
+
+            logger.debug( "Task is scheduled for host '{}'. scheduler size: {}", host, size );
+            hostAvailable.signal();
+            return true;
+
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public UrlTask next() throws InterruptedException
+    {
+        lock.lock();
+        try
+        {
+            while ( true )
+            {
+                final long now = System.nanoTime();
+                long waitNanos = Long.MAX_VALUE;
+
+                for ( int i = waitingHosts.size(); i > 0; i-- )
+                {
+                    final HostQueue hostQueue = waitingHosts.pollFirst();
+                    final long delayNanos = hostQueue.nextStartTime - now;
+                    final boolean isHostBusy = hostQueue.activeTasks >= maxActiveTasksPerHost;
+
+                    if ( !isHostBusy && delayNanos <= 0 )
+                    {
+                        return start( hostQueue, now );
+                    }
+
+                    // The host is moved to the end, so hosts which are not allowed now do not block others.
+                    waitingHosts.addLast( hostQueue );
+                    if ( !isHostBusy )
+                    {
+                        waitNanos = Math.min( waitNanos, delayNanos );
+                    }
+                }
+
+                // Waits for new host, completion of busy host task or until host delay is passed.
+                if ( waitNanos == Long.MAX_VALUE )
+                {
+                    hostAvailable.await();
+                }
+                else
+                {
+                    hostAvailable.awaitNanos( waitNanos );
+                }
+            }
+
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private UrlTask start( final HostQueue hostQueue, long now )
+    {
+        final UrlTask task = hostQueue.tasks.poll();
+        hostQueue.activeTasks++;
+        hostQueue.nextStartTime = now + hostDelayNanos;
+        if ( !hostQueue.tasks.isEmpty() )
+        {
+            waitingHosts.addLast( hostQueue );
+        }
+
+        size--;
+        notFull.signal();
+        return task;
+    }
+
+    @Override
+    public void complete( final UrlTask task )
+    {
+        final String host = hostOf( task );
+        lock.lock();
+        try
+        {
+            final HostQueue hostQueue = hosts.get( host );
+            if ( hostQueue == null )
+            {
+                logger.warn( "Completed task is not scheduled by this scheduler: " + task );
+                return;
+            }
+
+            hostQueue.activeTasks--;
+            // Idle hosts are not kept, otherwise every host ever seen by the worker would stay in memory.
+            if ( hostQueue.tasks.isEmpty() && hostQueue.activeTasks == 0 )
+            {
+                hosts.remove( host );
+            }
+            hostAvailable.signalAll();
+
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return size;
+
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets host of the task url, e.g. www.example.com.
+     * Tasks with invalid url are scheduled together, they fail fast during processing anyway.
+     */
+    static String hostOf( final UrlTask task )
+    {
+        try
+        {
+            final String host = new URI( task.getUrl() ).getHost();
+            return host == null ? "" : host.toLowerCase( Locale.ENGLISH );
+
+        } catch ( URISyntaxException ex )
+        {
+            return "";
+        }
+    }
+
+    /**
+     * Represents waiting tasks and processing state of one host.
+     */
+    private static final class HostQueue
+    {
+        private final String host;
+        private final Queue<UrlTask> tasks = new ArrayDeque<>();
+        private int activeTasks;
+        private long nextStartTime = System.nanoTime();
+
+        private HostQueue( String host )
+        {
+            this.host = host;
+        }
+
+        @Override
+        public String toString()
+        {
+            return host;
+        }
+    }
+}
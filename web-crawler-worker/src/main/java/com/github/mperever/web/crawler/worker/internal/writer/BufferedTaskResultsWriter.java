@@ -0,0 +1,28 @@
+package com.github.mperever.web.crawler.worker.internal.writer;
+
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Represents interface for thread-safe writer of task results, which sends results by batches.
+ *
+ * @author mperever
+ */
+public interface BufferedTaskResultsWriter extends AutoCloseable
+{
+    /**
+     * Adds task results to the current batch.
+     * This method blocks thread while the current batch is full and the previous one is being sent.
+     *
+     * @param request The request to save task results
+     * @return The future which is completed when the batch with task results has been sent
+     */
+    CompletableFuture<SaveTaskResultResponse> write( SaveTaskResultRequest request );
+
+    /**
+     * Sends the buffered task results and closes writer resources.
+     */
+    void close();
+}
@@ -0,0 +1,306 @@
+package com.github.mperever.web.crawler.worker.internal.writer;
+
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents implementation for thread-safe writer of task results.
+ * Task results are collected to batch, and the batch is sent by {@link TaskResultsWriterAction} in separate thread
+ * when it has the maximum count of results, or the maximum size, or when the linger time after the first result
+ * in batch has passed. So task service saves results of many tasks by one http request and one transaction.
+ *
+ * Only one batch is sent at once, while the next one is collected.
+ * {@link Lock} is used instead of monitor methods, so waiting does not pin carrier thread
+ * when results are written by a virtual thread.
+ *
+ * @author mperever
+ */
+public class BufferedTaskResultsWriterImpl implements BufferedTaskResultsWriter
+{
+    private static final Logger logger = LoggerFactory.getLogger( BufferedTaskResultsWriterImpl.class );
+
+    private static final int CLOSE_TIMEOUT_SEC = 30;
+
+    /**
+     * The estimated size of word statistic entry in request without the word itself.
+     */
+    private static final int WORD_STAT_ENTRY_SIZE = 24;
+
+    private final TaskResultsWriterAction action;
+    private final int maxBatchCount;
+    private final long maxBatchBytes;
+    private final long lingerNanos;
+    private final Thread sendingThread;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition batchReadyCondition = lock.newCondition();
+    private final Condition batchTakenCondition = lock.newCondition();
+
+    // guarded by lock
+    private List<PendingResults> batch = new ArrayList<>();
+    private long batchBytes;
+    private long batchStartTime;
+    private boolean isClosed;
+
+    /**
+     * Creates writer and starts thread to send batches.
+     *
+     * @param action The action to send batch of task results
+     * @param maxBatchCount The maximum number of task results in batch
+     * @param maxBatchBytes The maximum estimated size of batch
+     * @param lingerMs The maximum time to wait for other results after the first result in batch
+     * @param threadFactory The factory to create thread for sending batches, e.g. factory of virtual threads
+     */
+    public BufferedTaskResultsWriterImpl( TaskResultsWriterAction action,
+                                          int maxBatchCount,
+                                          long maxBatchBytes,
+                                          long lingerMs,
+                                          ThreadFactory threadFactory )
+    {
+        this.action = action;
+        this.maxBatchCount = maxBatchCount;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos( lingerMs );
+        sendingThread = threadFactory.newThread( this::sendBatchesInLoop );
+        sendingThread.start();
+    }
+
+    @Override
+    public CompletableFuture<SaveTaskResultResponse> write( final SaveTaskResultRequest request )
+    {
+        final PendingResults results = new PendingResults( request );
+        lock.lock();
+        try
+        {
+            while ( !isClosed && isBatchFull() )
+            {
+                batchTakenCondition.await();
+            }
+            if ( isClosed )
+            {
+                results.complete( new SaveTaskResultResponse(
+                        new IllegalStateException( "Task results writer is closed" ) ) );
+                return results.response;
+            }
+
+            if ( batch.isEmpty() )
+            {
+                // Sending thread starts to wait for linger time
+                batchStartTime = System.nanoTime();
+                batchReadyCondition.signalAll();
+            }
+            batch.add( results );
+            batchBytes += estimateSize( request );
+            if ( isBatchFull() )
+            {
+                batchReadyCondition.signalAll();
+            }
+
+        } catch ( InterruptedException ex )
+        {
+            logger.debug( "Thread was interrupted during waiting for free space in batch" );
+            Thread.currentThread().interrupt();
+            results.complete( new SaveTaskResultResponse( ex ) );
+
+        } finally
+        {
+            lock.unlock();
+        }
+        return results.response;
+    }
+
+    private boolean isBatchFull()
+    {
+        return batch.size() >= maxBatchCount || batchBytes >= maxBatchBytes;
+    }
+
+    private void sendBatchesInLoop()
+    {
+        logger.info( "Thread is started" );
+
+        List<PendingResults> results = takeBatch();
+        while ( results != null )
+        {
+            send( results );
+            results = takeBatch();
+        }
+
+        logger.info( "Thread has completed it work" );
+    }
+
+    /**
+     * Waits until the batch is ready to send.
+     *
+     * @return The batch, or null if the writer is closed and there are no results to send
+     */
+    private List<PendingResults> takeBatch()
+    {
+        lock.lock();
+        try
+        {
+            while ( true )
+            {
+                if ( batch.isEmpty() )
+                {
+                    if ( isClosed )
+                    {
+                        return null;
+                    }
+                    batchReadyCondition.await();
+                    continue;
+                }
+
+                final long lingerLeftNanos = lingerNanos - ( System.nanoTime() - batchStartTime );
+                if ( isClosed || isBatchFull() || lingerLeftNanos <= 0 )
+                {
+                    final List<PendingResults> readyBatch = batch;
+                    batch = new ArrayList<>( readyBatch.size() );
+                    batchBytes = 0;
+                    batchTakenCondition.signalAll();
+                    return readyBatch;
+                }
+                batchReadyCondition.awaitNanos( lingerLeftNanos );
+            }
+
+        } catch ( InterruptedException ex )
+        {
+            // The buffered results are sent without waiting, and new results are not accepted
+            logger.debug( "Thread was interrupted during waiting for batch" );
+            Thread.currentThread().interrupt();
+            isClosed = true;
+            batchTakenCondition.signalAll();
+            final List<PendingResults> readyBatch = batch;
+            batch = new ArrayList<>();
+            return readyBatch.isEmpty() ? null : readyBatch;
+
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void send( final List<PendingResults> results )
+    {
+        final SaveTaskResultRequest[] requests = new SaveTaskResultRequest[ results.size() ];
+        for ( int i = 0; i < requests.length; i++ )
+        {
+            requests[i] = results.get( i ).request;
+        }
+
+        SaveTaskResultResponse[] responses = null;
+        Exception error = null;
+        try
+        {
+            responses = action.saveResults( requests );
+
+        } catch ( Exception ex )
+        {
+            logger.error( ex.getMessage(), ex );
+            error = ex;
+        }
+        logger.debug( "The batch of '{}' task results has been sent", requests.length );
+
+        for ( int i = 0; i < requests.length; i++ )
+        {
+            final boolean hasResponse = responses != null && i < responses.length && responses[i] != null;
+            results.get( i ).complete( hasResponse
+                    ? responses[i]
+                    : new SaveTaskResultResponse( error != null
+                            ? error
+                            : new IllegalStateException( "There is no response for task results" ) ) );
+        }
+    }
+
+    /**
+     * Estimates size of request by the number of chars of its fields.
+     */
+    private static long estimateSize( final SaveTaskResultRequest request )
+    {
+        long size = request.getUrl() == null ? 0 : request.getUrl().length();
+        final TaskResults results = request.getTaskResults();
+        if ( results == null )
+        {
+            return size;
+        }
+
+        if ( results.getPageText() != null )
+        {
+            size += results.getPageText().length();
+        }
+        if ( results.getNewUrls() != null )
+        {
+            for ( String url : results.getNewUrls() )
+            {
+                size += url.length();
+            }
+        }
+        if ( results.getWordsStats() != null )
+        {
+            for ( Map.Entry<String, Long> wordStat : results.getWordsStats().entrySet() )
+            {
+                size += wordStat.getKey().length() + WORD_STAT_ENTRY_SIZE;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            isClosed = true;
+            batchReadyCondition.signalAll();
+            batchTakenCondition.signalAll();
+
+        } finally
+        {
+            lock.unlock();
+        }
+
+        try
+        {
+            // The buffered results are sent before closing
+            sendingThread.join( TimeUnit.SECONDS.toMillis( CLOSE_TIMEOUT_SEC ) );
+
+        } catch ( InterruptedException ex )
+        {
+            logger.debug( "Thread was interrupted during waiting for sending of buffered task results" );
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Represents task results in batch and the future of their response.
+     */
+    private static final class PendingResults
+    {
+        private final SaveTaskResultRequest request;
+        private final CompletableFuture<SaveTaskResultResponse> response = new CompletableFuture<>();
+
+        private PendingResults( SaveTaskResultRequest request )
+        {
+            this.request = request;
+        }
+
+        private void complete( final SaveTaskResultResponse taskResponse )
+        {
+            response.complete( taskResponse );
+        }
+    }
+}
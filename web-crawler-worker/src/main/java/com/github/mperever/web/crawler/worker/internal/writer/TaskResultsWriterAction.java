@@ -0,0 +1,18 @@
+package com.github.mperever.web.crawler.worker.internal.writer;
+
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+
+/**
+ * Represents action for {@link BufferedTaskResultsWriterImpl}.
+ *
+ * @author mperever
+ */
+@FunctionalInterface
+public interface TaskResultsWriterAction
+{
+    /**
+     * @return The responses in the same order as requests
+     */
+    SaveTaskResultResponse[] saveResults( SaveTaskResultRequest[] requests );
+}
@@ -0,0 +1,90 @@
+package com.github.mperever.web.crawler.worker.internal.writer;
+
+import com.github.mperever.web.crawler.ts.common.TaskService_v1;
+import com.github.mperever.web.crawler.ts.common.dto.RetrieveTasksRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveResultsAndRetrieveTasksResponse;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+import com.github.mperever.web.crawler.worker.internal.reader.BufferedTaskReader;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Represents implementation for {@link TaskResultsWriterAction}.
+ * Task results are sent together with request of tasks for free space of task reader buffer,
+ * so the buffer is refilled by the same round trip to task service.
+ *
+ * @author mperever
+ */
+public class TaskResultsWriterActionImpl implements TaskResultsWriterAction
+{
+    private static final Logger logger = LoggerFactory.getLogger( TaskResultsWriterActionImpl.class );
+
+    private final TaskService_v1 taskService;
+    private final BufferedTaskReader taskReader;
+    private final String clientId;
+    private final int urlDepthLimit;
+
+    public TaskResultsWriterActionImpl( TaskService_v1 taskService,
+                                        BufferedTaskReader taskReader,
+                                        String clientId,
+                                        int urlDepthLimit )
+    {
+        this.taskService = taskService;
+        this.taskReader = taskReader;
+        this.clientId = clientId;
+        this.urlDepthLimit = urlDepthLimit;
+    }
+
+    @Override
+    public SaveTaskResultResponse[] saveResults( final SaveTaskResultRequest[] requests )
+    {
+        final SaveTaskResultResponse[][] responses = new SaveTaskResultResponse[1][];
+        final int takenCount = taskReader.fill( maxTaskCount ->
+        {
+            final SaveResultsAndRetrieveTasksResponse response = taskService.saveResultsAndRetrieveTasks(
+                    new SaveResultsAndRetrieveTasksRequest(
+                            new RetrieveTasksRequest( clientId, maxTaskCount, urlDepthLimit ), requests ) );
+            if ( response.hasError() )
+            {
+                final Exception error = response.getError();
+                logger.error( error.getMessage(), error );
+
+                responses[0] = new SaveTaskResultResponse[ requests.length ];
+                Arrays.fill( responses[0], new SaveTaskResultResponse( error ) );
+                return new UrlTask[0];
+            }
+
+            responses[0] = response.getSaveResponses();
+            logger.debug( "'{}' task results have been sent and '{}' tasks have been taken",
+                    requests.length, response.getTasks() == null ? 0 : response.getTasks().length );
+            return response.getTasks();
+        } );
+
+        // Task service has free tasks or new tasks are added by saved links, so the reader does not wait for them
+        if ( takenCount != 0 || hasNewUrls( requests ) )
+        {
+            taskReader.onTasksAvailable();
+        }
+        return responses[0];
+    }
+
+    private static boolean hasNewUrls( final SaveTaskResultRequest[] requests )
+    {
+        for ( SaveTaskResultRequest request : requests )
+        {
+            final TaskResults results = request.getTaskResults();
+            if ( results != null && results.getNewUrls() != null && results.getNewUrls().length != 0 )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
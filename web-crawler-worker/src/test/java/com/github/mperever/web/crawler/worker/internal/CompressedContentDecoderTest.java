@@ -0,0 +1,153 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.ts.common.dto.TaskErrorType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class CompressedContentDecoderTest
+{
+    private static final String PAGE = pageOf( 2000 );
+
+    @DataProvider
+    public Object[][] chunkSizes()
+    {
+        return new Object[][]{ { 1 }, { 7 }, { 1024 }, { Integer.MAX_VALUE } };
+    }
+
+    @Test( dataProvider = "chunkSizes" )
+    public void decode_gzip_by_parts( int chunkSize ) throws IOException
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try ( GZIPOutputStream gzip = new GZIPOutputStream( compressed ) )
+        {
+            gzip.write( PAGE.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        assertDecoded( "gzip", compressed.toByteArray(), chunkSize );
+    }
+
+    @Test( dataProvider = "chunkSizes" )
+    public void decode_zlib_deflate_by_parts( int chunkSize ) throws IOException
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try ( DeflaterOutputStream deflate = new DeflaterOutputStream( compressed ) )
+        {
+            deflate.write( PAGE.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        assertDecoded( "deflate", compressed.toByteArray(), chunkSize );
+    }
+
+    @Test
+    public void decode_raw_deflate() throws IOException
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try ( DeflaterOutputStream deflate = new DeflaterOutputStream(
+                compressed, new Deflater( Deflater.DEFAULT_COMPRESSION, true ) ) )
+        {
+            deflate.write( PAGE.getBytes( StandardCharsets.UTF_8 ) );
+        }
+
+        assertDecoded( "deflate", compressed.toByteArray(), 100 );
+    }
+
+    @Test
+    public void decode_gzip_with_file_name() throws IOException
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try ( GZIPOutputStream gzip = new GZIPOutputStream( compressed ) )
+        {
+            gzip.write( PAGE.getBytes( StandardCharsets.UTF_8 ) );
+        }
+        // Sets FNAME flag and inserts "page.html\0" after the fixed header
+        final byte[] plain = compressed.toByteArray();
+        final byte[] name = "page.html\u0000".getBytes( StandardCharsets.US_ASCII );
+        final byte[] withName = new byte[ plain.length + name.length ];
+        System.arraycopy( plain, 0, withName, 0, 10 );
+        System.arraycopy( name, 0, withName, 10, name.length );
+        System.arraycopy( plain, 10, withName, 10 + name.length, plain.length - 10 );
+        withName[3] |= 0x08;
+
+        assertDecoded( "gzip", withName, 3 );
+    }
+
+    @Test
+    public void identity_encoding_is_not_decoded()
+    {
+        Assert.assertEquals( CompressedContentDecoder.forEncoding( null, 1024 ), null );
+        Assert.assertEquals( CompressedContentDecoder.forEncoding( "identity", 1024 ), null );
+    }
+
+    @Test
+    public void unsupported_encoding()
+    {
+        try
+        {
+            CompressedContentDecoder.forEncoding( "br", 1024 );
+            Assert.fail( "Brotli encoding is not supported" );
+
+        } catch ( FetchException ex )
+        {
+            Assert.assertEquals( ex.getErrorType(), TaskErrorType.UNSUPPORTED_CONTENT_TYPE );
+        }
+    }
+
+    @Test
+    public void decoded_page_is_too_large() throws IOException
+    {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try ( GZIPOutputStream gzip = new GZIPOutputStream( compressed ) )
+        {
+            // The page is compressed more than 1000 times
+            gzip.write( new byte[ 10 * 1024 * 1024 ] );
+        }
+
+        try ( CompressedContentDecoder decoder = CompressedContentDecoder.forEncoding( "gzip", 1024 * 1024 ) )
+        {
+            decoder.decode( ByteBuffer.wrap( compressed.toByteArray() ) );
+            Assert.fail( "The page is larger than the limit" );
+
+        } catch ( FetchException ex )
+        {
+            Assert.assertEquals( ex.getErrorType(), TaskErrorType.BODY_TOO_LARGE );
+        }
+    }
+
+    private static void assertDecoded( final String encoding, final byte[] compressed, int chunkSize )
+    {
+        final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try ( CompressedContentDecoder decoder = CompressedContentDecoder.forEncoding( encoding, Integer.MAX_VALUE ) )
+        {
+            for ( int offset = 0; offset < compressed.length; offset += chunkSize )
+            {
+                final int length = Math.min( chunkSize, compressed.length - offset );
+                final ByteBuffer part = decoder.decode( ByteBuffer.wrap( compressed, offset, length ) );
+                decoded.write( part.array(), part.arrayOffset() + part.position(), part.remaining() );
+            }
+
+            Assert.assertEquals( decoder.getReceivedBytes(), compressed.length );
+            Assert.assertEquals( decoder.getDecodedBytes(), decoded.size() );
+        }
+        Assert.assertEquals( new String( decoded.toByteArray(), StandardCharsets.UTF_8 ), PAGE );
+    }
+
+    private static String pageOf( int paragraphs )
+    {
+        final StringBuilder page = new StringBuilder( "<html><body>" );
+        for ( int i = 0; i < paragraphs; i++ )
+        {
+            page.append( "<p>Paragraph " ).append( i ).append( " of the crawled page</p>\n" );
+        }
+        return page.append( "</body></html>" ).toString();
+    }
+}
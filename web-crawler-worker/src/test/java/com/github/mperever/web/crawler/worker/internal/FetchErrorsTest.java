@@ -0,0 +1,70 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import com.github.mperever.web.crawler.ts.common.dto.TaskErrorType;
+
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class FetchErrorsTest
+{
+    @DataProvider
+    public Object[][] errors()
+    {
+        return new Object[][]{
+                { new IllegalStateException( "unexpected" ), TaskErrorType.UNKNOWN },
+                { new TimeoutException( "Total timeout 30000 ms elapsed" ), TaskErrorType.TIMEOUT },
+                { new CompletionException( new SocketTimeoutException() ), TaskErrorType.TIMEOUT },
+                { new ConnectException( "Connection refused" ), TaskErrorType.CONNECTION_FAILED },
+                { new RuntimeException( new UnknownHostException( "nowhere" ) ), TaskErrorType.CONNECTION_FAILED },
+                { new URISyntaxException( "http://a b", "Illegal character" ), TaskErrorType.INVALID_URL },
+                { new UncheckedIOException( new HttpStatusException( "", 404, "" ) ), TaskErrorType.HTTP_CLIENT_ERROR },
+                { new HttpStatusException( "", 503, "" ), TaskErrorType.HTTP_SERVER_ERROR },
+                { new HttpStatusException( "", 429, "" ), TaskErrorType.HTTP_SERVER_ERROR },
+                { new UnsupportedMimeTypeException( "", "image/png", "" ), TaskErrorType.UNSUPPORTED_CONTENT_TYPE },
+                { new CompletionException( new FetchException( TaskErrorType.BODY_TOO_LARGE, "" ) ),
+                        TaskErrorType.BODY_TOO_LARGE } };
+    }
+
+    @Test( dataProvider = "errors" )
+    public void classify_error( final Throwable error, final TaskErrorType expectedType )
+    {
+        Assert.assertEquals( FetchErrors.classify( error ), expectedType );
+    }
+
+    @Test
+    public void permanent_errors_are_not_retried()
+    {
+        final FetchException tooLargePage = new FetchException( TaskErrorType.BODY_TOO_LARGE, "" );
+        Assert.assertFalse( FetchErrors.classify( tooLargePage ).isRetryable() );
+        Assert.assertTrue( FetchErrors.classify( new ConnectException() ).isRetryable() );
+    }
+
+    @Test
+    public void allowed_content_types()
+    {
+        final FetchLimits limits = new FetchLimits(
+                1024, Arrays.asList( "text/html", " Application/XHTML+xml " ), 1000, 1000, 1000 );
+
+        Assert.assertTrue( limits.isAllowedContentType( "text/html; charset=UTF-8" ) );
+        Assert.assertTrue( limits.isAllowedContentType( "application/xhtml+xml" ) );
+        Assert.assertTrue( limits.isAllowedContentType( null ) );
+        Assert.assertFalse( limits.isAllowedContentType( "text/plain" ) );
+        Assert.assertFalse( limits.isAllowedContentType( "application/pdf" ) );
+
+        Assert.assertFalse( limits.isTooLarge( -1 ) );
+        Assert.assertFalse( limits.isTooLarge( 1024 ) );
+        Assert.assertTrue( limits.isTooLarge( 1025 ) );
+    }
+}
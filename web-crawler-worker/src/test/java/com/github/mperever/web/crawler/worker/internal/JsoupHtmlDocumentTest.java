@@ -0,0 +1,106 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class JsoupHtmlDocumentTest
+{
+    private static final String PAGE_URL = "https://www.example.com/docs/page.html?lang=en";
+
+    private static final String PAGE = "<html><head><title>Title</title>"
+            + "<script>var text = 'script';</script><style>p { color: red; }</style></head>"
+            + "<body>\n  <h1>Header</h1><p>First   paragraph\twith <b>bold</b>text.</p>"
+            + "<div>Line<br>break</div><pre>  pre\n  text </pre>"
+            + "<a href=\"other.html\">relative</a>"
+            + "<a href=\"/root/\">root</a>"
+            + "<a href=\"../up.html#section\">up</a>"
+            + "<a href=\"?lang=de\">query</a>"
+            + "<a href=\"#top\">bookmark</a>"
+            + "<a href=\"https://external.org/\">external</a>"
+            + "<a href=\" HTTP://Upper.org/path \">upper</a>"
+            + "<a href=\"//cdn.example.com/lib\">protocol relative</a>"
+            + "<a href=\"mailto:user@example.com\">mail</a>"
+            + "<a href=\"javascript:void(0)\">script</a>"
+            + "<a href=\"ftp://files.example.com/file\">ftp</a>"
+            + "<a href=\"bad link.html\">bad</a>"
+            + "<a>no href</a>"
+            + "</body></html>";
+
+    @DataProvider
+    public Object[][] pages()
+    {
+        return new Object[][]{
+                { PAGE },
+                { "" },
+                { "<p>No body tag</p>" },
+                { "<body> non breaking  spaces <textarea> kept\n </textarea><span>\u65E5\u672C</span></body>" },
+                { "<table><tr><td>cell</td><td>cell</td></tr></table><ul><li>item<li>item</ul>" } };
+    }
+
+    @Test( dataProvider = "pages" )
+    public void the_same_text_as_jsoup( final String page )
+    {
+        final Document htmlDoc = Jsoup.parse( page, PAGE_URL );
+
+        Assert.assertEquals( new JsoupHtmlDocument( htmlDoc ).getPlainText(), htmlDoc.select( "body" ).text() );
+    }
+
+    @Test
+    public void get_unique_links()
+    {
+        final Set<URI> expectedLinks = new HashSet<>( Arrays.asList(
+                URI.create( "https://www.example.com/docs/other.html" ),
+                URI.create( "https://www.example.com/root" ),
+                URI.create( "https://www.example.com/up.html" ),
+                URI.create( "https://www.example.com/docs/page.html?lang=de" ),
+                URI.create( "https://www.example.com/docs/page.html?lang=en" ),
+                URI.create( "https://external.org" ),
+                URI.create( "http://Upper.org/path" ),
+                URI.create( "https://cdn.example.com/lib" ) ) );
+
+        final JsoupHtmlDocument document = new JsoupHtmlDocument( Jsoup.parse( PAGE, PAGE_URL ) );
+
+        Assert.assertEquals( document.getUniqueLinks(), expectedLinks );
+    }
+
+    @Test
+    public void resolve_links_against_base_tag()
+    {
+        final String page = "<html><head><base href=\"https://mirror.example.org/base/\"></head>"
+                            + "<body><a href=\"page.html\">page</a></body></html>";
+
+        final JsoupHtmlDocument document = new JsoupHtmlDocument( Jsoup.parse( page, PAGE_URL ) );
+
+        Assert.assertEquals( document.getUniqueLinks(),
+                new HashSet<>( Arrays.asList( URI.create( "https://mirror.example.org/base/page.html" ) ) ) );
+    }
+
+    @Test
+    public void resolve_links_against_url_without_path()
+    {
+        final JsoupHtmlDocument document = new JsoupHtmlDocument(
+                Jsoup.parse( "<a href=\"page.html\">page</a>", "http://example.com" ) );
+
+        Assert.assertEquals( document.getUniqueLinks(),
+                new HashSet<>( Arrays.asList( URI.create( "http://example.com/page.html" ) ) ) );
+    }
+
+    @Test
+    public void skip_relative_links_without_base_url()
+    {
+        final JsoupHtmlDocument document = new JsoupHtmlDocument(
+                Jsoup.parse( "<a href=\"page.html\">page</a><a href=\"http://example.com/\">page</a>" ) );
+
+        Assert.assertEquals( document.getUniqueLinks(),
+                new HashSet<>( Arrays.asList( URI.create( "http://example.com" ) ) ) );
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SentUrlCacheTest
+{
+    private static final String URL = "http://host/page";
+
+    @Test
+    public void url_is_sent_again_only_with_smaller_depth()
+    {
+        final SentUrlCache sentUrls = new SentUrlCache( 1024 );
+        Assert.assertFalse( sentUrls.contains( URL, 3 ) );
+
+        sentUrls.put( URL, 3 );
+        Assert.assertTrue( sentUrls.contains( URL, 3 ) );
+        Assert.assertTrue( sentUrls.contains( URL, 4 ) );
+        Assert.assertFalse( sentUrls.contains( URL, 2 ) );
+
+        // The smaller depth is kept
+        sentUrls.put( URL, 2 );
+        sentUrls.put( URL, 5 );
+        Assert.assertTrue( sentUrls.contains( URL, 2 ) );
+        Assert.assertFalse( sentUrls.contains( URL, 1 ) );
+        Assert.assertFalse( sentUrls.contains( "http://host/other", 5 ) );
+    }
+
+    @Test
+    public void disabled_cache_contains_nothing()
+    {
+        final SentUrlCache sentUrls = new SentUrlCache( 0 );
+        sentUrls.put( URL, 1 );
+        Assert.assertFalse( sentUrls.contains( URL, 1 ) );
+        Assert.assertEquals( sentUrls.getCapacity(), 0 );
+    }
+}
\ No newline at end of file
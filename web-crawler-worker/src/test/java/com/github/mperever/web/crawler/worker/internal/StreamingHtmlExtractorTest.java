@@ -0,0 +1,83 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.jsoup.Jsoup;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class StreamingHtmlExtractorTest
+{
+    private static final String PAGE_URL = "https://www.example.com/docs/page.html";
+
+    @DataProvider
+    public Object[][] pages()
+    {
+        return new Object[][]{
+                { "" },
+                { "Text without tags" },
+                { "<!DOCTYPE html><html><head><title>Title</title><meta charset=\"utf-8\">"
+                  + "<script>if ( a < b && c > d ) { document.write( '</div>' ); }</script>"
+                  + "<style>p > a { color: red; }</style></head>"
+                  + "<body><h1>Header</h1><p>First   paragraph\twith <b>bold</b>text.</p></body></html>" },
+                { "<body><!-- comment <p>not text</p> --><div>Line<br>break<br/>end</div>"
+                  + "<pre>  pre\n  text </pre><textarea> kept\n  </textarea></body>" },
+                { "<body><p>Entities: &amp; &lt;tag&gt; &quot;q&quot; &copy; &#169; &#xA9; &nbsp;x &amp &unknown; a & b"
+                  + "</p></body>" },
+                { "<body><ul><li>item<li>item</ul><table><tr><td>cell<td>cell</table>"
+                  + "<a href='one.html' title=\"a > b\">one</a><a href=two.html>two</a>"
+                  + "<a HREF=\"three.html?a=1&amp;b=2\">three</a><a href=\"#top\">top</a></body>" },
+                { "<head><base href=\"https://mirror.example.org/base/\"></head>"
+                  + "<body><a href=\"page.html\">page</a><a href=\"/root.html\">root</a></body>" },
+                { "<body>caf\u00E9 \u65E5\u672C\u8A9E <span>na\u00EFve</span></body>" } };
+    }
+
+    @Test( dataProvider = "pages" )
+    public void the_same_content_as_jsoup( final String page )
+    {
+        final JsoupHtmlDocument expected = new JsoupHtmlDocument( Jsoup.parse( page, PAGE_URL ) );
+
+        final StreamedHtmlDocument actual = extract( page, page.length() );
+
+        Assert.assertEquals( actual.getPlainText(), expected.getPlainText() );
+        Assert.assertEquals( actual.getUniqueLinks(), expected.getUniqueLinks() );
+        Assert.assertEquals( actual.getWordStats(), expected.getWordStats() );
+    }
+
+    @Test( dataProvider = "pages" )
+    public void append_page_by_parts( final String page )
+    {
+        final StreamedHtmlDocument expected = extract( page, page.length() );
+
+        final StreamedHtmlDocument actual = extract( page, 3 );
+
+        Assert.assertEquals( actual.getPlainText(), expected.getPlainText() );
+        Assert.assertEquals( actual.getUniqueLinks(), expected.getUniqueLinks() );
+        Assert.assertEquals( actual.getWordStats(), expected.getWordStats() );
+    }
+
+    @Test
+    public void resolve_links_against_base_element()
+    {
+        final StreamedHtmlDocument document = extract( "<head><base href=\"/base/\"></head>"
+                                                       + "<body><a href=\"page.html\">page</a></body>", 16 );
+
+        Assert.assertEquals( document.getUniqueLinks(),
+                new HashSet<>( Arrays.asList( URI.create( "https://www.example.com/base/page.html" ) ) ) );
+    }
+
+    private static StreamedHtmlDocument extract( final String page, final int partLength )
+    {
+        final StreamingHtmlExtractor extractor = new StreamingHtmlExtractor( PAGE_URL, 16 );
+        final char[] chars = page.toCharArray();
+        for ( int offset = 0; offset < chars.length; offset += partLength )
+        {
+            extractor.append( chars, offset, Math.min( partLength, chars.length - offset ) );
+        }
+        return extractor.finish();
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.mperever.web.crawler.worker.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class TextStatsCalculatorTest
+{
+    @Test
+    public void calculate_word_statistic()
+    {
+        final Map<String, Long> expectedStats = new HashMap<>();
+        expectedStats.put( "the", 2L );
+        expectedStats.put( "crawler", 3L );
+        expectedStats.put( "page", 1L );
+
+        final Map<String, Long> actualStats = TextStatsCalculator.calculateWordStatistic(
+                "The crawler, the CRAWLER; crawler2page a 1 !" );
+
+        Assert.assertEquals( actualStats, expectedStats );
+    }
+
+    @DataProvider
+    public Object[][] texts()
+    {
+        return new Object[][]{
+                { "" },
+                { "   \t\n " },
+                { "a b c de" },
+                { "Hello, World! Hello... world?" },
+                { "abc123def_ghi-jkl'mno\"pqr" },
+                { "\u0001ab\u0002 \u0003c\u0004 x\u0000y" },
+                { "Stra\u00DFe STRASSE stra\u00DFe \u00C4rger \u00E4rger" },
+                { "\u0130stanbul \u039F\u0394\u039F\u03A3 \u03A3 \u03C3\u03C2 na\u00EFve caf\u00E9\u00A0bar" },
+                { "\u201Cquoted\u201D \u2014 dash \u2026 \uD83D\uDE00emoji\uD83D\uDE00 \u65E5\u672C\u8A9E" },
+                { randomText( 42, 100_000 ) } };
+    }
+
+    @Test( dataProvider = "texts" )
+    public void the_same_statistic_as_regex_split( final String text )
+    {
+        Assert.assertEquals( TextStatsCalculator.calculateWordStatistic( text ), regexWordStatistic( text ) );
+    }
+
+    @Test
+    public void append_text_by_parts()
+    {
+        final String text = randomText( 7, 10_000 );
+        final WordStatsAccumulator accumulator = new WordStatsAccumulator();
+        final char[] chars = text.toCharArray();
+        for ( int offset = 0; offset < chars.length; offset += 13 )
+        {
+            accumulator.append( chars, offset, Math.min( 13, chars.length - offset ) );
+        }
+
+        Assert.assertEquals( accumulator.toWordStats(), regexWordStatistic( text ) );
+    }
+
+    /**
+     * The previous implementation of {@link TextStatsCalculator#calculateWordStatistic}.
+     */
+    private static Map<String, Long> regexWordStatistic( final String text )
+    {
+        return Arrays.stream( text.split( "[\\p{Punct}\\s\\d]+" ) )
+                .map( word -> word.toLowerCase( Locale.ENGLISH ).trim() )
+                .filter( word -> !word.isEmpty() && word.length() != 1 )
+                .collect( Collectors.groupingBy( word -> word, Collectors.counting() ) );
+    }
+
+    private static String randomText( long seed, int length )
+    {
+        final String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789"
+                + " .,;:!?'\"()-_\t\n" + "\u00E4\u00F6\u00FC\u00DF\u00E9\u00C9\u0130\u0131\u03A3\u03C3\u03C2\u00A0\u0001";
+        final Random random = new Random( seed );
+        final StringBuilder text = new StringBuilder( length );
+        for ( int i = 0; i < length; i++ )
+        {
+            // Spaces are more frequent to get words of different length
+            text.append( random.nextInt( 5 ) == 0 ? ' ' : alphabet.charAt( random.nextInt( alphabet.length() ) ) );
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BufferedTaskReaderImplTest
+{
+    private static final int MAX_CAPACITY = 4;
+
+    @Test
+    public void fill_buffer_by_free_space()
+    {
+        final BufferedTaskReaderImpl reader = newReader();
+
+        final int[] requestedCount = new int[1];
+        Assert.assertEquals( reader.fill( maxTaskCount ->
+        {
+            requestedCount[0] = maxTaskCount;
+            return newTasks( 3 );
+        } ), 3 );
+        Assert.assertEquals( requestedCount[0], MAX_CAPACITY );
+
+        Assert.assertEquals( reader.fill( maxTaskCount ->
+        {
+            requestedCount[0] = maxTaskCount;
+            return newTasks( maxTaskCount );
+        } ), 1 );
+        Assert.assertEquals( requestedCount[0], 1 );
+
+        Assert.assertEquals( reader.read().getUrl(), "http://host/0" );
+        reader.close();
+    }
+
+    @Test
+    public void do_not_take_tasks_for_reserved_space()
+    {
+        final BufferedTaskReaderImpl reader = newReader();
+
+        final int[] nestedRequestedCount = { -1 };
+        final int addedCount = reader.fill( maxTaskCount ->
+        {
+            // The space is reserved by the first taker until its tasks are added
+            reader.fill( nestedMaxTaskCount ->
+            {
+                nestedRequestedCount[0] = nestedMaxTaskCount;
+                return newTasks( nestedMaxTaskCount );
+            } );
+            return newTasks( maxTaskCount );
+        } );
+
+        Assert.assertEquals( addedCount, MAX_CAPACITY );
+        Assert.assertEquals( nestedRequestedCount[0], 0 );
+        reader.close();
+    }
+
+    @Test
+    public void take_tasks_only_for_free_in_flight_permits()
+    {
+        final InFlightTasks inFlightTasks = new InFlightTasks( 2 );
+        // The taking thread does not run, so it does not reserve permits expected by the test
+        final BufferedTaskReaderImpl reader = new BufferedTaskReaderImpl(
+                maxTaskCount -> new UrlTask[0], MAX_CAPACITY, action -> new Thread(), inFlightTasks );
+
+        final int[] requestedCount = new int[1];
+        Assert.assertEquals( reader.fill( maxTaskCount ->
+        {
+            requestedCount[0] = maxTaskCount;
+            return newTasks( 1 );
+        } ), 1 );
+        Assert.assertEquals( requestedCount[0], 2 );
+        // The permit of task which has not been taken is released
+        Assert.assertEquals( inFlightTasks.getInFlightTasks(), 1 );
+
+        final UrlTask task = reader.read();
+        inFlightTasks.onStarted( task );
+        Assert.assertEquals( reader.fill( maxTaskCount ->
+        {
+            requestedCount[0] = maxTaskCount;
+            return newTasks( maxTaskCount );
+        } ), 1 );
+        Assert.assertEquals( requestedCount[0], 1 );
+
+        // The started task holds permit until it is processed
+        Assert.assertEquals( reader.fill( maxTaskCount ->
+        {
+            requestedCount[0] = maxTaskCount;
+            return newTasks( maxTaskCount );
+        } ), 0 );
+        Assert.assertEquals( requestedCount[0], 0 );
+
+        inFlightTasks.onCompleted( task );
+        Assert.assertEquals( inFlightTasks.getInFlightTasks(), 1 );
+        reader.close();
+    }
+
+    @Test
+    public void take_tasks_after_in_flight_permits_are_released() throws Exception
+    {
+        final InFlightTasks inFlightTasks = new InFlightTasks( 2 );
+        final Queue<UrlTask> sourceTasks = new ConcurrentLinkedQueue<>();
+        final Thread[] takingThread = new Thread[1];
+        final BufferedTaskReaderImpl reader = new BufferedTaskReaderImpl( maxTaskCount ->
+        {
+            final List<UrlTask> tasks = new ArrayList<>();
+            for ( UrlTask task = sourceTasks.poll(); task != null; task = sourceTasks.poll() )
+            {
+                tasks.add( task );
+            }
+            return tasks.toArray( new UrlTask[ tasks.size() ] );
+        }, MAX_CAPACITY, 100, TimeUnit.MILLISECONDS, action ->
+        {
+            takingThread[0] = new Thread( action );
+            return takingThread[0];
+        }, inFlightTasks );
+
+        Assert.assertEquals( reader.fill( BufferedTaskReaderImplTest::newTasks ), 2 );
+        final UrlTask firstTask = reader.read();
+        final UrlTask secondTask = reader.read();
+
+        final FutureTask<UrlTask> nextTask = new FutureTask<>( reader::read );
+        final Thread readerThread = new Thread( nextTask );
+        readerThread.start();
+        try
+        {
+            // The reader waits for tasks in empty buffer, and the taking thread sleeps,
+            // because all permits are held by tasks being processed
+            awaitWaiting( readerThread );
+            awaitWaiting( takingThread[0] );
+            // The taking thread can be still going to handle wake up of the reader
+            Thread.sleep( 200 );
+            awaitWaiting( takingThread[0] );
+
+            inFlightTasks.onCompleted( firstTask );
+            inFlightTasks.onCompleted( secondTask );
+            // Tasks are not taken with sending the last task results
+            Assert.assertEquals( reader.fill( maxTaskCount -> new UrlTask[0] ), 0 );
+
+            sourceTasks.add( new UrlTask( null, "http://host/next", 0, false ) );
+            Assert.assertEquals( nextTask.get( 5, TimeUnit.SECONDS ).getUrl(), "http://host/next" );
+
+        } finally
+        {
+            readerThread.interrupt();
+            reader.close();
+        }
+    }
+
+    private static void awaitWaiting( final Thread thread ) throws InterruptedException
+    {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos( 5 );
+        while ( thread.getState() != Thread.State.WAITING )
+        {
+            Assert.assertTrue( System.nanoTime() < deadline, "Thread does not wait: " + thread.getState() );
+            Thread.sleep( 1 );
+        }
+    }
+
+    private static BufferedTaskReaderImpl newReader()
+    {
+        return new BufferedTaskReaderImpl( maxTaskCount -> new UrlTask[0], MAX_CAPACITY, 1, TimeUnit.MINUTES );
+    }
+
+    private static UrlTask[] newTasks( int count )
+    {
+        final UrlTask[] tasks = new UrlTask[ count ];
+        for ( int i = 0; i < count; i++ )
+        {
+            tasks[i] = new UrlTask( null, "http://host/" + i, 0, false );
+        }
+        return tasks;
+    }
+}
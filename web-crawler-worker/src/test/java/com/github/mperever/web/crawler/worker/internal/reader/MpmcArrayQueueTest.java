@@ -0,0 +1,92 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MpmcArrayQueueTest
+{
+    @Test
+    public void should_keep_elements_in_order_until_queue_is_full()
+    {
+        final MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>( 3 );
+
+        // Several rounds of ring
+        for ( int round = 0; round < 3; round++ )
+        {
+            Assert.assertTrue( queue.offer( 1 ) );
+            Assert.assertTrue( queue.offer( 2 ) );
+            Assert.assertTrue( queue.offer( 3 ) );
+            Assert.assertFalse( queue.offer( 4 ) );
+            Assert.assertEquals( queue.size(), 3 );
+
+            Assert.assertEquals( queue.poll(), Integer.valueOf( 1 ) );
+            Assert.assertEquals( queue.poll(), Integer.valueOf( 2 ) );
+            Assert.assertEquals( queue.poll(), Integer.valueOf( 3 ) );
+            Assert.assertNull( queue.poll() );
+            Assert.assertTrue( queue.isEmpty() );
+        }
+    }
+
+    @Test
+    public void should_take_each_element_once_by_concurrent_producers_and_consumers() throws Exception
+    {
+        final int producerCount = 4;
+        final int consumerCount = 4;
+        final int elementsPerProducer = 100_000;
+        final MpmcArrayQueue<Integer> queue = new MpmcArrayQueue<>( 64 );
+
+        final ExecutorService executor = Executors.newFixedThreadPool( producerCount + consumerCount );
+        try
+        {
+            final List<Future<BitSet>> consumers = new ArrayList<>();
+            for ( int i = 0; i < consumerCount; i++ )
+            {
+                consumers.add( executor.submit( () ->
+                {
+                    final BitSet taken = new BitSet();
+                    for ( int n = 0; n < elementsPerProducer * producerCount / consumerCount; n++ )
+                    {
+                        taken.set( queue.take() );
+                    }
+                    return taken;
+                } ) );
+            }
+            for ( int i = 0; i < producerCount; i++ )
+            {
+                final int firstElement = i * elementsPerProducer;
+                executor.submit( () ->
+                {
+                    for ( int element = firstElement; element < firstElement + elementsPerProducer; element++ )
+                    {
+                        while ( !queue.offer( element ) )
+                        {
+                            Thread.yield();
+                        }
+                    }
+                } );
+            }
+
+            final BitSet taken = new BitSet();
+            for ( Future<BitSet> consumer : consumers )
+            {
+                final BitSet consumerTaken = consumer.get( 30, TimeUnit.SECONDS );
+                Assert.assertFalse( taken.intersects( consumerTaken ) );
+                taken.or( consumerTaken );
+            }
+            Assert.assertEquals( taken.cardinality(), producerCount * elementsPerProducer );
+            Assert.assertTrue( queue.isEmpty() );
+
+        } finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RefillPolicyTest
+{
+    private static final int MAX_CAPACITY = 1000;
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos( 15 );
+
+    @Test
+    public void refill_half_empty_buffer_with_all_free_space_until_rate_is_measured()
+    {
+        final RefillPolicy policy = new RefillPolicy( MAX_CAPACITY, MAX_BACKOFF_NANOS );
+
+        Assert.assertEquals( policy.getLowWatermark(), MAX_CAPACITY / 2 );
+        Assert.assertEquals( policy.getClaimSize( 700 ), 700 );
+    }
+
+    @Test
+    public void size_claims_by_completion_rate_and_claim_latency()
+    {
+        final RefillPolicy policy = new RefillPolicy( MAX_CAPACITY, MAX_BACKOFF_NANOS );
+        policy.onClaim( TimeUnit.SECONDS.toNanos( 20 ) );
+
+        // 20 tasks per second during one minute
+        final long startTime = System.nanoTime();
+        for ( int second = 1; second <= 60; second++ )
+        {
+            for ( int i = 0; i < 20; i++ )
+            {
+                policy.onTaskRead();
+            }
+            policy.updateCompletionRate( startTime + TimeUnit.SECONDS.toNanos( second ) );
+        }
+
+        // Buffer keeps tasks for two claim latencies, claim size is limited by claim horizon
+        final int lowWatermark = policy.getLowWatermark();
+        Assert.assertTrue( lowWatermark > 700 && lowWatermark <= 800, "low watermark: " + lowWatermark );
+        final int claimSize = policy.getClaimSize( MAX_CAPACITY );
+        Assert.assertTrue( claimSize > 700 && claimSize <= 800, "claim size: " + claimSize );
+        Assert.assertEquals( policy.getClaimSize( 100 ), 100 );
+    }
+
+    @Test
+    public void back_off_exponentially_with_jitter()
+    {
+        final RefillPolicy policy = new RefillPolicy( MAX_CAPACITY, MAX_BACKOFF_NANOS );
+
+        long expectedBackoffNanos = TimeUnit.MILLISECONDS.toNanos( 250 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            final long backoffNanos = policy.nextBackoffNanos();
+            Assert.assertTrue( backoffNanos >= expectedBackoffNanos / 2 && backoffNanos <= expectedBackoffNanos );
+            expectedBackoffNanos = Math.min( MAX_BACKOFF_NANOS, expectedBackoffNanos * 2 );
+        }
+
+        policy.resetBackoff();
+        Assert.assertTrue( policy.nextBackoffNanos() <= TimeUnit.MILLISECONDS.toNanos( 250 ) );
+    }
+}
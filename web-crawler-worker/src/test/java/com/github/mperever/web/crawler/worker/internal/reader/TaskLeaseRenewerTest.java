@@ -0,0 +1,77 @@
+package com.github.mperever.web.crawler.worker.internal.reader;
+
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesRequest;
+import com.github.mperever.web.crawler.ts.common.dto.RenewTaskLeasesResponse;
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TaskLeaseRenewerTest
+{
+    private static final String CLIENT_ID = "client";
+
+    @Test
+    public void renew_leases_of_started_tasks_until_they_are_processed()
+    {
+        final InFlightTasks inFlightTasks = new InFlightTasks( 4 );
+        final UrlTask processedTask = new UrlTask( null, "http://host/0", 0, false );
+        final UrlTask processingTask = new UrlTask( null, "http://host/1", 0, false );
+        final UrlTask waitingTask = new UrlTask( null, "http://host/2", 0, false );
+        Assert.assertEquals( inFlightTasks.tryAcquire( 3 ), 3 );
+        inFlightTasks.onTaken( processedTask );
+        inFlightTasks.onTaken( processingTask );
+        inFlightTasks.onTaken( waitingTask );
+        inFlightTasks.onStarted( processedTask );
+        inFlightTasks.onStarted( processingTask );
+        inFlightTasks.onCompleted( processedTask );
+
+        final RenewTaskLeasesRequest[] lastRequest = new RenewTaskLeasesRequest[1];
+        final TaskLeaseRenewer renewer = new TaskLeaseRenewer( request ->
+        {
+            lastRequest[0] = request;
+            return new RenewTaskLeasesResponse( request.getUrls().length );
+        }, CLIENT_ID, inFlightTasks, 1000, Thread::new );
+
+        renewer.renewLeases();
+
+        Assert.assertEquals( lastRequest[0].getClientId(), CLIENT_ID );
+        Assert.assertEquals( new HashSet<>( Arrays.asList( lastRequest[0].getUrls() ) ),
+                new HashSet<>( Arrays.asList( processingTask.getUrl() ) ) );
+        Assert.assertEquals( renewer.getRenewedLeaseCount(), 1 );
+        renewer.close();
+    }
+
+    @Test
+    public void count_lost_leases_and_failed_requests()
+    {
+        final InFlightTasks inFlightTasks = new InFlightTasks( 4 );
+        Assert.assertEquals( inFlightTasks.tryAcquire( 3 ), 3 );
+        for ( int i = 0; i < 3; i++ )
+        {
+            final UrlTask task = new UrlTask( null, "http://host/" + i, 0, false );
+            inFlightTasks.onTaken( task );
+            inFlightTasks.onStarted( task );
+        }
+
+        final TaskLeaseRenewer renewer = new TaskLeaseRenewer(
+                request -> new RenewTaskLeasesResponse( 1 ), CLIENT_ID, inFlightTasks, 1000, Thread::new );
+        renewer.renewLeases();
+        Assert.assertEquals( renewer.getRenewedLeaseCount(), 1 );
+        Assert.assertEquals( renewer.getLostLeaseCount(), 2 );
+
+        final TaskLeaseRenewer failingRenewer = new TaskLeaseRenewer( request ->
+        {
+            throw new IllegalStateException( "Task service is not available" );
+        }, CLIENT_ID, inFlightTasks, 1000, Thread::new );
+        failingRenewer.renewLeases();
+        Assert.assertEquals( failingRenewer.getRenewRequestCount(), 1 );
+        Assert.assertEquals( failingRenewer.getFailedRequestCount(), 1 );
+
+        renewer.close();
+        failingRenewer.close();
+    }
+}
\ No newline at end of file
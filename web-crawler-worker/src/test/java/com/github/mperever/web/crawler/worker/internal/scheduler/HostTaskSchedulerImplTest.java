@@ -0,0 +1,29 @@
+package com.github.mperever.web.crawler.worker.internal.scheduler;
+
+import com.github.mperever.web.crawler.ts.common.dto.UrlTask;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class HostTaskSchedulerImplTest
+{
+    @Test
+    public void reject_tasks_of_host_with_max_waiting_tasks_without_blocking_other_hosts() throws Exception
+    {
+        final HostTaskSchedulerImpl scheduler = new HostTaskSchedulerImpl( 10, 2, 1, 1, TimeUnit.HOURS );
+
+        Assert.assertTrue( scheduler.submit( new UrlTask( null, "http://slow.com/0", 0, false ) ) );
+        Assert.assertTrue( scheduler.submit( new UrlTask( null, "http://slow.com/1", 0, false ) ) );
+        Assert.assertFalse( scheduler.submit( new UrlTask( null, "http://slow.com/2", 0, false ) ) );
+        Assert.assertTrue( scheduler.submit( new UrlTask( null, "http://fast.com/0", 0, false ) ) );
+        Assert.assertEquals( scheduler.size(), 3 );
+
+        // The host accepts tasks again when its waiting task is started
+        final UrlTask startedTask = scheduler.next();
+        Assert.assertEquals( startedTask.getUrl(), "http://slow.com/0" );
+        Assert.assertTrue( scheduler.submit( new UrlTask( null, "http://slow.com/2", 0, false ) ) );
+        Assert.assertEquals( scheduler.next().getUrl(), "http://fast.com/0" );
+    }
+}
\ No newline at end of file
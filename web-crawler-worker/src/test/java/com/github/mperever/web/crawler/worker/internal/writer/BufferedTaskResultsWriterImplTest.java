@@ -0,0 +1,124 @@
+package com.github.mperever.web.crawler.worker.internal.writer;
+
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultRequest;
+import com.github.mperever.web.crawler.ts.common.dto.SaveTaskResultResponse;
+import com.github.mperever.web.crawler.ts.common.dto.TaskResults;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BufferedTaskResultsWriterImplTest
+{
+    private static final long LONG_LINGER_MS = TimeUnit.MINUTES.toMillis( 10 );
+    private static final long NO_SIZE_LIMIT = Long.MAX_VALUE;
+    private static final int WAIT_SEC = 10;
+
+    @Test
+    public void send_batch_when_it_is_full() throws Exception
+    {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final BufferedTaskResultsWriterImpl writer = new BufferedTaskResultsWriterImpl(
+                requests -> successResponses( requests, batchSizes ), 3, NO_SIZE_LIMIT, LONG_LINGER_MS, Thread::new );
+
+        final List<CompletableFuture<SaveTaskResultResponse>> responses = new ArrayList<>();
+        for ( int i = 0; i < 6; i++ )
+        {
+            responses.add( writer.write( newRequest( "http://host/" + i ) ) );
+        }
+        for ( CompletableFuture<SaveTaskResultResponse> response : responses )
+        {
+            Assert.assertFalse( response.get( WAIT_SEC, TimeUnit.SECONDS ).hasError() );
+        }
+        writer.close();
+
+        Assert.assertEquals( batchSizes.size(), 2 );
+        Assert.assertEquals( ( int ) batchSizes.get( 0 ), 3 );
+        Assert.assertEquals( ( int ) batchSizes.get( 1 ), 3 );
+    }
+
+    @Test
+    public void send_batch_when_it_is_too_big() throws Exception
+    {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final BufferedTaskResultsWriterImpl writer = new BufferedTaskResultsWriterImpl(
+                requests -> successResponses( requests, batchSizes ), 100, 10, LONG_LINGER_MS, Thread::new );
+
+        final SaveTaskResultRequest request = newRequest( "http://host/big_page" );
+        Assert.assertFalse( writer.write( request ).get( WAIT_SEC, TimeUnit.SECONDS ).hasError() );
+        writer.close();
+
+        Assert.assertEquals( batchSizes.size(), 1 );
+    }
+
+    @Test
+    public void send_batch_after_linger_time() throws Exception
+    {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final BufferedTaskResultsWriterImpl writer = new BufferedTaskResultsWriterImpl(
+                requests -> successResponses( requests, batchSizes ), 100, NO_SIZE_LIMIT, 50, Thread::new );
+
+        final CompletableFuture<SaveTaskResultResponse> first = writer.write( newRequest( "http://host/1" ) );
+        final CompletableFuture<SaveTaskResultResponse> second = writer.write( newRequest( "http://host/2" ) );
+        Assert.assertFalse( first.get( WAIT_SEC, TimeUnit.SECONDS ).hasError() );
+        Assert.assertFalse( second.get( WAIT_SEC, TimeUnit.SECONDS ).hasError() );
+        writer.close();
+
+        Assert.assertEquals( batchSizes.size(), 1 );
+        Assert.assertEquals( ( int ) batchSizes.get( 0 ), 2 );
+    }
+
+    @Test
+    public void send_buffered_results_on_close() throws Exception
+    {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final BufferedTaskResultsWriterImpl writer = new BufferedTaskResultsWriterImpl(
+                requests -> successResponses( requests, batchSizes ), 100, NO_SIZE_LIMIT, LONG_LINGER_MS, Thread::new );
+
+        final CompletableFuture<SaveTaskResultResponse> response = writer.write( newRequest( "http://host/" ) );
+        writer.close();
+
+        Assert.assertTrue( response.isDone() );
+        Assert.assertFalse( response.get().hasError() );
+        Assert.assertTrue( writer.write( newRequest( "http://host/closed" ) ).get().hasError() );
+    }
+
+    @Test
+    public void complete_results_with_error_if_batch_is_not_sent() throws Exception
+    {
+        final BufferedTaskResultsWriterImpl writer = new BufferedTaskResultsWriterImpl( requests ->
+        {
+            throw new IllegalStateException( "Task service is not available" );
+        }, 2, NO_SIZE_LIMIT, LONG_LINGER_MS, Thread::new );
+
+        final CompletableFuture<SaveTaskResultResponse> first = writer.write( newRequest( "http://host/1" ) );
+        final CompletableFuture<SaveTaskResultResponse> second = writer.write( newRequest( "http://host/2" ) );
+        Assert.assertTrue( first.get( WAIT_SEC, TimeUnit.SECONDS ).hasError() );
+        Assert.assertTrue( second.get( WAIT_SEC, TimeUnit.SECONDS ).hasError() );
+        writer.close();
+    }
+
+    private static SaveTaskResultResponse[] successResponses( final SaveTaskResultRequest[] requests,
+                                                              final List<Integer> batchSizes )
+    {
+        batchSizes.add( requests.length );
+        final SaveTaskResultResponse[] responses = new SaveTaskResultResponse[ requests.length ];
+        for ( int i = 0; i < responses.length; i++ )
+        {
+            responses[i] = new SaveTaskResultResponse();
+        }
+        return responses;
+    }
+
+    private static SaveTaskResultRequest newRequest( final String url )
+    {
+        final TaskResults results = new TaskResults();
+        results.setPageText( "page text of " + url );
+        return new SaveTaskResultRequest( "client", url, results );
+    }
+}